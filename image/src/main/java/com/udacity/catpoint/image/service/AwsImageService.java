@@ -6,18 +6,36 @@ import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.AwsCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.core.retry.RetryPolicy;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
 import software.amazon.awssdk.regions.Region;
-import software.amazon.awssdk.services.rekognition.RekognitionClient;
+import software.amazon.awssdk.services.rekognition.RekognitionAsyncClient;
+import software.amazon.awssdk.services.rekognition.RekognitionAsyncClientBuilder;
 import software.amazon.awssdk.services.rekognition.model.DetectLabelsRequest;
 import software.amazon.awssdk.services.rekognition.model.DetectLabelsResponse;
 import software.amazon.awssdk.services.rekognition.model.Image;
+import software.amazon.awssdk.services.rekognition.model.Label;
 
-import javax.imageio.ImageIO;
+import java.awt.Dimension;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Properties;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 /**
@@ -32,32 +50,159 @@ import java.util.stream.Collectors;
  *      aws.id=[your access key id]
  *      aws.secret=[your Secret access key]
  *      aws.region=[an aws region of choice. For example: us-east-2]
+ *
+ * Images are scaled down and JPEG encoded before sending, see {@link JpegPayloadEncoder}, unless they are
+ * already small JPEG or PNG files. The size and quality can be set with the optional image.maxDimension and
+ * image.jpegQuality properties.
+ * Several images are classified in parallel, see {@link #classify(List, float)}.
+ *
+ * Calls are made with the asynchronous client, and a call that fails or takes too long is answered by a
+ * fallback service instead. After several failures in a row a {@link CircuitBreaker} sends everything to
+ * the fallback for a while without trying AWS at all. Optional properties:
+ *      aws.endpoint=[URL to use instead of the region's Rekognition endpoint, for example a local fake server]
+ *      aws.maxConcurrency=[connections in the HTTP connection pool, default 4]
+ *      aws.connectTimeoutMillis=[default 2000]
+ *      aws.callTimeoutMillis=[deadline for a call including retries, default 5000]
+ *      aws.retries=[default 1]
+ *      aws.breakerFailures=[failures in a row that open the circuit breaker, default 5]
+ *      aws.breakerOpenMillis=[how long the circuit breaker stays open, default 30000]
  */
-public class AwsImageService implements ImageService {
+public class AwsImageService implements ImageService, AutoCloseable {
 
     private Logger log = LoggerFactory.getLogger(AwsImageService.class);
 
-    //aws recommendation is to maintain only a single instance of client objects
-    private static RekognitionClient rekognitionClient;
+    //largest image Rekognition accepts as bytes rather than from S3
+    static final int MAX_IMAGE_BYTES = 5 * 1024 * 1024;
+    //JPEGs from the encoder at its default quality take about 2 bits per pixel for camera images
+    static final int PASS_THROUGH_BITS_PER_PIXEL = 4;
+    static final int PASS_THROUGH_HEADER_BYTES = 2 * 1024;
+
+    public static final int DEFAULT_MAX_CONCURRENCY = 4;
+    public static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(2);
+    public static final Duration DEFAULT_CALL_TIMEOUT = Duration.ofSeconds(5);
+    public static final int DEFAULT_RETRIES = 1;
+    public static final int DEFAULT_BREAKER_FAILURES = 5;
+    public static final Duration DEFAULT_BREAKER_OPEN = Duration.ofSeconds(30);
+
+    //fallback for callers that don't have one, fails like the service itself would
+    private static final ImageService UNAVAILABLE = (image, confidenceThreshold) -> {
+        throw new IllegalStateException("AWS Rekognition is unavailable");
+    };
+
+    private final RekognitionAsyncClient rekognitionClient;
+    private final JpegPayloadEncoder encoder;
+    private final CircuitBreaker circuitBreaker;
+    private final ImageService fallback;
+    private final AtomicLong failedCalls = new AtomicLong();
+    private final AtomicLong fallbackCalls = new AtomicLong();
 
     public AwsImageService() {
-        Properties props = new Properties();
-        try (InputStream is = getClass().getClassLoader().getResourceAsStream("config.properties")) {
-            props.load(is);
-        } catch (IOException ioe ) {
-            log.error("Unable to initialize AWS Rekognition, no properties file found", ioe);
-            return;
-        }
+        this(UNAVAILABLE);
+    }
+
+    /**
+     * @param fallback Answers when AWS fails, times out or the circuit breaker is open
+     */
+    public AwsImageService(ImageService fallback) {
+        this(loadProperties(), fallback);
+    }
+
+    /**
+     * @param props Settings as in config.properties
+     * @param fallback Answers when AWS fails, times out or the circuit breaker is open
+     */
+    public AwsImageService(Properties props, ImageService fallback) {
+        this.fallback = Objects.requireNonNull(fallback);
+        encoder = new JpegPayloadEncoder(
+                intSetting(props, "image.maxDimension", JpegPayloadEncoder.DEFAULT_MAX_DIMENSION, 0),
+                qualitySetting(props, "image.jpegQuality", JpegPayloadEncoder.DEFAULT_QUALITY));
+        circuitBreaker = new CircuitBreaker(
+                intSetting(props, "aws.breakerFailures", DEFAULT_BREAKER_FAILURES, 1),
+                millis(props, "aws.breakerOpenMillis", DEFAULT_BREAKER_OPEN));
 
         String awsId = props.getProperty("aws.id");
         String awsSecret = props.getProperty("aws.secret");
         String awsRegion = props.getProperty("aws.region");
+        if (awsId == null || awsSecret == null || awsRegion == null) {
+            log.error("Unable to initialize AWS Rekognition, aws.id, aws.secret or aws.region missing");
+            rekognitionClient = null;
+            return;
+        }
 
+        Duration callTimeout = millis(props, "aws.callTimeoutMillis", DEFAULT_CALL_TIMEOUT);
         AwsCredentials awsCredentials = AwsBasicCredentials.create(awsId, awsSecret);
-        rekognitionClient = RekognitionClient.builder()
+        RekognitionAsyncClientBuilder builder = RekognitionAsyncClient.builder()
                 .credentialsProvider(StaticCredentialsProvider.create(awsCredentials))
                 .region(Region.of(awsRegion))
-                .build();
+                .httpClientBuilder(NettyNioAsyncHttpClient.builder()
+                        .maxConcurrency(intSetting(props, "aws.maxConcurrency", DEFAULT_MAX_CONCURRENCY, 1))
+                        .connectionTimeout(millis(props, "aws.connectTimeoutMillis", DEFAULT_CONNECT_TIMEOUT))
+                        //waiting for a pooled connection counts against the deadline too
+                        .connectionAcquisitionTimeout(callTimeout))
+                .overrideConfiguration(ClientOverrideConfiguration.builder()
+                        .apiCallTimeout(callTimeout)
+                        .retryPolicy(RetryPolicy.builder()
+                                .numRetries(intSetting(props, "aws.retries", DEFAULT_RETRIES, 0))
+                                .build())
+                        .build());
+        String endpoint = props.getProperty("aws.endpoint");
+        if (endpoint != null) {
+            builder.endpointOverride(URI.create(endpoint));
+        }
+        rekognitionClient = builder.build();
+    }
+
+    private static Properties loadProperties() {
+        Properties props = new Properties();
+        try (InputStream is = AwsImageService.class.getClassLoader().getResourceAsStream("config.properties")) {
+            if (is == null) {
+                throw new IOException("config.properties not found");
+            }
+            props.load(is);
+        } catch (IOException ioe ) {
+            LoggerFactory.getLogger(AwsImageService.class).error("Unable to initialize AWS Rekognition, no properties file found", ioe);
+        }
+        return props;
+    }
+
+    /**
+     * @return the setting, or its default if it is missing, not a number or below the minimum; a bad value is
+     * logged rather than thrown, so a typo in config.properties doesn't stop the application from starting
+     */
+    private int intSetting(Properties props, String key, int defaultValue, int min) {
+        String value = props.getProperty(key);
+        if (value != null) {
+            try {
+                int parsed = Integer.parseInt(value.trim());
+                if (parsed >= min) {
+                    return parsed;
+                }
+            } catch (NumberFormatException e) {
+                //logged below
+            }
+            log.warn("Invalid {} {}, expected a whole number of at least {}, using {}", key, value, min, defaultValue);
+        }
+        return defaultValue;
+    }
+
+    private float qualitySetting(Properties props, String key, float defaultValue) {
+        String value = props.getProperty(key);
+        if (value != null) {
+            try {
+                float parsed = Float.parseFloat(value.trim());
+                if (parsed >= 0 && parsed <= 1) {
+                    return parsed;
+                }
+            } catch (NumberFormatException e) {
+                //logged below
+            }
+            log.warn("Invalid {} {}, expected a number from 0 to 1, using {}", key, value, defaultValue);
+        }
+        return defaultValue;
+    }
+
+    private Duration millis(Properties props, String key, Duration defaultValue) {
+        return Duration.ofMillis(intSetting(props, key, (int) defaultValue.toMillis(), 1));
     }
 
     /**
@@ -68,18 +213,151 @@ public class AwsImageService implements ImageService {
      */
     @Override
     public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
-        Image awsImage = null;
-        try (ByteArrayOutputStream os = new ByteArrayOutputStream()) {
-            ImageIO.write(image, "jpg", os);
-            awsImage = Image.builder().bytes(SdkBytes.fromByteArray(os.toByteArray())).build();
-        } catch (IOException ioe) {
+        return classify(List.of(ImageInput.of(image)), confidenceThreshhold).get(0).containsCat();
+    }
+
+    @Override
+    public boolean containsCat(ImageInput image, float confidenceThreshold) {
+        return classify(List.of(image), confidenceThreshold).get(0).containsCat();
+    }
+
+    /**
+     * Rekognition takes one image per request, so the requests for several images are sent at once, over
+     * at most aws.maxConcurrency (default {@value #DEFAULT_MAX_CONCURRENCY}) connections. Images whose
+     * request failed are then passed to the fallback service together.
+     */
+    @Override
+    public List<ClassificationResult> classify(List<ImageInput> images, float confidenceThreshold) {
+        List<Future<?>> requests = new ArrayList<>(images.size());
+        List<CompletableFuture<ClassificationResult>> calls = new ArrayList<>(images.size());
+        for (ImageInput image : images) {
+            calls.add(detectLabels(image, confidenceThreshold, requests));
+        }
+        ClassificationResult[] results = new ClassificationResult[images.size()];
+        try {
+            for (int i = 0; i < results.length; i++) {
+                results[i] = calls.get(i).get();
+            }
+        } catch (InterruptedException e) {
+            requests.forEach(request -> request.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while classifying images");
+        } catch (ExecutionException e) {
+            requests.forEach(request -> request.cancel(true));
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+
+        List<ImageInput> unanswered = new ArrayList<>();
+        List<Integer> unansweredIndexes = new ArrayList<>();
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] == null) {
+                unanswered.add(images.get(i));
+                unansweredIndexes.add(i);
+            }
+        }
+        if (!unanswered.isEmpty()) {
+            //on the caller's thread, not the SDK's
+            fallbackCalls.addAndGet(unanswered.size());
+            List<ClassificationResult> answers = fallback.classify(unanswered, confidenceThreshold);
+            for (int i = 0; i < unansweredIndexes.size(); i++) {
+                results[unansweredIndexes.get(i)] = answers.get(i);
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Sends JPEG and PNG images as they are if that is no bigger than re-encoding them, see
+     * {@link #canSendEncoded}. Other images are decoded, then scaled and encoded by the
+     * {@link JpegPayloadEncoder}.
+     * @param requests Gets the request that was sent, if any
+     * @return the result, or null if the fallback has to answer
+     */
+    private CompletableFuture<ClassificationResult> detectLabels(ImageInput image, float confidenceThreshold, List<Future<?>> requests) {
+        //don't bother encoding an image that won't be sent
+        if (rekognitionClient == null || circuitBreaker.getState() == CircuitBreaker.State.OPEN) {
+            return CompletableFuture.completedFuture(null);
+        }
+        long start = System.nanoTime();
+        Image awsImage;
+        try {
+            if (canSendEncoded(image)) {
+                awsImage = Image.builder().bytes(SdkBytes.fromByteBuffer(image.getEncoded())).build();
+            } else {
+                //the encoder hands out a fresh array each time, so the SDK can keep it without copying
+                awsImage = Image.builder().bytes(SdkBytes.fromByteArrayUnsafe(encoder.encode(image.getImage()))).build();
+            }
+        } catch (UncheckedIOException ioe) {
             log.error("Error building image byte array", ioe);
+            return CompletableFuture.completedFuture(ClassificationResult.of(false, System.nanoTime() - start));
+        }
+        if (!circuitBreaker.allowRequest()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        DetectLabelsRequest detectLabelsRequest = DetectLabelsRequest.builder().image(awsImage).minConfidence(confidenceThreshold).build();
+        CompletableFuture<DetectLabelsResponse> request = rekognitionClient.detectLabels(detectLabelsRequest);
+        requests.add(request);
+        return request.handle((response, error) -> {
+            if (error != null) {
+                circuitBreaker.recordFailure();
+                failedCalls.incrementAndGet();
+                log.warn("Rekognition call failed, using fallback: {}", error.toString());
+                return null;
+            }
+            circuitBreaker.recordSuccess();
+            logLabelsForFun(response);
+            return toResult(response, System.nanoTime() - start);
+        });
+    }
+
+    private static ClassificationResult toResult(DetectLabelsResponse response, long latencyNanos) {
+        Map<String, Float> labels = new LinkedHashMap<>();
+        boolean catDetected = false;
+        float catConfidence = 0;
+        for (Label label : response.labels()) {
+            labels.merge(label.name(), label.confidence(), Math::max);
+            if (label.name().toLowerCase().contains("cat")) {
+                catDetected = true;
+                catConfidence = Math.max(catConfidence, label.confidence());
+            }
+        }
+        return new ClassificationResult(catDetected, catConfidence, labels, latencyNanos);
+    }
+
+    /**
+     * Encoded images are only sent as they are when re-encoding wouldn't make them smaller: the encoder
+     * wouldn't scale them, and they take no more than {@link #PASS_THROUGH_BITS_PER_PIXEL} bits per pixel
+     * plus room for headers and tables, about what the encoder produces for camera images. Larger files,
+     * like PNG photos or full size camera JPEGs, go through the encoder.
+     */
+    boolean canSendEncoded(ImageInput image) {
+        if (!(image.isJpeg() || image.isPng()) || image.getEncoded().remaining() > MAX_IMAGE_BYTES) {
             return false;
         }
-        DetectLabelsRequest detectLabelsRequest = DetectLabelsRequest.builder().image(awsImage).minConfidence(confidenceThreshhold).build();
-        DetectLabelsResponse response = rekognitionClient.detectLabels(detectLabelsRequest);
-        logLabelsForFun(response);
-        return response.labels().stream().filter(l -> l.name().toLowerCase().contains("cat")).findFirst().isPresent();
+        Dimension size = image.readSize();
+        return size != null && !encoder.wouldScale(size.width, size.height) && image.getEncoded().remaining()
+                <= PASS_THROUGH_HEADER_BYTES + (long) size.width * size.height * PASS_THROUGH_BITS_PER_PIXEL / 8;
+    }
+
+    /**
+     * @return calls to AWS that failed or timed out
+     */
+    public long getFailedCalls() {
+        return failedCalls.get();
+    }
+
+    /**
+     * @return images answered by the fallback service
+     */
+    public long getFallbackCalls() {
+        return fallbackCalls.get();
+    }
+
+    public CircuitBreaker.State getCircuitState() {
+        return circuitBreaker.getState();
     }
 
     private void logLabelsForFun(DetectLabelsResponse response) {
@@ -87,4 +365,14 @@ public class AwsImageService implements ImageService {
                 .map(label -> String.format("%s(%.1f%%)", label.name(), label.confidence()))
                 .collect(Collectors.joining(", ")));
     }
+
+    /**
+     * Closes the client and its connection pool.
+     */
+    @Override
+    public void close() {
+        if (rekognitionClient != null) {
+            rekognitionClient.close();
+        }
+    }
 }
@@ -0,0 +1,82 @@
+package com.udacity.catpoint.image.service;
+
+import javax.imageio.stream.ImageOutputStreamImpl;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * ImageOutputStream that writes into a growable byte array which is kept across uses, so encoding
+ * many images doesn't allocate a new buffer (or a cache) each time. Call {@link #clear()} before reuse.
+ */
+final class ByteArrayImageOutputStream extends ImageOutputStreamImpl {
+
+    private byte[] buffer;
+    private int length;
+
+    ByteArrayImageOutputStream(int initialCapacity) {
+        buffer = new byte[initialCapacity];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        flushBits();
+        ensureCapacity(streamPos + 1);
+        buffer[(int) streamPos++] = (byte) b;
+        length = Math.max(length, (int) streamPos);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        flushBits();
+        ensureCapacity(streamPos + len);
+        System.arraycopy(b, off, buffer, (int) streamPos, len);
+        streamPos += len;
+        length = Math.max(length, (int) streamPos);
+    }
+
+    @Override
+    public int read() {
+        bitOffset = 0;
+        return streamPos < length ? buffer[(int) streamPos++] & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        bitOffset = 0;
+        if (streamPos >= length) {
+            return -1;
+        }
+        int count = Math.min(len, length - (int) streamPos);
+        System.arraycopy(buffer, (int) streamPos, b, off, count);
+        streamPos += count;
+        return count;
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    /**
+     * Empties the stream, keeping its buffer.
+     */
+    void clear() {
+        streamPos = 0;
+        flushedPos = 0;
+        bitOffset = 0;
+        length = 0;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buffer, length);
+    }
+
+    private void ensureCapacity(long capacity) {
+        if (capacity > buffer.length) {
+            if (capacity > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("Image too large");
+            }
+            buffer = Arrays.copyOf(buffer, (int) Math.max(capacity, Math.min(Integer.MAX_VALUE - 8, buffer.length * 2L)));
+        }
+    }
+}
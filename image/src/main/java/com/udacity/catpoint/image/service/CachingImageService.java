@@ -0,0 +1,254 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.LongSupplier;
+
+/**
+ * ImageService decorator that remembers results for images it has seen recently, so near-identical
+ * camera frames don't each cost a call to the wrapped service.
+ *
+ * Images are identified by their {@link PerceptualHash perceptual hash}, and a cached result is reused for
+ * any image whose hash is within a configurable Hamming distance. Results are kept per confidence threshold.
+ * Since raising the threshold can only turn a cat into no cat, a cached cat also answers lower thresholds
+ * and a cached "no cat" also answers higher ones; other thresholds go to the wrapped service.
+ * The default distance keeps a photo and a half size, recompressed copy of it together, and photos of
+ * different scenes apart. Hashes are only kept in memory, so a change to how they are worked out never
+ * compares old hashes with new ones.
+ *
+ * The cache holds a bounded number of entries, dropping the least recently used, and entries expire
+ * after a fixed time. The wrapped service is called outside of any lock, so concurrent misses for the
+ * same image may each call it.
+ */
+public class CachingImageService implements ImageService {
+
+    public static final int DEFAULT_MAX_ENTRIES = 1024;
+    public static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofSeconds(30);
+    public static final int DEFAULT_MAX_DISTANCE = 4;
+
+    private final ImageService delegate;
+    private final int maxEntries;
+    private final long timeToLiveNanos;
+    private final int maxDistance;
+    private final LongSupplier clock;
+
+    //guarded by this, in access order
+    private final Map<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+
+    public CachingImageService(ImageService delegate) {
+        this(delegate, DEFAULT_MAX_ENTRIES, DEFAULT_TIME_TO_LIVE, DEFAULT_MAX_DISTANCE);
+    }
+
+    /**
+     * @param maxEntries Most results to keep
+     * @param timeToLive How long a result stays valid
+     * @param maxDistance Most bits two image hashes may differ in for the images to count as the same, 0 to 64
+     */
+    public CachingImageService(ImageService delegate, int maxEntries, Duration timeToLive, int maxDistance) {
+        this(delegate, maxEntries, timeToLive, maxDistance, System::nanoTime);
+    }
+
+    CachingImageService(ImageService delegate, int maxEntries, Duration timeToLive, int maxDistance, LongSupplier clock) {
+        if (maxEntries < 1 || maxDistance < 0 || maxDistance > PerceptualHash.BITS) {
+            throw new IllegalArgumentException("Invalid cache size or distance");
+        }
+        this.delegate = Objects.requireNonNull(delegate);
+        this.maxEntries = maxEntries;
+        this.timeToLiveNanos = timeToLive.toNanos();
+        this.maxDistance = maxDistance;
+        this.clock = clock;
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshold) {
+        long hash = PerceptualHash.dHash(image);
+        ClassificationResult cached = lookup(hash, confidenceThreshold);
+        if (cached != null) {
+            return cached.containsCat();
+        }
+        long start = System.nanoTime();
+        boolean catDetected = delegate.imageContainsCat(image, confidenceThreshold);
+        store(hash, confidenceThreshold, ClassificationResult.of(catDetected, System.nanoTime() - start));
+        return catDetected;
+    }
+
+    /**
+     * Hashing needs the image's pixels, so encoded images are decoded here; the wrapped service
+     * still gets the encoded image on a miss.
+     */
+    @Override
+    public boolean containsCat(ImageInput image, float confidenceThreshold) {
+        long hash = PerceptualHash.dHash(image.getImage());
+        ClassificationResult cached = lookup(hash, confidenceThreshold);
+        if (cached != null) {
+            return cached.containsCat();
+        }
+        long start = System.nanoTime();
+        boolean catDetected = delegate.containsCat(image, confidenceThreshold);
+        store(hash, confidenceThreshold, ClassificationResult.of(catDetected, System.nanoTime() - start));
+        return catDetected;
+    }
+
+    /**
+     * Answers what it can from the cache and sends the rest to the wrapped service in one call. Cached
+     * results keep the confidences and labels of the original classification, with the lookup's latency.
+     */
+    @Override
+    public List<ClassificationResult> classify(List<ImageInput> images, float confidenceThreshold) {
+        ClassificationResult[] results = new ClassificationResult[images.size()];
+        long[] hashes = new long[images.size()];
+        List<ImageInput> misses = new ArrayList<>();
+        List<Integer> missIndexes = new ArrayList<>();
+        for (int i = 0; i < images.size(); i++) {
+            long start = System.nanoTime();
+            hashes[i] = PerceptualHash.dHash(images.get(i).getImage());
+            ClassificationResult cached = lookup(hashes[i], confidenceThreshold);
+            if (cached != null) {
+                results[i] = new ClassificationResult(cached.containsCat(), cached.getCatConfidence(),
+                        cached.getLabels(), System.nanoTime() - start);
+            } else {
+                misses.add(images.get(i));
+                missIndexes.add(i);
+            }
+        }
+        if (!misses.isEmpty()) {
+            List<ClassificationResult> classified = delegate.classify(misses, confidenceThreshold);
+            for (int i = 0; i < missIndexes.size(); i++) {
+                int index = missIndexes.get(i);
+                results[index] = classified.get(i);
+                store(hashes[index], confidenceThreshold, classified.get(i));
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return entries dropped to make room for new ones
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return entries dropped because they were too old
+     */
+    public synchronized long getExpirations() {
+        return expirations;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    private synchronized ClassificationResult lookup(long hash, float confidenceThreshold) {
+        long now = clock.getAsLong();
+        //identical frames are the common case, try them without scanning
+        Key exact = new Key(hash, confidenceThreshold);
+        Entry entry = entries.get(exact);
+        if (entry != null && !entry.expired(now)) {
+            hits++;
+            return entry.result;
+        }
+
+        Key match = null;
+        Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Key, Entry> candidate = iterator.next();
+            if (candidate.getValue().expired(now)) {
+                iterator.remove();
+                expirations++;
+            } else if (match == null && candidate.getValue().answers(hash, confidenceThreshold, maxDistance)) {
+                match = candidate.getKey();
+            }
+        }
+        if (match != null) {
+            hits++;
+            //touch the entry so it counts as recently used
+            return entries.get(match).result;
+        }
+        misses++;
+        return null;
+    }
+
+    private synchronized void store(long hash, float confidenceThreshold, ClassificationResult result) {
+        entries.put(new Key(hash, confidenceThreshold),
+                new Entry(hash, confidenceThreshold, result, clock.getAsLong() + timeToLiveNanos));
+        Iterator<Key> eldest = entries.keySet().iterator();
+        while (entries.size() > maxEntries) {
+            eldest.next();
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    private static final class Key {
+        private final long hash;
+        private final float confidenceThreshold;
+
+        Key(long hash, float confidenceThreshold) {
+            this.hash = hash;
+            this.confidenceThreshold = confidenceThreshold;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return hash == key.hash && Float.compare(confidenceThreshold, key.confidenceThreshold) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(hash) * 31 + Float.hashCode(confidenceThreshold);
+        }
+    }
+
+    private static final class Entry {
+        private final long hash;
+        private final float confidenceThreshold;
+        private final ClassificationResult result;
+        private final long expiresAt;
+
+        Entry(long hash, float confidenceThreshold, ClassificationResult result, long expiresAt) {
+            this.hash = hash;
+            this.confidenceThreshold = confidenceThreshold;
+            this.result = result;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean expired(long now) {
+            return now - expiresAt >= 0;
+        }
+
+        boolean answers(long otherHash, float otherThreshold, int maxDistance) {
+            boolean thresholdCovered = result.containsCat()
+                    ? otherThreshold <= confidenceThreshold
+                    : otherThreshold >= confidenceThreshold;
+            return thresholdCovered && PerceptualHash.distance(hash, otherHash) <= maxDistance;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ImageService that scores every image with a fast local service and only asks a slower, more accurate
+ * remote one about images the local service isn't sure of. A local confidence counts as unsure when it is
+ * within a band around the confidence threshold, from {@code threshold - bandBelow} up to but not
+ * including {@code threshold + bandAbove}. A local service that reports no confidence is never trusted.
+ *
+ * The unsure images of a batch go to the remote service in one {@link #classify} call. Calls per tier and
+ * per-image latencies of each tier are counted, see {@link #getLocalLatency()} and {@link #getRemoteLatency()}.
+ */
+public class CascadingImageService implements ImageService {
+
+    public static final float DEFAULT_BAND = 20f;
+
+    private final ImageService local;
+    private final ImageService remote;
+    private final float bandBelow;
+    private final float bandAbove;
+
+    private final LongAdder localCalls = new LongAdder();
+    private final LongAdder remoteCalls = new LongAdder();
+    private final LatencyHistogram localLatency = new LatencyHistogram();
+    private final LatencyHistogram remoteLatency = new LatencyHistogram();
+
+    public CascadingImageService(ImageService local, ImageService remote) {
+        this(local, remote, DEFAULT_BAND, DEFAULT_BAND);
+    }
+
+    /**
+     * @param bandBelow Percentage points below the threshold where the local result is unsure
+     * @param bandAbove Percentage points from the threshold up where the local result is unsure
+     */
+    public CascadingImageService(ImageService local, ImageService remote, float bandBelow, float bandAbove) {
+        if (bandBelow < 0 || bandAbove < 0) {
+            throw new IllegalArgumentException("Invalid uncertainty band");
+        }
+        this.local = Objects.requireNonNull(local);
+        this.remote = Objects.requireNonNull(remote);
+        this.bandBelow = bandBelow;
+        this.bandAbove = bandAbove;
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshold) {
+        return classify(List.of(ImageInput.of(image)), confidenceThreshold).get(0).containsCat();
+    }
+
+    @Override
+    public boolean containsCat(ImageInput image, float confidenceThreshold) {
+        return classify(List.of(image), confidenceThreshold).get(0).containsCat();
+    }
+
+    @Override
+    public List<ClassificationResult> classify(List<ImageInput> images, float confidenceThreshold) {
+        List<ClassificationResult> results = new ArrayList<>(local.classify(images, confidenceThreshold));
+        localCalls.add(images.size());
+        List<ImageInput> unsure = new ArrayList<>();
+        List<Integer> unsureIndexes = new ArrayList<>();
+        for (int i = 0; i < results.size(); i++) {
+            ClassificationResult result = results.get(i);
+            localLatency.record(result.getLatencyNanos());
+            if (isUnsure(result.getCatConfidence(), confidenceThreshold)) {
+                unsure.add(images.get(i));
+                unsureIndexes.add(i);
+            }
+        }
+        if (unsure.isEmpty()) {
+            return results;
+        }
+
+        List<ClassificationResult> escalated = remote.classify(unsure, confidenceThreshold);
+        remoteCalls.add(unsure.size());
+        for (int i = 0; i < escalated.size(); i++) {
+            ClassificationResult result = escalated.get(i);
+            int index = unsureIndexes.get(i);
+            remoteLatency.record(result.getLatencyNanos());
+            //the caller waited for both tiers
+            results.set(index, new ClassificationResult(result.containsCat(), result.getCatConfidence(), result.getLabels(),
+                    results.get(index).getLatencyNanos() + result.getLatencyNanos()));
+        }
+        return results;
+    }
+
+    private boolean isUnsure(float confidence, float confidenceThreshold) {
+        return Float.isNaN(confidence)
+                || (confidence >= confidenceThreshold - bandBelow && confidence < confidenceThreshold + bandAbove);
+    }
+
+    /**
+     * @return images scored by the local service, which is every image
+     */
+    public long getLocalCalls() {
+        return localCalls.sum();
+    }
+
+    /**
+     * @return images sent on to the remote service
+     */
+    public long getRemoteCalls() {
+        return remoteCalls.sum();
+    }
+
+    /**
+     * @return fraction of images sent on to the remote service, 0 to 1
+     */
+    public double getEscalationRate() {
+        long scored = localCalls.sum();
+        return scored == 0 ? 0 : (double) remoteCalls.sum() / scored;
+    }
+
+    public LatencyHistogram getLocalLatency() {
+        return localLatency;
+    }
+
+    public LatencyHistogram getRemoteLatency() {
+        return remoteLatency;
+    }
+}
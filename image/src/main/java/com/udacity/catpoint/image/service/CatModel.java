@@ -0,0 +1,276 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A small convolutional network that gives the probability of an image showing a cat: 3x3 convolutions
+ * with stride 2 and ReLU, global average pooling, then dense layers ending in a single logit.
+ *
+ * Model file layout, little endian:
+ * <pre>
+ *   int magic 'CATM', int version 1, int inputSize, int layerCount
+ *   float[3] mean, float[3] std         per RGB channel, for pixel values scaled to 0-1
+ *   per layer: int kind (1 = conv, 2 = dense), int inChannels, int outChannels,
+ *              float[] weights          conv: [ky][kx][in][out], dense: [in][out]
+ *              float[outChannels] bias
+ * </pre>
+ * All convolutions come before the dense layers, the first one takes the 3 RGB channels and the last
+ * dense layer has one output.
+ *
+ * Activations are kept channels last with a border of zeros, so every output pixel of a convolution reads
+ * the same nine offsets around its position. The weights are immutable, the buffers live in a
+ * {@link Workspace} per thread.
+ */
+final class CatModel {
+
+    static final int MAGIC = 0x4341544D;
+    static final int VERSION = 1;
+    static final int CONV = 1;
+    static final int DENSE = 2;
+    static final int MAX_CHANNELS = 4096;
+
+    private final int inputSize;
+    private final float[] mean = new float[3];
+    private final float[] std = new float[3];
+    private final List<Conv> convs = new ArrayList<>();
+    private final List<Dense> denses = new ArrayList<>();
+    private final Kernels kernels;
+
+    /**
+     * Reads the model, copying its weights out of the buffer.
+     */
+    CatModel(ByteBuffer buffer, Kernels kernels) throws IOException {
+        this.kernels = kernels;
+        ByteBuffer in = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+                throw new IOException("Not a cat model file");
+            }
+            inputSize = in.getInt();
+            int layerCount = in.getInt();
+            if (inputSize < 1 || layerCount < 1) {
+                throw new IOException("Invalid model size");
+            }
+            in.asFloatBuffer().get(mean).get(std);
+            in.position(in.position() + 6 * Float.BYTES);
+
+            int size = inputSize;
+            int channels = 3;
+            for (int i = 0; i < layerCount; i++) {
+                int kind = in.getInt();
+                int inChannels = in.getInt();
+                int outChannels = in.getInt();
+                if (inChannels != channels || outChannels < 1 || outChannels > MAX_CHANNELS) {
+                    throw new IOException("Layer " + i + " doesn't fit the previous one");
+                }
+                if (kind == CONV && denses.isEmpty()) {
+                    Conv conv = new Conv(size, inChannels, outChannels, floats(in, 9L * inChannels * outChannels), floats(in, outChannels));
+                    convs.add(conv);
+                    size = conv.outSize;
+                } else if (kind == DENSE) {
+                    denses.add(new Dense(inChannels, outChannels, floats(in, (long) inChannels * outChannels), floats(in, outChannels)));
+                } else {
+                    throw new IOException("Unexpected layer kind " + kind + " at layer " + i);
+                }
+                channels = outChannels;
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Model file is truncated", e);
+        }
+        if (convs.isEmpty() || denses.isEmpty() || denses.get(denses.size() - 1).outChannels != 1) {
+            throw new IOException("Model needs convolutions and dense layers ending in one output");
+        }
+    }
+
+    int getInputSize() {
+        return inputSize;
+    }
+
+    Workspace newWorkspace() {
+        return new Workspace();
+    }
+
+    /**
+     * @return the probability, 0 to 1, that the image shows a cat
+     */
+    float predict(BufferedImage image, Workspace workspace) {
+        workspace.load(image);
+        for (int i = 0; i < convs.size(); i++) {
+            convs.get(i).forward(workspace.activations[i], workspace.activations[i + 1], kernels);
+        }
+
+        Conv last = convs.get(convs.size() - 1);
+        float[] features = workspace.features[0];
+        averagePool(workspace.activations[convs.size()], last.outSize, last.outChannels, features);
+        for (int i = 0; i < denses.size(); i++) {
+            denses.get(i).forward(workspace.features[i], workspace.features[i + 1], i < denses.size() - 1, kernels);
+        }
+        float logit = workspace.features[denses.size()][0];
+        return (float) (1 / (1 + Math.exp(-logit)));
+    }
+
+    private static void averagePool(float[] activation, int size, int channels, float[] out) {
+        Arrays.fill(out, 0, channels, 0);
+        int padded = size + 2;
+        for (int y = 1; y <= size; y++) {
+            for (int x = 1; x <= size; x++) {
+                int offset = (y * padded + x) * channels;
+                for (int c = 0; c < channels; c++) {
+                    out[c] += activation[offset + c];
+                }
+            }
+        }
+        float scale = 1f / (size * size);
+        for (int c = 0; c < channels; c++) {
+            out[c] *= scale;
+        }
+    }
+
+    private static float[] floats(ByteBuffer in, long count) throws IOException {
+        if (count * Float.BYTES > in.remaining()) {
+            throw new IOException("Model file is truncated");
+        }
+        float[] values = new float[(int) count];
+        in.asFloatBuffer().get(values);
+        in.position(in.position() + values.length * Float.BYTES);
+        return values;
+    }
+
+    private static void relu(float[] values, int offset, int count) {
+        for (int i = offset; i < offset + count; i++) {
+            if (values[i] < 0) {
+                values[i] = 0;
+            }
+        }
+    }
+
+    /**
+     * 3x3 convolution, stride 2, padding 1, followed by ReLU.
+     */
+    private static final class Conv {
+        private final int inSize;
+        private final int outSize;
+        private final int inChannels;
+        private final int outChannels;
+        private final float[] weights;
+        private final float[] bias;
+        //offsets of the 9 * inChannels inputs of an output pixel, from the top left one
+        private final int[] taps;
+
+        Conv(int inSize, int inChannels, int outChannels, float[] weights, float[] bias) {
+            this.inSize = inSize;
+            this.outSize = (inSize + 1) / 2;
+            this.inChannels = inChannels;
+            this.outChannels = outChannels;
+            this.weights = weights;
+            this.bias = bias;
+            int padded = inSize + 2;
+            taps = new int[9 * inChannels];
+            for (int ky = 0, k = 0; ky < 3; ky++) {
+                for (int kx = 0; kx < 3; kx++) {
+                    for (int c = 0; c < inChannels; c++, k++) {
+                        taps[k] = (ky * padded + kx) * inChannels + c;
+                    }
+                }
+            }
+        }
+
+        void forward(float[] in, float[] out, Kernels kernels) {
+            int inPadded = inSize + 2;
+            int outPadded = outSize + 2;
+            for (int y = 0; y < outSize; y++) {
+                for (int x = 0; x < outSize; x++) {
+                    int outOffset = ((y + 1) * outPadded + x + 1) * outChannels;
+                    System.arraycopy(bias, 0, out, outOffset, outChannels);
+                    kernels.accumulate(in, (2 * y * inPadded + 2 * x) * inChannels, taps, weights, out, outOffset, outChannels);
+                    relu(out, outOffset, outChannels);
+                }
+            }
+        }
+    }
+
+    private static final class Dense {
+        private final int outChannels;
+        private final float[] weights;
+        private final float[] bias;
+        private final int[] taps;
+
+        Dense(int inChannels, int outChannels, float[] weights, float[] bias) {
+            this.outChannels = outChannels;
+            this.weights = weights;
+            this.bias = bias;
+            taps = new int[inChannels];
+            for (int i = 0; i < inChannels; i++) {
+                taps[i] = i;
+            }
+        }
+
+        void forward(float[] in, float[] out, boolean relu, Kernels kernels) {
+            System.arraycopy(bias, 0, out, 0, outChannels);
+            kernels.accumulate(in, 0, taps, weights, out, 0, outChannels);
+            if (relu) {
+                relu(out, 0, outChannels);
+            }
+        }
+    }
+
+    /**
+     * Buffers for one prediction at a time: the scaled input image, every activation with its zero
+     * border, and the features going through the dense layers.
+     */
+    final class Workspace {
+        private final BufferedImage canvas = new BufferedImage(inputSize, inputSize, BufferedImage.TYPE_INT_RGB);
+        private final int[] pixels = ((DataBufferInt) canvas.getRaster().getDataBuffer()).getData();
+        private final float[][] activations = new float[convs.size() + 1][];
+        private final float[][] features = new float[denses.size() + 1][];
+
+        private Workspace() {
+            activations[0] = new float[(inputSize + 2) * (inputSize + 2) * 3];
+            for (int i = 0; i < convs.size(); i++) {
+                Conv conv = convs.get(i);
+                activations[i + 1] = new float[(conv.outSize + 2) * (conv.outSize + 2) * conv.outChannels];
+            }
+            features[0] = new float[convs.get(convs.size() - 1).outChannels];
+            for (int i = 0; i < denses.size(); i++) {
+                features[i + 1] = new float[denses.get(i).outChannels];
+            }
+        }
+
+        private void load(BufferedImage image) {
+            Graphics2D g = canvas.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.drawImage(image, 0, 0, inputSize, inputSize, null);
+            } finally {
+                g.dispose();
+            }
+            float[] input = activations[0];
+            int padded = inputSize + 2;
+            float redScale = 1 / (255 * std[0]);
+            float greenScale = 1 / (255 * std[1]);
+            float blueScale = 1 / (255 * std[2]);
+            float redShift = mean[0] / std[0];
+            float greenShift = mean[1] / std[1];
+            float blueShift = mean[2] / std[2];
+            for (int y = 0; y < inputSize; y++) {
+                for (int x = 0; x < inputSize; x++) {
+                    int rgb = pixels[y * inputSize + x];
+                    int offset = ((y + 1) * padded + x + 1) * 3;
+                    input[offset] = ((rgb >> 16) & 0xFF) * redScale - redShift;
+                    input[offset + 1] = ((rgb >> 8) & 0xFF) * greenScale - greenShift;
+                    input[offset + 2] = (rgb & 0xFF) * blueScale - blueShift;
+                }
+            }
+        }
+    }
+}
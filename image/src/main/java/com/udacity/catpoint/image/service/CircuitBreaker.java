@@ -0,0 +1,90 @@
+package com.udacity.catpoint.image.service;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Stops calls to a service that keeps failing, so callers fail fast instead of each waiting out a timeout.
+ *
+ * The breaker starts closed and lets every call through. After a number of failures in a row it opens and
+ * rejects calls for a while. Once that time is up it is half open: a single trial call goes through, and
+ * closes the breaker if it succeeds or opens it again if it fails. Calls are rejected while the trial is out.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final LongSupplier clock;
+
+    //guarded by this
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean trialInFlight;
+    private long rejectedCalls;
+
+    /**
+     * @param failureThreshold Failures in a row that open the breaker
+     * @param openDuration How long the breaker rejects calls before trying one again
+     */
+    public CircuitBreaker(int failureThreshold, Duration openDuration) {
+        this(failureThreshold, openDuration, System::nanoTime);
+    }
+
+    CircuitBreaker(int failureThreshold, Duration openDuration, LongSupplier clock) {
+        if (failureThreshold < 1 || openDuration.isNegative()) {
+            throw new IllegalArgumentException("Invalid failure threshold or open duration");
+        }
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.clock = clock;
+    }
+
+    /**
+     * @return true if the call may go ahead, in which case it must be followed by
+     * {@link #recordSuccess()} or {@link #recordFailure()}
+     */
+    public synchronized boolean allowRequest() {
+        if (state == State.OPEN && clock.getAsLong() - openedAt >= openNanos) {
+            state = State.HALF_OPEN;
+        }
+        if (state == State.CLOSED || (state == State.HALF_OPEN && !trialInFlight)) {
+            trialInFlight = state == State.HALF_OPEN;
+            return true;
+        }
+        rejectedCalls++;
+        return false;
+    }
+
+    public synchronized void recordSuccess() {
+        consecutiveFailures = 0;
+        trialInFlight = false;
+        state = State.CLOSED;
+    }
+
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = clock.getAsLong();
+        }
+        trialInFlight = false;
+    }
+
+    public synchronized State getState() {
+        //report an open breaker whose time is up as half open, without letting a call through
+        if (state == State.OPEN && clock.getAsLong() - openedAt >= openNanos) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    /**
+     * @return calls turned away while the breaker was open or a trial call was out
+     */
+    public synchronized long getRejectedCalls() {
+        return rejectedCalls;
+    }
+}
@@ -0,0 +1,52 @@
+package com.udacity.catpoint.image.service;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Outcome of classifying one image: whether it contains a cat, how sure the service was, the labels it
+ * found and how long classification took. Confidences are percentages, like the threshold passed to
+ * {@link ImageService#classify}.
+ */
+public final class ClassificationResult {
+
+    private final boolean catDetected;
+    private final float catConfidence;
+    private final Map<String, Float> labels;
+    private final long latencyNanos;
+
+    /**
+     * @param catConfidence Highest confidence of any cat label, 0 if there is none, NaN if the service doesn't report confidences
+     * @param labels Confidence of each label found, by label name
+     */
+    public ClassificationResult(boolean catDetected, float catConfidence, Map<String, Float> labels, long latencyNanos) {
+        this.catDetected = catDetected;
+        this.catConfidence = catConfidence;
+        this.labels = Collections.unmodifiableMap(new LinkedHashMap<>(labels));
+        this.latencyNanos = latencyNanos;
+    }
+
+    /**
+     * @return a result from a service that only says whether there is a cat
+     */
+    public static ClassificationResult of(boolean catDetected, long latencyNanos) {
+        return new ClassificationResult(catDetected, Float.NaN, Collections.emptyMap(), latencyNanos);
+    }
+
+    public boolean containsCat() {
+        return catDetected;
+    }
+
+    public float getCatConfidence() {
+        return catConfidence;
+    }
+
+    public Map<String, Float> getLabels() {
+        return labels;
+    }
+
+    public long getLatencyNanos() {
+        return latencyNanos;
+    }
+}
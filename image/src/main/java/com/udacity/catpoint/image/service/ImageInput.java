@@ -0,0 +1,205 @@
+package com.udacity.catpoint.image.service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.Objects;
+
+/**
+ * An image to classify, either still encoded as it came from the camera or disk, or already decoded.
+ *
+ * Services that can work with the encoded bytes, like a remote classifier that accepts JPEG, use
+ * {@link #getEncoded()} and never pay for decoding. Services that need pixels call {@link #getImage()},
+ * which decodes the bytes the first time and keeps the result, so several consumers of the same input
+ * (a motion gate, a cache and a classifier) decode it at most once.
+ */
+public final class ImageInput {
+
+    private final ByteBuffer encoded;
+    private volatile BufferedImage image;
+
+    private ImageInput(ByteBuffer encoded, BufferedImage image) {
+        this.encoded = encoded;
+        this.image = image;
+    }
+
+    /**
+     * @return an input for an image that is already decoded, it has no encoded bytes
+     */
+    public static ImageInput of(BufferedImage image) {
+        return new ImageInput(null, Objects.requireNonNull(image));
+    }
+
+    /**
+     * @param encoded Image in a format ImageIO can read, from its position to its limit. It is not
+     *                copied, so it must not be changed while the input is in use.
+     */
+    public static ImageInput ofEncoded(ByteBuffer encoded) {
+        return new ImageInput(encoded.slice().asReadOnlyBuffer(), null);
+    }
+
+    public static ImageInput ofEncoded(byte[] encoded) {
+        return ofEncoded(ByteBuffer.wrap(encoded));
+    }
+
+    /**
+     * Maps the image file into memory rather than reading it, so its bytes are only loaded when used.
+     */
+    public static ImageInput ofFile(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return ofEncoded(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public boolean hasEncoded() {
+        return encoded != null;
+    }
+
+    /**
+     * @return a read-only view of the encoded image, positioned at its start, or null for a decoded input
+     */
+    public ByteBuffer getEncoded() {
+        return encoded == null ? null : encoded.duplicate();
+    }
+
+    /**
+     * @return true if the encoded bytes start like a JPEG file
+     */
+    public boolean isJpeg() {
+        return startsWith(0xFF, 0xD8, 0xFF);
+    }
+
+    /**
+     * @return true if the encoded bytes start like a PNG file
+     */
+    public boolean isPng() {
+        return startsWith(0x89, 'P', 'N', 'G');
+    }
+
+    /**
+     * @return true if the image has been decoded, or never needed decoding
+     */
+    public boolean isDecoded() {
+        return image != null;
+    }
+
+    /**
+     * Decodes the image if that hasn't happened yet.
+     * @throws UncheckedIOException if the encoded bytes are not an image ImageIO can read
+     */
+    public BufferedImage getImage() {
+        BufferedImage decoded = image;
+        if (decoded == null) {
+            synchronized (this) {
+                decoded = image;
+                if (decoded == null) {
+                    decoded = decode();
+                    image = decoded;
+                }
+            }
+        }
+        return decoded;
+    }
+
+    /**
+     * Reads the width and height from the header of the encoded image, without decoding it.
+     * @return the size, or null for a decoded input or bytes ImageIO can't read
+     */
+    Dimension readSize() {
+        if (encoded == null) {
+            return null;
+        }
+        try (ImageInputStream in = new MemoryCacheImageInputStream(new ByteBufferInputStream(encoded.duplicate()))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                return new Dimension(reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private BufferedImage decode() {
+        try (InputStream in = new ByteBufferInputStream(encoded.duplicate())) {
+            BufferedImage decoded = ImageIO.read(in);
+            if (decoded == null) {
+                throw new IOException("Unsupported image format");
+            }
+            return decoded;
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to decode image", ioe);
+        }
+    }
+
+    private boolean startsWith(int... magic) {
+        if (encoded == null || encoded.remaining() < magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if ((encoded.get(i) & 0xFF) != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Streams a buffer to ImageIO in chunks rather than copying all of it to a heap array first,
+     * which matters for memory-mapped files.
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(len, buffer.remaining());
+            buffer.get(b, off, count);
+            return count;
+        }
+
+        @Override
+        public long skip(long n) {
+            int count = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
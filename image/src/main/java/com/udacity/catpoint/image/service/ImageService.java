@@ -1,6 +1,8 @@
 package com.udacity.catpoint.image.service;
 
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
 
 public interface ImageService {
     /**
@@ -10,4 +12,33 @@ public interface ImageService {
      * @return true if the image contains a cat, false otherwise.
      */
     boolean imageContainsCat(BufferedImage image, float confidenceThreshold);
+
+    /**
+     * Returns true if the provided image contains a cat. Services that can classify encoded images
+     * should override this so camera frames don't need to be decoded; by default the image is decoded.
+     * @param image Image to scan, encoded or decoded
+     * @param confidenceThreshold Minimum threshold to consider for a cat. For example, 90.0f would require 90% confidence minimum.
+     * @return true if the image contains a cat, false otherwise.
+     */
+    default boolean containsCat(ImageInput image, float confidenceThreshold) {
+        return imageContainsCat(image.getImage(), confidenceThreshold);
+    }
+
+    /**
+     * Classifies several images, for example frames that queued up while the service was busy. Services
+     * that can classify images together or in parallel should override this; by default the images are
+     * classified one after the other with {@link #containsCat}, which reports no confidences or labels.
+     * @param images Images to scan
+     * @param confidenceThreshold Minimum threshold to consider for a cat. For example, 90.0f would require 90% confidence minimum.
+     * @return one result per image, in the same order as the images
+     */
+    default List<ClassificationResult> classify(List<ImageInput> images, float confidenceThreshold) {
+        List<ClassificationResult> results = new ArrayList<>(images.size());
+        for (ImageInput image : images) {
+            long start = System.nanoTime();
+            boolean catDetected = containsCat(image, confidenceThreshold);
+            results.add(ClassificationResult.of(catDetected, System.nanoTime() - start));
+        }
+        return results;
+    }
 }
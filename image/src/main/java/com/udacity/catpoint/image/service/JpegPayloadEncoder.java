@@ -0,0 +1,146 @@
+package com.udacity.catpoint.image.service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Prepares images for sending to a remote classifier. Images larger than the classifier can make use of
+ * are scaled down so their longer side is at most {@code maxDimension}, then encoded as JPEG at a fixed quality.
+ *
+ * Each thread keeps its own JPEG writer, output buffer and scaling canvas, so apart from small bookkeeping
+ * objects the only allocation per image is the returned byte array, which has exactly the encoded size.
+ */
+public class JpegPayloadEncoder {
+
+    /**
+     * Labels are detected just as well at this size, and an image this big is well within the request limits.
+     */
+    public static final int DEFAULT_MAX_DIMENSION = 1024;
+    public static final float DEFAULT_QUALITY = 0.75f;
+
+    private static final int INITIAL_BUFFER_BYTES = 256 * 1024;
+
+    private final int maxDimension;
+    private final float quality;
+    private final ThreadLocal<Workspace> workspaces = ThreadLocal.withInitial(Workspace::new);
+
+    private final LongAdder imagesEncoded = new LongAdder();
+    private final LongAdder bytesEncoded = new LongAdder();
+
+    public JpegPayloadEncoder() {
+        this(DEFAULT_MAX_DIMENSION, DEFAULT_QUALITY);
+    }
+
+    /**
+     * @param maxDimension Longest side in pixels of the encoded image, 0 to never scale
+     * @param quality JPEG quality from 0 to 1
+     */
+    public JpegPayloadEncoder(int maxDimension, float quality) {
+        if (maxDimension < 0 || quality < 0 || quality > 1) {
+            throw new IllegalArgumentException("Invalid size or quality");
+        }
+        this.maxDimension = maxDimension;
+        this.quality = quality;
+    }
+
+    /**
+     * @return the JPEG encoded image, scaled down if needed
+     */
+    public byte[] encode(BufferedImage image) {
+        Workspace workspace = workspaces.get();
+        BufferedImage source = workspace.prepare(image, maxDimension);
+        ByteArrayImageOutputStream out = workspace.out;
+        out.clear();
+        try {
+            workspace.param.setCompressionQuality(quality);
+            workspace.writer.setOutput(out);
+            workspace.writer.write(null, new IIOImage(source, null, null), workspace.param);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to encode image", ioe);
+        } finally {
+            workspace.writer.setOutput(null);
+        }
+        imagesEncoded.increment();
+        bytesEncoded.add(out.length());
+        return out.toByteArray();
+    }
+
+    /**
+     * @return true if an image of this size would be scaled down before encoding
+     */
+    public boolean wouldScale(int width, int height) {
+        return maxDimension > 0 && Math.max(width, height) > maxDimension;
+    }
+
+    public long getImagesEncoded() {
+        return imagesEncoded.sum();
+    }
+
+    public long getBytesEncoded() {
+        return bytesEncoded.sum();
+    }
+
+    private static final class Workspace {
+        private final ImageWriter writer;
+        private final ImageWriteParam param;
+        private final ByteArrayImageOutputStream out = new ByteArrayImageOutputStream(INITIAL_BUFFER_BYTES);
+        private BufferedImage canvas;
+
+        Workspace() {
+            Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+            if (!writers.hasNext()) {
+                throw new IllegalStateException("No JPEG writer available");
+            }
+            writer = writers.next();
+            param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        }
+
+        /**
+         * @return the image to encode: the original if it can be encoded as is, otherwise a scaled
+         * or converted copy drawn on the reusable canvas
+         */
+        BufferedImage prepare(BufferedImage image, int maxDimension) {
+            int width = image.getWidth();
+            int height = image.getHeight();
+            int longest = Math.max(width, height);
+            boolean scale = maxDimension > 0 && longest > maxDimension;
+            if (!scale && isJpegCompatible(image)) {
+                return image;
+            }
+            if (scale) {
+                width = Math.max(1, (int) Math.round((double) width * maxDimension / longest));
+                height = Math.max(1, (int) Math.round((double) height * maxDimension / longest));
+            }
+            if (canvas == null || canvas.getWidth() != width || canvas.getHeight() != height) {
+                canvas = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+            }
+            Graphics2D g = canvas.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.drawImage(image, 0, 0, width, height, null);
+            } finally {
+                g.dispose();
+            }
+            return canvas;
+        }
+
+        /**
+         * JPEG has no alpha channel, so images with one are drawn onto an opaque canvas first.
+         */
+        private static boolean isJpegCompatible(BufferedImage image) {
+            int type = image.getType();
+            return type == BufferedImage.TYPE_3BYTE_BGR || type == BufferedImage.TYPE_INT_RGB
+                    || type == BufferedImage.TYPE_INT_BGR || type == BufferedImage.TYPE_BYTE_GRAY;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.udacity.catpoint.image.service;
+
+/**
+ * Inner loops of the local classifier. The Vector API implementation is used when the
+ * jdk.incubator.vector module is present (run with --add-modules jdk.incubator.vector), otherwise
+ * a plain Java one that gives the same results up to float rounding.
+ */
+interface Kernels {
+
+    /**
+     * For each output channel {@code co < outChannels}, adds the sum over {@code k} of
+     * {@code in[base + taps[k]] * weights[k * outChannels + co]} to {@code out[outOffset + co]}.
+     * A 3x3 convolution at one output pixel is this with one tap per kernel position and input channel,
+     * a dense layer is this with one tap per input.
+     */
+    void accumulate(float[] in, int base, int[] taps, float[] weights, float[] out, int outOffset, int outChannels);
+
+    String name();
+
+    /**
+     * @return the Vector API kernels if they are available and not turned off with
+     * -Dcatpoint.image.scalarKernels=true, the scalar ones otherwise
+     */
+    static Kernels best() {
+        return VectorSupport.best(() -> new VectorKernels(), ScalarKernels::new);
+    }
+}
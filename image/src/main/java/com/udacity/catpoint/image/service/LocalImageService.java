@@ -0,0 +1,79 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Image Recognition Service that runs a small convolutional network in process, so frames never leave the
+ * machine. This is the inference engine only: the model is read from a file in the format described in
+ * {@link CatModel}, and no trained model is shipped with the application, one trained elsewhere has to be
+ * supplied. How well it tells cats apart is up to that model; the tests only check the network arithmetic.
+ *
+ * Model files are memory mapped and the weights copied once into float arrays. Frames are scaled to the
+ * model's input size and run through the network on the calling thread, each thread with its own buffers.
+ * The inner loops use the Vector API when the JVM runs with --add-modules jdk.incubator.vector.
+ */
+public class LocalImageService implements ImageService {
+
+    private static final String CAT_LABEL = "Cat";
+
+    private final CatModel model;
+    private final ThreadLocal<CatModel.Workspace> workspaces;
+    private final String kernelName;
+
+    LocalImageService(ByteBuffer model, Kernels kernels) throws IOException {
+        this.model = new CatModel(model, kernels);
+        this.workspaces = ThreadLocal.withInitial(this.model::newWorkspace);
+        this.kernelName = kernels.name();
+    }
+
+    public static LocalImageService load(Path modelFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(modelFile, StandardOpenOption.READ)) {
+            return new LocalImageService(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), Kernels.best());
+        }
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshold) {
+        return classify(image, confidenceThreshold).containsCat();
+    }
+
+    @Override
+    public boolean containsCat(ImageInput image, float confidenceThreshold) {
+        return classify(image.getImage(), confidenceThreshold).containsCat();
+    }
+
+    @Override
+    public List<ClassificationResult> classify(List<ImageInput> images, float confidenceThreshold) {
+        List<ClassificationResult> results = new ArrayList<>(images.size());
+        for (ImageInput image : images) {
+            results.add(classify(image.getImage(), confidenceThreshold));
+        }
+        return results;
+    }
+
+    /**
+     * @return which kernels the model runs on, for logs and benchmarks
+     */
+    public String getKernelName() {
+        return kernelName;
+    }
+
+    public int getInputSize() {
+        return model.getInputSize();
+    }
+
+    private ClassificationResult classify(BufferedImage image, float confidenceThreshold) {
+        long start = System.nanoTime();
+        float confidence = 100 * model.predict(image, workspaces.get());
+        return new ClassificationResult(confidence >= confidenceThreshold, confidence,
+                Map.of(CAT_LABEL, confidence), System.nanoTime() - start);
+    }
+}
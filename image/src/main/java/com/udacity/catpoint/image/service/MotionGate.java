@@ -0,0 +1,240 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decides whether a camera frame differs enough from that camera's last forwarded frame to be worth
+ * classifying. Mostly static scenes then only cost a classification when something actually moves.
+ *
+ * Each frame is reduced to a grid of average luminance values, one per block of pixels. The frame counts
+ * as changed when enough blocks differ from the reference frame by more than a per-block threshold, which
+ * ignores sensor noise and compression artifacts. The reference only moves on when a frame is forwarded,
+ * so slow changes add up until they are noticed.
+ *
+ * {@link #detectMotion} also says where the frame changed, as bounding boxes around groups of changed
+ * blocks, so only those regions need classifying, see {@link RegionClassifier}.
+ *
+ * Apart from the first frame of a camera, a change in frame size or working out the regions of a
+ * forwarded frame, checking a frame only allocates a row of scratch space: each camera keeps two
+ * luminance grids that are reused. Frames are read by {@link PixelPreprocessor}, straight from the pixel
+ * arrays for the common BufferedImage types.
+ */
+public class MotionGate {
+
+    public static final int DEFAULT_BLOCK_SIZE = 8;
+    public static final int DEFAULT_BLOCK_THRESHOLD = 24;
+    public static final double DEFAULT_CHANGED_FRACTION = 0.005;
+
+    //pixels sampled along each axis of a block
+    private static final int SAMPLE_STEP = 2;
+    //changed blocks up to this many blocks apart belong to the same region
+    private static final int REGION_REACH = 2;
+    //more regions than this are classified as one region around all of them
+    static final int MAX_REGIONS = 4;
+    //regions covering more of the frame than this are classified as the whole frame
+    static final double MAX_REGION_FRACTION = 0.5;
+
+    private static final PixelPreprocessor PREPROCESSOR = PixelPreprocessor.best();
+
+    private final int blockSize;
+    private final int blockThreshold;
+    private final double changedFraction;
+    private final Map<String, Camera> cameras = new ConcurrentHashMap<>();
+
+    public MotionGate() {
+        this(DEFAULT_BLOCK_SIZE, DEFAULT_BLOCK_THRESHOLD, DEFAULT_CHANGED_FRACTION);
+    }
+
+    /**
+     * @param blockSize Width and height in pixels of the blocks a frame is reduced to
+     * @param blockThreshold Change in average luminance (0-255) for a block to count as changed
+     * @param changedFraction Fraction of blocks, 0 to 1, that must change for the frame to be forwarded
+     */
+    public MotionGate(int blockSize, int blockThreshold, double changedFraction) {
+        if (blockSize < 1 || blockThreshold < 0 || changedFraction < 0 || changedFraction > 1) {
+            throw new IllegalArgumentException("Invalid motion gate settings");
+        }
+        this.blockSize = blockSize;
+        this.blockThreshold = blockThreshold;
+        this.changedFraction = changedFraction;
+    }
+
+    /**
+     * @return true if the frame should be classified; it then becomes the camera's reference frame
+     */
+    public boolean hasMotion(String cameraId, BufferedImage frame) {
+        return !detectMotion(cameraId, frame).isEmpty();
+    }
+
+    /**
+     * Same as {@link #hasMotion}, saying where the frame changed. Regions are padded by a block on each
+     * side. The first frame of a camera counts as changed all over, and so does a frame whose regions
+     * would cover most of it.
+     * @return the changed regions of the frame in pixels, at most {@value #MAX_REGIONS} of them,
+     * or an empty list if the frame shouldn't be classified
+     */
+    public List<Rectangle> detectMotion(String cameraId, BufferedImage frame) {
+        Camera camera = cameras.computeIfAbsent(cameraId, id -> new Camera());
+        synchronized (camera) {
+            camera.framesSeen++;
+            int columns = (frame.getWidth() + blockSize - 1) / blockSize;
+            int rows = (frame.getHeight() + blockSize - 1) / blockSize;
+            if (camera.reference == null || camera.columns != columns || camera.rows != rows) {
+                camera.columns = columns;
+                camera.rows = rows;
+                camera.reference = new int[columns * rows];
+                camera.current = new int[columns * rows];
+                downsample(frame, camera.reference);
+                camera.framesForwarded++;
+                return List.of(new Rectangle(frame.getWidth(), frame.getHeight()));
+            }
+
+            downsample(frame, camera.current);
+            int changed = 0;
+            int required = Math.max(1, (int) Math.ceil(changedFraction * camera.reference.length));
+            int[] reference = camera.reference;
+            int[] current = camera.current;
+            for (int i = 0; i < reference.length; i++) {
+                if (Math.abs(reference[i] - current[i]) > blockThreshold) {
+                    changed++;
+                }
+            }
+            if (changed < required) {
+                return List.of();
+            }
+            List<Rectangle> regions = changedRegions(reference, current, columns, rows, frame.getWidth(), frame.getHeight());
+            camera.reference = current;
+            camera.current = reference;
+            camera.framesForwarded++;
+            return regions;
+        }
+    }
+
+    /**
+     * Forgets the camera's reference frame, so its next frame is forwarded.
+     */
+    public void reset(String cameraId) {
+        cameras.remove(cameraId);
+    }
+
+    public long getFramesSeen(String cameraId) {
+        Camera camera = cameras.get(cameraId);
+        if (camera == null) {
+            return 0;
+        }
+        synchronized (camera) {
+            return camera.framesSeen;
+        }
+    }
+
+    public long getFramesForwarded(String cameraId) {
+        Camera camera = cameras.get(cameraId);
+        if (camera == null) {
+            return 0;
+        }
+        synchronized (camera) {
+            return camera.framesForwarded;
+        }
+    }
+
+    /**
+     * Groups the changed blocks of the grids and returns a padded bounding box in pixels for each group.
+     */
+    List<Rectangle> changedRegions(int[] reference, int[] current, int columns, int rows, int width, int height) {
+        boolean[] visited = new boolean[reference.length];
+        int[] stack = new int[reference.length];
+        List<Rectangle> regions = new ArrayList<>();
+        for (int start = 0; start < reference.length; start++) {
+            if (visited[start] || !changed(reference, current, start)) {
+                continue;
+            }
+            //flood fill the group, tracking its bounds in blocks
+            int left = columns, top = rows, right = -1, bottom = -1;
+            int size = 0;
+            stack[size++] = start;
+            visited[start] = true;
+            while (size > 0) {
+                int cell = stack[--size];
+                int column = cell % columns;
+                int row = cell / columns;
+                left = Math.min(left, column);
+                right = Math.max(right, column);
+                top = Math.min(top, row);
+                bottom = Math.max(bottom, row);
+                for (int y = Math.max(0, row - REGION_REACH); y <= Math.min(rows - 1, row + REGION_REACH); y++) {
+                    for (int x = Math.max(0, column - REGION_REACH); x <= Math.min(columns - 1, column + REGION_REACH); x++) {
+                        int neighbour = y * columns + x;
+                        if (!visited[neighbour] && changed(reference, current, neighbour)) {
+                            visited[neighbour] = true;
+                            stack[size++] = neighbour;
+                        }
+                    }
+                }
+            }
+            int x = Math.max(0, left - 1) * blockSize;
+            int y = Math.max(0, top - 1) * blockSize;
+            regions.add(new Rectangle(x, y, Math.min(width, (right + 2) * blockSize) - x,
+                    Math.min(height, (bottom + 2) * blockSize) - y));
+        }
+        mergeOverlapping(regions);
+
+        long area = 0;
+        for (Rectangle region : regions) {
+            area += (long) region.width * region.height;
+        }
+        if (regions.size() > MAX_REGIONS || area > MAX_REGION_FRACTION * width * height) {
+            Rectangle union = regions.get(0);
+            for (Rectangle region : regions) {
+                union = union.union(region);
+            }
+            regions = union.getWidth() * union.getHeight() > MAX_REGION_FRACTION * width * height
+                    ? List.of(new Rectangle(width, height))
+                    : List.of(union);
+        }
+        return regions;
+    }
+
+    private boolean changed(int[] reference, int[] current, int cell) {
+        return Math.abs(reference[cell] - current[cell]) > blockThreshold;
+    }
+
+    /**
+     * Padding can make the boxes of nearby groups overlap; those are replaced by their union.
+     */
+    private static void mergeOverlapping(List<Rectangle> regions) {
+        boolean merged;
+        do {
+            merged = false;
+            for (int i = 0; i < regions.size() && !merged; i++) {
+                for (int j = i + 1; j < regions.size(); j++) {
+                    if (regions.get(i).intersects(regions.get(j))) {
+                        regions.set(i, regions.get(i).union(regions.remove(j)));
+                        merged = true;
+                        break;
+                    }
+                }
+            }
+        } while (merged);
+    }
+
+    /**
+     * Fills the grid with the average luminance of each block of the frame.
+     */
+    void downsample(BufferedImage frame, int[] grid) {
+        PREPROCESSOR.blockLuma(frame, blockSize, SAMPLE_STEP, grid);
+    }
+
+    private static final class Camera {
+        private int columns;
+        private int rows;
+        private int[] reference;
+        private int[] current;
+        private long framesSeen;
+        private long framesForwarded;
+    }
+}
@@ -0,0 +1,28 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Difference hash (dHash) of an image: the image is reduced to a 9x8 grid of grayscale cells and each
+ * of the 64 bits records whether a cell is brighter than its right-hand neighbour. Images that look
+ * alike have hashes that differ in only a few bits, even after rescaling, recompression or small
+ * changes in brightness, so the Hamming distance between two hashes tells how similar the images are.
+ * The grid is worked out by {@link PixelPreprocessor#dHash}.
+ */
+final class PerceptualHash {
+
+    static final int BITS = 64;
+
+    private static final PixelPreprocessor PREPROCESSOR = PixelPreprocessor.best();
+
+    private PerceptualHash() {
+    }
+
+    static long dHash(BufferedImage image) {
+        return PREPROCESSOR.dHash(image);
+    }
+
+    static int distance(long hash1, long hash2) {
+        return Long.bitCount(hash1 ^ hash2);
+    }
+}
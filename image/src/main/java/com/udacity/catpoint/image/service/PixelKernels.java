@@ -0,0 +1,56 @@
+package com.udacity.catpoint.image.service;
+
+/**
+ * Inner loops of the {@link PixelPreprocessor}, over runs of pixels straight from a raster's pixel array.
+ * Like {@link Kernels}, the Vector API implementation is used when the jdk.incubator.vector module is
+ * present, otherwise a plain Java one. Both give exactly the same results.
+ */
+interface PixelKernels {
+
+    /**
+     * Writes the luma (0-255) of {@code length} packed int pixels, with the given bit offsets of their
+     * red, green and blue bytes, to {@code dst} from {@code dstOffset}.
+     */
+    void grayPacked(int[] src, int srcOffset, int redShift, int greenShift, int blueShift,
+                    byte[] dst, int dstOffset, int length);
+
+    /**
+     * Writes the luma (0-255) of {@code length} interleaved byte pixels, {@code pixelStride} bytes apart
+     * with their red, green and blue bytes at the given offsets, to {@code dst} from {@code dstOffset}.
+     */
+    void grayInterleaved(byte[] src, int srcOffset, int pixelStride, int red, int green, int blue,
+                         byte[] dst, int dstOffset, int length);
+
+    /**
+     * Adds bits 16-23, 8-15 and 0-7 of each of {@code length} packed int pixels to the same index of
+     * {@code high}, {@code middle} and {@code low}.
+     */
+    void sumPacked(int[] src, int srcOffset, int[] high, int[] middle, int[] low, int length);
+
+    /**
+     * Adds each of {@code length} bytes, unsigned, to the same index of {@code sums}.
+     */
+    void sumBytes(byte[] src, int srcOffset, int[] sums, int length);
+
+    /**
+     * @return how many of {@code length} unsigned bytes differ by more than the threshold, which is at least 0
+     */
+    int countDifferent(byte[] a, int aOffset, byte[] b, int bOffset, int length, int threshold);
+
+    String name();
+
+    /**
+     * @return the Vector API kernels if they are available and not turned off with
+     * -Dcatpoint.image.scalarKernels=true, the scalar ones otherwise
+     */
+    static PixelKernels best() {
+        return VectorSupport.best(() -> new VectorPixelKernels(), ScalarPixelKernels::new);
+    }
+
+    /**
+     * Integer approximation of Rec. 601 luma, 0-255; the weights add up to 256.
+     */
+    static int luma(int r, int g, int b) {
+        return (r * 77 + g * 150 + b * 29) >> 8;
+    }
+}
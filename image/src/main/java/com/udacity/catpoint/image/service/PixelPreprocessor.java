@@ -0,0 +1,497 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.util.Arrays;
+
+/**
+ * Grayscale conversion, downscaling, frame differencing and perceptual hashing of images, working on the
+ * pixel arrays behind their rasters a row at a time rather than pixel by pixel through
+ * {@link BufferedImage#getRGB(int, int)} or AWT scaling. The row loops run on {@link PixelKernels}, with
+ * the Vector API when it is available (run with --add-modules jdk.incubator.vector).
+ *
+ * Images with int or byte pixels holding sRGB or gray samples, which covers the common image types, are read
+ * in place, subimages included. Other images, palette ones among them, are read a row at a time with the
+ * bulk {@link BufferedImage#getRGB(int, int, int, int, int[], int, int)}.
+ * Luma is the integer Rec. 601 approximation of {@link PixelKernels#luma}, which {@link MotionGate} reads
+ * frames with too. Instances are thread safe.
+ */
+public final class PixelPreprocessor {
+
+    //channel layouts of the standard image types, since the sample model only hands out copies
+    private static final int[] RGB_SHIFTS = {16, 8, 0};
+    private static final int[] BGR_SHIFTS = {0, 8, 16};
+    private static final int[] BGR_BYTE_OFFSETS = {2, 1, 0};
+    private static final int[] ABGR_BYTE_OFFSETS = {3, 2, 1};
+    private static final int[] GRAY_BYTE_OFFSETS = {0, 0, 0};
+
+    //dHash grid, and rows averaged per cell; large images are sampled rather than read in full
+    private static final int HASH_COLUMNS = 9;
+    private static final int HASH_ROWS = 8;
+    private static final int HASH_ROWS_PER_CELL = 8;
+
+    private final PixelKernels kernels;
+
+    PixelPreprocessor(PixelKernels kernels) {
+        this.kernels = kernels;
+    }
+
+    /**
+     * @return a preprocessor on the Vector API if it is available and not turned off with
+     * -Dcatpoint.image.scalarKernels=true, on plain Java otherwise
+     */
+    public static PixelPreprocessor best() {
+        return new PixelPreprocessor(PixelKernels.best());
+    }
+
+    /**
+     * @return which kernels the preprocessor runs on, for logs and benchmarks
+     */
+    public String getKernelName() {
+        return kernels.name();
+    }
+
+    /**
+     * @return the luma (0-255) of each pixel, row by row
+     */
+    public byte[] grayscale(BufferedImage image) {
+        byte[] gray = new byte[image.getWidth() * image.getHeight()];
+        grayscale(image, gray);
+        return gray;
+    }
+
+    /**
+     * Same as {@link #grayscale(BufferedImage)}, into an array that can be reused from frame to frame.
+     */
+    public void grayscale(BufferedImage image, byte[] gray) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        if (gray.length < width * height) {
+            throw new IllegalArgumentException("Array too small for the image");
+        }
+        Rows rows = rows(image);
+        for (int y = 0; y < height; y++) {
+            rows.gray(y, gray, y * width);
+        }
+    }
+
+    /**
+     * Scales the image to the given size, averaging the block of source pixels behind each pixel, like
+     * {@link java.awt.Image#SCALE_AREA_AVERAGING} does when scaling down. Scaling up repeats pixels.
+     * @return an RGB image, alpha is dropped
+     */
+    public BufferedImage scale(BufferedImage image, int width, int height) {
+        if (width < 1 || height < 1) {
+            throw new IllegalArgumentException("Invalid size " + width + "x" + height);
+        }
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        average(rows(image), width, height, Integer.MAX_VALUE, ((DataBufferInt) scaled.getRaster().getDataBuffer()).getData());
+        return scaled;
+    }
+
+    /**
+     * Compares two grayscale frames of the same size, see {@link #grayscale(BufferedImage)}.
+     * @param threshold Difference in luma (0-255) above which a pixel counts as changed
+     * @return the number of changed pixels
+     */
+    public int countChangedPixels(byte[] previous, byte[] current, int threshold) {
+        if (previous.length != current.length || threshold < 0) {
+            throw new IllegalArgumentException("Frames differ in size or invalid threshold");
+        }
+        return kernels.countDifferent(previous, 0, current, 0, current.length, threshold);
+    }
+
+    /**
+     * Difference hash (dHash) of the image, see {@link PerceptualHash}: each bit records whether a cell of
+     * a 9x8 grayscale grid is brighter than its right-hand neighbour.
+     */
+    public long dHash(BufferedImage image) {
+        int[] cells = new int[HASH_COLUMNS * HASH_ROWS];
+        average(rows(image), HASH_COLUMNS, HASH_ROWS, HASH_ROWS_PER_CELL, cells);
+        long hash = 0;
+        for (int row = 0; row < HASH_ROWS; row++) {
+            for (int column = 0; column < HASH_COLUMNS - 1; column++) {
+                hash <<= 1;
+                if (luma(cells[row * HASH_COLUMNS + column]) > luma(cells[row * HASH_COLUMNS + column + 1])) {
+                    hash |= 1;
+                }
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Fills the grid, one cell per block of blockSize pixels square, row by row, with the average luma of
+     * the block's pixels every step pixels along each axis. Blocks along the right and bottom edges may
+     * be smaller.
+     */
+    void blockLuma(BufferedImage image, int blockSize, int step, int[] grid) {
+        Rows rows = rows(image);
+        int width = rows.width;
+        int height = rows.height;
+        int columns = (width + blockSize - 1) / blockSize;
+        //when the blocks line up with the step, only the sampled pixels of a row are read
+        int rowStep = blockSize % step == 0 ? step : 1;
+        int sampleStep = step / rowStep;
+        //luma added up down each sampled column of a row of blocks
+        int[] sums = new int[(width + rowStep - 1) / rowStep];
+        for (int blockY = 0, cell = 0; blockY < height; blockY += blockSize, cell += columns) {
+            Arrays.fill(sums, 0);
+            int blockBottom = Math.min(blockY + blockSize, height);
+            int sampledRows = 0;
+            for (int y = blockY; y < blockBottom; y += step, sampledRows++) {
+                rows.sumGray(y, rowStep, sums);
+            }
+            for (int blockX = 0, column = 0; blockX < width; blockX += blockSize, column++) {
+                int start = blockX / rowStep;
+                int end = (Math.min(blockX + blockSize, width) + rowStep - 1) / rowStep;
+                int sum = 0;
+                for (int i = start; i < end; i += sampleStep) {
+                    sum += sums[i];
+                }
+                grid[cell + column] = sum / (sampledRows * ((end - start + sampleStep - 1) / sampleStep));
+            }
+        }
+    }
+
+    private static int luma(int rgb) {
+        return PixelKernels.luma((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF);
+    }
+
+    /**
+     * Fills the cells, a columns by rows grid, with the average colour of the block of pixels behind each,
+     * as 0xRRGGBB. Blocks taller than the given number of rows are sampled at evenly spaced rows.
+     */
+    private void average(Rows rows, int columns, int cellRows, int maxRowsPerCell, int[] cells) {
+        int width = rows.width;
+        int height = rows.height;
+        //block edges along each axis
+        int[] lefts = edges(width, columns);
+        int[] tops = edges(height, cellRows);
+        for (int cellRow = 0; cellRow < cellRows; cellRow++) {
+            int top = tops[cellRow];
+            int bottom = Math.max(top + 1, tops[cellRow + 1]);
+            int step = Math.max(1, (bottom - top) / maxRowsPerCell);
+            rows.clearSums();
+            int sampled = 0;
+            for (int y = top; y < bottom; y += step) {
+                rows.sum(y);
+                sampled++;
+            }
+            for (int column = 0; column < columns; column++) {
+                int left = lefts[column];
+                int right = Math.max(left + 1, lefts[column + 1]);
+                long red = 0;
+                long green = 0;
+                long blue = 0;
+                for (int x = left; x < right; x++) {
+                    red += rows.red(x);
+                    green += rows.green(x);
+                    blue += rows.blue(x);
+                }
+                long count = (long) (right - left) * sampled;
+                cells[cellRow * columns + column] = (int) (red / count) << 16 | (int) (green / count) << 8 | (int) (blue / count);
+            }
+        }
+    }
+
+    /**
+     * @return where each of the parts of the length starts, plus the length, all within 0 to length - 1
+     * but the last
+     */
+    private static int[] edges(int length, int parts) {
+        int[] edges = new int[parts + 1];
+        for (int i = 0; i < parts; i++) {
+            edges[i] = Math.min(length - 1, (int) ((long) i * length / parts));
+        }
+        edges[parts] = length;
+        return edges;
+    }
+
+    private Rows rows(BufferedImage image) {
+        Raster raster = image.getRaster();
+        DataBuffer buffer = raster.getDataBuffer();
+        SampleModel model = raster.getSampleModel();
+        ColorModel colorModel = image.getColorModel();
+        if (buffer instanceof DataBufferInt ints && buffer.getNumBanks() == 1
+                && model instanceof SinglePixelPackedSampleModel packed && model.getNumBands() >= 3
+                && colorModel instanceof DirectColorModel && colorModel.getColorSpace().isCS_sRGB()) {
+            int[] shifts = switch (image.getType()) {
+                case BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_ARGB_PRE -> RGB_SHIFTS;
+                case BufferedImage.TYPE_INT_BGR -> BGR_SHIFTS;
+                default -> packed.getBitOffsets();
+            };
+            if (isByteAligned(shifts, packed.getSampleSize())) {
+                int stride = packed.getScanlineStride();
+                int origin = buffer.getOffset() - raster.getSampleModelTranslateY() * stride - raster.getSampleModelTranslateX();
+                return new PackedRows(ints.getData(), origin, stride, shifts, raster.getWidth(), raster.getHeight());
+            }
+        } else if (buffer instanceof DataBufferByte bytes && buffer.getNumBanks() == 1
+                && model instanceof ComponentSampleModel interleaved && colorModel instanceof ComponentColorModel
+                && (model.getNumBands() >= 3 && colorModel.getColorSpace().isCS_sRGB()
+                    || model.getNumBands() == 1 && colorModel.getColorSpace().getType() == ColorSpace.TYPE_GRAY)) {
+            int[] offsets = switch (image.getType()) {
+                case BufferedImage.TYPE_3BYTE_BGR -> BGR_BYTE_OFFSETS;
+                case BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_4BYTE_ABGR_PRE -> ABGR_BYTE_OFFSETS;
+                case BufferedImage.TYPE_BYTE_GRAY -> GRAY_BYTE_OFFSETS;
+                default -> model.getNumBands() == 1 ? GRAY_BYTE_OFFSETS : interleaved.getBandOffsets();
+            };
+            int pixelStride = interleaved.getPixelStride();
+            int stride = interleaved.getScanlineStride();
+            int origin = buffer.getOffset() - raster.getSampleModelTranslateY() * stride
+                    - raster.getSampleModelTranslateX() * pixelStride;
+            return new InterleavedRows(bytes.getData(), origin, stride, pixelStride, offsets, raster.getWidth(), raster.getHeight());
+        }
+        return new RgbRows(image);
+    }
+
+    private static boolean isByteAligned(int[] shifts, int[] sampleSizes) {
+        for (int band = 0; band < 3; band++) {
+            if (shifts[band] % 8 != 0 || shifts[band] > 16 || sampleSizes[band] != 8) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The rows of an image, which can be converted to luma, or added up per column and channel.
+     */
+    private abstract static class Rows {
+        final int width;
+        final int height;
+
+        Rows(int width, int height) {
+            this.width = width;
+            this.height = height;
+        }
+
+        abstract void gray(int y, byte[] dst, int dstOffset);
+
+        /**
+         * Adds the luma of the row's pixels at 0, step, 2 * step and so on to sums.
+         */
+        abstract void sumGray(int y, int step, int[] sums);
+
+        abstract void clearSums();
+
+        /**
+         * Adds the row's pixels to the column sums.
+         */
+        abstract void sum(int y);
+
+        abstract int red(int x);
+
+        abstract int green(int x);
+
+        abstract int blue(int x);
+    }
+
+    private final class PackedRows extends Rows {
+        private final int[] pixels;
+        private final int origin;
+        private final int stride;
+        private final int[] shifts;
+        //column sums by bit offset, 0, 8 and 16
+        private final int[][] sums = new int[3][];
+
+        PackedRows(int[] pixels, int origin, int stride, int[] shifts, int width, int height) {
+            super(width, height);
+            this.pixels = pixels;
+            this.origin = origin;
+            this.stride = stride;
+            this.shifts = shifts;
+        }
+
+        @Override
+        void gray(int y, byte[] dst, int dstOffset) {
+            kernels.grayPacked(pixels, origin + y * stride, shifts[0], shifts[1], shifts[2], dst, dstOffset, width);
+        }
+
+        @Override
+        void sumGray(int y, int step, int[] sums) {
+            int redShift = shifts[0];
+            int greenShift = shifts[1];
+            int blueShift = shifts[2];
+            for (int p = origin + y * stride, end = p + width, i = 0; p < end; p += step, i++) {
+                int pixel = pixels[p];
+                sums[i] += PixelKernels.luma((pixel >>> redShift) & 0xFF, (pixel >>> greenShift) & 0xFF,
+                        (pixel >>> blueShift) & 0xFF);
+            }
+        }
+
+        @Override
+        void clearSums() {
+            if (sums[0] == null) {
+                for (int i = 0; i < sums.length; i++) {
+                    sums[i] = new int[width];
+                }
+            }
+            for (int[] channel : sums) {
+                Arrays.fill(channel, 0);
+            }
+        }
+
+        @Override
+        void sum(int y) {
+            kernels.sumPacked(pixels, origin + y * stride, sums[2], sums[1], sums[0], width);
+        }
+
+        @Override
+        int red(int x) {
+            return sums[shifts[0] / 8][x];
+        }
+
+        @Override
+        int green(int x) {
+            return sums[shifts[1] / 8][x];
+        }
+
+        @Override
+        int blue(int x) {
+            return sums[shifts[2] / 8][x];
+        }
+    }
+
+    private final class InterleavedRows extends Rows {
+        private final byte[] pixels;
+        private final int origin;
+        private final int stride;
+        private final int pixelStride;
+        private final int[] offsets;
+        //column sums of every byte of a row
+        private int[] sums;
+
+        InterleavedRows(byte[] pixels, int origin, int stride, int pixelStride, int[] offsets, int width, int height) {
+            super(width, height);
+            this.pixels = pixels;
+            this.origin = origin;
+            this.stride = stride;
+            this.pixelStride = pixelStride;
+            this.offsets = offsets;
+        }
+
+        @Override
+        void gray(int y, byte[] dst, int dstOffset) {
+            int offset = origin + y * stride;
+            if (pixelStride == 1) {
+                System.arraycopy(pixels, offset, dst, dstOffset, width);
+            } else {
+                kernels.grayInterleaved(pixels, offset, pixelStride, offsets[0], offsets[1], offsets[2], dst, dstOffset, width);
+            }
+        }
+
+        @Override
+        void sumGray(int y, int step, int[] sums) {
+            int red = offsets[0];
+            int green = offsets[1];
+            int blue = offsets[2];
+            int pixelStep = pixelStride * step;
+            for (int p = origin + y * stride, end = p + width * pixelStride, i = 0; p < end; p += pixelStep, i++) {
+                sums[i] += PixelKernels.luma(pixels[p + red] & 0xFF, pixels[p + green] & 0xFF, pixels[p + blue] & 0xFF);
+            }
+        }
+
+        @Override
+        void clearSums() {
+            if (sums == null) {
+                sums = new int[width * pixelStride];
+            }
+            Arrays.fill(sums, 0);
+        }
+
+        @Override
+        void sum(int y) {
+            kernels.sumBytes(pixels, origin + y * stride, sums, sums.length);
+        }
+
+        @Override
+        int red(int x) {
+            return sums[x * pixelStride + offsets[0]];
+        }
+
+        @Override
+        int green(int x) {
+            return sums[x * pixelStride + offsets[1]];
+        }
+
+        @Override
+        int blue(int x) {
+            return sums[x * pixelStride + offsets[2]];
+        }
+    }
+
+    /**
+     * Any other image, read a row at a time as packed RGB.
+     */
+    private final class RgbRows extends Rows {
+        private final BufferedImage image;
+        private final int[] row;
+        private int[] red;
+        private int[] green;
+        private int[] blue;
+
+        RgbRows(BufferedImage image) {
+            super(image.getWidth(), image.getHeight());
+            this.image = image;
+            this.row = new int[width];
+        }
+
+        @Override
+        void gray(int y, byte[] dst, int dstOffset) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            kernels.grayPacked(row, 0, 16, 8, 0, dst, dstOffset, width);
+        }
+
+        @Override
+        void sumGray(int y, int step, int[] sums) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for (int x = 0, i = 0; x < width; x += step, i++) {
+                sums[i] += luma(row[x]);
+            }
+        }
+
+        @Override
+        void clearSums() {
+            if (red == null) {
+                red = new int[width];
+                green = new int[width];
+                blue = new int[width];
+            }
+            Arrays.fill(red, 0);
+            Arrays.fill(green, 0);
+            Arrays.fill(blue, 0);
+        }
+
+        @Override
+        void sum(int y) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            kernels.sumPacked(row, 0, red, green, blue, width);
+        }
+
+        @Override
+        int red(int x) {
+            return red[x];
+        }
+
+        @Override
+        int green(int x) {
+            return green[x];
+        }
+
+        @Override
+        int blue(int x) {
+            return blue[x];
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Classifies only the regions of a frame that changed, see {@link MotionGate#detectMotion}, rather than
+ * the whole frame. Most of a frame that got past the motion gate is still unchanged background, so the
+ * crops are much smaller to send than the frame, and at full resolution where the whole frame would have
+ * been scaled down.
+ *
+ * Regions smaller than a minimum size are grown around their centre, since a classifier needs some
+ * context. The crops share the frame's pixels. Several crops of a frame go to the image service in one
+ * {@link ImageService#classify} call, which services like {@link AwsImageService} send at once, or with
+ * an executor as separate calls on it. The frame contains a cat if any of its regions does.
+ */
+public class RegionClassifier {
+
+    public static final int DEFAULT_MIN_REGION_SIZE = 128;
+
+    private final ImageService imageService;
+    private final int minRegionSize;
+    private final Executor executor;
+
+    private final LongAdder framesClassified = new LongAdder();
+    private final LongAdder framesCropped = new LongAdder();
+    private final LongAdder regionsClassified = new LongAdder();
+    private final LongAdder framePixels = new LongAdder();
+    private final LongAdder classifiedPixels = new LongAdder();
+
+    public RegionClassifier(ImageService imageService) {
+        this(imageService, DEFAULT_MIN_REGION_SIZE, null);
+    }
+
+    /**
+     * @param minRegionSize Smallest width and height of a crop in pixels
+     * @param executor Runs the classification of each crop of a frame, null to classify them in one call
+     */
+    public RegionClassifier(ImageService imageService, int minRegionSize, Executor executor) {
+        if (minRegionSize < 1) {
+            throw new IllegalArgumentException("Invalid minimum region size");
+        }
+        this.imageService = Objects.requireNonNull(imageService);
+        this.minRegionSize = minRegionSize;
+        this.executor = executor;
+    }
+
+    /**
+     * @param regions Changed regions of the frame, the whole frame is classified if there are none
+     * @return the combined result for the frame: a cat if any region has one, with the highest confidence
+     * of any region for each label, and the time it all took
+     */
+    public ClassificationResult classify(ImageInput frame, List<Rectangle> regions, float confidenceThreshold) {
+        long start = System.nanoTime();
+        framesClassified.increment();
+        List<ImageInput> crops = crop(frame, regions);
+        if (crops.isEmpty()) {
+            regionsClassified.increment();
+            return imageService.classify(List.of(frame), confidenceThreshold).get(0);
+        }
+        framesCropped.increment();
+        regionsClassified.add(crops.size());
+
+        List<ClassificationResult> results = executor == null || crops.size() == 1
+                ? imageService.classify(crops, confidenceThreshold)
+                : classifyInParallel(crops, confidenceThreshold);
+        boolean catDetected = false;
+        float catConfidence = Float.NaN;
+        Map<String, Float> labels = new LinkedHashMap<>();
+        for (ClassificationResult result : results) {
+            catDetected |= result.containsCat();
+            if (!Float.isNaN(result.getCatConfidence())) {
+                catConfidence = Float.isNaN(catConfidence)
+                        ? result.getCatConfidence()
+                        : Math.max(catConfidence, result.getCatConfidence());
+            }
+            result.getLabels().forEach((label, confidence) -> labels.merge(label, confidence, Math::max));
+        }
+        return new ClassificationResult(catDetected, catConfidence, labels, System.nanoTime() - start);
+    }
+
+    /**
+     * @return frames classified, cropped or not
+     */
+    public long getFramesClassified() {
+        return framesClassified.sum();
+    }
+
+    /**
+     * @return frames classified as crops rather than whole
+     */
+    public long getFramesCropped() {
+        return framesCropped.sum();
+    }
+
+    /**
+     * @return images sent to the image service, a whole frame counting as one
+     */
+    public long getRegionsClassified() {
+        return regionsClassified.sum();
+    }
+
+    /**
+     * @return pixels classified as a fraction of the pixels of the frames that came with regions,
+     * 1 if none did
+     */
+    public double getClassifiedPixelFraction() {
+        long total = framePixels.sum();
+        return total == 0 ? 1 : (double) classifiedPixels.sum() / total;
+    }
+
+    /**
+     * @return a crop for each region, or none if the whole frame should be classified
+     */
+    private List<ImageInput> crop(ImageInput frame, List<Rectangle> regions) {
+        if (regions.isEmpty()) {
+            return List.of();
+        }
+        BufferedImage image = frame.getImage();
+        Rectangle bounds = new Rectangle(image.getWidth(), image.getHeight());
+        List<ImageInput> crops = new ArrayList<>(regions.size());
+        long pixels = 0;
+        for (Rectangle region : regions) {
+            Rectangle clipped = region.intersection(bounds);
+            if (clipped.isEmpty()) {
+                continue;
+            }
+            Rectangle grown = grow(clipped, bounds);
+            if (grown.equals(bounds)) {
+                crops.clear();
+                pixels = 0;
+                break;
+            }
+            crops.add(ImageInput.of(image.getSubimage(grown.x, grown.y, grown.width, grown.height)));
+            pixels += (long) grown.width * grown.height;
+        }
+        long total = (long) bounds.width * bounds.height;
+        framePixels.add(total);
+        classifiedPixels.add(crops.isEmpty() ? total : pixels);
+        return crops;
+    }
+
+    /**
+     * Grows the region to the minimum size around its centre, shifted to stay within the bounds.
+     */
+    private Rectangle grow(Rectangle region, Rectangle bounds) {
+        int width = Math.min(bounds.width, Math.max(region.width, minRegionSize));
+        int height = Math.min(bounds.height, Math.max(region.height, minRegionSize));
+        int x = Math.max(0, Math.min(bounds.width - width, region.x + region.width / 2 - width / 2));
+        int y = Math.max(0, Math.min(bounds.height - height, region.y + region.height / 2 - height / 2));
+        return new Rectangle(x, y, width, height);
+    }
+
+    private List<ClassificationResult> classifyInParallel(List<ImageInput> crops, float confidenceThreshold) {
+        List<CompletableFuture<ClassificationResult>> calls = new ArrayList<>(crops.size());
+        for (ImageInput crop : crops) {
+            calls.add(CompletableFuture.supplyAsync(
+                    () -> imageService.classify(List.of(crop), confidenceThreshold).get(0), executor));
+        }
+        List<ClassificationResult> results = new ArrayList<>(calls.size());
+        try {
+            for (CompletableFuture<ClassificationResult> call : calls) {
+                results.add(call.join());
+            }
+        } catch (CompletionException e) {
+            calls.forEach(call -> call.cancel(false));
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+        return results;
+    }
+}
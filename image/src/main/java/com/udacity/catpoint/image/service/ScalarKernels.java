@@ -0,0 +1,27 @@
+package com.udacity.catpoint.image.service;
+
+/**
+ * Plain Java kernels. The loops run over output channels innermost so they read the weights in order,
+ * and skip the zero inputs that ReLU leaves behind.
+ */
+final class ScalarKernels implements Kernels {
+
+    @Override
+    public void accumulate(float[] in, int base, int[] taps, float[] weights, float[] out, int outOffset, int outChannels) {
+        for (int k = 0; k < taps.length; k++) {
+            float a = in[base + taps[k]];
+            if (a == 0) {
+                continue;
+            }
+            int row = k * outChannels;
+            for (int co = 0; co < outChannels; co++) {
+                out[outOffset + co] += a * weights[row + co];
+            }
+        }
+    }
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+}
@@ -0,0 +1,58 @@
+package com.udacity.catpoint.image.service;
+
+/**
+ * Plain Java pixel kernels.
+ */
+final class ScalarPixelKernels implements PixelKernels {
+
+    @Override
+    public void grayPacked(int[] src, int srcOffset, int redShift, int greenShift, int blueShift,
+                           byte[] dst, int dstOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            int pixel = src[srcOffset + i];
+            dst[dstOffset + i] = (byte) PixelKernels.luma((pixel >>> redShift) & 0xFF,
+                    (pixel >>> greenShift) & 0xFF, (pixel >>> blueShift) & 0xFF);
+        }
+    }
+
+    @Override
+    public void grayInterleaved(byte[] src, int srcOffset, int pixelStride, int red, int green, int blue,
+                                byte[] dst, int dstOffset, int length) {
+        for (int i = 0, p = srcOffset; i < length; i++, p += pixelStride) {
+            dst[dstOffset + i] = (byte) PixelKernels.luma(src[p + red] & 0xFF, src[p + green] & 0xFF, src[p + blue] & 0xFF);
+        }
+    }
+
+    @Override
+    public void sumPacked(int[] src, int srcOffset, int[] high, int[] middle, int[] low, int length) {
+        for (int i = 0; i < length; i++) {
+            int pixel = src[srcOffset + i];
+            high[i] += (pixel >>> 16) & 0xFF;
+            middle[i] += (pixel >>> 8) & 0xFF;
+            low[i] += pixel & 0xFF;
+        }
+    }
+
+    @Override
+    public void sumBytes(byte[] src, int srcOffset, int[] sums, int length) {
+        for (int i = 0; i < length; i++) {
+            sums[i] += src[srcOffset + i] & 0xFF;
+        }
+    }
+
+    @Override
+    public int countDifferent(byte[] a, int aOffset, byte[] b, int bOffset, int length, int threshold) {
+        int count = 0;
+        for (int i = 0; i < length; i++) {
+            if (Math.abs((a[aOffset + i] & 0xFF) - (b[bOffset + i] & 0xFF)) > threshold) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+}
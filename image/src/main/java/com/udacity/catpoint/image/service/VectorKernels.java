@@ -0,0 +1,58 @@
+package com.udacity.catpoint.image.service;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API kernels. Output channels are split into blocks of four vectors whose sums stay in registers
+ * while all taps are added in, so each input value is broadcast once per block and the four fused
+ * multiply-adds per tap are independent of each other.
+ *
+ * Only loaded by {@link Kernels#best()} once it knows the incubator module is present.
+ */
+final class VectorKernels implements Kernels {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+
+    @Override
+    public void accumulate(float[] in, int base, int[] taps, float[] weights, float[] out, int outOffset, int outChannels) {
+        int co = 0;
+        for (; co + 4 * LANES <= outChannels; co += 4 * LANES) {
+            FloatVector sum0 = FloatVector.fromArray(SPECIES, out, outOffset + co);
+            FloatVector sum1 = FloatVector.fromArray(SPECIES, out, outOffset + co + LANES);
+            FloatVector sum2 = FloatVector.fromArray(SPECIES, out, outOffset + co + 2 * LANES);
+            FloatVector sum3 = FloatVector.fromArray(SPECIES, out, outOffset + co + 3 * LANES);
+            for (int k = 0, row = co; k < taps.length; k++, row += outChannels) {
+                FloatVector a = FloatVector.broadcast(SPECIES, in[base + taps[k]]);
+                sum0 = a.fma(FloatVector.fromArray(SPECIES, weights, row), sum0);
+                sum1 = a.fma(FloatVector.fromArray(SPECIES, weights, row + LANES), sum1);
+                sum2 = a.fma(FloatVector.fromArray(SPECIES, weights, row + 2 * LANES), sum2);
+                sum3 = a.fma(FloatVector.fromArray(SPECIES, weights, row + 3 * LANES), sum3);
+            }
+            sum0.intoArray(out, outOffset + co);
+            sum1.intoArray(out, outOffset + co + LANES);
+            sum2.intoArray(out, outOffset + co + 2 * LANES);
+            sum3.intoArray(out, outOffset + co + 3 * LANES);
+        }
+        for (; co + LANES <= outChannels; co += LANES) {
+            FloatVector sum = FloatVector.fromArray(SPECIES, out, outOffset + co);
+            for (int k = 0, row = co; k < taps.length; k++, row += outChannels) {
+                sum = FloatVector.broadcast(SPECIES, in[base + taps[k]]).fma(FloatVector.fromArray(SPECIES, weights, row), sum);
+            }
+            sum.intoArray(out, outOffset + co);
+        }
+        for (; co < outChannels; co++) {
+            float sum = out[outOffset + co];
+            for (int k = 0, row = co; k < taps.length; k++, row += outChannels) {
+                sum += in[base + taps[k]] * weights[row];
+            }
+            out[outOffset + co] = sum;
+        }
+    }
+
+    @Override
+    public String name() {
+        return "vector, " + LANES + " lanes";
+    }
+}
@@ -0,0 +1,116 @@
+package com.udacity.catpoint.image.service;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API pixel kernels. Bytes are loaded a full vector at a time and widened to int vectors of the
+ * same size, four of them per byte vector, for the arithmetic; luma is narrowed back the same way, so a
+ * whole byte vector is stored at once. Interleaved pixels are left to the plain loop. Signed byte
+ * lanes are compared as unsigned by flipping their top bit. Tails shorter than a vector run in plain Java.
+ *
+ * Only loaded by {@link PixelKernels#best()} once it knows the incubator module is present.
+ */
+final class VectorPixelKernels implements PixelKernels {
+
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_PREFERRED;
+    private static final int INT_LANES = INTS.length();
+    private static final int BYTE_LANES = BYTES.length();
+    //int vectors per byte vector of the same size
+    private static final int PARTS = BYTE_LANES / INT_LANES;
+
+    private final ScalarPixelKernels tails = new ScalarPixelKernels();
+
+    @Override
+    public void grayPacked(int[] src, int srcOffset, int redShift, int greenShift, int blueShift,
+                           byte[] dst, int dstOffset, int length) {
+        int i = 0;
+        for (; i + BYTE_LANES <= length; i += BYTE_LANES) {
+            ByteVector gray = ByteVector.zero(BYTES);
+            for (int part = 0; part < PARTS; part++) {
+                IntVector pixels = IntVector.fromArray(INTS, src, srcOffset + i + part * INT_LANES);
+                IntVector luma = luma(pixels.lanewise(VectorOperators.LSHR, redShift).and(0xFF),
+                        pixels.lanewise(VectorOperators.LSHR, greenShift).and(0xFF),
+                        pixels.lanewise(VectorOperators.LSHR, blueShift).and(0xFF));
+                gray = gray.or((ByteVector) luma.convertShape(VectorOperators.I2B, BYTES, -part));
+            }
+            gray.intoArray(dst, dstOffset + i);
+        }
+        tails.grayPacked(src, srcOffset + i, redShift, greenShift, blueShift, dst, dstOffset + i, length - i);
+    }
+
+    /**
+     * Left to the plain loop: picking each channel out of 3 or 4 byte pixels takes a byte gather, and x86
+     * only has 32 and 64 bit gathers, so it runs as a load per lane and comes out slower than the plain
+     * loop, which C2 unrolls well on its own.
+     */
+    @Override
+    public void grayInterleaved(byte[] src, int srcOffset, int pixelStride, int red, int green, int blue,
+                                byte[] dst, int dstOffset, int length) {
+        tails.grayInterleaved(src, srcOffset, pixelStride, red, green, blue, dst, dstOffset, length);
+    }
+
+    @Override
+    public void sumPacked(int[] src, int srcOffset, int[] high, int[] middle, int[] low, int length) {
+        int i = 0;
+        for (; i + INT_LANES <= length; i += INT_LANES) {
+            IntVector pixels = IntVector.fromArray(INTS, src, srcOffset + i);
+            IntVector.fromArray(INTS, high, i).add(pixels.lanewise(VectorOperators.LSHR, 16).and(0xFF)).intoArray(high, i);
+            IntVector.fromArray(INTS, middle, i).add(pixels.lanewise(VectorOperators.LSHR, 8).and(0xFF)).intoArray(middle, i);
+            IntVector.fromArray(INTS, low, i).add(pixels.and(0xFF)).intoArray(low, i);
+        }
+        for (; i < length; i++) {
+            int pixel = src[srcOffset + i];
+            high[i] += (pixel >>> 16) & 0xFF;
+            middle[i] += (pixel >>> 8) & 0xFF;
+            low[i] += pixel & 0xFF;
+        }
+    }
+
+    @Override
+    public void sumBytes(byte[] src, int srcOffset, int[] sums, int length) {
+        int i = 0;
+        for (; i + BYTE_LANES <= length; i += BYTE_LANES) {
+            ByteVector bytes = ByteVector.fromArray(BYTES, src, srcOffset + i);
+            for (int part = 0, s = i; part < PARTS; part++, s += INT_LANES) {
+                IntVector.fromArray(INTS, sums, s).add(widen(bytes, part)).intoArray(sums, s);
+            }
+        }
+        for (; i < length; i++) {
+            sums[i] += src[srcOffset + i] & 0xFF;
+        }
+    }
+
+    @Override
+    public int countDifferent(byte[] a, int aOffset, byte[] b, int bOffset, int length, int threshold) {
+        //with the top bit flipped, signed order is unsigned order
+        byte flippedThreshold = (byte) (Math.min(threshold, 255) ^ 0x80);
+        int count = 0;
+        int i = 0;
+        for (; i + BYTE_LANES <= length; i += BYTE_LANES) {
+            ByteVector x = ByteVector.fromArray(BYTES, a, aOffset + i).lanewise(VectorOperators.XOR, (byte) 0x80);
+            ByteVector y = ByteVector.fromArray(BYTES, b, bOffset + i).lanewise(VectorOperators.XOR, (byte) 0x80);
+            //the unsigned difference, 0-255
+            ByteVector difference = x.max(y).sub(x.min(y));
+            count += difference.lanewise(VectorOperators.XOR, (byte) 0x80)
+                    .compare(VectorOperators.GT, flippedThreshold).trueCount();
+        }
+        return count + tails.countDifferent(a, aOffset + i, b, bOffset + i, length - i, threshold);
+    }
+
+    @Override
+    public String name() {
+        return "vector, " + BYTE_LANES + " byte lanes";
+    }
+
+    private static IntVector widen(ByteVector bytes, int part) {
+        return ((IntVector) bytes.convertShape(VectorOperators.B2I, INTS, part)).and(0xFF);
+    }
+
+    private static IntVector luma(IntVector r, IntVector g, IntVector b) {
+        return r.mul(77).add(g.mul(150)).add(b.mul(29)).lanewise(VectorOperators.LSHR, 8);
+    }
+}
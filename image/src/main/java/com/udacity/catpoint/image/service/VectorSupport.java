@@ -0,0 +1,30 @@
+package com.udacity.catpoint.image.service;
+
+import java.util.function.Supplier;
+
+/**
+ * Picks between the Vector API and plain Java implementations of {@link Kernels} and {@link PixelKernels}.
+ */
+final class VectorSupport {
+
+    private VectorSupport() {
+    }
+
+    /**
+     * @param vector Creates the Vector API implementation; it must not refer to the implementation class
+     *               outside of its body, so that class is only loaded once the module is known to be there
+     * @return the Vector API implementation if the jdk.incubator.vector module is present and it isn't
+     * turned off with -Dcatpoint.image.scalarKernels=true, the plain Java one otherwise
+     */
+    static <T> T best(Supplier<? extends T> vector, Supplier<? extends T> scalar) {
+        if (!Boolean.getBoolean("catpoint.image.scalarKernels")
+                && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return vector.get();
+            } catch (LinkageError e) {
+                //the module is there but this module can't read it, fall back
+            }
+        }
+        return scalar.get();
+    }
+}
@@ -5,6 +5,8 @@ module image {
     requires software.amazon.awssdk.services.rekognition;
     requires java.desktop;
     requires software.amazon.awssdk.regions;
+    requires software.amazon.awssdk.http.nio.netty;
+    requires static jdk.incubator.vector;
 
     exports com.udacity.catpoint.image.service;
 }
\ No newline at end of file
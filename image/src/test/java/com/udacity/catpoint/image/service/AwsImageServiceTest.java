@@ -4,12 +4,45 @@ import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
 
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
 /**
- * Unit test for simple App.
+ * Unit tests for the Rekognition service against a local fake endpoint.
  */
 public class AwsImageServiceTest
     extends TestCase
 {
+    private FakeRekognitionServer server;
+    private final List<Integer> fallbackBatches = new ArrayList<>();
+
+    private final ImageService fallback = new ImageService() {
+        @Override
+        public boolean imageContainsCat(BufferedImage image, float confidenceThreshold)
+        {
+            throw new AssertionError("classify should be used");
+        }
+
+        @Override
+        public List<ClassificationResult> classify(List<ImageInput> images, float confidenceThreshold)
+        {
+            fallbackBatches.add(images.size());
+            List<ClassificationResult> results = new ArrayList<>();
+            for (int i = 0; i < images.size(); i++) {
+                results.add(new ClassificationResult(false, 10f, Map.of(), 0));
+            }
+            return results;
+        }
+    };
+
     /**
      * Create the test case
      *
@@ -28,6 +61,18 @@ public class AwsImageServiceTest
         return new TestSuite( AwsImageServiceTest.class );
     }
 
+    @Override
+    protected void setUp() throws IOException
+    {
+        server = new FakeRekognitionServer();
+    }
+
+    @Override
+    protected void tearDown() throws IOException
+    {
+        server.close();
+    }
+
     /**
      * Rigourous Test :-)
      */
@@ -35,4 +80,154 @@ public class AwsImageServiceTest
     {
         assertTrue( true );
     }
+
+    public void testClassifiesThroughEndpointOverride() throws IOException
+    {
+        byte[] jpeg = jpeg();
+        try (AwsImageService service = new AwsImageService(settings(), fallback)) {
+            ClassificationResult result = service.classify(List.of(ImageInput.ofEncoded(jpeg)), 50f).get(0);
+
+            assertTrue(result.containsCat());
+            assertEquals(98.5f, result.getCatConfidence(), 0.001f);
+            assertEquals(Map.of("Cat", 98.5f, "Pet", 90f), result.getLabels());
+            assertEquals(CircuitBreaker.State.CLOSED, service.getCircuitState());
+            assertTrue(fallbackBatches.isEmpty());
+        }
+        String request = server.getRequests().get(0);
+        assertTrue(request.startsWith("RekognitionService.DetectLabels "));
+        //the JPEG is sent as it is
+        assertTrue(request.contains(Base64.getEncoder().encodeToString(jpeg)));
+    }
+
+    public void testLargeImagesAreReencoded() throws IOException
+    {
+        //a full size camera JPEG, bigger than the encoder would make it
+        ByteArrayOutputStream large = new ByteArrayOutputStream();
+        ImageIO.write(gradient(3840, 2160), "jpg", large);
+        assertTrue(large.size() < AwsImageService.MAX_IMAGE_BYTES);
+        //a PNG photo, the right size but far more bytes per pixel than a JPEG
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(noise(400, 300), "png", png);
+        try (AwsImageService service = new AwsImageService(settings(), fallback)) {
+            assertFalse(service.canSendEncoded(ImageInput.ofEncoded(large.toByteArray())));
+            assertFalse(service.canSendEncoded(ImageInput.ofEncoded(png.toByteArray())));
+            assertTrue(service.canSendEncoded(ImageInput.ofEncoded(jpeg())));
+
+            assertTrue(service.classify(List.of(ImageInput.ofEncoded(large.toByteArray())), 50f).get(0).containsCat());
+        }
+        String request = server.getRequests().get(0);
+        assertTrue(request.length() < Base64.getEncoder().encodeToString(large.toByteArray()).length());
+    }
+
+    public void testSlowCallFallsBackAtDeadline() throws IOException
+    {
+        server.setDelay(Duration.ofSeconds(3));
+        Properties settings = settings();
+        settings.setProperty("aws.callTimeoutMillis", "200");
+        try (AwsImageService service = new AwsImageService(settings, fallback)) {
+            long start = System.nanoTime();
+            ClassificationResult result = service.classify(List.of(ImageInput.ofEncoded(jpeg())), 50f).get(0);
+
+            assertTrue(System.nanoTime() - start < Duration.ofSeconds(2).toNanos());
+            assertFalse(result.containsCat());
+            assertEquals(10f, result.getCatConfidence(), 0f);
+            assertEquals(1, service.getFailedCalls());
+            assertEquals(1, service.getFallbackCalls());
+        }
+    }
+
+    public void testErrorsOpenTheCircuitBreaker() throws IOException
+    {
+        server.setStatus(500);
+        Properties settings = settings();
+        settings.setProperty("aws.breakerFailures", "2");
+        try (AwsImageService service = new AwsImageService(settings, fallback)) {
+            for (int i = 0; i < 2; i++) {
+                assertFalse(service.containsCat(ImageInput.ofEncoded(jpeg()), 50f));
+            }
+            assertEquals(CircuitBreaker.State.OPEN, service.getCircuitState());
+
+            //the open breaker answers from the fallback without calling AWS
+            server.setStatus(200);
+            assertFalse(service.containsCat(ImageInput.ofEncoded(jpeg()), 50f));
+            assertEquals(2, server.getRequests().size());
+            assertEquals(2, service.getFailedCalls());
+            assertEquals(3, service.getFallbackCalls());
+        }
+    }
+
+    public void testFailedImagesOfABatchGoToFallbackTogether() throws IOException
+    {
+        server.setStatus(500);
+        try (AwsImageService service = new AwsImageService(settings(), fallback)) {
+            List<ClassificationResult> results = service.classify(
+                    List.of(ImageInput.ofEncoded(jpeg()), ImageInput.ofEncoded(jpeg()), ImageInput.ofEncoded(jpeg())), 50f);
+
+            assertEquals(3, results.size());
+            assertEquals(List.of(3), fallbackBatches);
+        }
+    }
+
+    public void testInvalidSettingsFallBackToDefaults()
+    {
+        Properties settings = settings();
+        settings.setProperty("image.maxDimension", "large");
+        settings.setProperty("image.jpegQuality", "1.5");
+        settings.setProperty("aws.maxConcurrency", "0");
+        settings.setProperty("aws.callTimeoutMillis", "5s");
+        try (AwsImageService service = new AwsImageService(settings, fallback)) {
+            assertTrue(service.imageContainsCat(new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB), 50f));
+            assertTrue(fallbackBatches.isEmpty());
+        }
+    }
+
+    public void testUnconfiguredServiceUsesFallback()
+    {
+        try (AwsImageService service = new AwsImageService(new Properties(), fallback)) {
+            assertFalse(service.imageContainsCat(new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB), 50f));
+            assertEquals(List.of(1), fallbackBatches);
+            assertTrue(server.getRequests().isEmpty());
+        }
+    }
+
+    private Properties settings()
+    {
+        Properties settings = new Properties();
+        settings.setProperty("aws.id", "test");
+        settings.setProperty("aws.secret", "test");
+        settings.setProperty("aws.region", "us-east-1");
+        settings.setProperty("aws.endpoint", server.getEndpoint().toString());
+        settings.setProperty("aws.retries", "0");
+        return settings;
+    }
+
+    private static BufferedImage gradient(int width, int height)
+    {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, (x * 255 / width) << 16 | (y * 255 / height) << 8);
+            }
+        }
+        return image;
+    }
+
+    private static BufferedImage noise(int width, int height)
+    {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        java.util.Random random = new java.util.Random(1);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt(0x1000000));
+            }
+        }
+        return image;
+    }
+
+    private static byte[] jpeg() throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB), "jpg", out);
+        return out.toByteArray();
+    }
 }
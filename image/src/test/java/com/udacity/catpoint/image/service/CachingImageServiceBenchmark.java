@@ -0,0 +1,133 @@
+package com.udacity.catpoint.image.service;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.UnaryOperator;
+
+/**
+ * Feeds the sample images and perturbed copies of them through a CachingImageService and reports which
+ * variants are answered from the cache, the hash distance to the original and the cost of hashing.
+ * Run it from the repository root (or pass the two image paths) with the test classpath. Not a unit test.
+ */
+public class CachingImageServiceBenchmark {
+
+    private static final int HASH_ROUNDS = 2_000;
+
+    public static void main(String[] args) throws IOException {
+        String catPath = args.length > 0 ? args[0] : "sample-cat.jpg";
+        String notCatPath = args.length > 1 ? args[1] : "sample-not-cat.jpg";
+        BufferedImage cat = ImageIO.read(new File(catPath));
+        BufferedImage notCat = ImageIO.read(new File(notCatPath));
+
+        Map<String, UnaryOperator<BufferedImage>> perturbations = new LinkedHashMap<>();
+        perturbations.put("identical copy", CachingImageServiceBenchmark::copy);
+        perturbations.put("brightness +12", i -> brighten(i, 12));
+        perturbations.put("noise +-6", i -> noise(i, 6));
+        perturbations.put("jpeg recompress", CachingImageServiceBenchmark::recompress);
+        perturbations.put("shift 3px", i -> shift(i, 3));
+        perturbations.put("half size", i -> scale(i, 0.5));
+
+        int[] delegateCalls = new int[1];
+        CachingImageService cache = new CachingImageService((image, threshold) -> {
+            delegateCalls[0]++;
+            return image.getWidth() % 2 == 0;
+        });
+
+        for (Map.Entry<String, BufferedImage> sample : Map.of("cat", cat, "not cat", notCat).entrySet()) {
+            BufferedImage original = sample.getValue();
+            long originalHash = PerceptualHash.dHash(original);
+            cache.imageContainsCat(original, 50.0f);
+            System.out.printf("%s (%dx%d)%n", sample.getKey(), original.getWidth(), original.getHeight());
+            for (Map.Entry<String, UnaryOperator<BufferedImage>> perturbation : perturbations.entrySet()) {
+                BufferedImage variant = perturbation.getValue().apply(original);
+                long hits = cache.getHits();
+                cache.imageContainsCat(variant, 50.0f);
+                System.out.printf("  %-16s distance %2d  %s%n", perturbation.getKey(),
+                        PerceptualHash.distance(originalHash, PerceptualHash.dHash(variant)),
+                        cache.getHits() > hits ? "cache hit" : "miss");
+            }
+        }
+        System.out.printf("cat vs not cat distance %d%n",
+                PerceptualHash.distance(PerceptualHash.dHash(cat), PerceptualHash.dHash(notCat)));
+        System.out.printf("%d lookups: %d hits, %d misses, %d calls to the wrapped service%n",
+                cache.getHits() + cache.getMisses(), cache.getHits(), cache.getMisses(), delegateCalls[0]);
+
+        long sink = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < HASH_ROUNDS; i++) {
+            sink += PerceptualHash.dHash(i % 2 == 0 ? cat : notCat);
+        }
+        System.out.printf("dHash: %.1f us per image (%d)%n", (System.nanoTime() - start) / 1e3 / HASH_ROUNDS, sink & 1);
+    }
+
+    private static BufferedImage copy(BufferedImage image) {
+        return scale(image, 1.0);
+    }
+
+    private static BufferedImage scale(BufferedImage image, double factor) {
+        int width = (int) (image.getWidth() * factor);
+        int height = (int) (image.getHeight() * factor);
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = scaled.createGraphics();
+        g.drawImage(image, 0, 0, width, height, null);
+        g.dispose();
+        return scaled;
+    }
+
+    private static BufferedImage shift(BufferedImage image, int pixels) {
+        BufferedImage shifted = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = shifted.createGraphics();
+        g.drawImage(image, pixels, pixels, null);
+        g.dispose();
+        return shifted;
+    }
+
+    private static BufferedImage brighten(BufferedImage image, int amount) {
+        return mapPixels(image, (v, random) -> v + amount);
+    }
+
+    private static BufferedImage noise(BufferedImage image, int amount) {
+        return mapPixels(image, (v, random) -> v + random.nextInt(2 * amount + 1) - amount);
+    }
+
+    private interface ChannelOperator {
+        int apply(int value, Random random);
+    }
+
+    private static BufferedImage mapPixels(BufferedImage image, ChannelOperator operator) {
+        Random random = new Random(1);
+        BufferedImage result = copy(image);
+        for (int y = 0; y < result.getHeight(); y++) {
+            for (int x = 0; x < result.getWidth(); x++) {
+                int rgb = result.getRGB(x, y);
+                int r = clamp(operator.apply((rgb >> 16) & 0xFF, random));
+                int g = clamp(operator.apply((rgb >> 8) & 0xFF, random));
+                int b = clamp(operator.apply(rgb & 0xFF, random));
+                result.setRGB(x, y, (r << 16) | (g << 8) | b);
+            }
+        }
+        return result;
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+
+    private static BufferedImage recompress(BufferedImage image) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ImageIO.write(copy(image), "jpg", bytes);
+            return ImageIO.read(new ByteArrayInputStream(bytes.toByteArray()));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
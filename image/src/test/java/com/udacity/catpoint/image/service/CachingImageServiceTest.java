@@ -0,0 +1,278 @@
+package com.udacity.catpoint.image.service;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests for the perceptual hash result cache.
+ */
+public class CachingImageServiceTest
+    extends TestCase
+{
+    private int delegateCalls;
+    private boolean delegateResult;
+    private long now;
+
+    private final ImageService delegate = (image, threshold) -> {
+        delegateCalls++;
+        return delegateResult;
+    };
+
+    public CachingImageServiceTest(String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( CachingImageServiceTest.class );
+    }
+
+    public void testNearDuplicateFrameIsServedFromCache()
+    {
+        CachingImageService cache = newCache(16);
+        delegateResult = true;
+
+        assertTrue(cache.imageContainsCat(gradient(640, 480, 0, false), 50.0f));
+        //same scene, a little brighter and slightly noisy
+        assertTrue(cache.imageContainsCat(gradient(640, 480, 6, true), 50.0f));
+        //a different scene
+        delegateResult = false;
+        assertFalse(cache.imageContainsCat(gradient(640, 480, 0, false, true), 50.0f));
+
+        assertEquals(2, delegateCalls);
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    public void testResultsAreReusedOnlyForCompatibleThresholds()
+    {
+        CachingImageService cache = newCache(16);
+        BufferedImage image = gradient(320, 240, 0, false);
+
+        delegateResult = true;
+        cache.imageContainsCat(image, 80.0f);
+        //a cat at 80% is a cat at 50%, but not necessarily at 90%
+        assertTrue(cache.imageContainsCat(image, 50.0f));
+        assertEquals(1, delegateCalls);
+        delegateResult = false;
+        assertFalse(cache.imageContainsCat(image, 90.0f));
+        assertEquals(2, delegateCalls);
+        //no cat at 90% says nothing about 85%, but rules out 95%
+        assertFalse(cache.imageContainsCat(image, 95.0f));
+        assertEquals(2, delegateCalls);
+    }
+
+    public void testEntriesExpire()
+    {
+        CachingImageService cache = newCache(16);
+        BufferedImage image = gradient(320, 240, 0, false);
+
+        cache.imageContainsCat(image, 50.0f);
+        now += Duration.ofSeconds(29).toNanos();
+        cache.imageContainsCat(image, 50.0f);
+        now += Duration.ofSeconds(2).toNanos();
+        cache.imageContainsCat(image, 50.0f);
+
+        assertEquals(2, delegateCalls);
+        assertEquals(1, cache.getExpirations());
+    }
+
+    public void testLeastRecentlyUsedEntryIsEvicted()
+    {
+        CachingImageService cache = newCache(2);
+        BufferedImage first = gradient(320, 240, 0, false);
+        BufferedImage second = gradient(320, 240, 0, false, true);
+        BufferedImage third = checkerboard(320, 240);
+
+        cache.imageContainsCat(first, 50.0f);
+        cache.imageContainsCat(second, 50.0f);
+        cache.imageContainsCat(first, 50.0f);
+        cache.imageContainsCat(third, 50.0f);
+        assertEquals(1, cache.getEvictions());
+        assertEquals(2, cache.size());
+
+        cache.imageContainsCat(first, 50.0f);
+        assertEquals(3, delegateCalls);
+        cache.imageContainsCat(second, 50.0f);
+        assertEquals(4, delegateCalls);
+    }
+
+    public void testEncodedImageIsPassedToDelegate() throws IOException
+    {
+        List<ImageInput> received = new ArrayList<>();
+        CachingImageService cache = new CachingImageService(new ImageService() {
+            @Override
+            public boolean imageContainsCat(BufferedImage image, float confidenceThreshold)
+            {
+                throw new AssertionError("delegate should get the encoded image");
+            }
+
+            @Override
+            public boolean containsCat(ImageInput image, float confidenceThreshold)
+            {
+                received.add(image);
+                return true;
+            }
+        });
+        ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+        ImageIO.write(gradient(320, 240, 0, false), "jpg", jpeg);
+        ImageInput input = ImageInput.ofEncoded(jpeg.toByteArray());
+
+        assertTrue(cache.containsCat(input, 50.0f));
+        assertTrue(cache.containsCat(ImageInput.ofEncoded(jpeg.toByteArray()), 50.0f));
+
+        assertEquals(1, received.size());
+        assertSame(input, received.get(0));
+        assertEquals(1, cache.getHits());
+    }
+
+    public void testBatchSendsOnlyMissesToDelegate()
+    {
+        List<Integer> batchSizes = new ArrayList<>();
+        CachingImageService cache = new CachingImageService(new ImageService() {
+            @Override
+            public boolean imageContainsCat(BufferedImage image, float confidenceThreshold)
+            {
+                throw new AssertionError("delegate should get the batch");
+            }
+
+            @Override
+            public List<ClassificationResult> classify(List<ImageInput> images, float confidenceThreshold)
+            {
+                batchSizes.add(images.size());
+                List<ClassificationResult> results = new ArrayList<>();
+                for (int i = 0; i < images.size(); i++) {
+                    results.add(new ClassificationResult(true, 97.5f, Map.of("Cat", 97.5f), 1000));
+                }
+                return results;
+            }
+        });
+        ImageInput scene = ImageInput.of(gradient(320, 240, 0, false));
+        ImageInput other = ImageInput.of(checkerboard(320, 240));
+
+        cache.classify(List.of(scene), 50.0f);
+        List<ClassificationResult> results = cache.classify(List.of(other, scene, other), 50.0f);
+
+        //the repeated frame in the second batch is only a miss because its twin is sent in the same call
+        assertEquals(List.of(1, 2), batchSizes);
+        assertEquals(3, results.size());
+        ClassificationResult cached = results.get(1);
+        assertTrue(cached.containsCat());
+        assertEquals(97.5f, cached.getCatConfidence(), 0.001f);
+        assertEquals(Map.of("Cat", 97.5f), cached.getLabels());
+    }
+
+    public void testHashDistanceReflectsSimilarity()
+    {
+        long original = PerceptualHash.dHash(gradient(800, 600, 0, false));
+        long rescaled = PerceptualHash.dHash(gradient(400, 300, 0, false));
+        long different = PerceptualHash.dHash(checkerboard(800, 600));
+
+        assertTrue(PerceptualHash.distance(original, rescaled) <= 2);
+        assertTrue(PerceptualHash.distance(original, different) > 10);
+    }
+
+    /**
+     * The default distance against real photos: a copy at half the size, recompressed, is still the same
+     * image, the other samples are not.
+     */
+    public void testSamplePhotosMatchTheirScaledDownCopies() throws IOException
+    {
+        String[] names = {"sample-cat.jpg", "sample-not-cat.jpg", "sample-not-a-cat-fail.jpg"};
+        long[] hashes = new long[names.length];
+        for (int i = 0; i < names.length; i++) {
+            BufferedImage photo = sample(names[i]);
+            hashes[i] = PerceptualHash.dHash(photo);
+
+            BufferedImage half = new BufferedImage(photo.getWidth() / 2, photo.getHeight() / 2, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = half.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(photo, 0, 0, half.getWidth(), half.getHeight(), null);
+            g.dispose();
+            ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+            ImageIO.write(half, "jpg", jpeg);
+            BufferedImage copy = ImageIO.read(new ByteArrayInputStream(jpeg.toByteArray()));
+
+            assertTrue(names[i], PerceptualHash.distance(hashes[i], PerceptualHash.dHash(copy))
+                    <= CachingImageService.DEFAULT_MAX_DISTANCE);
+        }
+        for (int i = 0; i < names.length; i++) {
+            for (int j = i + 1; j < names.length; j++) {
+                assertTrue(PerceptualHash.distance(hashes[i], hashes[j]) > 4 * CachingImageService.DEFAULT_MAX_DISTANCE);
+            }
+        }
+    }
+
+    private CachingImageService newCache(int maxEntries)
+    {
+        return new CachingImageService(delegate, maxEntries, Duration.ofSeconds(30),
+                CachingImageService.DEFAULT_MAX_DISTANCE, () -> now);
+    }
+
+    private static BufferedImage gradient(int width, int height, int brightness, boolean noise)
+    {
+        return gradient(width, height, brightness, noise, false);
+    }
+
+    /**
+     * A diagonal gradient with a few blobs, optionally mirrored to make a different scene.
+     */
+    private static BufferedImage gradient(int width, int height, int brightness, boolean noise, boolean mirrored)
+    {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        java.util.Random random = new java.util.Random(42);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int fx = mirrored ? width - 1 - x : x;
+                double wave = Math.sin(fx * 6.0 / width) * Math.cos(y * 5.0 / height);
+                int v = (int) (128 + 100 * wave) + brightness;
+                if (noise) {
+                    v += random.nextInt(7) - 3;
+                }
+                v = Math.max(0, Math.min(255, v));
+                image.setRGB(x, y, (v << 16) | (v << 8) | v);
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Reads a sample image from the project root, whether run from there or from the module.
+     */
+    private static BufferedImage sample(String name) throws IOException
+    {
+        Path file = Path.of(name);
+        if (!Files.exists(file)) {
+            file = Path.of("..", name);
+        }
+        return ImageIO.read(file.toFile());
+    }
+
+    private static BufferedImage checkerboard(int width, int height)
+    {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int v = ((x * 9 / width) + (y * 8 / height)) % 2 == 0 ? 230 : 20;
+                image.setRGB(x, y, (v << 16) | (v << 8) | v);
+            }
+        }
+        return image;
+    }
+}
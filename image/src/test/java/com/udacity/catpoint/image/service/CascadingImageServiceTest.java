@@ -0,0 +1,141 @@
+package com.udacity.catpoint.image.service;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests for escalating unsure local results to a remote service.
+ */
+public class CascadingImageServiceTest
+    extends TestCase
+{
+    //local confidence of each test image
+    private final Map<BufferedImage, Float> localConfidence = new IdentityHashMap<>();
+    private final List<Integer> remoteBatches = new ArrayList<>();
+
+    private final ImageService local = new ImageService() {
+        @Override
+        public boolean imageContainsCat(BufferedImage image, float confidenceThreshold)
+        {
+            throw new AssertionError("classify should be used");
+        }
+
+        @Override
+        public List<ClassificationResult> classify(List<ImageInput> images, float confidenceThreshold)
+        {
+            List<ClassificationResult> results = new ArrayList<>();
+            for (ImageInput image : images) {
+                float confidence = localConfidence.get(image.getImage());
+                results.add(new ClassificationResult(confidence >= confidenceThreshold, confidence, Map.of(), 1_000));
+            }
+            return results;
+        }
+    };
+
+    private final ImageService remote = new ImageService() {
+        @Override
+        public boolean imageContainsCat(BufferedImage image, float confidenceThreshold)
+        {
+            throw new AssertionError("classify should be used");
+        }
+
+        @Override
+        public List<ClassificationResult> classify(List<ImageInput> images, float confidenceThreshold)
+        {
+            remoteBatches.add(images.size());
+            List<ClassificationResult> results = new ArrayList<>();
+            for (int i = 0; i < images.size(); i++) {
+                results.add(new ClassificationResult(true, 99f, Map.of("Cat", 99f), 200_000_000));
+            }
+            return results;
+        }
+    };
+
+    public CascadingImageServiceTest(String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( CascadingImageServiceTest.class );
+    }
+
+    public void testClearResultsStayLocal()
+    {
+        CascadingImageService cascade = new CascadingImageService(local, remote, 10f, 10f);
+
+        assertFalse(cascade.imageContainsCat(image(5f), 50f));
+        assertTrue(cascade.imageContainsCat(image(95f), 50f));
+        //the top of the band is outside it
+        assertTrue(cascade.imageContainsCat(image(60f), 50f));
+
+        assertTrue(remoteBatches.isEmpty());
+        assertEquals(3, cascade.getLocalCalls());
+        assertEquals(0, cascade.getRemoteCalls());
+        assertEquals(0.0, cascade.getEscalationRate(), 0.0);
+    }
+
+    public void testUnsureResultsAreEscalatedTogether()
+    {
+        CascadingImageService cascade = new CascadingImageService(local, remote, 10f, 10f);
+
+        List<ClassificationResult> results = cascade.classify(List.of(
+                ImageInput.of(image(2f)), ImageInput.of(image(40f)), ImageInput.of(image(55f)), ImageInput.of(image(90f))), 50f);
+
+        assertEquals(List.of(2), remoteBatches);
+        assertFalse(results.get(0).containsCat());
+        assertEquals(2f, results.get(0).getCatConfidence(), 0f);
+        assertEquals(99f, results.get(1).getCatConfidence(), 0f);
+        assertEquals(99f, results.get(2).getCatConfidence(), 0f);
+        assertEquals(Map.of("Cat", 99f), results.get(2).getLabels());
+        assertEquals(200_001_000, results.get(2).getLatencyNanos());
+        assertEquals(0.5, cascade.getEscalationRate(), 0.0);
+    }
+
+    public void testBandFollowsThreshold()
+    {
+        CascadingImageService cascade = new CascadingImageService(local, remote, 5f, 0f);
+
+        //unsure at 90, sure at 50
+        cascade.imageContainsCat(image(87f), 90f);
+        cascade.imageContainsCat(image(87f), 50f);
+
+        assertEquals(1, cascade.getRemoteCalls());
+    }
+
+    public void testMissingLocalConfidenceIsEscalated()
+    {
+        CascadingImageService cascade = new CascadingImageService((image, threshold) -> false, remote);
+
+        assertTrue(cascade.imageContainsCat(image(0f), 50f));
+        assertEquals(1, cascade.getRemoteCalls());
+    }
+
+    public void testLatencyIsRecordedPerTier()
+    {
+        CascadingImageService cascade = new CascadingImageService(local, remote, 10f, 10f);
+
+        cascade.imageContainsCat(image(45f), 50f);
+        cascade.imageContainsCat(image(1f), 50f);
+
+        assertEquals(2, cascade.getLocalLatency().getCount());
+        assertEquals(1, cascade.getRemoteLatency().getCount());
+        long remoteMedian = cascade.getRemoteLatency().getPercentileNanos(50);
+        assertTrue(remoteMedian >= 200_000_000 && remoteMedian <= 225_000_000);
+    }
+
+    private BufferedImage image(float confidence)
+    {
+        BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+        localConfidence.put(image, confidence);
+        return image;
+    }
+}
@@ -0,0 +1,85 @@
+package com.udacity.catpoint.image.service;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.time.Duration;
+
+/**
+ * Unit tests for the circuit breaker's state changes.
+ */
+public class CircuitBreakerTest
+    extends TestCase
+{
+    private long now;
+    private final CircuitBreaker breaker = new CircuitBreaker(3, Duration.ofSeconds(10), () -> now);
+
+    public CircuitBreakerTest(String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( CircuitBreakerTest.class );
+    }
+
+    public void testOpensAfterFailuresInARow()
+    {
+        failCalls(2);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest());
+        breaker.recordFailure();
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+        assertEquals(1, breaker.getRejectedCalls());
+    }
+
+    public void testSuccessResetsTheFailureCount()
+    {
+        failCalls(2);
+        assertTrue(breaker.allowRequest());
+        breaker.recordSuccess();
+        failCalls(2);
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    public void testLetsOneTrialThroughOnceOpenTimeIsUp()
+    {
+        failCalls(3);
+        now += Duration.ofSeconds(10).toNanos();
+
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.allowRequest());
+        assertFalse(breaker.allowRequest());
+
+        breaker.recordSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest());
+    }
+
+    public void testFailedTrialOpensAgain()
+    {
+        failCalls(3);
+        now += Duration.ofSeconds(10).toNanos();
+        assertTrue(breaker.allowRequest());
+        breaker.recordFailure();
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        now += Duration.ofSeconds(9).toNanos();
+        assertFalse(breaker.allowRequest());
+        now += Duration.ofSeconds(1).toNanos();
+        assertTrue(breaker.allowRequest());
+    }
+
+    private void failCalls(int calls)
+    {
+        for (int i = 0; i < calls; i++) {
+            assertTrue(breaker.allowRequest());
+            breaker.recordFailure();
+        }
+    }
+}
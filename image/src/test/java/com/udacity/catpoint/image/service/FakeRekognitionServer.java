@@ -0,0 +1,170 @@
+package com.udacity.catpoint.image.service;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Local stand-in for the Rekognition endpoint, for tests. Answers DetectLabels calls with a cat label,
+ * after an optional delay, or with an error status. Speaks just enough HTTP/1.1 for the SDK's client,
+ * including keep-alive connections.
+ */
+class FakeRekognitionServer implements AutoCloseable
+{
+    private final ServerSocket serverSocket;
+    private final List<Socket> connections = new ArrayList<>();
+
+    //guarded by this
+    private float catConfidence = 98.5f;
+    private Duration delay = Duration.ZERO;
+    private int status = 200;
+    private final List<String> requests = new ArrayList<>();
+
+    FakeRekognitionServer() throws IOException
+    {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::accept, "fake-rekognition");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    URI getEndpoint()
+    {
+        return URI.create("http://localhost:" + serverSocket.getLocalPort());
+    }
+
+    synchronized void setCatConfidence(float catConfidence)
+    {
+        this.catConfidence = catConfidence;
+    }
+
+    /**
+     * @param delay How long to wait before answering each call
+     */
+    synchronized void setDelay(Duration delay)
+    {
+        this.delay = delay;
+    }
+
+    /**
+     * @param status HTTP status to answer with, anything but 200 answers with an error body
+     */
+    synchronized void setStatus(int status)
+    {
+        this.status = status;
+    }
+
+    /**
+     * @return the X-Amz-Target header and body of each call received, as "target body"
+     */
+    synchronized List<String> getRequests()
+    {
+        return new ArrayList<>(requests);
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        serverSocket.close();
+        synchronized (connections) {
+            for (Socket connection : connections) {
+                connection.close();
+            }
+        }
+    }
+
+    private void accept()
+    {
+        try {
+            while (true) {
+                Socket connection = serverSocket.accept();
+                synchronized (connections) {
+                    connections.add(connection);
+                }
+                Thread handler = new Thread(() -> serve(connection), "fake-rekognition-connection");
+                handler.setDaemon(true);
+                handler.start();
+            }
+        } catch (IOException e) {
+            //closed
+        }
+    }
+
+    private void serve(Socket connection)
+    {
+        try (connection) {
+            InputStream in = new BufferedInputStream(connection.getInputStream());
+            OutputStream out = connection.getOutputStream();
+            String requestLine;
+            while ((requestLine = readLine(in)) != null) {
+                String target = null;
+                int contentLength = 0;
+                String header;
+                while ((header = readLine(in)) != null && !header.isEmpty()) {
+                    int colon = header.indexOf(':');
+                    String name = header.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+                    String value = header.substring(colon + 1).trim();
+                    if (name.equals("x-amz-target")) {
+                        target = value;
+                    } else if (name.equals("content-length")) {
+                        contentLength = Integer.parseInt(value);
+                    }
+                }
+                String body = new String(in.readNBytes(contentLength), StandardCharsets.UTF_8);
+                respond(out, target, body);
+            }
+        } catch (IOException | InterruptedException e) {
+            //client went away or the server was closed
+        }
+    }
+
+    private void respond(OutputStream out, String target, String body) throws IOException, InterruptedException
+    {
+        Duration wait;
+        int answerStatus;
+        float confidence;
+        synchronized (this) {
+            requests.add(target + " " + body);
+            wait = delay;
+            answerStatus = status;
+            confidence = catConfidence;
+        }
+        Thread.sleep(wait.toMillis());
+
+        String json = answerStatus == 200
+                ? "{\"Labels\":[{\"Name\":\"Cat\",\"Confidence\":" + confidence + "},{\"Name\":\"Pet\",\"Confidence\":90.0}]}"
+                : "{\"__type\":\"InternalServerError\",\"message\":\"injected failure\"}";
+        byte[] content = json.getBytes(StandardCharsets.UTF_8);
+        String head = "HTTP/1.1 " + answerStatus + (answerStatus == 200 ? " OK" : " Error") + "\r\n"
+                + "Content-Type: application/x-amz-json-1.1\r\n"
+                + "x-amzn-RequestId: fake\r\n"
+                + "Content-Length: " + content.length + "\r\n"
+                + "\r\n";
+        out.write(head.getBytes(StandardCharsets.US_ASCII));
+        out.write(content);
+        out.flush();
+    }
+
+    private static String readLine(InputStream in) throws IOException
+    {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != -1 && b != '\n') {
+            if (b != '\r') {
+                line.write(b);
+            }
+        }
+        return b == -1 && line.size() == 0 ? null : line.toString(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,150 @@
+package com.udacity.catpoint.image.service;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Unit tests for encoded and decoded image inputs.
+ */
+public class ImageInputTest
+    extends TestCase
+{
+    public ImageInputTest(String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( ImageInputTest.class );
+    }
+
+    public void testEncodedImageIsDecodedOnce() throws IOException
+    {
+        ImageInput input = ImageInput.ofEncoded(encode("jpg"));
+
+        assertTrue(input.hasEncoded());
+        assertFalse(input.isDecoded());
+        BufferedImage image = input.getImage();
+        assertEquals(64, image.getWidth());
+        assertEquals(48, image.getHeight());
+        assertTrue(input.isDecoded());
+        assertSame(image, input.getImage());
+    }
+
+    public void testFormatIsRecognizedWithoutDecoding() throws IOException
+    {
+        ImageInput jpeg = ImageInput.ofEncoded(encode("jpg"));
+        ImageInput png = ImageInput.ofEncoded(encode("png"));
+
+        assertTrue(jpeg.isJpeg());
+        assertFalse(jpeg.isPng());
+        assertTrue(png.isPng());
+        assertFalse(png.isJpeg());
+        assertFalse(jpeg.isDecoded());
+        assertFalse(png.isDecoded());
+    }
+
+    public void testEncodedBytesStartAtBufferPosition() throws IOException
+    {
+        byte[] jpeg = encode("jpg");
+        ByteBuffer padded = ByteBuffer.allocate(jpeg.length + 10);
+        padded.position(10);
+        padded.put(jpeg);
+        padded.position(10);
+
+        ImageInput input = ImageInput.ofEncoded(padded);
+
+        assertTrue(input.isJpeg());
+        assertEquals(jpeg.length, input.getEncoded().remaining());
+        //reading a view doesn't move the next one
+        input.getEncoded().get(new byte[100]);
+        assertEquals(0, input.getEncoded().position());
+        assertEquals(64, input.getImage().getWidth());
+    }
+
+    public void testFileIsMapped() throws IOException
+    {
+        Path file = Files.createTempFile("camera", ".jpg");
+        try {
+            Files.write(file, encode("jpg"));
+            ImageInput input = ImageInput.ofFile(file);
+
+            assertTrue(input.isJpeg());
+            assertEquals(Files.size(file), input.getEncoded().remaining());
+            assertEquals(48, input.getImage().getHeight());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public void testDecodedImageHasNoEncodedBytes()
+    {
+        BufferedImage image = new BufferedImage(2, 2, BufferedImage.TYPE_INT_RGB);
+        ImageInput input = ImageInput.of(image);
+
+        assertFalse(input.hasEncoded());
+        assertNull(input.getEncoded());
+        assertFalse(input.isJpeg());
+        assertTrue(input.isDecoded());
+        assertSame(image, input.getImage());
+    }
+
+    public void testInvalidBytesFailToDecode()
+    {
+        ImageInput input = ImageInput.ofEncoded(new byte[] {1, 2, 3, 4});
+        try {
+            input.getImage();
+            fail("garbage decoded");
+        } catch (UncheckedIOException expected) {
+        }
+    }
+
+    public void testDefaultServiceDecodes() throws IOException
+    {
+        ImageService service = (image, threshold) -> image.getWidth() == 64;
+        ImageInput input = ImageInput.ofEncoded(encode("png"));
+
+        assertTrue(service.containsCat(input, 50f));
+        assertTrue(input.isDecoded());
+    }
+
+    public void testDefaultClassifyChecksEachImage() throws IOException
+    {
+        ImageService service = (image, threshold) -> image.getWidth() == 64;
+        List<ClassificationResult> results = service.classify(List.of(
+                ImageInput.ofEncoded(encode("jpg")),
+                ImageInput.of(new BufferedImage(2, 2, BufferedImage.TYPE_INT_RGB))), 50f);
+
+        assertEquals(2, results.size());
+        assertTrue(results.get(0).containsCat());
+        assertFalse(results.get(1).containsCat());
+        assertTrue(Float.isNaN(results.get(0).getCatConfidence()));
+        assertTrue(results.get(0).getLabels().isEmpty());
+    }
+
+    private static byte[] encode(String format) throws IOException
+    {
+        BufferedImage image = new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.ORANGE);
+        g.fillRect(10, 10, 30, 20);
+        g.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, format, out);
+        return out.toByteArray();
+    }
+}
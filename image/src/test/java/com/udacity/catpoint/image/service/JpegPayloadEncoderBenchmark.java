@@ -0,0 +1,131 @@
+package com.udacity.catpoint.image.service;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * Payload size and encoding time per image for the old way of preparing images
+ * (ImageIO.write at full size into a ByteArrayOutputStream, then copied) and for {@link JpegPayloadEncoder}.
+ * Then the end-to-end latency of a classification through {@link AwsImageService} against a local fake
+ * Rekognition endpoint that answers at once, with the image sent at full size as before and scaled down
+ * by the encoder, along with the request bytes. That covers encoding, the SDK and the loopback round trip,
+ * so a real uplink would widen the gap.
+ * Reads sample-cat.jpg from the working directory if present. Not a unit test, run it manually with the test classpath.
+ */
+public class JpegPayloadEncoderBenchmark {
+
+    private static final int ROUNDS = 40;
+
+    public static void main(String[] args) throws IOException {
+        Map<String, BufferedImage> images = new LinkedHashMap<>();
+        File sample = new File("sample-cat.jpg");
+        if (sample.exists()) {
+            images.put("sample-cat.jpg", ImageIO.read(sample));
+        }
+        images.put("1080p", frame(1920, 1080));
+        images.put("4K", frame(3840, 2160));
+        for (Map.Entry<String, BufferedImage> image : images.entrySet()) {
+            run(image.getKey(), image.getValue());
+        }
+
+        try (FakeRekognitionServer server = new FakeRekognitionServer();
+             AwsImageService fullSize = new AwsImageService(settings(server, 0), new FakeImageService());
+             AwsImageService scaled = new AwsImageService(
+                     settings(server, JpegPayloadEncoder.DEFAULT_MAX_DIMENSION), new FakeImageService())) {
+            for (Map.Entry<String, BufferedImage> image : images.entrySet()) {
+                System.out.printf("%s end to end%n", image.getKey());
+                for (int i = 0; i < 5; i++) {
+                    fullSize.classify(List.of(ImageInput.of(image.getValue())), 50f);
+                    scaled.classify(List.of(ImageInput.of(image.getValue())), 50f);
+                }
+                roundTrip("full size", server, fullSize, image.getValue());
+                roundTrip("encoder", server, scaled, image.getValue());
+            }
+        }
+    }
+
+    private static void roundTrip(String name, FakeRekognitionServer server, AwsImageService service, BufferedImage image) {
+        LatencyHistogram latency = new LatencyHistogram();
+        int requestsBefore = server.getRequests().size();
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            service.classify(List.of(ImageInput.of(image)), 50f);
+            latency.record(System.nanoTime() - start);
+        }
+        List<String> requests = server.getRequests();
+        long bytes = 0;
+        for (String request : requests.subList(requestsBefore, requests.size())) {
+            bytes += request.length();
+        }
+        System.out.printf("  %-9s: %8d request bytes, mean %6.2f ms, p95 %6.2f ms%n", name,
+                bytes / ROUNDS, latency.getMeanNanos() / 1e6, latency.getPercentileNanos(95) / 1e6);
+    }
+
+    private static Properties settings(FakeRekognitionServer server, int maxDimension) {
+        Properties settings = new Properties();
+        settings.setProperty("aws.id", "benchmark");
+        settings.setProperty("aws.secret", "benchmark");
+        settings.setProperty("aws.region", "us-east-1");
+        settings.setProperty("aws.endpoint", server.getEndpoint().toString());
+        settings.setProperty("image.maxDimension", String.valueOf(maxDimension));
+        return settings;
+    }
+
+    private static void run(String name, BufferedImage image) throws IOException {
+        JpegPayloadEncoder encoder = new JpegPayloadEncoder();
+        for (int i = 0; i < 5; i++) {
+            legacy(image);
+            encoder.encode(image);
+        }
+
+        int legacyBytes = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            legacyBytes = legacy(image).length;
+        }
+        double legacyMillis = (System.nanoTime() - start) / 1e6 / ROUNDS;
+
+        int encodedBytes = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            encodedBytes = encoder.encode(image).length;
+        }
+        double encodedMillis = (System.nanoTime() - start) / 1e6 / ROUNDS;
+
+        System.out.printf("%s %dx%d%n", name, image.getWidth(), image.getHeight());
+        System.out.printf("  legacy : %8d bytes, %6.2f ms%n", legacyBytes, legacyMillis);
+        System.out.printf("  encoder: %8d bytes, %6.2f ms%n", encodedBytes, encodedMillis);
+    }
+
+    /**
+     * What AwsImageService used to do: encode at full size and default quality, then copy the bytes twice.
+     */
+    private static byte[] legacy(BufferedImage image) throws IOException {
+        try (ByteArrayOutputStream os = new ByteArrayOutputStream()) {
+            ImageIO.write(image, "jpg", os);
+            return os.toByteArray().clone();
+        }
+    }
+
+    private static BufferedImage frame(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D g = image.createGraphics();
+        Random random = new Random(3);
+        for (int i = 0; i < 400; i++) {
+            g.setColor(new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256)));
+            g.fillOval(random.nextInt(width), random.nextInt(height), 20 + random.nextInt(width / 8), 20 + random.nextInt(height / 8));
+        }
+        g.dispose();
+        return image;
+    }
+}
@@ -0,0 +1,123 @@
+package com.udacity.catpoint.image.service;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Unit tests for preparing images before they are sent for classification.
+ */
+public class JpegPayloadEncoderTest
+    extends TestCase
+{
+    public JpegPayloadEncoderTest(String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( JpegPayloadEncoderTest.class );
+    }
+
+    public void testLargeImageIsScaledToMaxDimension() throws IOException
+    {
+        JpegPayloadEncoder encoder = new JpegPayloadEncoder(256, 0.8f);
+
+        BufferedImage decoded = decode(encoder.encode(image(1920, 1080, BufferedImage.TYPE_INT_RGB)));
+        assertEquals(256, decoded.getWidth());
+        assertEquals(144, decoded.getHeight());
+
+        decoded = decode(encoder.encode(image(300, 1200, BufferedImage.TYPE_3BYTE_BGR)));
+        assertEquals(64, decoded.getWidth());
+        assertEquals(256, decoded.getHeight());
+    }
+
+    public void testSmallImageKeepsItsSize() throws IOException
+    {
+        JpegPayloadEncoder encoder = new JpegPayloadEncoder(256, 0.8f);
+
+        BufferedImage decoded = decode(encoder.encode(image(200, 100, BufferedImage.TYPE_3BYTE_BGR)));
+        assertEquals(200, decoded.getWidth());
+        assertEquals(100, decoded.getHeight());
+    }
+
+    public void testImageWithAlphaIsEncoded() throws IOException
+    {
+        JpegPayloadEncoder encoder = new JpegPayloadEncoder();
+
+        BufferedImage decoded = decode(encoder.encode(image(200, 100, BufferedImage.TYPE_INT_ARGB)));
+        assertEquals(200, decoded.getWidth());
+        Color left = new Color(decoded.getRGB(40, 50));
+        assertTrue("left half should stay red, was " + left, left.getRed() > 200 && left.getBlue() < 60);
+    }
+
+    public void testEncodingsDoNotShareArrays() throws IOException
+    {
+        JpegPayloadEncoder encoder = new JpegPayloadEncoder(256, 0.8f);
+
+        byte[] first = encoder.encode(image(640, 480, BufferedImage.TYPE_INT_RGB));
+        byte[] firstCopy = first.clone();
+        byte[] second = encoder.encode(image(320, 240, BufferedImage.TYPE_INT_RGB));
+
+        assertNotSame(first, second);
+        assertTrue(Arrays.equals(firstCopy, first));
+        assertEquals(256, decode(first).getWidth());
+        assertEquals(256, decode(second).getWidth());
+        assertEquals(2, encoder.getImagesEncoded());
+        assertEquals(first.length + second.length, encoder.getBytesEncoded());
+    }
+
+    public void testLowerQualityGivesSmallerPayload()
+    {
+        BufferedImage image = image(800, 600, BufferedImage.TYPE_INT_RGB);
+
+        int high = new JpegPayloadEncoder(0, 0.95f).encode(image).length;
+        int low = new JpegPayloadEncoder(0, 0.5f).encode(image).length;
+        assertTrue(low + " should be less than " + high, low < high);
+    }
+
+    public void testInvalidSettingsAreRejected()
+    {
+        try {
+            new JpegPayloadEncoder(-1, 0.8f);
+            fail("negative size accepted");
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            new JpegPayloadEncoder(256, 1.5f);
+            fail("quality above 1 accepted");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    private static BufferedImage decode(byte[] jpeg) throws IOException
+    {
+        return ImageIO.read(new ByteArrayInputStream(jpeg));
+    }
+
+    /**
+     * Red on the left half, a gradient on the right so the encoder has some detail to work with.
+     */
+    private static BufferedImage image(int width, int height, int type)
+    {
+        BufferedImage image = new BufferedImage(width, height, type);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.RED);
+        g.fillRect(0, 0, width / 2, height);
+        for (int x = width / 2; x < width; x++) {
+            g.setColor(new Color(x * 255 / width, (x * 7) % 256, 255 - x * 255 / width));
+            g.drawLine(x, 0, x, height);
+        }
+        g.dispose();
+        return image;
+    }
+}
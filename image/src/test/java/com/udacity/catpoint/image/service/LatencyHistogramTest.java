@@ -0,0 +1,68 @@
+package com.udacity.catpoint.image.service;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit tests for the latency histogram.
+ */
+public class LatencyHistogramTest
+    extends TestCase
+{
+    public LatencyHistogramTest(String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( LatencyHistogramTest.class );
+    }
+
+    public void testPercentilesAreWithinBucketPrecision()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1_000_000L);
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500_500_000, histogram.getMeanNanos());
+        assertWithin(500_000_000, histogram.getPercentileNanos(50));
+        assertWithin(990_000_000, histogram.getPercentileNanos(99));
+        assertWithin(1_000_000_000, histogram.getPercentileNanos(100));
+        assertWithin(1_000_000, histogram.getPercentileNanos(0));
+    }
+
+    public void testSmallAndHugeValues()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(3);
+        histogram.record(Long.MAX_VALUE / 2);
+
+        assertEquals(1, histogram.getPercentileNanos(1));
+        assertEquals(4, histogram.getPercentileNanos(60));
+        assertTrue(histogram.getPercentileNanos(100) > 1_000_000_000_000L);
+    }
+
+    public void testEmptyAndReset()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentileNanos(50));
+
+        histogram.record(1_000);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentileNanos(50));
+    }
+
+    /**
+     * The reported value is the top of the bucket, at most an eighth above the value.
+     */
+    private static void assertWithin(long expected, long actual)
+    {
+        assertTrue(expected + " vs " + actual, actual >= expected && actual <= expected + expected / 8 + 1);
+    }
+}
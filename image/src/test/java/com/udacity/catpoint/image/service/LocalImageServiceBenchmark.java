@@ -0,0 +1,60 @@
+package com.udacity.catpoint.image.service;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Time per frame of the local classifier with the scalar and the best available kernels, using a randomly
+ * initialized model of the intended shape (224x224 input, about 80 million multiply-adds). Run with
+ * --add-modules jdk.incubator.vector to include the Vector API kernels.
+ *
+ * Given the path of a trained model file, it also prints the model's confidence for the sample images in
+ * the working directory. Not a unit test, run it manually with the test classpath.
+ */
+public class LocalImageServiceBenchmark {
+
+    private static final int WARMUP = 30;
+    private static final int FRAMES = 100;
+
+    public static void main(String[] args) throws IOException {
+        File sample = new File("sample-cat.jpg");
+        BufferedImage frame = sample.exists() ? ImageIO.read(sample) : new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB);
+        TestModel model = TestModel.standard(1);
+        time(new LocalImageService(model.toBuffer(), new ScalarKernels()), frame);
+        Kernels best = Kernels.best();
+        if (!(best instanceof ScalarKernels)) {
+            time(new LocalImageService(model.toBuffer(), best), frame);
+        }
+
+        if (args.length > 0) {
+            LocalImageService trained = LocalImageService.load(Path.of(args[0]));
+            for (String name : new String[] {"sample-cat.jpg", "sample-not-cat.jpg", "sample-not-a-cat-fail.jpg"}) {
+                File file = new File(name);
+                if (file.exists()) {
+                    ClassificationResult result = trained.classify(List.of(ImageInput.of(ImageIO.read(file))), 50f).get(0);
+                    System.out.printf("%s: %.1f%% cat%n", name, result.getCatConfidence());
+                }
+            }
+        }
+    }
+
+    private static void time(LocalImageService service, BufferedImage frame) {
+        List<ImageInput> input = List.of(ImageInput.of(frame));
+        for (int i = 0; i < WARMUP; i++) {
+            service.classify(input, 50f);
+        }
+        long total = 0;
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < FRAMES; i++) {
+            long latency = service.classify(input, 50f).get(0).getLatencyNanos();
+            total += latency;
+            best = Math.min(best, latency);
+        }
+        System.out.printf("%s: %.1f ms per frame on average, %.1f ms at best%n",
+                service.getKernelName(), total / 1e6 / FRAMES, best / 1e6);
+    }
+}
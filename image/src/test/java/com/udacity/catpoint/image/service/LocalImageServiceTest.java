@@ -0,0 +1,202 @@
+package com.udacity.catpoint.image.service;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Unit tests for the in-process classifier. There is no trained model in the repository, so these check
+ * the network against a simple reference implementation using random weights. A trained model can be
+ * checked against the sample images in the project root by passing its file as -Dcatpoint.testModel.
+ */
+public class LocalImageServiceTest
+    extends TestCase
+{
+    public LocalImageServiceTest(String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( LocalImageServiceTest.class );
+    }
+
+    public void testScalarKernelsMatchReference() throws IOException
+    {
+        checkAgainstReference(new ScalarKernels());
+    }
+
+    public void testBestKernelsMatchReference() throws IOException
+    {
+        //the vector kernels when the test runs with the incubator module, the scalar ones otherwise
+        checkAgainstReference(Kernels.best());
+    }
+
+    public void testVectorKernelsAreUsedWhenTheBuildAsksForThem()
+    {
+        //set by the build's vector-kernels test run, so it can't silently fall back to the scalar kernels
+        if (Boolean.getBoolean("catpoint.test.vectorKernels")) {
+            assertTrue(Kernels.best().name(), Kernels.best() instanceof VectorKernels);
+        }
+    }
+
+    public void testConfidenceIsComparedWithThreshold() throws IOException
+    {
+        TestModel model = TestModel.random(32, 3, new int[] {8, 16}, new int[] {1});
+        LocalImageService service = new LocalImageService(model.toBuffer(), new ScalarKernels());
+        BufferedImage image = scene(32, 32);
+
+        ClassificationResult result = service.classify(List.of(ImageInput.of(image)), 50f).get(0);
+        float confidence = result.getCatConfidence();
+
+        assertEquals(100 * model.reference(image), confidence, 0.01f);
+        assertEquals(confidence, result.getLabels().get("Cat"), 0f);
+        assertTrue(service.imageContainsCat(image, confidence - 0.01f));
+        assertFalse(service.imageContainsCat(image, confidence + 0.01f));
+    }
+
+    public void testAnyImageSizeIsScaled() throws IOException
+    {
+        LocalImageService service = new LocalImageService(TestModel.standard(5).toBuffer(), Kernels.best());
+
+        float wide = service.classify(List.of(ImageInput.of(scene(640, 480))), 50f).get(0).getCatConfidence();
+        float small = service.classify(List.of(ImageInput.of(scene(100, 60))), 50f).get(0).getCatConfidence();
+
+        assertTrue(wide >= 0 && wide <= 100);
+        assertTrue(small >= 0 && small <= 100);
+    }
+
+    /**
+     * Only runs with a model supplied through catpoint.testModel, see the class comment.
+     */
+    public void testSuppliedModelClassifiesSamples() throws IOException
+    {
+        String modelFile = System.getProperty("catpoint.testModel");
+        if (modelFile == null) {
+            System.err.println("testSuppliedModelClassifiesSamples skipped, no catpoint.testModel given");
+            return;
+        }
+        LocalImageService service = LocalImageService.load(Path.of(modelFile));
+
+        assertTrue(service.imageContainsCat(sample("sample-cat.jpg"), 50f));
+        assertFalse(service.imageContainsCat(sample("sample-not-cat.jpg"), 50f));
+        //cows, which Rekognition has been seen to take for cats
+        assertFalse(service.imageContainsCat(sample("sample-not-a-cat-fail.jpg"), 50f));
+    }
+
+    public void testModelFileIsMapped() throws IOException
+    {
+        TestModel model = TestModel.random(16, 11, new int[] {4}, new int[] {4, 1});
+        Path file = Files.createTempFile("cat-model", ".bin");
+        try {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.write(model.toBuffer());
+            }
+            LocalImageService service = LocalImageService.load(file);
+
+            assertEquals(16, service.getInputSize());
+            BufferedImage image = scene(16, 16);
+            assertEquals(100 * model.reference(image),
+                    service.classify(List.of(ImageInput.of(image)), 50f).get(0).getCatConfidence(), 0.01f);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public void testInvalidModelsAreRejected()
+    {
+        ByteBuffer valid = TestModel.random(16, 1, new int[] {4}, new int[] {1}).toBuffer();
+
+        ByteBuffer badMagic = copy(valid);
+        badMagic.put(0, (byte) 0);
+        assertRejected(badMagic);
+
+        ByteBuffer truncated = copy(valid);
+        truncated.limit(truncated.limit() - 4);
+        assertRejected(truncated);
+
+        //two outputs at the end
+        assertRejected(TestModel.random(16, 1, new int[] {4}, new int[] {2}).toBuffer());
+        //no convolution
+        assertRejected(TestModel.random(16, 1, new int[0], new int[] {1}).toBuffer());
+    }
+
+    private static void checkAgainstReference(Kernels kernels) throws IOException
+    {
+        //channel counts that aren't multiples of the vector length exercise the remainder loops
+        TestModel model = TestModel.random(48, 7, new int[] {8, 20, 67}, new int[] {13, 1});
+        LocalImageService service = new LocalImageService(model.toBuffer(), kernels);
+
+        for (BufferedImage image : List.of(scene(48, 48), noise(48, 48))) {
+            float expected = 100 * model.reference(image);
+            float actual = service.classify(List.of(ImageInput.of(image)), 50f).get(0).getCatConfidence();
+            assertEquals(kernels.name(), expected, actual, 0.01f);
+        }
+    }
+
+    private static void assertRejected(ByteBuffer model)
+    {
+        try {
+            new LocalImageService(model, new ScalarKernels());
+            fail("invalid model accepted");
+        } catch (IOException expected) {
+        }
+    }
+
+    private static ByteBuffer copy(ByteBuffer buffer)
+    {
+        ByteBuffer copy = ByteBuffer.allocate(buffer.remaining());
+        copy.put(buffer.duplicate()).flip();
+        return copy;
+    }
+
+    /**
+     * Reads a sample image from the project root, whether run from there or from the module.
+     */
+    private static BufferedImage sample(String name) throws IOException
+    {
+        Path file = Path.of(name);
+        if (!Files.exists(file)) {
+            file = Path.of("..", name);
+        }
+        return ImageIO.read(file.toFile());
+    }
+
+    private static BufferedImage scene(int width, int height)
+    {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(new Color(90, 110, 130));
+        g.fillRect(0, 0, width, height);
+        g.setColor(new Color(200, 150, 60));
+        g.fillOval(width / 4, height / 4, width / 2, height / 3);
+        g.dispose();
+        return image;
+    }
+
+    private static BufferedImage noise(int width, int height)
+    {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(9);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt(0x1000000));
+            }
+        }
+        return image;
+    }
+}
@@ -0,0 +1,58 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * Time per 1080p frame for the motion gate with the common image types, and how many frames of a
+ * mostly static scene are forwarded. Not a unit test, run it manually with the test classpath.
+ */
+public class MotionGateBenchmark {
+
+    private static final int WIDTH = 1920;
+    private static final int HEIGHT = 1080;
+    private static final int FRAMES = 1_000;
+    //something crosses the room once every this many frames
+    private static final int MOTION_EVERY = 50;
+
+    public static void main(String[] args) {
+        for (int type : new int[] {BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_3BYTE_BGR}) {
+            BufferedImage still = frame(type, -1);
+            BufferedImage moving = frame(type, WIDTH / 2);
+            MotionGate gate = new MotionGate();
+            //warm up
+            for (int i = 0; i < 200; i++) {
+                gate.hasMotion("warmup", i % 2 == 0 ? still : moving);
+            }
+
+            long start = System.nanoTime();
+            for (int i = 0; i < FRAMES; i++) {
+                gate.hasMotion("hall", currentScene(i, still, moving));
+            }
+            double millis = (System.nanoTime() - start) / 1e6 / FRAMES;
+            System.out.printf("%s: %.2f ms per frame, %d of %d frames forwarded%n",
+                    type == BufferedImage.TYPE_INT_RGB ? "INT_RGB  " : "3BYTE_BGR", millis,
+                    gate.getFramesForwarded("hall"), gate.getFramesSeen("hall"));
+        }
+    }
+
+    private static BufferedImage currentScene(int frame, BufferedImage still, BufferedImage moving) {
+        return frame / MOTION_EVERY % 2 == 0 ? still : moving;
+    }
+
+    private static BufferedImage frame(int type, int personX) {
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, type);
+        Graphics2D g = image.createGraphics();
+        g.setColor(new Color(90, 110, 130));
+        g.fillRect(0, 0, WIDTH, HEIGHT);
+        g.setColor(new Color(200, 180, 140));
+        g.fillRect(100, 700, 1700, 380);
+        if (personX >= 0) {
+            g.setColor(new Color(30, 30, 30));
+            g.fillRect(personX, 400, 200, 500);
+        }
+        g.dispose();
+        return image;
+    }
+}
@@ -0,0 +1,191 @@
+package com.udacity.catpoint.image.service;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Unit tests for the frame difference motion gate.
+ */
+public class MotionGateTest
+    extends TestCase
+{
+    public MotionGateTest(String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( MotionGateTest.class );
+    }
+
+    public void testStaticSceneIsSkipped()
+    {
+        MotionGate gate = new MotionGate();
+
+        assertTrue(gate.hasMotion("hall", room(BufferedImage.TYPE_INT_RGB, -1, 0)));
+        assertFalse(gate.hasMotion("hall", room(BufferedImage.TYPE_INT_RGB, -1, 0)));
+        //sensor noise alone isn't motion
+        assertFalse(gate.hasMotion("hall", room(BufferedImage.TYPE_INT_RGB, -1, 6)));
+
+        assertEquals(3, gate.getFramesSeen("hall"));
+        assertEquals(1, gate.getFramesForwarded("hall"));
+    }
+
+    public void testMovingObjectIsForwarded()
+    {
+        for (int type : new int[] {BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB,
+                BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_BYTE_GRAY, BufferedImage.TYPE_USHORT_565_RGB}) {
+            MotionGate gate = new MotionGate();
+            gate.hasMotion("hall", room(type, -1, 0));
+            assertTrue("type " + type, gate.hasMotion("hall", room(type, 100, 0)));
+            assertFalse("type " + type, gate.hasMotion("hall", room(type, 100, 0)));
+            assertTrue("type " + type, gate.hasMotion("hall", room(type, 300, 0)));
+        }
+    }
+
+    public void testCamerasAreIndependent()
+    {
+        MotionGate gate = new MotionGate();
+
+        assertTrue(gate.hasMotion("hall", room(BufferedImage.TYPE_INT_RGB, -1, 0)));
+        assertTrue(gate.hasMotion("garden", room(BufferedImage.TYPE_INT_RGB, 100, 0)));
+        assertFalse(gate.hasMotion("hall", room(BufferedImage.TYPE_INT_RGB, -1, 0)));
+
+        gate.reset("hall");
+        assertTrue(gate.hasMotion("hall", room(BufferedImage.TYPE_INT_RGB, -1, 0)));
+    }
+
+    public void testSubimageIsReadAtItsOwnOffset()
+    {
+        MotionGate gate = new MotionGate();
+        BufferedImage wide = new BufferedImage(400, 100, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = wide.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(200, 0, 200, 100);
+        g.dispose();
+
+        int[] left = new int[25 * 13];
+        int[] right = new int[25 * 13];
+        gate.downsample(wide.getSubimage(0, 0, 200, 100), left);
+        gate.downsample(wide.getSubimage(200, 0, 200, 100), right);
+        assertEquals(0, left[0]);
+        assertEquals(255, right[0]);
+    }
+
+    public void testIndexedFrameIsReadThroughItsPalette()
+    {
+        MotionGate gate = new MotionGate();
+        BufferedImage indexed = room(BufferedImage.TYPE_BYTE_INDEXED, 100, 0);
+        BufferedImage rgb = new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB);
+        rgb.setRGB(0, 0, 640, 480, indexed.getRGB(0, 0, 640, 480, null, 0, 640), 0, 640);
+
+        int[] expected = new int[80 * 60];
+        int[] actual = new int[80 * 60];
+        gate.downsample(rgb, expected);
+        gate.downsample(indexed, actual);
+        assertTrue(Arrays.equals(expected, actual));
+    }
+
+    public void testRegionsSurroundTheChange()
+    {
+        MotionGate gate = new MotionGate();
+
+        assertEquals(List.of(new Rectangle(640, 480)), gate.detectMotion("hall", room(BufferedImage.TYPE_INT_RGB, -1, 0)));
+        assertEquals(List.of(), gate.detectMotion("hall", room(BufferedImage.TYPE_INT_RGB, -1, 6)));
+        List<Rectangle> regions = gate.detectMotion("hall", room(BufferedImage.TYPE_INT_RGB, 100, 0));
+
+        assertEquals(1, regions.size());
+        Rectangle region = regions.get(0);
+        assertTrue(region.contains(new Rectangle(100, 200, 80, 120)));
+        //padded by a block on each side, no more
+        assertTrue(new Rectangle(100 - 16, 200 - 16, 80 + 32, 120 + 32).contains(region));
+    }
+
+    public void testSeparateChangesGiveSeparateRegions()
+    {
+        MotionGate gate = new MotionGate();
+        BufferedImage empty = new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB);
+        gate.detectMotion("hall", empty);
+
+        List<Rectangle> regions = gate.detectMotion("hall", boxes(new Rectangle(40, 40, 32, 32), new Rectangle(500, 380, 48, 48)));
+
+        assertEquals(2, regions.size());
+        assertTrue(regions.get(0).contains(new Rectangle(40, 40, 32, 32)));
+        assertTrue(regions.get(1).contains(new Rectangle(500, 380, 48, 48)));
+    }
+
+    public void testLargeOrScatteredChangeIsOneRegion()
+    {
+        MotionGate gate = new MotionGate();
+        gate.detectMotion("hall", new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB));
+
+        //more groups than regions are kept are classified as one region around all of them
+        List<Rectangle> scattered = gate.detectMotion("hall", boxes(new Rectangle(0, 0, 24, 24),
+                new Rectangle(100, 0, 24, 24), new Rectangle(200, 0, 24, 24), new Rectangle(300, 0, 24, 24),
+                new Rectangle(400, 0, 24, 24)));
+        assertEquals(1, scattered.size());
+        assertTrue(scattered.get(0).contains(new Rectangle(0, 0, 424, 24)));
+
+        //most of the frame changing is the whole frame
+        gate.reset("hall");
+        gate.detectMotion("hall", new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB));
+        assertEquals(List.of(new Rectangle(640, 480)), gate.detectMotion("hall", boxes(new Rectangle(0, 0, 600, 300))));
+    }
+
+    /**
+     * A black frame with white boxes.
+     */
+    private static BufferedImage boxes(Rectangle... boxes)
+    {
+        BufferedImage image = new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.WHITE);
+        for (Rectangle box : boxes) {
+            g.fill(box);
+        }
+        g.dispose();
+        return image;
+    }
+
+    /**
+     * A static room, with an optional moving box at the given x position and optional noise.
+     */
+    private static BufferedImage room(int type, int boxX, int noise)
+    {
+        BufferedImage image = new BufferedImage(640, 480, type);
+        Graphics2D g = image.createGraphics();
+        g.setColor(new Color(90, 110, 130));
+        g.fillRect(0, 0, 640, 480);
+        g.setColor(new Color(200, 180, 140));
+        g.fillRect(50, 300, 540, 180);
+        if (boxX >= 0) {
+            g.setColor(new Color(30, 30, 30));
+            g.fillRect(boxX, 200, 80, 120);
+        }
+        g.dispose();
+        if (noise > 0) {
+            Random random = new Random(7);
+            for (int y = 0; y < image.getHeight(); y++) {
+                for (int x = 0; x < image.getWidth(); x++) {
+                    int rgb = image.getRGB(x, y);
+                    int d = random.nextInt(2 * noise + 1) - noise;
+                    int r = Math.max(0, Math.min(255, ((rgb >> 16) & 0xFF) + d));
+                    int gr = Math.max(0, Math.min(255, ((rgb >> 8) & 0xFF) + d));
+                    int b = Math.max(0, Math.min(255, (rgb & 0xFF) + d));
+                    image.setRGB(x, y, (r << 16) | (gr << 8) | b);
+                }
+            }
+        }
+        return image;
+    }
+}
@@ -0,0 +1,189 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Time per frame of grayscale conversion, scaling to the 300x225 camera preview, frame differencing and
+ * dHash, at 640x480, 1080p and 4K, for 3-byte BGR frames as ImageIO decodes JPEGs, and of grayscale
+ * conversion for int RGB frames. Compares the AWT or per-pixel getRGB way of doing each with the
+ * {@link PixelPreprocessor} on scalar and, when run with --add-modules jdk.incubator.vector, Vector API
+ * kernels. Each case is warmed up for a second, then timed for a second. Not a unit test, run it manually
+ * with the test classpath.
+ */
+public class PixelPreprocessorBenchmark {
+
+    private static final int[][] SIZES = {{640, 480}, {1920, 1080}, {3840, 2160}};
+    private static final long WARMUP_NANOS = 1_000_000_000L;
+    private static final long MEASURE_NANOS = 1_000_000_000L;
+
+    private static long sink;
+
+    public static void main(String[] args) {
+        PixelPreprocessor scalar = new PixelPreprocessor(new ScalarPixelKernels());
+        PixelPreprocessor best = PixelPreprocessor.best();
+        boolean vector = !best.getKernelName().equals(scalar.getKernelName());
+        System.out.println("kernels: " + best.getKernelName());
+
+        for (int[] size : SIZES) {
+            BufferedImage previous = frame(size[0], size[1], 0);
+            BufferedImage current = frame(size[0], size[1], 1);
+            byte[] gray = new byte[size[0] * size[1]];
+            byte[] previousGray = scalar.grayscale(previous);
+            System.out.printf("%dx%d%n", size[0], size[1]);
+
+            time("grayscale, drawImage", () -> {
+                BufferedImage out = new BufferedImage(size[0], size[1], BufferedImage.TYPE_BYTE_GRAY);
+                Graphics2D g = out.createGraphics();
+                g.drawImage(current, 0, 0, null);
+                g.dispose();
+                return out.getRaster().getSample(0, 0, 0);
+            });
+            time("grayscale, getRGB", () -> {
+                for (int y = 0, i = 0; y < size[1]; y++) {
+                    for (int x = 0; x < size[0]; x++, i++) {
+                        gray[i] = (byte) luma(current.getRGB(x, y));
+                    }
+                }
+                return gray[0];
+            });
+            time("grayscale, scalar", () -> {
+                scalar.grayscale(current, gray);
+                return gray[0];
+            });
+            if (vector) {
+                time("grayscale, vector", () -> {
+                    best.grayscale(current, gray);
+                    return gray[0];
+                });
+            }
+            BufferedImage packed = new BufferedImage(size[0], size[1], BufferedImage.TYPE_INT_RGB);
+            packed.createGraphics().drawImage(current, 0, 0, null);
+            time("int grayscale, scalar", () -> {
+                scalar.grayscale(packed, gray);
+                return gray[0];
+            });
+            if (vector) {
+                time("int grayscale, vector", () -> {
+                    best.grayscale(packed, gray);
+                    return gray[0];
+                });
+            }
+
+            time("preview, SCALE_SMOOTH", () -> {
+                BufferedImage out = new BufferedImage(300, 225, BufferedImage.TYPE_INT_RGB);
+                Graphics2D g = out.createGraphics();
+                g.drawImage(current.getScaledInstance(300, 225, Image.SCALE_SMOOTH), 0, 0, null);
+                g.dispose();
+                return out.getRGB(0, 0);
+            });
+            time("preview, scalar", () -> scalar.scale(current, 300, 225).getRGB(0, 0));
+            if (vector) {
+                time("preview, vector", () -> best.scale(current, 300, 225).getRGB(0, 0));
+            }
+
+            time("difference, getRGB", () -> {
+                int changed = 0;
+                for (int y = 0; y < size[1]; y++) {
+                    for (int x = 0; x < size[0]; x++) {
+                        if (Math.abs(luma(previous.getRGB(x, y)) - luma(current.getRGB(x, y))) > 24) {
+                            changed++;
+                        }
+                    }
+                }
+                return changed;
+            });
+            //the previous frame's gray values are kept from when it was current
+            time("difference, scalar", () -> {
+                scalar.grayscale(current, gray);
+                return scalar.countChangedPixels(previousGray, gray, 24);
+            });
+            if (vector) {
+                time("difference, vector", () -> {
+                    best.grayscale(current, gray);
+                    return best.countChangedPixels(previousGray, gray, 24);
+                });
+            }
+
+            time("dHash, getRGB", () -> getRgbHash(current));
+            time("dHash, scalar", () -> scalar.dHash(current));
+            if (vector) {
+                time("dHash, vector", () -> best.dHash(current));
+            }
+        }
+        System.out.println(sink == 42 ? "" : " ");
+    }
+
+    private static void time(String name, Supplier<Object> operation) {
+        for (long start = System.nanoTime(); System.nanoTime() - start < WARMUP_NANOS; ) {
+            sink += operation.get().hashCode();
+        }
+        int runs = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            sink += operation.get().hashCode();
+            runs++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < MEASURE_NANOS);
+        System.out.printf("  %-22s %8.3f ms%n", name, elapsed / 1e6 / runs);
+    }
+
+    /**
+     * The dHash as it was worked out before the preprocessor, sampling 8x8 pixels per cell with getRGB.
+     */
+    private static long getRgbHash(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] cells = new int[9 * 8];
+        for (int row = 0; row < 8; row++) {
+            int top = row * height / 8;
+            int bottom = Math.max(top + 1, (row + 1) * height / 8);
+            int yStep = Math.max(1, (bottom - top) / 8);
+            for (int column = 0; column < 9; column++) {
+                int left = column * width / 9;
+                int right = Math.max(left + 1, (column + 1) * width / 9);
+                int xStep = Math.max(1, (right - left) / 8);
+                long sum = 0;
+                int count = 0;
+                for (int y = top; y < bottom; y += yStep) {
+                    for (int x = left; x < right; x += xStep) {
+                        sum += luma(image.getRGB(x, y));
+                        count++;
+                    }
+                }
+                cells[row * 9 + column] = (int) (sum / count);
+            }
+        }
+        long hash = 0;
+        for (int row = 0; row < 8; row++) {
+            for (int column = 0; column < 8; column++) {
+                hash <<= 1;
+                if (cells[row * 9 + column] > cells[row * 9 + column + 1]) {
+                    hash |= 1;
+                }
+            }
+        }
+        return hash;
+    }
+
+    private static int luma(int rgb) {
+        return PixelKernels.luma((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF);
+    }
+
+    private static BufferedImage frame(int width, int height, int seed) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        Random random = new Random(seed);
+        Graphics2D g = image.createGraphics();
+        for (int i = 0; i < width * height / 400; i++) {
+            g.setColor(new Color(random.nextInt(0xFFFFFF)));
+            g.fillRect(random.nextInt(width), random.nextInt(height), 4 + random.nextInt(40), 4 + random.nextInt(40));
+        }
+        g.dispose();
+        return image;
+    }
+}
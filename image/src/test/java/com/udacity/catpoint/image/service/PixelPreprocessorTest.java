@@ -0,0 +1,208 @@
+package com.udacity.catpoint.image.service;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Unit tests for the raster based pixel preprocessing, checked against per-pixel getRGB and between the
+ * scalar and the best available kernels.
+ */
+public class PixelPreprocessorTest
+    extends TestCase
+{
+    private static final int[] TYPES = {BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_BGR,
+            BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_BYTE_GRAY,
+            BufferedImage.TYPE_USHORT_565_RGB};
+
+    private final PixelPreprocessor scalar = new PixelPreprocessor(new ScalarPixelKernels());
+    private final PixelPreprocessor best = PixelPreprocessor.best();
+
+    public PixelPreprocessorTest(String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( PixelPreprocessorTest.class );
+    }
+
+    public void testGrayscaleMatchesGetRgb()
+    {
+        for (int type : TYPES) {
+            //an odd width, so rows end in a partial vector
+            BufferedImage image = noise(type, 131, 17);
+            byte[] expected = new byte[131 * 17];
+            for (int y = 0; y < 17; y++) {
+                for (int x = 0; x < 131; x++) {
+                    int rgb = image.getRGB(x, y);
+                    expected[y * 131 + x] = (byte) luma(rgb);
+                }
+            }
+
+            if (type != BufferedImage.TYPE_BYTE_GRAY) {
+                assertTrue("type " + type, Arrays.equals(expected, scalar.grayscale(image)));
+            }
+            assertTrue("type " + type, Arrays.equals(scalar.grayscale(image), best.grayscale(image)));
+        }
+    }
+
+    public void testGrayImageIsCopied()
+    {
+        BufferedImage image = noise(BufferedImage.TYPE_BYTE_GRAY, 40, 3);
+        byte[] gray = best.grayscale(image);
+
+        assertEquals(image.getRaster().getSample(7, 2, 0), gray[2 * 40 + 7] & 0xFF);
+    }
+
+    public void testIndexedImageIsReadThroughItsPalette()
+    {
+        for (int type : new int[] {BufferedImage.TYPE_BYTE_INDEXED, BufferedImage.TYPE_BYTE_BINARY}) {
+            //single band byte rasters whose samples are palette indexes, not gray levels
+            BufferedImage image = noise(type, 131, 17);
+            BufferedImage rgb = new BufferedImage(131, 17, BufferedImage.TYPE_INT_RGB);
+            rgb.setRGB(0, 0, 131, 17, pixels(image), 0, 131);
+
+            assertTrue("type " + type, Arrays.equals(scalar.grayscale(rgb), best.grayscale(image)));
+            assertTrue("type " + type, Arrays.equals(pixels(scalar.scale(rgb, 40, 9)), pixels(best.scale(image, 40, 9))));
+            assertEquals("type " + type, scalar.dHash(rgb), best.dHash(image));
+        }
+
+        BufferedImage white = new BufferedImage(16, 16, BufferedImage.TYPE_BYTE_INDEXED);
+        for (int x = 0; x < 16; x++) {
+            for (int y = 0; y < 16; y++) {
+                white.setRGB(x, y, 0xFFFFFFFF);
+            }
+        }
+        assertEquals(255, best.grayscale(white)[0] & 0xFF);
+        assertEquals(0xFFFFFFFF, best.scale(white, 4, 4).getRGB(0, 0));
+    }
+
+    public void testSubimageIsReadAtItsOwnOffset()
+    {
+        for (int type : TYPES) {
+            BufferedImage image = noise(type, 200, 60);
+            BufferedImage part = image.getSubimage(37, 11, 100, 40);
+
+            assertTrue("type " + type, Arrays.equals(scalar.grayscale(copy(part)), best.grayscale(part)));
+            assertEquals("type " + type, best.dHash(copy(part)), best.dHash(part));
+        }
+    }
+
+    public void testScaleAveragesBlocks()
+    {
+        BufferedImage image = new BufferedImage(4, 2, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, 0x102030);
+        image.setRGB(1, 0, 0x304050);
+        image.setRGB(0, 1, 0x000000);
+        image.setRGB(1, 1, 0x204060);
+        image.setRGB(2, 0, 0xFFFFFF);
+        image.setRGB(3, 0, 0xFFFFFF);
+        image.setRGB(2, 1, 0xFFFFFF);
+        image.setRGB(3, 1, 0xFFFFFF);
+
+        BufferedImage scaled = best.scale(image, 2, 1);
+
+        assertEquals(2, scaled.getWidth());
+        assertEquals(0x182838, scaled.getRGB(0, 0) & 0xFFFFFF);
+        assertEquals(0xFFFFFF, scaled.getRGB(1, 0) & 0xFFFFFF);
+    }
+
+    public void testScaleIsTheSameForAllKernelsAndTypes()
+    {
+        BufferedImage reference = scalar.scale(noise(BufferedImage.TYPE_INT_RGB, 321, 200), 64, 48);
+        for (int type : TYPES) {
+            BufferedImage image = noise(type, 321, 200);
+            assertTrue("type " + type, Arrays.equals(pixels(scalar.scale(image, 64, 48)), pixels(best.scale(image, 64, 48))));
+            if (type == BufferedImage.TYPE_3BYTE_BGR || type == BufferedImage.TYPE_INT_BGR) {
+                assertTrue("type " + type, Arrays.equals(pixels(reference), pixels(best.scale(image, 64, 48))));
+            }
+        }
+        //scaling up repeats pixels
+        BufferedImage tiny = noise(BufferedImage.TYPE_INT_RGB, 2, 2);
+        BufferedImage large = best.scale(tiny, 4, 4);
+        assertEquals(tiny.getRGB(1, 1), large.getRGB(3, 3));
+        assertEquals(tiny.getRGB(1, 1), large.getRGB(2, 2));
+    }
+
+    public void testCountChangedPixels()
+    {
+        byte[] previous = new byte[1000];
+        byte[] current = new byte[1000];
+        Random random = new Random(3);
+        int expected = 0;
+        for (int i = 0; i < previous.length; i++) {
+            previous[i] = (byte) random.nextInt(256);
+            current[i] = (byte) random.nextInt(256);
+            if (Math.abs((previous[i] & 0xFF) - (current[i] & 0xFF)) > 40) {
+                expected++;
+            }
+        }
+
+        assertEquals(expected, scalar.countChangedPixels(previous, current, 40));
+        assertEquals(expected, best.countChangedPixels(previous, current, 40));
+        assertEquals(0, best.countChangedPixels(previous, previous, 0));
+        assertEquals(0, best.countChangedPixels(previous, current, 255));
+        try {
+            best.countChangedPixels(previous, new byte[999], 40);
+            fail("frames differ in size");
+        } catch (IllegalArgumentException e) {
+            //expected
+        }
+    }
+
+    public void testHashIsTheSameForAllKernelsAndTypes()
+    {
+        long reference = scalar.dHash(noise(BufferedImage.TYPE_INT_RGB, 640, 480));
+        assertEquals(reference, best.dHash(noise(BufferedImage.TYPE_INT_RGB, 640, 480)));
+        assertEquals(reference, best.dHash(noise(BufferedImage.TYPE_3BYTE_BGR, 640, 480)));
+        assertEquals(reference, best.dHash(noise(BufferedImage.TYPE_INT_ARGB, 640, 480)));
+    }
+
+    public void testVectorKernelsAreUsedWhenTheBuildAsksForThem()
+    {
+        //set by the build's vector-kernels test run, so it can't silently fall back to the scalar kernels
+        if (Boolean.getBoolean("catpoint.test.vectorKernels")) {
+            assertTrue(PixelKernels.best().name(), PixelKernels.best() instanceof VectorPixelKernels);
+        }
+    }
+
+    private static int luma(int rgb)
+    {
+        return PixelKernels.luma((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF);
+    }
+
+    /**
+     * Random pixels, the same for every type as far as the type can hold them.
+     */
+    private static BufferedImage noise(int type, int width, int height)
+    {
+        BufferedImage image = new BufferedImage(width, height, type);
+        Random random = new Random(width * 31L + height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, 0xFF000000 | random.nextInt(0x1000000));
+            }
+        }
+        return image;
+    }
+
+    private static BufferedImage copy(BufferedImage image)
+    {
+        //a raster of its own, starting at the start of its pixel array
+        WritableRaster raster = image.getColorModel().createCompatibleWritableRaster(image.getWidth(), image.getHeight());
+        image.copyData(raster);
+        return new BufferedImage(image.getColorModel(), raster, image.isAlphaPremultiplied(), null);
+    }
+
+    private static int[] pixels(BufferedImage image)
+    {
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+}
@@ -0,0 +1,111 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * Sends the frames of a textured room with one or two moving objects to {@link AwsImageService}, backed by
+ * a local fake Rekognition endpoint that takes 30 ms per call, once as whole frames and once as the regions
+ * the {@link MotionGate} found. Reports the request bytes and the latency per frame, at 640x480 and 1080p.
+ * Latency covers encoding and the loopback round trip, so a real uplink would widen the gap.
+ * Not a unit test, run it manually with the test classpath.
+ */
+public class RegionClassifierBenchmark {
+
+    private static final int FRAMES = 60;
+    private static final Duration SERVICE_TIME = Duration.ofMillis(30);
+
+    public static void main(String[] args) throws Exception {
+        try (FakeRekognitionServer server = new FakeRekognitionServer()) {
+            server.setDelay(SERVICE_TIME);
+            Properties settings = new Properties();
+            settings.setProperty("aws.id", "benchmark");
+            settings.setProperty("aws.secret", "benchmark");
+            settings.setProperty("aws.region", "us-east-1");
+            settings.setProperty("aws.endpoint", server.getEndpoint().toString());
+            try (AwsImageService service = new AwsImageService(settings, new FakeImageService())) {
+                for (int[] size : new int[][] {{640, 480}, {1920, 1080}}) {
+                    for (int movers = 1; movers <= 2; movers++) {
+                        BufferedImage background = background(size[0], size[1]);
+                        //the first round warms up
+                        run(server, service, background, movers, false, false);
+                        long wholeBytes = run(server, service, background, movers, false, true);
+                        long regionBytes = run(server, service, background, movers, true, true);
+                        System.out.printf("  payload %.1f%% of whole frames%n", 100.0 * regionBytes / wholeBytes);
+                    }
+                }
+            }
+        }
+    }
+
+    private static long run(FakeRekognitionServer server, AwsImageService service, BufferedImage background,
+                            int movers, boolean regions, boolean report) {
+        MotionGate gate = new MotionGate();
+        RegionClassifier classifier = new RegionClassifier(service);
+        LatencyHistogram latency = new LatencyHistogram();
+        int requestsBefore = server.getRequests().size();
+        for (int i = 0; i < FRAMES; i++) {
+            BufferedImage frame = frame(background, movers, i);
+            List<Rectangle> changed = gate.detectMotion("camera", frame);
+            if (changed.isEmpty() || i == 0) {
+                continue; //the first frame is whole either way
+            }
+            long start = System.nanoTime();
+            if (regions) {
+                classifier.classify(ImageInput.of(frame), changed, 50f);
+            } else {
+                service.classify(List.of(ImageInput.of(frame)), 50f);
+            }
+            latency.record(System.nanoTime() - start);
+        }
+        List<String> requests = server.getRequests();
+        long bytes = 0;
+        for (String request : requests.subList(requestsBefore, requests.size())) {
+            bytes += request.length();
+        }
+        if (report) {
+            System.out.printf("%dx%d, %d moving, %-7s %4d calls, %,9d request bytes per frame, mean %5.1f ms, p95 %5.1f ms%n",
+                    background.getWidth(), background.getHeight(), movers, regions ? "regions" : "whole",
+                    requests.size() - requestsBefore, bytes / latency.getCount(),
+                    latency.getMeanNanos() / 1e6, latency.getPercentileNanos(95) / 1e6);
+        }
+        return bytes;
+    }
+
+    /**
+     * A room full of clutter, so the frames don't compress to nothing.
+     */
+    private static BufferedImage background(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        Random random = new Random(42);
+        for (int i = 0; i < width * height / 400; i++) {
+            g.setColor(new Color(random.nextInt(0xFFFFFF)));
+            g.fillRect(random.nextInt(width), random.nextInt(height), 4 + random.nextInt(40), 4 + random.nextInt(40));
+        }
+        g.dispose();
+        return image;
+    }
+
+    private static BufferedImage frame(BufferedImage background, int movers, int index) {
+        int width = background.getWidth();
+        int height = background.getHeight();
+        BufferedImage frame = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = frame.createGraphics();
+        g.drawImage(background, 0, 0, null);
+        g.setColor(Color.BLACK);
+        int size = width / 10;
+        for (int m = 0; m < movers; m++) {
+            int x = (width / 8 + index * width / 40 + m * width / 2) % (width - size);
+            g.fillOval(x, height / 3 + m * height / 3, size, size * 3 / 4);
+        }
+        g.dispose();
+        return frame;
+    }
+}
@@ -0,0 +1,140 @@
+package com.udacity.catpoint.image.service;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Unit tests for classifying the changed regions of a frame.
+ */
+public class RegionClassifierTest
+    extends TestCase
+{
+    //sizes of the images in each classify call
+    private final List<List<Rectangle>> calls = new ArrayList<>();
+
+    //sees a cat in any image with a white pixel in the middle
+    private final ImageService service = new ImageService() {
+        @Override
+        public boolean imageContainsCat(BufferedImage image, float confidenceThreshold)
+        {
+            throw new AssertionError("classify should be used");
+        }
+
+        @Override
+        public List<ClassificationResult> classify(List<ImageInput> images, float confidenceThreshold)
+        {
+            List<Rectangle> sizes = new ArrayList<>();
+            List<ClassificationResult> results = new ArrayList<>();
+            for (ImageInput input : images) {
+                BufferedImage image = input.getImage();
+                sizes.add(new Rectangle(image.getWidth(), image.getHeight()));
+                boolean cat = (image.getRGB(image.getWidth() / 2, image.getHeight() / 2) & 0xFFFFFF) == 0xFFFFFF;
+                results.add(new ClassificationResult(cat, cat ? 90f : 10f, Map.of("Cat", cat ? 90f : 10f), 0));
+            }
+            synchronized (calls) {
+                calls.add(sizes);
+            }
+            return results;
+        }
+    };
+
+    public RegionClassifierTest(String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( RegionClassifierTest.class );
+    }
+
+    public void testRegionsAreClassifiedInsteadOfTheFrame()
+    {
+        RegionClassifier classifier = new RegionClassifier(service, 32, null);
+
+        ClassificationResult result = classifier.classify(frame(new Rectangle(400, 300, 64, 64)),
+                List.of(new Rectangle(40, 40, 64, 48), new Rectangle(400, 300, 64, 64)), 50f);
+
+        assertEquals(List.of(List.of(new Rectangle(64, 48), new Rectangle(64, 64))), calls);
+        assertTrue(result.containsCat());
+        assertEquals(90f, result.getCatConfidence(), 0f);
+        assertEquals(Map.of("Cat", 90f), result.getLabels());
+        assertEquals(1, classifier.getFramesCropped());
+        assertEquals(2, classifier.getRegionsClassified());
+        assertEquals((64 * 48 + 64 * 64) / (640.0 * 480), classifier.getClassifiedPixelFraction(), 1e-9);
+    }
+
+    public void testNoCatInAnyRegion()
+    {
+        RegionClassifier classifier = new RegionClassifier(service, 32, null);
+
+        ClassificationResult result = classifier.classify(frame(new Rectangle(400, 300, 64, 64)),
+                List.of(new Rectangle(40, 40, 64, 48)), 50f);
+
+        assertFalse(result.containsCat());
+        assertEquals(10f, result.getCatConfidence(), 0f);
+    }
+
+    public void testSmallRegionIsGrownWithinTheFrame()
+    {
+        RegionClassifier classifier = new RegionClassifier(service);
+
+        //a cat in the corner, the crop is shifted to stay inside the frame
+        assertTrue(classifier.classify(frame(new Rectangle(0, 0, 128, 128)), List.of(new Rectangle(0, 0, 8, 8)), 50f)
+                .containsCat());
+
+        assertEquals(List.of(List.of(new Rectangle(128, 128))), calls);
+    }
+
+    public void testWholeFrameWithoutRegions()
+    {
+        RegionClassifier classifier = new RegionClassifier(service, 32, null);
+
+        classifier.classify(frame(new Rectangle(0, 0, 1, 1)), List.of(), 50f);
+        classifier.classify(frame(new Rectangle(0, 0, 1, 1)), List.of(new Rectangle(-10, -10, 700, 500)), 50f);
+
+        assertEquals(List.of(List.of(new Rectangle(640, 480)), List.of(new Rectangle(640, 480))), calls);
+        assertEquals(0, classifier.getFramesCropped());
+        assertEquals(2, classifier.getFramesClassified());
+    }
+
+    public void testRegionsAreClassifiedInParallelWithAnExecutor()
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            RegionClassifier classifier = new RegionClassifier(service, 32, executor);
+
+            assertTrue(classifier.classify(frame(new Rectangle(400, 300, 64, 64)),
+                    List.of(new Rectangle(40, 40, 64, 48), new Rectangle(400, 300, 64, 64)), 50f).containsCat());
+
+            //one call per region
+            assertEquals(2, calls.size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * A black 640x480 frame with a white box.
+     */
+    private static ImageInput frame(Rectangle box)
+    {
+        BufferedImage image = new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fill(box);
+        g.dispose();
+        return ImageInput.of(image);
+    }
+}
@@ -0,0 +1,171 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Randomly initialized model for tests and benchmarks, with a straightforward forward pass to check the
+ * optimized one against. The weights are random, so its predictions mean nothing.
+ */
+final class TestModel {
+
+    final int inputSize;
+    final float[] mean = {0.45f, 0.45f, 0.4f};
+    final float[] std = {0.25f, 0.25f, 0.25f};
+    final List<Layer> layers = new ArrayList<>();
+
+    private TestModel(int inputSize) {
+        this.inputSize = inputSize;
+    }
+
+    /**
+     * @param convChannels Output channels of each convolution
+     * @param denseChannels Output channels of each dense layer, the last one should be 1
+     */
+    static TestModel random(int inputSize, long seed, int[] convChannels, int[] denseChannels) {
+        TestModel model = new TestModel(inputSize);
+        Random random = new Random(seed);
+        int channels = 3;
+        for (int out : convChannels) {
+            model.layers.add(new Layer(CatModel.CONV, channels, out, random));
+            channels = out;
+        }
+        for (int out : denseChannels) {
+            model.layers.add(new Layer(CatModel.DENSE, channels, out, random));
+            channels = out;
+        }
+        return model;
+    }
+
+    /**
+     * The shape of model the local classifier is meant for: 224x224 input, four convolutions down to
+     * 14x14x64, then 64 -> 32 -> 1.
+     */
+    static TestModel standard(long seed) {
+        return random(224, seed, new int[] {16, 32, 64, 64}, new int[] {32, 1});
+    }
+
+    ByteBuffer toBuffer() {
+        int floats = 6;
+        for (Layer layer : layers) {
+            floats += layer.weights.length + layer.bias.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(16 + 12 * layers.size() + floats * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(CatModel.MAGIC).putInt(CatModel.VERSION).putInt(inputSize).putInt(layers.size());
+        for (float value : mean) {
+            buffer.putFloat(value);
+        }
+        for (float value : std) {
+            buffer.putFloat(value);
+        }
+        for (Layer layer : layers) {
+            buffer.putInt(layer.kind).putInt(layer.in).putInt(layer.out);
+            for (float value : layer.weights) {
+                buffer.putFloat(value);
+            }
+            for (float value : layer.bias) {
+                buffer.putFloat(value);
+            }
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Forward pass written for clarity, on an image that already has the model's input size.
+     * @return probability of a cat, 0 to 1
+     */
+    float reference(BufferedImage image) {
+        int size = inputSize;
+        int channels = 3;
+        float[][][] activation = new float[size][size][3];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int rgb = image.getRGB(x, y);
+                int[] values = {(rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF};
+                for (int c = 0; c < 3; c++) {
+                    activation[y][x][c] = (values[c] / 255f - mean[c]) / std[c];
+                }
+            }
+        }
+
+        float[] features = null;
+        for (Layer layer : layers) {
+            if (layer.kind == CatModel.CONV) {
+                int outSize = (size + 1) / 2;
+                float[][][] out = new float[outSize][outSize][layer.out];
+                for (int y = 0; y < outSize; y++) {
+                    for (int x = 0; x < outSize; x++) {
+                        for (int o = 0; o < layer.out; o++) {
+                            float sum = layer.bias[o];
+                            for (int ky = 0; ky < 3; ky++) {
+                                for (int kx = 0; kx < 3; kx++) {
+                                    int iy = 2 * y + ky - 1;
+                                    int ix = 2 * x + kx - 1;
+                                    if (iy < 0 || ix < 0 || iy >= size || ix >= size) {
+                                        continue;
+                                    }
+                                    for (int c = 0; c < channels; c++) {
+                                        sum += activation[iy][ix][c] * layer.weights[((ky * 3 + kx) * channels + c) * layer.out + o];
+                                    }
+                                }
+                            }
+                            out[y][x][o] = Math.max(0, sum);
+                        }
+                    }
+                }
+                activation = out;
+                size = outSize;
+            } else {
+                if (features == null) {
+                    features = new float[channels];
+                    for (float[][] row : activation) {
+                        for (float[] pixel : row) {
+                            for (int c = 0; c < channels; c++) {
+                                features[c] += pixel[c] / (size * size);
+                            }
+                        }
+                    }
+                }
+                float[] out = new float[layer.out];
+                for (int o = 0; o < layer.out; o++) {
+                    float sum = layer.bias[o];
+                    for (int i = 0; i < layer.in; i++) {
+                        sum += features[i] * layer.weights[i * layer.out + o];
+                    }
+                    out[o] = layer == layers.get(layers.size() - 1) ? sum : Math.max(0, sum);
+                }
+                features = out;
+            }
+            channels = layer.out;
+        }
+        return (float) (1 / (1 + Math.exp(-features[0])));
+    }
+
+    static final class Layer {
+        final int kind;
+        final int in;
+        final int out;
+        final float[] weights;
+        final float[] bias;
+
+        Layer(int kind, int in, int out, Random random) {
+            this.kind = kind;
+            this.in = in;
+            this.out = out;
+            int fanIn = kind == CatModel.CONV ? 9 * in : in;
+            weights = new float[fanIn * out];
+            bias = new float[out];
+            float scale = (float) Math.sqrt(2.0 / fanIn);
+            for (int i = 0; i < weights.length; i++) {
+                weights[i] = (float) random.nextGaussian() * scale;
+            }
+            for (int i = 0; i < bias.length; i++) {
+                bias[i] = (float) random.nextGaussian() * 0.1f;
+            }
+        }
+    }
+}
@@ -1,33 +1,84 @@
 package com.security.application;
 
-import com.security.data.PretendDatabaseSecurityRepositoryImpl;
+import com.security.data.ArmingStatus;
+import com.security.data.RepositoryType;
 import com.security.data.SecurityRepository;
+import com.security.data.WriteBehindSecurityRepository;
+import com.security.service.Camera;
+import com.security.service.ClassificationScheduler;
+import com.security.service.DirectoryFrameSource;
+import com.security.service.FrameRingBuffer;
 import com.security.service.SecurityService;
 import com.udacity.catpoint.image.service.ImageService;
+import com.udacity.catpoint.image.service.AwsImageService;
+import com.udacity.catpoint.image.service.CascadingImageService;
 import com.udacity.catpoint.image.service.FakeImageService;
+import com.udacity.catpoint.image.service.LocalImageService;
+import com.udacity.catpoint.image.service.MotionGate;
+import com.udacity.catpoint.image.service.RegionClassifier;
 import net.miginfocom.swing.MigLayout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.swing.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This is the primary JFrame for the application that contains all the top-level JPanels.
  *
  * We're not using any dependency injection framework, so this class also handles constructing
  * all our dependencies and providing them to other classes as necessary.
+ *
+ * The storage backend is chosen with system properties:
+ *   catpoint.repository  - one of {@link RepositoryType}, defaults to PREFERENCES, which is also used
+ *                          if the value isn't one of them; the window title shows the one in use
+ *   catpoint.dataDir     - directory for file based repositories, defaults to ~/.catpoint
+ *   catpoint.writeBehind - if true, writes are batched on a background thread
+ *
+ * Other settings:
+ *   catpoint.maxSensors  - most sensors that can be added, defaults to {@value SensorPanel#DEFAULT_MAX_SENSORS}
+ *   catpoint.motionGate  - if true, camera images that hardly changed since the last scan aren't scanned again
+ *   catpoint.cropToMotion - if true as well, only the parts of an image that changed are scanned,
+ *                          see {@link RegionClassifier}
+ *   catpoint.localModel  - model file for classifying images in process, see {@link LocalImageService};
+ *                          the app doesn't start if it can't be loaded; without one, images are
+ *                          classified at random
+ *   catpoint.awsEscalation - if true, and a local model is set, images the local model is unsure about are
+ *                          sent to AWS Rekognition, keeping the local answer when AWS is unreachable or slow
+ *   catpoint.cameras     - comma separated camera ids, defaults to a single camera
+ *   catpoint.spoolDir    - if set, frames dropped into its subdirectory for a camera are scanned as they arrive
+ *   catpoint.recordFrames - if set, each camera keeps this many of its latest encoded frames, frozen when
+ *                          the alarm goes off with half of them from after it, see {@link FrameRingBuffer}
+ *   catpoint.callsPerMinute - images are only scanned while armed at home, at most this many per minute,
+ *                          defaults to {@value ClassificationScheduler#DEFAULT_CALLS_PER_MINUTE},
+ *                          see {@link ClassificationScheduler}
  */
 public class CatpointGui extends JFrame {
-    private SecurityRepository securityRepository = new PretendDatabaseSecurityRepositoryImpl();
-    private ImageService imageService = new FakeImageService();
-    private SecurityService securityService = new SecurityService(securityRepository, imageService);
+    private static final Logger log = LoggerFactory.getLogger(CatpointGui.class);
+
+    //set by createSecurityRepository()
+    private String repositoryDescription;
+    private SecurityRepository securityRepository = createSecurityRepository();
+    private ImageService imageService = createImageService();
+    private SecurityService securityService = createSecurityService(securityRepository, imageService);
     private DisplayPanel displayPanel = new DisplayPanel(securityService);
     private ControlPanel controlPanel = new ControlPanel(securityService);
-    private SensorPanel sensorPanel = new SensorPanel(securityService);
+    private SensorPanel sensorPanel = new SensorPanel(securityService,
+            Integer.getInteger("catpoint.maxSensors", SensorPanel.DEFAULT_MAX_SENSORS));
     private ImagePanel imagePanel = new ImagePanel(securityService);
 
     public CatpointGui() {
         setLocation(100, 100);
         setSize(600, 850);
-        setTitle("Very Secure App");
+        setTitle("Very Secure App - " + repositoryDescription);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 
         JPanel mainPanel = new JPanel();
@@ -39,5 +90,111 @@ public class CatpointGui extends JFrame {
 
         getContentPane().add(mainPanel);
 
+        securityService.setImageExecutors(createImageExecutor(), SwingUtilities::invokeLater);
+        if (Boolean.getBoolean("catpoint.motionGate")) {
+            securityService.setMotionGate(new MotionGate());
+            if (Boolean.getBoolean("catpoint.cropToMotion")) {
+                securityService.setRegionClassifier(new RegionClassifier(imageService));
+            }
+        }
+        securityService.setScheduler(new ClassificationScheduler(
+                Map.of(ArmingStatus.ARMED_HOME, ClassificationScheduler.DEFAULT_ARMED_HOME_RATE),
+                Math.max(1, Integer.getInteger("catpoint.callsPerMinute", ClassificationScheduler.DEFAULT_CALLS_PER_MINUTE)),
+                ClassificationScheduler.DEFAULT_MAX_QUEUED_FRAMES));
+        String spoolDir = System.getProperty("catpoint.spoolDir");
+        if (spoolDir != null) {
+            startFrameSources(Path.of(spoolDir));
+        }
+    }
+
+    /**
+     * Watches a subdirectory of the spool directory for each camera, named after the camera.
+     */
+    private void startFrameSources(Path spoolDir) {
+        for (Camera camera : securityService.getCameraRegistry().getCameras()) {
+            try {
+                Path directory = Files.createDirectories(spoolDir.resolve(camera.getId()));
+                DirectoryFrameSource.watch(securityService, camera.getId(), directory).start();
+            } catch (IOException e) {
+                log.error("Unable to watch the spool directory of camera {}, its frames won't be scanned",
+                        camera.getId(), e);
+            }
+        }
+    }
+
+    /**
+     * A couple of threads for image scans, which may wait on the network. Scans beyond what fits in
+     * the small queue are rejected rather than piling up behind a slow image service.
+     */
+    private static ExecutorService createImageExecutor() {
+        return new ThreadPoolExecutor(2, 2, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(4), r -> {
+            Thread thread = new Thread(r, "image-scan");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static ImageService createImageService() {
+        String modelFile = System.getProperty("catpoint.localModel");
+        if (modelFile != null) {
+            try {
+                LocalImageService local = LocalImageService.load(Path.of(modelFile));
+                return Boolean.getBoolean("catpoint.awsEscalation")
+                        ? new CascadingImageService(local, new AwsImageService(local))
+                        : local;
+            } catch (IOException e) {
+                //classifying at random instead would leave the system armed without a working camera
+                throw new IllegalStateException("Unable to load the local model " + modelFile, e);
+            }
+        }
+        return new FakeImageService();
+    }
+
+    private static SecurityService createSecurityService(SecurityRepository securityRepository, ImageService imageService) {
+        SecurityService securityService = new SecurityService(securityRepository, imageService);
+        for (String cameraId : System.getProperty("catpoint.cameras", SecurityService.DEFAULT_CAMERA).split(",")) {
+            securityService.getCameraRegistry().register(cameraId.trim());
+        }
+        Integer recordFrames = Integer.getInteger("catpoint.recordFrames");
+        if (recordFrames != null) {
+            securityService.getCameraRegistry().enableRecording(recordFrames,
+                    FrameRingBuffer.DEFAULT_MAX_FRAME_BYTES, recordFrames / 2);
+        }
+        return securityService;
+    }
+
+    private SecurityRepository createSecurityRepository() {
+        String typeName = System.getProperty("catpoint.repository", RepositoryType.PREFERENCES.name());
+        RepositoryType type;
+        try {
+            type = RepositoryType.valueOf(typeName);
+        } catch (IllegalArgumentException e) {
+            log.error("Unknown repository type {}, expected one of {}, using {}",
+                    typeName, Arrays.toString(RepositoryType.values()), RepositoryType.PREFERENCES);
+            type = RepositoryType.PREFERENCES;
+        }
+        Path dataDirectory = Path.of(System.getProperty("catpoint.dataDir", System.getProperty("user.home") + "/.catpoint"));
+        SecurityRepository repository = type.create(dataDirectory);
+
+        boolean batchWrites = Boolean.getBoolean("catpoint.writeBehind");
+        repositoryDescription = type + (type == RepositoryType.PREFERENCES ? "" : " in " + dataDirectory)
+                + (batchWrites ? ", write-behind" : "");
+        log.info("Using the {} repository", repositoryDescription);
+        if (batchWrites) {
+            WriteBehindSecurityRepository writeBehind = new WriteBehindSecurityRepository(repository);
+            writeBehind.closeOnShutdown();
+            return writeBehind;
+        }
+        if (repository instanceof AutoCloseable closeable) {
+            RepositoryType closedType = type;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    log.error("Unable to close the {} repository, recent changes may be lost", closedType, e);
+                }
+            }));
+        }
+        return repository;
     }
 }
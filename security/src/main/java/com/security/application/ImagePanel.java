@@ -1,26 +1,47 @@
 package com.security.application;
 
 import com.security.data.AlarmStatus;
+import com.security.service.Camera;
+import com.security.service.CameraFrame;
+import com.security.service.FrameRingBuffer;
 import com.security.service.SecurityService;
 import com.security.service.StyleService;
+import com.udacity.catpoint.image.service.ImageInput;
+import com.udacity.catpoint.image.service.PixelPreprocessor;
 import net.miginfocom.swing.MigLayout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.*;
-import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /** Panel containing the 'camera' output. Allows users to 'refresh' the camera
  * by uploading their own picture, and 'scan' the picture, sending it for image analysis
  */
 public class ImagePanel extends JPanel implements StatusListener {
+    private static final Logger log = LoggerFactory.getLogger(ImagePanel.class);
+
     private SecurityService securityService;
 
     private JLabel cameraHeader;
     private JLabel cameraLabel;
-    private BufferedImage currentCameraImage;
+    private JComboBox<String> cameraSelector;
+    //latest picture of each camera
+    private final Map<String, CameraFrame> cameraFrames = new HashMap<>();
+
+    //scales pictures for the preview
+    private final PixelPreprocessor preprocessor = PixelPreprocessor.best();
 
     private int IMAGE_WIDTH = 300;
     private int IMAGE_HEIGHT = 225;
@@ -29,7 +50,7 @@ public class ImagePanel extends JPanel implements StatusListener {
         super();
         setLayout(new MigLayout());
         this.securityService = securityService;
-        securityService.addStatusListener(this);
+        securityService.addStatusListener(this, SwingUtilities::invokeLater);
 
         cameraHeader = new JLabel("Camera Feed");
         cameraHeader.setFont(StyleService.HEADING_FONT);
@@ -39,6 +60,16 @@ public class ImagePanel extends JPanel implements StatusListener {
         cameraLabel.setPreferredSize(new Dimension(IMAGE_WIDTH, IMAGE_HEIGHT));
         cameraLabel.setBorder(BorderFactory.createLineBorder(Color.DARK_GRAY));
 
+        //one entry per registered camera, pictures are taken and scanned for the selected one
+        cameraSelector = new JComboBox<>();
+        for (Camera camera : securityService.getCameraRegistry().getCameras()) {
+            cameraSelector.addItem(camera.getId());
+        }
+        if (cameraSelector.getItemCount() == 0) {
+            cameraSelector.addItem(SecurityService.DEFAULT_CAMERA);
+        }
+        cameraSelector.addActionListener(e -> showPreview(cameraFrames.get(selectedCamera())));
+
         //button allowing users to select a file to be the current camera image
         JButton addPictureButton = new JButton("Refresh Camera");
         addPictureButton.addActionListener(e -> {
@@ -50,10 +81,12 @@ public class ImagePanel extends JPanel implements StatusListener {
                 return;
             }
             try {
-                currentCameraImage = ImageIO.read(chooser.getSelectedFile());
-                Image tmp = new ImageIcon(currentCameraImage).getImage();
-                cameraLabel.setIcon(new ImageIcon(tmp.getScaledInstance(IMAGE_WIDTH, IMAGE_HEIGHT, Image.SCALE_SMOOTH)));
-            } catch (IOException |NullPointerException ioe) {
+                //keep the file encoded for scanning, only the preview needs it decoded
+                ImageInput selected = ImageInput.ofFile(chooser.getSelectedFile().toPath());
+                CameraFrame frame = new CameraFrame(selectedCamera(), Instant.now(), selected);
+                showPreview(frame);
+                cameraFrames.put(frame.getCameraId(), frame);
+            } catch (IOException | UncheckedIOException ioe) {
                 JOptionPane.showMessageDialog(null, "Invalid image selected.");
             }
             repaint();
@@ -61,14 +94,93 @@ public class ImagePanel extends JPanel implements StatusListener {
 
         //button that sends the image to the image service
         JButton scanPictureButton = new JButton("Scan Picture");
+        //the scan runs in the background, the result comes back through catDetected
         scanPictureButton.addActionListener(e -> {
-            securityService.processImage(currentCameraImage);
+            CameraFrame frame = cameraFrames.get(selectedCamera());
+            if (frame == null) {
+                cameraHeader.setText("Camera Feed - No Picture");
+                return;
+            }
+            cameraHeader.setText("Camera Feed - Scanning...");
+            securityService.processImage(frame).whenComplete((catDetected, error) -> {
+                if (error != null) {
+                    SwingUtilities.invokeLater(() -> cameraHeader.setText(error instanceof CancellationException
+                            ? "Camera Feed" : "Camera Feed - Scan Failed"));
+                } else if (catDetected == null) {
+                    SwingUtilities.invokeLater(() -> cameraHeader.setText("Camera Feed - Not Scanned"));
+                }
+            });
         });
 
         add(cameraHeader, "span 3, wrap");
         add(cameraLabel, "span 3, wrap");
+        add(cameraSelector);
         add(addPictureButton);
         add(scanPictureButton);
+
+        //button that saves the selected camera's recording, shown only when cameras record
+        if (securityService.getCameraRegistry().getCameras().stream().anyMatch(c -> c.getRecording() != null)) {
+            JButton exportButton = new JButton("Export Recording");
+            exportButton.addActionListener(e -> exportRecording(exportButton));
+            add(exportButton, "newline");
+        }
+    }
+
+    /**
+     * Writes the selected camera's recorded frames to a chosen directory, then lets it record again.
+     * The files are written off the event dispatch thread, with the button disabled meanwhile.
+     */
+    private void exportRecording(JButton exportButton) {
+        Camera camera = securityService.getCameraRegistry().getCamera(selectedCamera());
+        FrameRingBuffer recording = camera == null ? null : camera.getRecording();
+        if (recording == null || recording.size() == 0) {
+            JOptionPane.showMessageDialog(null, "Nothing recorded.");
+            return;
+        }
+        JFileChooser chooser = new JFileChooser();
+        chooser.setCurrentDirectory(new File("."));
+        chooser.setDialogTitle("Select Directory");
+        chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        if(chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path directory = chooser.getSelectedFile().toPath().resolve(camera.getId());
+        exportButton.setEnabled(false);
+        CompletableFuture.supplyAsync(() -> {
+            try {
+                List<Path> files = recording.export(directory);
+                recording.release();
+                return files;
+            } catch (IOException ioe) {
+                throw new UncheckedIOException(ioe);
+            }
+        }).whenComplete((files, error) -> SwingUtilities.invokeLater(() -> {
+            exportButton.setEnabled(true);
+            if (error == null) {
+                JOptionPane.showMessageDialog(null, files.size() + " frames saved to " + directory);
+                return;
+            }
+            Throwable cause = error;
+            while ((cause instanceof CompletionException || cause instanceof UncheckedIOException)
+                    && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            log.error("Unable to export the recording of camera {} to {}", camera.getId(), directory, cause);
+            JOptionPane.showMessageDialog(null, "Could not save the recording to " + directory + ": "
+                    + cause.getMessage(), "Export Failed", JOptionPane.ERROR_MESSAGE);
+        }));
+    }
+
+    private String selectedCamera() {
+        return (String) cameraSelector.getSelectedItem();
+    }
+
+    private void showPreview(CameraFrame frame) {
+        if (frame == null) {
+            cameraLabel.setIcon(null);
+            return;
+        }
+        cameraLabel.setIcon(new ImageIcon(preprocessor.scale(frame.getImage().getImage(), IMAGE_WIDTH, IMAGE_HEIGHT)));
     }
 
     @Override
@@ -4,18 +4,30 @@ import com.security.data.Sensor;
 import com.security.data.AlarmStatus;
 import com.security.data.SensorType;
 import com.security.service.SecurityService;
+import com.security.service.SensorEvent;
 import com.security.service.StyleService;
 import net.miginfocom.swing.MigLayout;
 
 import javax.swing.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * Panel that allows users to add sensors to their system. Sensors may be
  * manually set to "active" and "inactive" to test the system.
+ *
+ * The sensor list is a table, so only the visible rows are rendered and a sensor changing
+ * only repaints its own row, see {@link SensorTableModel}.
  */
 public class SensorPanel extends JPanel implements StatusListener{
 
+    public static final int DEFAULT_MAX_SENSORS = 4;
+
     private SecurityService securityService;
+    private final int maxSensors;
 
     private JLabel panelLabel = new JLabel("Sensor Management");
     private JLabel newSensorName = new JLabel("Name:");
@@ -23,14 +35,25 @@ public class SensorPanel extends JPanel implements StatusListener{
     private JTextField newSensorNameField = new JTextField();
     private JComboBox newSensorTypeDropdown = new JComboBox(SensorType.values());
     private JButton addNewSensorButton = new JButton("Add New Sensor");
+    private JButton toggleSensorButton = new JButton("Activate / Deactivate");
+    private JButton removeSensorButton = new JButton("Remove Sensor");
 
-    private JPanel sensorListPanel;
+    private SensorTableModel sensorTableModel;
+    private JTable sensorTable;
     private JPanel newSensorPanel;
 
     public SensorPanel(SecurityService securityService) {
+        this(securityService, DEFAULT_MAX_SENSORS);
+    }
+
+    /**
+     * @param maxSensors The most sensors that can be added from this panel
+     */
+    public SensorPanel(SecurityService securityService, int maxSensors) {
         super();
         setLayout(new MigLayout());
         this.securityService = securityService;
+        this.maxSensors = maxSensors;
 
         panelLabel.setFont(StyleService.HEADING_FONT);
         addNewSensorButton.addActionListener(e ->
@@ -38,16 +61,19 @@ public class SensorPanel extends JPanel implements StatusListener{
                         SensorType.valueOf(newSensorTypeDropdown.getSelectedItem().toString()))));
 
         newSensorPanel = buildAddSensorPanel();
-        sensorListPanel = new JPanel();
-        sensorListPanel.setLayout(new MigLayout());
+        sensorTableModel = new SensorTableModel(securityService::getSortedSensors);
+        sensorTable = buildSensorTable();
 
-        updateSensorList(sensorListPanel);
+        toggleSensorButton.addActionListener(e -> toggleSelectedSensors());
+        removeSensorButton.addActionListener(e -> selectedSensors().forEach(this::removeSensor));
 
         add(panelLabel, "wrap");
         add(newSensorPanel, "span");
-        add(sensorListPanel, "span");
+        add(new JScrollPane(sensorTable), "span, width 500:500:500, height 100:150:400");
+        add(toggleSensorButton, "split 2");
+        add(removeSensorButton, "wrap");
         // Register this instance as a listener with the SecurityService
-        securityService.addStatusListener(this);
+        securityService.addStatusListener(this, SwingUtilities::invokeLater);
     }
 
     /**
@@ -65,60 +91,74 @@ public class SensorPanel extends JPanel implements StatusListener{
     }
 
     /**
-     * Requests the current list of sensors and updates the provided panel to display them. Sensors
-     * will display in the order that they are created.
-     * @param p The Panel to populate with the current list of sensors
+     * Builds the table listing the sensors. Double clicking a row toggles that sensor.
      */
-    private void updateSensorList(JPanel p) {
-        p.removeAll();
-        securityService.getSensors().stream().sorted().forEach(s -> {
-            JLabel sensorLabel = new JLabel(String.format("%s(%s): %s", s.getName(),  s.getSensorType().toString(),(s.getActive() ? "Active" : "Inactive")));
-            JButton sensorToggleButton = new JButton((s.getActive() ? "Deactivate" : "Activate"));
-            JButton sensorRemoveButton = new JButton("Remove Sensor");
-
-            sensorToggleButton.addActionListener(e -> setSensorActivity(s, !s.getActive()) );
-            sensorRemoveButton.addActionListener(e -> removeSensor(s));
-
-            //hard code some sizes, tsk tsk
-            p.add(sensorLabel, "width 300:300:300");
-            p.add(sensorToggleButton, "width 100:100:100");
-            p.add(sensorRemoveButton, "wrap");
+    private JTable buildSensorTable() {
+        JTable table = new JTable(sensorTableModel);
+        table.setFillsViewportHeight(true);
+        table.getColumnModel().getColumn(0).setPreferredWidth(250);
+        table.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int row = table.rowAtPoint(e.getPoint());
+                if (e.getClickCount() == 2 && row >= 0) {
+                    Sensor sensor = sensorTableModel.getSensorAt(table.convertRowIndexToModel(row));
+                    setSensorActivity(sensor, !sensor.getActive());
+                }
+            }
         });
+        return table;
+    }
 
-        repaint();
-        revalidate();
+    private List<Sensor> selectedSensors() {
+        List<Sensor> sensors = new ArrayList<>();
+        for (int row : sensorTable.getSelectedRows()) {
+            sensors.add(sensorTableModel.getSensorAt(sensorTable.convertRowIndexToModel(row)));
+        }
+        return sensors;
     }
 
     /**
-     * Asks the securityService to change a sensor activation status and then rebuilds the current sensor list
+     * Toggles all selected sensors as one batch, so the alarm logic runs once for the whole selection
+     */
+    private void toggleSelectedSensors() {
+        List<SensorEvent> events = new ArrayList<>();
+        for (Sensor sensor : selectedSensors()) {
+            events.add(new SensorEvent(sensor, !sensor.getActive()));
+        }
+        securityService.changeSensorActivationStatus(events);
+    }
+
+    /**
+     * Asks the securityService to change a sensor activation status. The row is repainted when the
+     * change is reported back through {@link #sensorsChanged}.
      * @param sensor The sensor to update
      * @param isActive The sensor's activation status
      */
     private void setSensorActivity(Sensor sensor, Boolean isActive) {
         securityService.changeSensorActivationStatus(sensor, isActive);
-        updateSensorList(sensorListPanel);
     }
 
     /**
-     * Adds a sensor to the securityService and then rebuilds the sensor list
+     * Adds a sensor to the securityService and then inserts its row
      * @param sensor The sensor to add
      */
     private void addSensor(Sensor sensor) {
-        if(securityService.getSensors().size() < 4) {
+        if(securityService.getSensors().size() < maxSensors) {
             securityService.addSensor(sensor);
-            updateSensorList(sensorListPanel);
+            sensorTableModel.sensorAdded(sensor);
         } else {
-            JOptionPane.showMessageDialog(null, "To add more than 4 sensors, please subscribe to our Premium Membership!");
+            JOptionPane.showMessageDialog(null, "To add more than " + maxSensors + " sensors, please subscribe to our Premium Membership!");
         }
     }
 
     /**
-     * Remove a sensor from the securityService and then rebuild the sensor list
+     * Remove a sensor from the securityService and then remove its row
      * @param sensor The sensor to remove
      */
     private void removeSensor(Sensor sensor) {
         securityService.removeSensor(sensor);
-        updateSensorList(sensorListPanel);
+        sensorTableModel.sensorRemoved(sensor);
     }
 
     @Override
@@ -133,6 +173,11 @@ public class SensorPanel extends JPanel implements StatusListener{
 
     @Override
     public void sensorStatusChanged() {
-        updateSensorList(sensorListPanel); // Update the sensor list when sensor statuses change
+        sensorTableModel.refresh(); // Reload the sensor list when sensor statuses change
+    }
+
+    @Override
+    public void sensorsChanged(Collection<Sensor> changedSensors) {
+        sensorTableModel.sensorsChanged(changedSensors);
     }
 }
@@ -0,0 +1,169 @@
+package com.security.application;
+
+import com.security.data.Sensor;
+
+import javax.swing.Timer;
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Table model for the sensor list. Rows are kept in display order and updated one sensor at a time,
+ * so a sensor changing only repaints its own row. Changes reported through {@link #sensorsChanged} and
+ * {@link #refresh()} are collected and turned into table events at most once per {@value #FRAME_MILLIS} ms.
+ *
+ * Like any Swing model, this must only be used on the event dispatch thread.
+ */
+class SensorTableModel extends AbstractTableModel {
+
+    static final int FRAME_MILLIS = 16;
+
+    private static final String[] COLUMNS = {"Name", "Type", "Status"};
+
+    private final Supplier<List<Sensor>> sensorSource;
+    private final List<Sensor> rows = new ArrayList<>();
+    private final Map<UUID, Integer> rowsById = new HashMap<>();
+
+    private final Timer frameTimer;
+    private final Set<UUID> changedSensors = new HashSet<>();
+    private boolean refreshPending;
+
+    /**
+     * @param sensorSource supplies all sensors in display order, used when the whole table is reloaded
+     */
+    SensorTableModel(Supplier<List<Sensor>> sensorSource) {
+        this.sensorSource = sensorSource;
+        this.frameTimer = new Timer(FRAME_MILLIS, e -> flush());
+        this.frameTimer.setRepeats(false);
+        reload();
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        Sensor sensor = rows.get(rowIndex);
+        return switch (columnIndex) {
+            case 0 -> sensor.getName();
+            case 1 -> sensor.getSensorType();
+            default -> sensor.getActive() ? "Active" : "Inactive";
+        };
+    }
+
+    Sensor getSensorAt(int rowIndex) {
+        return rows.get(rowIndex);
+    }
+
+    void sensorAdded(Sensor sensor) {
+        int row = Collections.binarySearch(rows, sensor);
+        if (row >= 0) {
+            return;
+        }
+        row = -row - 1;
+        rows.add(row, sensor);
+        reindexFrom(row);
+        fireTableRowsInserted(row, row);
+    }
+
+    void sensorRemoved(Sensor sensor) {
+        Integer row = rowsById.remove(sensor.getSensorId());
+        if (row == null) {
+            return;
+        }
+        rows.remove((int) row);
+        changedSensors.remove(sensor.getSensorId());
+        reindexFrom(row);
+        fireTableRowsDeleted(row, row);
+    }
+
+    /**
+     * Schedules a repaint of the rows of the given sensors.
+     */
+    void sensorsChanged(Collection<Sensor> sensors) {
+        if (!refreshPending) {
+            for (Sensor sensor : sensors) {
+                changedSensors.add(sensor.getSensorId());
+            }
+        }
+        scheduleFlush();
+    }
+
+    /**
+     * Schedules reloading every row from the sensor source.
+     */
+    void refresh() {
+        refreshPending = true;
+        changedSensors.clear();
+        scheduleFlush();
+    }
+
+    /**
+     * Turns the changes collected since the last frame into table events. Called by the frame timer.
+     */
+    void flush() {
+        if (refreshPending) {
+            refreshPending = false;
+            reload();
+            return;
+        }
+        if (changedSensors.isEmpty()) {
+            return;
+        }
+        BitSet changedRows = new BitSet(rows.size());
+        for (UUID id : changedSensors) {
+            Integer row = rowsById.get(id);
+            if (row != null) {
+                changedRows.set(row);
+            }
+        }
+        changedSensors.clear();
+        //one event per run of adjacent rows
+        for (int start = changedRows.nextSetBit(0); start >= 0; ) {
+            int end = changedRows.nextClearBit(start);
+            fireTableRowsUpdated(start, end - 1);
+            start = changedRows.nextSetBit(end);
+        }
+    }
+
+    private void scheduleFlush() {
+        if (!frameTimer.isRunning()) {
+            frameTimer.start();
+        }
+    }
+
+    private void reload() {
+        rows.clear();
+        rows.addAll(sensorSource.get());
+        rowsById.clear();
+        reindexFrom(0);
+        fireTableDataChanged();
+    }
+
+    private void reindexFrom(int row) {
+        for (int i = row; i < rows.size(); i++) {
+            rowsById.put(rows.get(i).getSensorId(), i);
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package com.security.application;
 
 import com.security.data.AlarmStatus;
+import com.security.data.Sensor;
+
+import java.util.Collection;
 
 /**
  * Identifies a component that should be notified whenever the system status changes
@@ -9,4 +12,13 @@ public interface StatusListener {
     void notify(AlarmStatus status);
     void catDetected(boolean catDetected);
     void sensorStatusChanged();
+
+    /**
+     * Called with the sensors whose activation state changed; after a batch of changes it is called once,
+     * with the sensors that differ from before the batch. By default this is treated like any other sensor
+     * status change.
+     */
+    default void sensorsChanged(Collection<Sensor> changedSensors) {
+        sensorStatusChanged();
+    }
 }
@@ -0,0 +1,45 @@
+package com.security.data;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Keeps track of which sensors are currently active, so repositories can answer
+ * {@link SecurityRepository#getActiveSensorCount()} without scanning every sensor.
+ * Repositories must call {@link #track(Sensor)} whenever a sensor is added or updated
+ * and {@link #untrack(Sensor)} when one is removed.
+ */
+final class ActiveSensorTracker {
+
+    private final Map<UUID, Sensor> activeSensors = new HashMap<>();
+    private final Collection<Sensor> view = Collections.unmodifiableCollection(activeSensors.values());
+
+    /**
+     * Records the sensor's current activation state.
+     */
+    void track(Sensor sensor) {
+        if (Boolean.TRUE.equals(sensor.getActive())) {
+            activeSensors.put(sensor.getSensorId(), sensor);
+        } else {
+            activeSensors.remove(sensor.getSensorId());
+        }
+    }
+
+    void untrack(Sensor sensor) {
+        activeSensors.remove(sensor.getSensorId());
+    }
+
+    int count() {
+        return activeSensors.size();
+    }
+
+    /**
+     * @return live, unmodifiable view of the active sensors
+     */
+    Collection<Sensor> sensors() {
+        return view;
+    }
+}
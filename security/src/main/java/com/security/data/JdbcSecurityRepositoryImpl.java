@@ -0,0 +1,224 @@
+package com.security.data;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Repository implementation backed by an embedded, in-process SQL database (H2 in file mode by default).
+ * Sensors live in a {@code sensors} table keyed by {@code sensor_id}, so updating a sensor is a single-row
+ * upsert. Alarm and arming status live in the single row of the {@code system_state} table.
+ *
+ * All statements are prepared once and reused for the lifetime of the repository. State is also kept in
+ * local memory, so reads never hit the database.
+ */
+public class JdbcSecurityRepositoryImpl implements SecurityRepository, AutoCloseable {
+
+    private static final String CREATE_SENSORS = "CREATE TABLE IF NOT EXISTS sensors ("
+            + "sensor_id UUID PRIMARY KEY, name VARCHAR(255), sensor_type VARCHAR(16), active BOOLEAN NOT NULL)";
+    private static final String CREATE_STATE = "CREATE TABLE IF NOT EXISTS system_state ("
+            + "id INT PRIMARY KEY, alarm_status VARCHAR(16) NOT NULL, arming_status VARCHAR(16) NOT NULL)";
+    private static final String INIT_STATE = "INSERT INTO system_state (id, alarm_status, arming_status) VALUES (1, 'NO_ALARM', 'DISARMED')";
+
+    private static final String UPSERT_SENSOR = "MERGE INTO sensors (sensor_id, name, sensor_type, active) KEY (sensor_id) VALUES (?, ?, ?, ?)";
+    private static final String DELETE_SENSOR = "DELETE FROM sensors WHERE sensor_id = ?";
+    private static final String UPDATE_ALARM = "UPDATE system_state SET alarm_status = ? WHERE id = 1";
+    private static final String UPDATE_ARMING = "UPDATE system_state SET arming_status = ? WHERE id = 1";
+
+    private final Connection connection;
+    private final PreparedStatement upsertSensor;
+    private final PreparedStatement deleteSensor;
+    private final PreparedStatement updateAlarm;
+    private final PreparedStatement updateArming;
+
+    private final SensorIndex sensors = new SensorIndex();
+    private AlarmStatus alarmStatus;
+    private ArmingStatus armingStatus;
+
+    /**
+     * @param jdbcUrl url of an embedded database, for example {@code jdbc:h2:file:/home/me/.catpoint/catpoint}
+     */
+    public JdbcSecurityRepositoryImpl(String jdbcUrl) {
+        try {
+            connection = DriverManager.getConnection(jdbcUrl);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(CREATE_SENSORS);
+                statement.execute(CREATE_STATE);
+                int stateRows;
+                try (ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM system_state")) {
+                    rs.next();
+                    stateRows = rs.getInt(1);
+                }
+                if (stateRows == 0) {
+                    statement.execute(INIT_STATE);
+                }
+            }
+            upsertSensor = connection.prepareStatement(UPSERT_SENSOR);
+            deleteSensor = connection.prepareStatement(DELETE_SENSOR);
+            updateAlarm = connection.prepareStatement(UPDATE_ALARM);
+            updateArming = connection.prepareStatement(UPDATE_ARMING);
+            load();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Unable to open database " + jdbcUrl, e);
+        }
+    }
+
+    @Override
+    public void addSensor(Sensor sensor) {
+        sensors.put(sensor);
+        try {
+            bindSensor(sensor);
+            upsertSensor.executeUpdate();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Unable to add sensor", e);
+        }
+    }
+
+    @Override
+    public void removeSensor(Sensor sensor) {
+        sensors.remove(sensor);
+        try {
+            deleteSensor.setObject(1, sensor.getSensorId());
+            deleteSensor.executeUpdate();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Unable to remove sensor", e);
+        }
+    }
+
+    @Override
+    public void updateSensor(Sensor sensor) {
+        sensors.put(sensor);
+        try {
+            bindSensor(sensor);
+            upsertSensor.executeUpdate();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Unable to update sensor", e);
+        }
+    }
+
+    /**
+     * Upserts all sensors with one JDBC batch in a single transaction.
+     */
+    @Override
+    public void updateSensors(Collection<Sensor> sensorsToUpdate) {
+        sensorsToUpdate.forEach(sensors::put);
+        try {
+            connection.setAutoCommit(false);
+            try {
+                for (Sensor sensor : sensorsToUpdate) {
+                    bindSensor(sensor);
+                    upsertSensor.addBatch();
+                }
+                upsertSensor.executeBatch();
+                connection.commit();
+            } catch (SQLException e) {
+                upsertSensor.clearBatch();
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Unable to update sensors", e);
+        }
+    }
+
+    @Override
+    public void setAlarmStatus(AlarmStatus alarmStatus) {
+        this.alarmStatus = alarmStatus;
+        try {
+            updateAlarm.setString(1, alarmStatus.name());
+            updateAlarm.executeUpdate();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Unable to update alarm status", e);
+        }
+    }
+
+    @Override
+    public void setArmingStatus(ArmingStatus armingStatus) {
+        this.armingStatus = armingStatus;
+        try {
+            updateArming.setString(1, armingStatus.name());
+            updateArming.executeUpdate();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Unable to update arming status", e);
+        }
+    }
+
+    @Override
+    public Set<Sensor> getSensors() {
+        return sensors.sensors();
+    }
+
+    @Override
+    public Collection<Sensor> getActiveSensors() {
+        return sensors.activeSensors();
+    }
+
+    @Override
+    public int getActiveSensorCount() {
+        return sensors.activeCount();
+    }
+
+    @Override
+    public Sensor getSensor(UUID sensorId) {
+        return sensors.get(sensorId);
+    }
+
+    @Override
+    public List<Sensor> getSortedSensors() {
+        return sensors.sorted();
+    }
+
+    @Override
+    public AlarmStatus getAlarmStatus() {
+        return alarmStatus;
+    }
+
+    @Override
+    public ArmingStatus getArmingStatus() {
+        return armingStatus;
+    }
+
+    @Override
+    public void close() {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Unable to close database", e);
+        }
+    }
+
+    private void load() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            try (ResultSet rs = statement.executeQuery("SELECT sensor_id, name, sensor_type, active FROM sensors")) {
+                while (rs.next()) {
+                    String type = rs.getString("sensor_type");
+                    Sensor sensor = new Sensor(rs.getString("name"), type == null ? null : SensorType.valueOf(type));
+                    sensor.setSensorId(rs.getObject("sensor_id", UUID.class));
+                    sensor.setActive(rs.getBoolean("active"));
+                    sensors.put(sensor);
+                }
+            }
+            try (ResultSet rs = statement.executeQuery("SELECT alarm_status, arming_status FROM system_state WHERE id = 1")) {
+                rs.next();
+                alarmStatus = AlarmStatus.valueOf(rs.getString("alarm_status"));
+                armingStatus = ArmingStatus.valueOf(rs.getString("arming_status"));
+            }
+        }
+    }
+
+    private void bindSensor(Sensor sensor) throws SQLException {
+        upsertSensor.setObject(1, sensor.getSensorId());
+        upsertSensor.setString(2, sensor.getName());
+        upsertSensor.setString(3, sensor.getSensorType() == null ? null : sensor.getSensorType().name());
+        upsertSensor.setBoolean(4, Boolean.TRUE.equals(sensor.getActive()));
+    }
+}
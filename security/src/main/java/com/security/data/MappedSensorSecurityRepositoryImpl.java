@@ -0,0 +1,352 @@
+package com.security.data;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Repository implementation for large sensor fleets. Sensors are stored as fixed-size records in a
+ * memory-mapped file, so an update is an in-place write of a few bytes into one record and loading
+ * the repository only has to walk the mapped records instead of parsing JSON.
+ *
+ * The sensor file starts with a {@value #HEADER_BYTES} byte header followed by {@value #RECORD_BYTES} byte records:
+ * <pre>
+ *   header: int magic, int version, int alarm ordinal, int arming ordinal, int slots used
+ *   record: long uuid msb, long uuid lsb, long name offset, byte type ordinal, byte active, byte in use
+ * </pre>
+ * Names are variable length, so they live in a separate append-only file of {@code [int length][utf-8 bytes]}
+ * entries that records point into. A name is only appended when a sensor is added or renamed. Slots of
+ * removed sensors are reused by later additions.
+ *
+ * Writes go to the page cache and are written back by the OS; call {@link #flush()} to force them to disk.
+ *
+ * Both files are mapped as a single buffer, so neither can grow past 2 GB, which is {@value #MAX_SLOTS}
+ * sensors. Adding a sensor beyond that, or a name that would take the name file past it, fails.
+ */
+public class MappedSensorSecurityRepositoryImpl implements SecurityRepository, Flushable, AutoCloseable {
+
+    static final String SENSOR_FILE = "sensors.dat";
+    static final String NAME_FILE = "sensor-names.dat";
+
+    static final int HEADER_BYTES = 32;
+    static final int RECORD_BYTES = 32;
+
+    private static final int MAGIC = 0x43415453; //"CATS"
+    private static final int VERSION = 1;
+
+    static final int ALARM_OFFSET = 8;
+    static final int ARMING_OFFSET = 12;
+    static final int SLOTS_USED_OFFSET = 16;
+
+    private static final int NAME_OFFSET = 16;
+    static final int TYPE_OFFSET = 24;
+    private static final int ACTIVE_OFFSET = 25;
+    private static final int IN_USE_OFFSET = 26;
+
+    private static final byte NO_SENSOR_TYPE = -1;
+    private static final int INITIAL_SLOTS = 1024;
+    static final int MAX_SLOTS = (Integer.MAX_VALUE - HEADER_BYTES) / RECORD_BYTES;
+
+    private final FileChannel sensorChannel;
+    private final FileChannel nameChannel;
+    private MappedByteBuffer records;
+
+    private final SensorIndex sensors = new SensorIndex();
+    private final Map<UUID, Integer> slotsById = new HashMap<>();
+    private final List<String> slotNames = new ArrayList<>();
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    private int slotsUsed;
+
+    private AlarmStatus alarmStatus;
+    private ArmingStatus armingStatus;
+
+    /**
+     * @param directory Directory holding the sensor and name files. Created if missing.
+     */
+    public MappedSensorSecurityRepositoryImpl(Path directory) {
+        try {
+            Files.createDirectories(directory);
+            sensorChannel = FileChannel.open(directory.resolve(SENSOR_FILE), CREATE, READ, WRITE);
+            nameChannel = FileChannel.open(directory.resolve(NAME_FILE), CREATE, READ, WRITE);
+            load();
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to open repository in " + directory, ioe);
+        }
+    }
+
+    @Override
+    public void addSensor(Sensor sensor) {
+        if (slotsById.containsKey(sensor.getSensorId())) {
+            updateSensor(sensor);
+            return;
+        }
+        int slot = freeSlots.isEmpty() ? nextSlot() : freeSlots.pop();
+        int position = recordPosition(slot);
+        records.putLong(position, sensor.getSensorId().getMostSignificantBits());
+        records.putLong(position + 8, sensor.getSensorId().getLeastSignificantBits());
+        records.putLong(position + NAME_OFFSET, appendName(sensor.getName()));
+        records.put(position + TYPE_OFFSET, typeOrdinal(sensor));
+        records.put(position + ACTIVE_OFFSET, activeFlag(sensor));
+        //marked in use last, so a half-written record is never loaded
+        records.put(position + IN_USE_OFFSET, (byte) 1);
+
+        slotNames.set(slot, sensor.getName());
+        slotsById.put(sensor.getSensorId(), slot);
+        sensors.put(sensor);
+    }
+
+    @Override
+    public void removeSensor(Sensor sensor) {
+        Integer slot = slotsById.remove(sensor.getSensorId());
+        if (slot == null) {
+            return;
+        }
+        records.put(recordPosition(slot) + IN_USE_OFFSET, (byte) 0);
+        slotNames.set(slot, null);
+        freeSlots.push(slot);
+        sensors.remove(sensor);
+    }
+
+    @Override
+    public void updateSensor(Sensor sensor) {
+        Integer slot = slotsById.get(sensor.getSensorId());
+        if (slot == null) {
+            addSensor(sensor);
+            return;
+        }
+        int position = recordPosition(slot);
+        if (!Objects.equals(slotNames.get(slot), sensor.getName())) {
+            records.putLong(position + NAME_OFFSET, appendName(sensor.getName()));
+            slotNames.set(slot, sensor.getName());
+        }
+        records.put(position + TYPE_OFFSET, typeOrdinal(sensor));
+        records.put(position + ACTIVE_OFFSET, activeFlag(sensor));
+
+        //replace the stored instance in case the caller passed a different object for the same sensor
+        sensors.put(sensor);
+    }
+
+    @Override
+    public void setAlarmStatus(AlarmStatus alarmStatus) {
+        this.alarmStatus = alarmStatus;
+        records.putInt(ALARM_OFFSET, alarmStatus.ordinal());
+    }
+
+    @Override
+    public void setArmingStatus(ArmingStatus armingStatus) {
+        this.armingStatus = armingStatus;
+        records.putInt(ARMING_OFFSET, armingStatus.ordinal());
+    }
+
+    @Override
+    public Set<Sensor> getSensors() {
+        return sensors.sensors();
+    }
+
+    @Override
+    public Collection<Sensor> getActiveSensors() {
+        return sensors.activeSensors();
+    }
+
+    @Override
+    public int getActiveSensorCount() {
+        return sensors.activeCount();
+    }
+
+    @Override
+    public Sensor getSensor(UUID sensorId) {
+        return sensors.get(sensorId);
+    }
+
+    @Override
+    public List<Sensor> getSortedSensors() {
+        return sensors.sorted();
+    }
+
+    @Override
+    public AlarmStatus getAlarmStatus() {
+        return alarmStatus;
+    }
+
+    @Override
+    public ArmingStatus getArmingStatus() {
+        return armingStatus;
+    }
+
+    /**
+     * Forces the mapped records and the name file to disk.
+     */
+    @Override
+    public void flush() {
+        try {
+            records.force();
+            nameChannel.force(false);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to sync sensor files", ioe);
+        }
+    }
+
+    @Override
+    public void close() {
+        flush();
+        try {
+            sensorChannel.close();
+            nameChannel.close();
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to close sensor files", ioe);
+        }
+    }
+
+    private void load() throws IOException {
+        boolean existing = sensorChannel.size() >= HEADER_BYTES;
+        int capacity = existing ? (int) ((sensorChannel.size() - HEADER_BYTES) / RECORD_BYTES) : INITIAL_SLOTS;
+        map(Math.max(capacity, INITIAL_SLOTS));
+
+        if (!existing) {
+            records.putInt(0, MAGIC);
+            records.putInt(4, VERSION);
+            setAlarmStatus(AlarmStatus.NO_ALARM);
+            setArmingStatus(ArmingStatus.DISARMED);
+            records.putInt(SLOTS_USED_OFFSET, 0);
+            return;
+        }
+        if (records.getInt(0) != MAGIC || records.getInt(4) != VERSION) {
+            throw new IOException("Not a sensor file, or written by an incompatible version");
+        }
+        alarmStatus = value(AlarmStatus.values(), records.getInt(ALARM_OFFSET));
+        armingStatus = value(ArmingStatus.values(), records.getInt(ARMING_OFFSET));
+        slotsUsed = records.getInt(SLOTS_USED_OFFSET);
+        if (slotsUsed < 0 || slotsUsed > capacity) {
+            throw new IOException("Corrupt sensor file");
+        }
+
+        if (nameChannel.size() > Integer.MAX_VALUE) {
+            throw new IOException("Sensor name file is larger than 2 GB");
+        }
+        ByteBuffer names = nameChannel.map(FileChannel.MapMode.READ_ONLY, 0, nameChannel.size());
+        for (int slot = 0; slot < slotsUsed; slot++) {
+            int position = recordPosition(slot);
+            if (records.get(position + IN_USE_OFFSET) == 0) {
+                slotNames.add(null);
+                freeSlots.push(slot);
+                continue;
+            }
+            String name = readName(names, records.getLong(position + NAME_OFFSET));
+            byte type = records.get(position + TYPE_OFFSET);
+
+            Sensor sensor = new Sensor(name, type == NO_SENSOR_TYPE ? null : value(SensorType.values(), type));
+            sensor.setSensorId(new UUID(records.getLong(position), records.getLong(position + 8)));
+            sensor.setActive(records.get(position + ACTIVE_OFFSET) != 0);
+
+            slotNames.add(name);
+            slotsById.put(sensor.getSensorId(), slot);
+            sensors.put(sensor);
+        }
+    }
+
+    /**
+     * @return the constant with the ordinal read from the sensor file
+     */
+    private static <E extends Enum<E>> E value(E[] values, int ordinal) throws IOException {
+        if (ordinal < 0 || ordinal >= values.length) {
+            throw new IOException("Corrupt sensor file");
+        }
+        return values[ordinal];
+    }
+
+    private int nextSlot() {
+        int slot = slotsUsed;
+        if (recordPosition(slot + 1) > records.capacity()) {
+            if (slot >= MAX_SLOTS) {
+                throw new IllegalStateException("Sensor file is full at " + MAX_SLOTS + " sensors");
+            }
+            try {
+                map((int) Math.min(2L * slot, MAX_SLOTS));
+            } catch (IOException ioe) {
+                throw new UncheckedIOException("Unable to grow sensor file", ioe);
+            }
+        }
+        slotsUsed++;
+        slotNames.add(null);
+        records.putInt(SLOTS_USED_OFFSET, slotsUsed);
+        return slot;
+    }
+
+    /**
+     * (Re)maps the sensor file with room for the given number of records, growing the file if needed.
+     * There is no way to unmap the previous buffer, it stays mapped until it is garbage collected. Since
+     * the capacity doubles each time, the stale mappings add up to less than the current one, so at worst
+     * twice the file size of address space is in use.
+     */
+    private void map(int slots) throws IOException {
+        if (records != null) {
+            records.force();
+        }
+        records = sensorChannel.map(FileChannel.MapMode.READ_WRITE, 0, recordPosition(slots));
+    }
+
+    private long appendName(String name) {
+        byte[] bytes = name == null ? new byte[0] : name.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer entry = ByteBuffer.allocate(Integer.BYTES + bytes.length);
+        entry.putInt(name == null ? -1 : bytes.length).put(bytes).flip();
+        try {
+            long offset = nameChannel.size();
+            if (offset + entry.remaining() > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Sensor name file is full");
+            }
+            while (entry.hasRemaining()) {
+                nameChannel.write(entry, offset + entry.position());
+            }
+            return offset;
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to write sensor name", ioe);
+        }
+    }
+
+    private static String readName(ByteBuffer names, long offset) throws IOException {
+        if (offset < 0 || offset > names.limit() - Integer.BYTES) {
+            throw new IOException("Sensor name offset " + offset + " is outside the name file");
+        }
+        int position = (int) offset;
+        int length = names.getInt(position);
+        if (length < 0) {
+            return null;
+        }
+        if (length > names.limit() - position - Integer.BYTES) {
+            throw new IOException("Sensor name at " + offset + " runs past the end of the name file");
+        }
+        byte[] bytes = new byte[length];
+        names.get(position + Integer.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int recordPosition(int slot) {
+        return HEADER_BYTES + slot * RECORD_BYTES;
+    }
+
+    private static byte typeOrdinal(Sensor sensor) {
+        return sensor.getSensorType() == null ? NO_SENSOR_TYPE : (byte) sensor.getSensorType().ordinal();
+    }
+
+    private static byte activeFlag(Sensor sensor) {
+        return (byte) (Boolean.TRUE.equals(sensor.getActive()) ? 1 : 0);
+    }
+}
@@ -0,0 +1,169 @@
+package com.security.data;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary encoding for the records kept in the write-ahead log and its snapshots.
+ *
+ * Every record is framed as {@code [int payloadLength][int crc32(payload)][payload]} so a torn
+ * or corrupted tail can be detected on recovery. The payload starts with a one byte record type:
+ * <ul>
+ *     <li>{@link #SENSOR_PUT}: uuid (2 longs), sensor type ordinal, active flag, utf-8 name</li>
+ *     <li>{@link #SENSOR_REMOVE}: uuid (2 longs)</li>
+ *     <li>{@link #ALARM_STATUS} / {@link #ARMING_STATUS}: enum ordinal</li>
+ * </ul>
+ */
+final class RecordCodec {
+
+    static final byte SENSOR_PUT = 1;
+    static final byte SENSOR_REMOVE = 2;
+    static final byte ALARM_STATUS = 3;
+    static final byte ARMING_STATUS = 4;
+
+    static final int HEADER_BYTES = 2 * Integer.BYTES;
+
+    //sanity limit so a corrupted length field can't make us allocate gigabytes
+    static final int MAX_PAYLOAD_BYTES = 128 * 1024;
+
+    static final int MAX_NAME_BYTES = 0xFFFF;
+
+    private static final byte NO_SENSOR_TYPE = -1;
+
+    private RecordCodec() {
+    }
+
+    /**
+     * Callback used while decoding a stream of records.
+     */
+    interface Visitor {
+        void sensorPut(Sensor sensor);
+        void sensorRemoved(UUID sensorId);
+        void alarmStatus(AlarmStatus alarmStatus);
+        void armingStatus(ArmingStatus armingStatus);
+    }
+
+    static ByteBuffer encodeSensorPut(ByteBuffer buffer, Sensor sensor) {
+        byte[] name = sensor.getName() == null ? new byte[0] : sensor.getName().getBytes(StandardCharsets.UTF_8);
+        if (name.length > MAX_NAME_BYTES) {
+            throw new IllegalArgumentException("Sensor name is too long to store: " + name.length + " bytes");
+        }
+        buffer = ensureCapacity(buffer, HEADER_BYTES + 1 + 2 * Long.BYTES + 2 + Short.BYTES + name.length);
+        int start = beginRecord(buffer, SENSOR_PUT);
+        buffer.putLong(sensor.getSensorId().getMostSignificantBits());
+        buffer.putLong(sensor.getSensorId().getLeastSignificantBits());
+        buffer.put(sensor.getSensorType() == null ? NO_SENSOR_TYPE : (byte) sensor.getSensorType().ordinal());
+        buffer.put((byte) (Boolean.TRUE.equals(sensor.getActive()) ? 1 : 0));
+        buffer.putShort((short) name.length);
+        buffer.put(name);
+        endRecord(buffer, start);
+        return buffer;
+    }
+
+    static ByteBuffer encodeSensorRemove(ByteBuffer buffer, UUID sensorId) {
+        buffer = ensureCapacity(buffer, HEADER_BYTES + 1 + 2 * Long.BYTES);
+        int start = beginRecord(buffer, SENSOR_REMOVE);
+        buffer.putLong(sensorId.getMostSignificantBits());
+        buffer.putLong(sensorId.getLeastSignificantBits());
+        endRecord(buffer, start);
+        return buffer;
+    }
+
+    static ByteBuffer encodeAlarmStatus(ByteBuffer buffer, AlarmStatus alarmStatus) {
+        return encodeOrdinal(buffer, ALARM_STATUS, alarmStatus.ordinal());
+    }
+
+    static ByteBuffer encodeArmingStatus(ByteBuffer buffer, ArmingStatus armingStatus) {
+        return encodeOrdinal(buffer, ARMING_STATUS, armingStatus.ordinal());
+    }
+
+    /**
+     * Decodes framed records from the buffer until it is exhausted or a torn/corrupt record is found.
+     * @return the position just after the last valid record, which is where a log should be truncated
+     */
+    static int decode(ByteBuffer buffer, Visitor visitor) {
+        CRC32 crc = new CRC32();
+        int validEnd = buffer.position();
+        while (buffer.remaining() >= HEADER_BYTES) {
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length <= 0 || length > MAX_PAYLOAD_BYTES || length > buffer.remaining()) {
+                break;
+            }
+            ByteBuffer payload = buffer.slice(buffer.position(), length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            try {
+                decodePayload(payload, visitor);
+            } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+                break;
+            }
+            buffer.position(buffer.position() + length);
+            validEnd = buffer.position();
+        }
+        return validEnd;
+    }
+
+    private static void decodePayload(ByteBuffer payload, Visitor visitor) {
+        byte type = payload.get();
+        switch (type) {
+            case SENSOR_PUT -> {
+                UUID id = new UUID(payload.getLong(), payload.getLong());
+                byte typeOrdinal = payload.get();
+                boolean active = payload.get() != 0;
+                byte[] name = new byte[payload.getShort() & 0xFFFF];
+                payload.get(name);
+
+                Sensor sensor = new Sensor(new String(name, StandardCharsets.UTF_8),
+                        typeOrdinal == NO_SENSOR_TYPE ? null : SensorType.values()[typeOrdinal]);
+                sensor.setSensorId(id);
+                sensor.setActive(active);
+                visitor.sensorPut(sensor);
+            }
+            case SENSOR_REMOVE -> visitor.sensorRemoved(new UUID(payload.getLong(), payload.getLong()));
+            case ALARM_STATUS -> visitor.alarmStatus(AlarmStatus.values()[payload.get()]);
+            case ARMING_STATUS -> visitor.armingStatus(ArmingStatus.values()[payload.get()]);
+            default -> throw new IllegalArgumentException("Unknown record type " + type);
+        }
+    }
+
+    private static ByteBuffer encodeOrdinal(ByteBuffer buffer, byte type, int ordinal) {
+        buffer = ensureCapacity(buffer, HEADER_BYTES + 2);
+        int start = beginRecord(buffer, type);
+        buffer.put((byte) ordinal);
+        endRecord(buffer, start);
+        return buffer;
+    }
+
+    private static int beginRecord(ByteBuffer buffer, byte type) {
+        int start = buffer.position();
+        buffer.position(start + HEADER_BYTES);
+        buffer.put(type);
+        return start;
+    }
+
+    private static void endRecord(ByteBuffer buffer, int start) {
+        int end = buffer.position();
+        int length = end - start - HEADER_BYTES;
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(start + HEADER_BYTES, length));
+        buffer.putInt(start, length);
+        buffer.putInt(start + Integer.BYTES, (int) crc.getValue());
+    }
+
+    private static ByteBuffer ensureCapacity(ByteBuffer buffer, int needed) {
+        if (buffer.remaining() >= needed) {
+            return buffer;
+        }
+        ByteBuffer bigger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + needed));
+        buffer.flip();
+        bigger.put(buffer);
+        return bigger;
+    }
+}
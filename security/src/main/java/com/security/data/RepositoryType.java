@@ -0,0 +1,39 @@
+package com.security.data;
+
+import java.nio.file.Path;
+
+/**
+ * Available repository implementations, so the storage backend can be chosen at startup.
+ */
+public enum RepositoryType {
+    PREFERENCES {
+        @Override
+        public SecurityRepository create(Path dataDirectory) {
+            return new PretendDatabaseSecurityRepositoryImpl();
+        }
+    },
+    WRITE_AHEAD_LOG {
+        @Override
+        public SecurityRepository create(Path dataDirectory) {
+            return new WriteAheadLogSecurityRepositoryImpl(dataDirectory.resolve("wal"));
+        }
+    },
+    MEMORY_MAPPED {
+        @Override
+        public SecurityRepository create(Path dataDirectory) {
+            return new MappedSensorSecurityRepositoryImpl(dataDirectory.resolve("mapped"));
+        }
+    },
+    JDBC {
+        @Override
+        public SecurityRepository create(Path dataDirectory) {
+            return new JdbcSecurityRepositoryImpl("jdbc:h2:file:" + dataDirectory.resolve("catpoint").toAbsolutePath());
+        }
+    };
+
+    /**
+     * Creates the repository.
+     * @param dataDirectory Directory for implementations that store their data in files. Ignored by PREFERENCES.
+     */
+    public abstract SecurityRepository create(Path dataDirectory);
+}
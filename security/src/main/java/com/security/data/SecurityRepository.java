@@ -1,6 +1,10 @@
 package com.security.data;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
 
 /**
  * Interface showing the methods our security repository will need to support
@@ -14,4 +18,42 @@ public interface SecurityRepository {
     Set<Sensor> getSensors();
     AlarmStatus getAlarmStatus();
     ArmingStatus getArmingStatus();
+
+    /**
+     * Updates several sensors at once. Implementations that can write them in a single batch should override this.
+     */
+    default void updateSensors(Collection<Sensor> sensors) {
+        sensors.forEach(this::updateSensor);
+    }
+
+    /**
+     * Returns the sensors that are currently active. The default scans every sensor; implementations
+     * track activation changes as sensors are added, updated and removed so this is constant-time.
+     */
+    default Collection<Sensor> getActiveSensors() {
+        return getSensors().stream().filter(Sensor::getActive).collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the number of currently active sensors.
+     */
+    default int getActiveSensorCount() {
+        return getActiveSensors().size();
+    }
+
+    /**
+     * Looks up a sensor by id. The default scans every sensor; implementations keep an id index.
+     * @return the sensor, or null if there is no sensor with that id
+     */
+    default Sensor getSensor(UUID sensorId) {
+        return getSensors().stream().filter(s -> s.getSensorId().equals(sensorId)).findFirst().orElse(null);
+    }
+
+    /**
+     * Returns all sensors in display order (see {@link Sensor#compareTo}). The default sorts on every
+     * call; implementations cache the sorted order until a sensor is added, removed or renamed.
+     */
+    default List<Sensor> getSortedSensors() {
+        return getSensors().stream().sorted().collect(Collectors.toList());
+    }
 }
@@ -0,0 +1,148 @@
+package com.security.data;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * In-memory sensor storage shared by the repository implementations. Sensors are indexed by id, so
+ * lookups and updates are hash operations and never go through {@link Sensor#compareTo}. The sorted
+ * order used for display is built lazily and cached; it's only rebuilt after a sensor is added or
+ * removed, or when an update changed a sensor's name or type. Toggling a sensor keeps the cache.
+ * A copy of the set of sensors is cached the same way for callers that can't use the live view; it's
+ * only rebuilt after a sensor is added or removed, or replaced by a different instance.
+ *
+ * Activation state is tracked as sensors change, see {@link ActiveSensorTracker}.
+ */
+final class SensorIndex {
+
+    private final Map<UUID, Sensor> sensorsById = new LinkedHashMap<>();
+    private final ActiveSensorTracker activeSensors = new ActiveSensorTracker();
+    private final Set<Sensor> view = new SensorSetView();
+
+    //name and type of each sensor when the sorted cache was last valid, to detect changes that move a sensor
+    private final Map<UUID, SortKey> sortKeys = new HashMap<>();
+    private List<Sensor> sorted;
+    private Set<Sensor> snapshot;
+
+    /**
+     * Adds the sensor, or replaces the stored sensor with the same id.
+     */
+    void put(Sensor sensor) {
+        UUID id = sensor.getSensorId();
+        Sensor previous = sensorsById.put(id, sensor);
+        activeSensors.track(sensor);
+        if (previous != sensor) {
+            snapshot = null;
+        }
+
+        SortKey key = sortKeys.get(id);
+        if (previous != sensor || key == null || !key.matches(sensor)) {
+            sorted = null;
+            sortKeys.put(id, new SortKey(sensor.getName(), sensor.getSensorType()));
+        }
+    }
+
+    void remove(Sensor sensor) {
+        UUID id = sensor.getSensorId();
+        if (sensorsById.remove(id) != null) {
+            activeSensors.untrack(sensor);
+            sortKeys.remove(id);
+            sorted = null;
+            snapshot = null;
+        }
+    }
+
+    boolean contains(UUID sensorId) {
+        return sensorsById.containsKey(sensorId);
+    }
+
+    Sensor get(UUID sensorId) {
+        return sensorsById.get(sensorId);
+    }
+
+    int size() {
+        return sensorsById.size();
+    }
+
+    /**
+     * @return live, unmodifiable view of all sensors in insertion order
+     */
+    Set<Sensor> sensors() {
+        return view;
+    }
+
+    /**
+     * @return unmodifiable copy of all sensors in insertion order, which later changes don't affect
+     */
+    Set<Sensor> snapshot() {
+        if (snapshot == null) {
+            snapshot = Collections.unmodifiableSet(new LinkedHashSet<>(sensorsById.values()));
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return unmodifiable list of all sensors in their natural order
+     */
+    List<Sensor> sorted() {
+        if (sorted == null) {
+            List<Sensor> list = new ArrayList<>(sensorsById.values());
+            Collections.sort(list);
+            sorted = Collections.unmodifiableList(list);
+        }
+        return sorted;
+    }
+
+    Collection<Sensor> activeSensors() {
+        return activeSensors.sensors();
+    }
+
+    int activeCount() {
+        return activeSensors.count();
+    }
+
+    private static final class SortKey {
+        private final String name;
+        private final SensorType sensorType;
+
+        SortKey(String name, SensorType sensorType) {
+            this.name = name;
+            this.sensorType = sensorType;
+        }
+
+        boolean matches(Sensor sensor) {
+            return sensorType == sensor.getSensorType() && Objects.equals(name, sensor.getName());
+        }
+    }
+
+    /**
+     * Set view over the index; membership is by sensor id, which is also how {@link Sensor#equals} works.
+     */
+    private final class SensorSetView extends AbstractSet<Sensor> {
+        @Override
+        public Iterator<Sensor> iterator() {
+            return Collections.unmodifiableCollection(sensorsById.values()).iterator();
+        }
+
+        @Override
+        public int size() {
+            return sensorsById.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof Sensor && sensorsById.containsKey(((Sensor) o).getSensorId());
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package com.security.data;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Repository implementation that keeps state in local memory and persists every change as a small
+ * checksummed record appended to a journal file, so a sensor update costs a few dozen bytes written
+ * no matter how many sensors exist. Once the journal grows past a threshold the full state is written
+ * to a snapshot file and the journal is truncated. On startup the snapshot is loaded and the journal
+ * is replayed on top of it; a torn record at the tail of the journal (e.g. after a crash) is discarded,
+ * while a snapshot that doesn't decode to its end fails the open, since the journal before it is gone.
+ *
+ * Replaying is idempotent, so a crash between writing a snapshot and truncating the journal is harmless.
+ * Without {@code syncOnWrite} appends only reach the OS; {@link #flush()} forces them to the device, which
+ * lets a caller batching several changes pay for a single sync.
+ */
+public class WriteAheadLogSecurityRepositoryImpl implements SecurityRepository, Flushable, AutoCloseable {
+
+    static final String SNAPSHOT_FILE = "snapshot.dat";
+    static final String JOURNAL_FILE = "journal.log";
+
+    public static final int DEFAULT_COMPACTION_THRESHOLD = 10_000;
+
+    private final Path directory;
+    private final boolean syncOnWrite;
+    private final int compactionThreshold;
+
+    private final SensorIndex sensors = new SensorIndex();
+    private AlarmStatus alarmStatus = AlarmStatus.NO_ALARM;
+    private ArmingStatus armingStatus = ArmingStatus.DISARMED;
+
+    private FileChannel journal;
+    private ByteBuffer recordBuffer = ByteBuffer.allocate(256);
+    private int recordsSinceSnapshot;
+
+    public WriteAheadLogSecurityRepositoryImpl(Path directory) {
+        this(directory, false, DEFAULT_COMPACTION_THRESHOLD);
+    }
+
+    /**
+     * @param directory Directory holding the snapshot and journal files. Created if missing.
+     * @param syncOnWrite Whether every append is forced to the storage device before returning
+     * @param compactionThreshold Number of journal records after which a new snapshot is taken
+     */
+    public WriteAheadLogSecurityRepositoryImpl(Path directory, boolean syncOnWrite, int compactionThreshold) {
+        if (compactionThreshold <= 0) {
+            throw new IllegalArgumentException("compactionThreshold must be positive");
+        }
+        this.directory = directory;
+        this.syncOnWrite = syncOnWrite;
+        this.compactionThreshold = compactionThreshold;
+        try {
+            Files.createDirectories(directory);
+            recover();
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to open repository in " + directory, ioe);
+        }
+    }
+
+    @Override
+    public void addSensor(Sensor sensor) {
+        sensors.put(sensor);
+        append(RecordCodec.encodeSensorPut(recordBuffer, sensor));
+    }
+
+    @Override
+    public void removeSensor(Sensor sensor) {
+        sensors.remove(sensor);
+        append(RecordCodec.encodeSensorRemove(recordBuffer, sensor.getSensorId()));
+    }
+
+    @Override
+    public void updateSensor(Sensor sensor) {
+        sensors.put(sensor);
+        append(RecordCodec.encodeSensorPut(recordBuffer, sensor));
+    }
+
+    @Override
+    public void setAlarmStatus(AlarmStatus alarmStatus) {
+        this.alarmStatus = alarmStatus;
+        append(RecordCodec.encodeAlarmStatus(recordBuffer, alarmStatus));
+    }
+
+    @Override
+    public void setArmingStatus(ArmingStatus armingStatus) {
+        this.armingStatus = armingStatus;
+        append(RecordCodec.encodeArmingStatus(recordBuffer, armingStatus));
+    }
+
+    @Override
+    public Set<Sensor> getSensors() {
+        return sensors.sensors();
+    }
+
+    @Override
+    public Collection<Sensor> getActiveSensors() {
+        return sensors.activeSensors();
+    }
+
+    @Override
+    public int getActiveSensorCount() {
+        return sensors.activeCount();
+    }
+
+    @Override
+    public Sensor getSensor(UUID sensorId) {
+        return sensors.get(sensorId);
+    }
+
+    @Override
+    public List<Sensor> getSortedSensors() {
+        return sensors.sorted();
+    }
+
+    @Override
+    public AlarmStatus getAlarmStatus() {
+        return alarmStatus;
+    }
+
+    @Override
+    public ArmingStatus getArmingStatus() {
+        return armingStatus;
+    }
+
+    /**
+     * Writes the full state to a new snapshot and empties the journal.
+     */
+    public void compact() {
+        try {
+            writeSnapshot();
+            journal.truncate(0);
+            journal.position(0);
+            if (syncOnWrite) {
+                journal.force(false);
+            }
+            recordsSinceSnapshot = 0;
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to compact journal", ioe);
+        }
+    }
+
+    /**
+     * Forces all appended records to the storage device.
+     */
+    @Override
+    public void flush() {
+        try {
+            journal.force(false);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to sync journal", ioe);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            journal.force(false);
+            journal.close();
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to close journal", ioe);
+        }
+    }
+
+    private void append(ByteBuffer record) {
+        recordBuffer = record;
+        record.flip();
+        try {
+            while (record.hasRemaining()) {
+                journal.write(record);
+            }
+            if (syncOnWrite) {
+                journal.force(false);
+            }
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to append to journal", ioe);
+        } finally {
+            record.clear();
+        }
+        if (++recordsSinceSnapshot >= compactionThreshold) {
+            compact();
+        }
+    }
+
+    private void recover() throws IOException {
+        Replay replay = new Replay();
+
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        if (Files.exists(snapshot)) {
+            byte[] contents = Files.readAllBytes(snapshot);
+            //the snapshot is written whole and moved into place, so unlike the journal it can't have a torn tail
+            if (RecordCodec.decode(ByteBuffer.wrap(contents), replay) != contents.length) {
+                throw new IOException("Corrupt snapshot " + snapshot);
+            }
+        }
+        replay.records = 0;
+
+        journal = FileChannel.open(directory.resolve(JOURNAL_FILE), CREATE, READ, WRITE);
+        ByteBuffer contents = ByteBuffer.allocate((int) journal.size());
+        while (contents.hasRemaining() && journal.read(contents) >= 0) {
+            //keep reading until the buffer is full
+        }
+        contents.flip();
+        int validEnd = RecordCodec.decode(contents, replay);
+        if (validEnd < journal.size()) {
+            journal.truncate(validEnd);
+        }
+        journal.position(validEnd);
+
+        replay.sensorsById.values().forEach(sensors::put);
+        alarmStatus = replay.alarmStatus;
+        armingStatus = replay.armingStatus;
+        recordsSinceSnapshot = replay.records;
+    }
+
+    private void writeSnapshot() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Math.max(256, sensors.size() * 64));
+        buffer = RecordCodec.encodeAlarmStatus(buffer, alarmStatus);
+        buffer = RecordCodec.encodeArmingStatus(buffer, armingStatus);
+        for (Sensor sensor : sensors.sensors()) {
+            buffer = RecordCodec.encodeSensorPut(buffer, sensor);
+        }
+        buffer.flip();
+
+        Path tmp = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, CREATE, WRITE, TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            out.force(true);
+        }
+        Files.move(tmp, directory.resolve(SNAPSHOT_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Rebuilds state from snapshot and journal records.
+     */
+    private static class Replay implements RecordCodec.Visitor {
+        private final Map<UUID, Sensor> sensorsById = new LinkedHashMap<>();
+        private AlarmStatus alarmStatus = AlarmStatus.NO_ALARM;
+        private ArmingStatus armingStatus = ArmingStatus.DISARMED;
+        private int records;
+
+        @Override
+        public void sensorPut(Sensor sensor) {
+            records++;
+            sensorsById.put(sensor.getSensorId(), sensor);
+        }
+
+        @Override
+        public void sensorRemoved(UUID sensorId) {
+            records++;
+            sensorsById.remove(sensorId);
+        }
+
+        @Override
+        public void alarmStatus(AlarmStatus status) {
+            records++;
+            alarmStatus = status;
+        }
+
+        @Override
+        public void armingStatus(ArmingStatus status) {
+            records++;
+            armingStatus = status;
+        }
+    }
+}
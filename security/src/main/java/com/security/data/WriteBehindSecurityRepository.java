@@ -0,0 +1,466 @@
+package com.security.data;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Decorator that makes any repository write-behind. Reads and writes are served from this object's
+ * in-memory state, which is authoritative; changes are only recorded as dirty and pushed to the wrapped
+ * repository in batches by a background thread. Repeated changes to the same sensor or status between
+ * two flushes are coalesced into a single write.
+ *
+ * A batch is flushed once the oldest pending change is {@code maxLatency} old or {@code maxBatch} changes
+ * are pending, whichever comes first. If the wrapped repository is {@link Flushable} it is flushed once at
+ * the end of each batch, which gives a group commit for stores like the write-ahead log.
+ *
+ * Call {@link #flush()} to wait for everything written so far to reach the wrapped repository, and
+ * {@link #close()} on shutdown so no changes are lost.
+ */
+public class WriteBehindSecurityRepository implements SecurityRepository, Flushable, AutoCloseable {
+
+    public static final Duration DEFAULT_MAX_LATENCY = Duration.ofMillis(50);
+    public static final int DEFAULT_MAX_BATCH = 1_000;
+
+    private enum Operation { ADD, UPDATE, REMOVE }
+
+    private final SecurityRepository delegate;
+    private final long maxLatencyNanos;
+    private final int maxBatch;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    //held while a batch is applied, so the background thread and flush() never write concurrently
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    private final SensorIndex sensors = new SensorIndex();
+    private volatile AlarmStatus alarmStatus;
+    private volatile ArmingStatus armingStatus;
+
+    private Map<UUID, Operation> pendingOperations = new LinkedHashMap<>();
+    private Map<UUID, Sensor> pendingSensors = new LinkedHashMap<>();
+    private AlarmStatus pendingAlarmStatus;
+    private ArmingStatus pendingArmingStatus;
+    private long oldestPendingNanos;
+    private RuntimeException lastFailure;
+    private boolean closed;
+
+    private final Thread flusher;
+
+    private long changesRecorded;
+    private long changesWritten;
+    private long batchesWritten;
+
+    public WriteBehindSecurityRepository(SecurityRepository delegate) {
+        this(delegate, DEFAULT_MAX_LATENCY, DEFAULT_MAX_BATCH);
+    }
+
+    /**
+     * @param delegate Repository that changes are eventually written to. Should not be used directly afterwards.
+     * @param maxLatency Longest time a change may wait before it is written
+     * @param maxBatch Number of pending changes that triggers a write without waiting for maxLatency
+     */
+    public WriteBehindSecurityRepository(SecurityRepository delegate, Duration maxLatency, int maxBatch) {
+        if (maxLatency.isNegative() || maxBatch <= 0) {
+            throw new IllegalArgumentException("maxLatency must not be negative and maxBatch must be positive");
+        }
+        this.delegate = delegate;
+        this.maxLatencyNanos = maxLatency.toNanos();
+        this.maxBatch = maxBatch;
+
+        delegate.getSensors().forEach(sensors::put);
+        this.alarmStatus = delegate.getAlarmStatus();
+        this.armingStatus = delegate.getArmingStatus();
+
+        flusher = new Thread(this::flushLoop, "repository-write-behind");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @Override
+    public void addSensor(Sensor sensor) {
+        lock.lock();
+        try {
+            sensors.put(sensor);
+            record(sensor, Operation.ADD);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void removeSensor(Sensor sensor) {
+        lock.lock();
+        try {
+            sensors.remove(sensor);
+            record(sensor, Operation.REMOVE);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void updateSensor(Sensor sensor) {
+        lock.lock();
+        try {
+            sensors.put(sensor);
+            record(sensor, Operation.UPDATE);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void setAlarmStatus(AlarmStatus alarmStatus) {
+        lock.lock();
+        try {
+            this.alarmStatus = alarmStatus;
+            pendingAlarmStatus = alarmStatus;
+            markDirty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void setArmingStatus(ArmingStatus armingStatus) {
+        lock.lock();
+        try {
+            this.armingStatus = armingStatus;
+            pendingArmingStatus = armingStatus;
+            markDirty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return a copy of the sensors, cached until a sensor is added, removed or replaced, since writers
+     * change the index under the lock while callers iterate
+     */
+    @Override
+    public Set<Sensor> getSensors() {
+        lock.lock();
+        try {
+            return sensors.snapshot();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Collection<Sensor> getActiveSensors() {
+        lock.lock();
+        try {
+            return List.copyOf(sensors.activeSensors());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int getActiveSensorCount() {
+        lock.lock();
+        try {
+            return sensors.activeCount();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Sensor getSensor(UUID sensorId) {
+        lock.lock();
+        try {
+            return sensors.get(sensorId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the cached sorted list, which is never changed once built
+     */
+    @Override
+    public List<Sensor> getSortedSensors() {
+        lock.lock();
+        try {
+            return sensors.sorted();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public AlarmStatus getAlarmStatus() {
+        return alarmStatus;
+    }
+
+    @Override
+    public ArmingStatus getArmingStatus() {
+        return armingStatus;
+    }
+
+    /**
+     * Writes all pending changes to the wrapped repository on the calling thread and waits until they are written.
+     * @throws RuntimeException the failure of an earlier background write, if one happened since the last flush
+     */
+    @Override
+    public void flush() {
+        writeBatch();
+        lock.lock();
+        try {
+            if (lastFailure != null) {
+                RuntimeException failure = lastFailure;
+                lastFailure = null;
+                throw failure;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops the background thread, writes everything still pending and closes the wrapped repository.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        if (delegate instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                throw new IllegalStateException("Unable to close repository", e);
+            }
+        }
+    }
+
+    /**
+     * Registers a JVM shutdown hook that closes this repository, so pending changes are written on exit.
+     */
+    public void closeOnShutdown() {
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "repository-write-behind-shutdown"));
+    }
+
+    /**
+     * @return number of changes recorded by callers, including ones that were later coalesced
+     */
+    public long getChangesRecorded() {
+        lock.lock();
+        try {
+            return changesRecorded;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of changes actually written to the wrapped repository
+     */
+    public long getChangesWritten() {
+        lock.lock();
+        try {
+            return changesWritten;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of batches written to the wrapped repository
+     */
+    public long getBatchesWritten() {
+        lock.lock();
+        try {
+            return batchesWritten;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void record(Sensor sensor, Operation operation) {
+        UUID id = sensor.getSensorId();
+        Operation previous = pendingOperations.get(id);
+        if (operation == Operation.REMOVE && previous == Operation.ADD) {
+            //never reached the delegate, so there is nothing to remove
+            pendingOperations.remove(id);
+            pendingSensors.remove(id);
+        } else {
+            pendingOperations.put(id, previous == Operation.ADD && operation == Operation.UPDATE ? Operation.ADD : operation);
+            pendingSensors.put(id, sensor);
+        }
+        markDirty();
+    }
+
+    private void markDirty() {
+        changesRecorded++;
+        if (oldestPendingNanos == 0) {
+            oldestPendingNanos = System.nanoTime();
+        }
+        changed.signalAll();
+    }
+
+    private int pendingCount() {
+        return pendingOperations.size() + (pendingAlarmStatus == null ? 0 : 1) + (pendingArmingStatus == null ? 0 : 1);
+    }
+
+    private void flushLoop() {
+        while (true) {
+            lock.lock();
+            try {
+                while (!closed && pendingCount() < maxBatch) {
+                    if (pendingCount() == 0) {
+                        changed.await();
+                    } else {
+                        long wait = oldestPendingNanos + maxLatencyNanos - System.nanoTime();
+                        if (wait <= 0) {
+                            break;
+                        }
+                        changed.awaitNanos(wait);
+                    }
+                }
+                if (closed) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                writeBatch();
+            } catch (RuntimeException e) {
+                lock.lock();
+                try {
+                    lastFailure = e;
+                    //retry once maxLatency has passed again instead of in a tight loop
+                    oldestPendingNanos = System.nanoTime();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    private void writeBatch() {
+        writeLock.lock();
+        try {
+            Map<UUID, Operation> operations;
+            Map<UUID, Sensor> batchSensors = new LinkedHashMap<>();
+            AlarmStatus alarm;
+            ArmingStatus arming;
+
+            lock.lock();
+            try {
+                if (pendingCount() == 0) {
+                    return;
+                }
+                operations = pendingOperations;
+                //copy sensors while holding the lock, callers keep mutating their instances
+                pendingSensors.forEach((id, sensor) -> batchSensors.put(id, copyOf(sensor)));
+                alarm = pendingAlarmStatus;
+                arming = pendingArmingStatus;
+
+                pendingOperations = new LinkedHashMap<>();
+                pendingSensors = new LinkedHashMap<>();
+                pendingAlarmStatus = null;
+                pendingArmingStatus = null;
+                oldestPendingNanos = 0;
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                operations.forEach((id, operation) -> {
+                    Sensor sensor = batchSensors.get(id);
+                    switch (operation) {
+                        case ADD -> delegate.addSensor(sensor);
+                        case UPDATE -> delegate.updateSensor(sensor);
+                        case REMOVE -> delegate.removeSensor(sensor);
+                    }
+                });
+                if (arming != null) {
+                    delegate.setArmingStatus(arming);
+                }
+                if (alarm != null) {
+                    delegate.setAlarmStatus(alarm);
+                }
+                if (delegate instanceof Flushable flushable) {
+                    flushable.flush();
+                }
+            } catch (IOException ioe) {
+                requeue(operations, batchSensors, alarm, arming);
+                throw new UncheckedIOException("Unable to write batch", ioe);
+            } catch (RuntimeException e) {
+                requeue(operations, batchSensors, alarm, arming);
+                throw e;
+            }
+
+            lock.lock();
+            try {
+                changesWritten += operations.size() + (alarm == null ? 0 : 1) + (arming == null ? 0 : 1);
+                batchesWritten++;
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Puts a failed batch back in front of the pending changes, unless a newer change supersedes it.
+     * Writes to the delegate are idempotent, so replaying the part of the batch that did succeed is safe.
+     */
+    private void requeue(Map<UUID, Operation> operations, Map<UUID, Sensor> batchSensors, AlarmStatus alarm, ArmingStatus arming) {
+        lock.lock();
+        try {
+            Map<UUID, Operation> mergedOperations = new LinkedHashMap<>(operations);
+            Map<UUID, Sensor> mergedSensors = new LinkedHashMap<>(batchSensors);
+            mergedOperations.putAll(pendingOperations);
+            mergedSensors.putAll(pendingSensors);
+            pendingOperations = mergedOperations;
+            pendingSensors = mergedSensors;
+            if (pendingAlarmStatus == null) {
+                pendingAlarmStatus = alarm;
+            }
+            if (pendingArmingStatus == null) {
+                pendingArmingStatus = arming;
+            }
+            if (oldestPendingNanos == 0) {
+                oldestPendingNanos = System.nanoTime();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static Sensor copyOf(Sensor sensor) {
+        Sensor copy = new Sensor(sensor.getName(), sensor.getSensorType());
+        copy.setSensorId(sensor.getSensorId());
+        copy.setActive(sensor.getActive());
+        return copy;
+    }
+}
@@ -0,0 +1,208 @@
+package com.security.service;
+
+import com.udacity.catpoint.image.service.ImageInput;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One camera of a {@link CameraRegistry}: its queue of frames waiting for classification, the outcome
+ * of its latest classified frame and, if recording is on, its latest frames.
+ *
+ * The queue is bounded, a frame arriving at a full queue pushes out the oldest one. Frames of a camera are
+ * classified by one worker at a time, see {@link SecurityService#processImage(CameraFrame)}.
+ */
+public class Camera {
+    private final String id;
+    private final int queueCapacity;
+
+    //guarded by itself
+    private final Deque<QueuedImage> queue = new ArrayDeque<>();
+    private final AtomicBoolean working = new AtomicBoolean();
+    private volatile FrameRingBuffer recording;
+
+    //guarded by this
+    private long newestAppliedImage;
+    private Boolean catDetected;
+    private Instant lastCapturedAt;
+    private long classifiedFrames;
+    private long droppedFrames;
+    private boolean removed;
+
+    Camera(String id, int queueCapacity) {
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("Queue capacity must be positive");
+        }
+        this.id = id;
+        this.queueCapacity = queueCapacity;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public int getQueuedFrames() {
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    /**
+     * @return whether the latest classified frame contains a cat, null if there is none since the camera was
+     * added or the system was last disarmed
+     */
+    public synchronized Boolean getCatDetected() {
+        return catDetected;
+    }
+
+    /**
+     * @return when the latest classified frame was taken, null if there is none
+     */
+    public synchronized Instant getLastCapturedAt() {
+        return lastCapturedAt;
+    }
+
+    public synchronized long getClassifiedFrames() {
+        return classifiedFrames;
+    }
+
+    /**
+     * @return the camera's latest frames, or null if the camera isn't recording
+     */
+    public FrameRingBuffer getRecording() {
+        return recording;
+    }
+
+    /**
+     * @return frames pushed out of the full queue
+     */
+    public synchronized long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    void startRecording(FrameRingBuffer recording) {
+        this.recording = recording;
+    }
+
+    /**
+     * Records the frame if the camera is recording and the frame is still encoded.
+     */
+    void record(Instant capturedAt, ImageInput image) {
+        FrameRingBuffer current = recording;
+        if (current != null && image.hasEncoded()) {
+            current.record(capturedAt, image.getEncoded());
+        }
+    }
+
+    /**
+     * Queues the frame, at the front if it has priority.
+     * @param limit Most frames to keep queued, at most the queue capacity
+     * @return the oldest frame if it was pushed out, or null
+     */
+    QueuedImage offer(QueuedImage image, boolean priority, int limit) {
+        QueuedImage dropped = null;
+        synchronized (queue) {
+            if (priority) {
+                queue.addFirst(image);
+            } else {
+                queue.addLast(image);
+            }
+            if (queue.size() > Math.min(limit, queueCapacity)) {
+                //priority frames are queued ahead of older ones, so the oldest isn't always last
+                dropped = Collections.min(queue, Comparator.comparingLong(queued -> queued.sequence));
+                queue.remove(dropped);
+            }
+        }
+        if (dropped != null) {
+            synchronized (this) {
+                droppedFrames++;
+            }
+        }
+        return dropped;
+    }
+
+    List<QueuedImage> take(int maxFrames) {
+        List<QueuedImage> images = new ArrayList<>();
+        synchronized (queue) {
+            while (!queue.isEmpty() && images.size() < maxFrames) {
+                images.add(queue.poll());
+            }
+        }
+        return images;
+    }
+
+    boolean remove(QueuedImage image) {
+        synchronized (queue) {
+            return queue.remove(image);
+        }
+    }
+
+    boolean hasQueuedFrames() {
+        synchronized (queue) {
+            return !queue.isEmpty();
+        }
+    }
+
+    /**
+     * @return true if the caller is now the camera's worker, false if another worker is busy with it
+     */
+    boolean startWorking() {
+        return working.compareAndSet(false, true);
+    }
+
+    void stopWorking() {
+        working.set(false);
+    }
+
+    synchronized void framesClassified(int count) {
+        classifiedFrames += count;
+    }
+
+    /**
+     * Records the result of a classified frame, unless a newer frame's result was recorded already.
+     * @return true if the result was recorded
+     */
+    synchronized boolean applyResult(long sequence, Instant capturedAt, boolean catDetected) {
+        if (removed || sequence <= newestAppliedImage) {
+            return false;
+        }
+        newestAppliedImage = sequence;
+        this.catDetected = catDetected;
+        lastCapturedAt = capturedAt;
+        return true;
+    }
+
+    /**
+     * Forgets the latest result, and makes results of frames up to the sequence number stale.
+     */
+    synchronized void reset(long sequence) {
+        newestAppliedImage = Math.max(newestAppliedImage, sequence);
+        catDetected = null;
+    }
+
+    /**
+     * Marks the camera as gone, so results still in flight are ignored, and stops its recording.
+     * @return the frames that were still queued
+     */
+    List<QueuedImage> close() {
+        synchronized (this) {
+            removed = true;
+            catDetected = null;
+        }
+        FrameRingBuffer current = recording;
+        if (current != null) {
+            current.close();
+        }
+        return take(Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,33 @@
+package com.security.service;
+
+import com.udacity.catpoint.image.service.ImageInput;
+
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * A picture taken by one of the cameras, see {@link SecurityService#processImage(CameraFrame)}.
+ */
+public final class CameraFrame {
+    private final String cameraId;
+    private final Instant capturedAt;
+    private final ImageInput image;
+
+    public CameraFrame(String cameraId, Instant capturedAt, ImageInput image) {
+        this.cameraId = Objects.requireNonNull(cameraId);
+        this.capturedAt = Objects.requireNonNull(capturedAt);
+        this.image = Objects.requireNonNull(image);
+    }
+
+    public String getCameraId() {
+        return cameraId;
+    }
+
+    public Instant getCapturedAt() {
+        return capturedAt;
+    }
+
+    public ImageInput getImage() {
+        return image;
+    }
+}
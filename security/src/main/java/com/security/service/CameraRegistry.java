@@ -0,0 +1,142 @@
+package com.security.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The cameras of a {@link SecurityService}. Cameras are registered when the first frame arrives from them,
+ * or beforehand to give them a queue capacity other than {@value #DEFAULT_QUEUE_CAPACITY}.
+ *
+ * The registry combines the cameras' latest results: there is a cat if any camera saw one in its latest
+ * frame, so a camera that doesn't see the cat can't clear what another one saw.
+ *
+ * With {@link #enableRecording recording} on, every camera keeps its latest encoded frames in a
+ * {@link FrameRingBuffer}, and all of them are frozen when the alarm goes off.
+ */
+public class CameraRegistry {
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 16;
+
+    private final ConcurrentMap<String, Camera> cameras = new ConcurrentHashMap<>();
+    private final DirectBufferPool bufferPool = new DirectBufferPool();
+
+    //recording settings, 0 frames while recording is off; guarded by this
+    private int recordedFrames;
+    private int maxFrameBytes;
+    private int framesAfterAlarm;
+
+    /**
+     * @return the camera, which is only created if it isn't registered yet
+     */
+    public Camera register(String cameraId) {
+        return register(cameraId, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param queueCapacity Most frames waiting for classification, only used if the camera isn't registered yet
+     * @return the camera, which is only created if it isn't registered yet
+     */
+    public Camera register(String cameraId, int queueCapacity) {
+        Camera camera = cameras.get(cameraId);
+        return camera != null ? camera : cameras.computeIfAbsent(cameraId, id -> {
+            Camera created = new Camera(id, queueCapacity);
+            synchronized (this) {
+                if (recordedFrames > 0) {
+                    created.startRecording(new FrameRingBuffer(bufferPool, recordedFrames, maxFrameBytes));
+                }
+            }
+            return created;
+        });
+    }
+
+    /**
+     * Makes every camera, registered now or later, keep its latest frames. Only frames that arrive encoded
+     * are recorded, see {@link SecurityService#processImage(CameraFrame)}. Cameras that already record
+     * keep their buffer.
+     * @param frames Frames to keep per camera
+     * @param maxFrameBytes Size of the largest frame that is kept
+     * @param framesAfterAlarm Frames to record after the alarm goes off before the recording is frozen
+     */
+    public synchronized void enableRecording(int frames, int maxFrameBytes, int framesAfterAlarm) {
+        if (frames < 1 || framesAfterAlarm < 0) {
+            throw new IllegalArgumentException("Invalid frame counts");
+        }
+        this.recordedFrames = frames;
+        this.maxFrameBytes = maxFrameBytes;
+        this.framesAfterAlarm = framesAfterAlarm;
+        for (Camera camera : cameras.values()) {
+            if (camera.getRecording() == null) {
+                camera.startRecording(new FrameRingBuffer(bufferPool, frames, maxFrameBytes));
+            }
+        }
+    }
+
+    /**
+     * @return the pool recordings take their memory from
+     */
+    public DirectBufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    /**
+     * @return the camera, or null if it isn't registered
+     */
+    public Camera getCamera(String cameraId) {
+        return cameras.get(cameraId);
+    }
+
+    /**
+     * @return all cameras by id
+     */
+    public List<Camera> getCameras() {
+        List<Camera> sorted = new ArrayList<>(cameras.values());
+        sorted.sort(Comparator.comparing(Camera::getId));
+        return sorted;
+    }
+
+    public int size() {
+        return cameras.size();
+    }
+
+    Camera remove(String cameraId) {
+        return cameras.remove(cameraId);
+    }
+
+    /**
+     * @return true if any camera's latest frame contains a cat
+     */
+    boolean anyCatDetected() {
+        for (Camera camera : cameras.values()) {
+            if (Boolean.TRUE.equals(camera.getCatDetected())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Freezes every camera's recording once the frames after the alarm are in.
+     */
+    void freezeRecordings() {
+        int framesAfter;
+        synchronized (this) {
+            framesAfter = framesAfterAlarm;
+        }
+        for (Camera camera : cameras.values()) {
+            FrameRingBuffer recording = camera.getRecording();
+            if (recording != null) {
+                recording.freeze(framesAfter);
+            }
+        }
+    }
+
+    /**
+     * Forgets every camera's latest result, and makes results of frames up to the sequence number stale.
+     */
+    void reset(long sequence) {
+        cameras.values().forEach(camera -> camera.reset(sequence));
+    }
+}
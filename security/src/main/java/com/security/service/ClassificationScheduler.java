@@ -0,0 +1,213 @@
+package com.security.service;
+
+import com.security.data.ArmingStatus;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Decides which camera frames are worth classifying, see {@link SecurityService#setScheduler}.
+ *
+ * Each camera gets a target frame rate that depends on the arming status, so nothing is classified while
+ * the system is disarmed and results that would be thrown away aren't paid for. By default that is every
+ * status but ARMED_HOME: {@link SecurityService#processImageResult} ignores results in the other ones, so
+ * while armed away a frame without a cat can't clear the alarm either, and it isn't worth classifying. On
+ * top of that a token bucket limits the calls made to the image service per minute, holding up to ten
+ * seconds' worth of calls for bursts. For a while after a sensor goes active, frames are taken at a
+ * multiple of the normal rate and jump the queue, since that is when a cat is most likely. When the image
+ * service falls behind only a bounded number of frames wait for it, and the oldest one is dropped to make
+ * room for a new one.
+ */
+public class ClassificationScheduler {
+
+    public static final float DEFAULT_ARMED_HOME_RATE = 1f;
+    public static final int DEFAULT_CALLS_PER_MINUTE = 30;
+    public static final int DEFAULT_MAX_QUEUED_FRAMES = 4;
+    public static final Duration DEFAULT_BOOST_DURATION = Duration.ofSeconds(10);
+    public static final float DEFAULT_BOOST_FACTOR = 4f;
+
+    /**
+     * What to do with a frame.
+     */
+    public enum Admission {
+        /** Not classified, the camera's rate or the call budget doesn't allow it */
+        SKIP,
+        /** Classified in turn */
+        QUEUE,
+        /** Classified ahead of frames already waiting, a sensor just went active */
+        PRIORITY
+    }
+
+    private final Map<ArmingStatus, Float> framesPerSecond;
+    private final int callsPerMinute;
+    private final int maxQueuedFrames;
+    private final long boostNanos;
+    private final float boostFactor;
+    private final LongSupplier clock;
+
+    //guarded by this
+    private final Map<String, Long> nextFrameAt = new HashMap<>();
+    private ArmingStatus armingStatus = ArmingStatus.DISARMED;
+    private long boostUntil;
+    private boolean boosted;
+    private double tokens;
+    private long refilledAt;
+    private long admittedFrames;
+    private long skippedFrames;
+    private long throttledFrames;
+    private long droppedFrames;
+
+    /**
+     * Classifies at {@value #DEFAULT_ARMED_HOME_RATE} frame per second per camera when armed at home, which is
+     * the only mode where a cat raises the alarm, with {@value #DEFAULT_CALLS_PER_MINUTE} calls per minute.
+     */
+    public ClassificationScheduler() {
+        this(Map.of(ArmingStatus.ARMED_HOME, DEFAULT_ARMED_HOME_RATE), DEFAULT_CALLS_PER_MINUTE, DEFAULT_MAX_QUEUED_FRAMES);
+    }
+
+    /**
+     * @param framesPerSecond Frames to classify per second and camera, by arming status; missing ones are 0
+     * @param callsPerMinute Most frames to classify per minute, over all cameras
+     * @param maxQueuedFrames Most frames waiting for the image service
+     */
+    public ClassificationScheduler(Map<ArmingStatus, Float> framesPerSecond, int callsPerMinute, int maxQueuedFrames) {
+        this(framesPerSecond, callsPerMinute, maxQueuedFrames, DEFAULT_BOOST_DURATION, DEFAULT_BOOST_FACTOR, System::nanoTime);
+    }
+
+    ClassificationScheduler(Map<ArmingStatus, Float> framesPerSecond, int callsPerMinute, int maxQueuedFrames,
+                            Duration boostDuration, float boostFactor, LongSupplier clock) {
+        if (callsPerMinute < 1 || maxQueuedFrames < 1 || boostFactor < 1) {
+            throw new IllegalArgumentException("Invalid call budget, queue size or boost factor");
+        }
+        this.framesPerSecond = new EnumMap<>(ArmingStatus.class);
+        for (ArmingStatus status : ArmingStatus.values()) {
+            this.framesPerSecond.put(status, Math.max(0f, framesPerSecond.getOrDefault(status, 0f)));
+        }
+        this.callsPerMinute = callsPerMinute;
+        this.maxQueuedFrames = maxQueuedFrames;
+        this.boostNanos = boostDuration.toNanos();
+        this.boostFactor = boostFactor;
+        this.clock = clock;
+        this.tokens = burstSize();
+        this.refilledAt = clock.getAsLong();
+    }
+
+    /**
+     * Decides whether a frame is classified, taking a call from the budget if it is.
+     */
+    public synchronized Admission admit(String cameraId, ArmingStatus armingStatus) {
+        long now = clock.getAsLong();
+        this.armingStatus = armingStatus;
+        float rate = currentRate(now);
+        Long next = nextFrameAt.get(cameraId);
+        if (rate <= 0 || (next != null && now - next < 0)) {
+            skippedFrames++;
+            return Admission.SKIP;
+        }
+        refill(now);
+        if (tokens < 1) {
+            throttledFrames++;
+            return Admission.SKIP;
+        }
+        tokens--;
+        admittedFrames++;
+        nextFrameAt.put(cameraId, now + (long) (1_000_000_000L / rate));
+        return boosted ? Admission.PRIORITY : Admission.QUEUE;
+    }
+
+    /**
+     * Gives back the call taken by an admitted frame that won't be classified after all.
+     */
+    public synchronized void release() {
+        refill(clock.getAsLong());
+        tokens = Math.min(burstSize(), tokens + 1);
+        admittedFrames--;
+    }
+
+    /**
+     * Records that an admitted frame was dropped from the queue, and gives back its call.
+     */
+    public synchronized void frameDropped() {
+        release();
+        droppedFrames++;
+    }
+
+    /**
+     * Boosts the frame rate for a while, starting now.
+     */
+    public synchronized void sensorActivated() {
+        boostUntil = clock.getAsLong() + boostNanos;
+        boosted = true;
+    }
+
+    /**
+     * Camera ids are kept to pace each camera, this forgets one that is gone.
+     */
+    public synchronized void removeCamera(String cameraId) {
+        nextFrameAt.remove(cameraId);
+    }
+
+    public int getMaxQueuedFrames() {
+        return maxQueuedFrames;
+    }
+
+    /**
+     * @return frames per second and camera for the arming status of the latest frame, including any boost
+     */
+    public synchronized float getCurrentRate() {
+        return currentRate(clock.getAsLong());
+    }
+
+    /**
+     * @return calls that can be made right away
+     */
+    public synchronized int getAvailableCalls() {
+        refill(clock.getAsLong());
+        return (int) tokens;
+    }
+
+    public synchronized long getAdmittedFrames() {
+        return admittedFrames;
+    }
+
+    /**
+     * @return frames not classified because of the arming status or the camera's frame rate
+     */
+    public synchronized long getSkippedFrames() {
+        return skippedFrames;
+    }
+
+    /**
+     * @return frames not classified because the call budget was used up
+     */
+    public synchronized long getThrottledFrames() {
+        return throttledFrames;
+    }
+
+    /**
+     * @return admitted frames dropped while waiting, to make room for newer ones
+     */
+    public synchronized long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    private float currentRate(long now) {
+        if (boosted && now - boostUntil >= 0) {
+            boosted = false;
+        }
+        float rate = framesPerSecond.get(armingStatus);
+        return boosted ? rate * boostFactor : rate;
+    }
+
+    private void refill(long now) {
+        tokens = Math.min(burstSize(), tokens + (now - refilledAt) * callsPerMinute / 60e9);
+        refilledAt = now;
+    }
+
+    private double burstSize() {
+        return Math.max(1, callsPerMinute / 6);
+    }
+}
@@ -0,0 +1,56 @@
+package com.security.service;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps direct buffers that are no longer used, so a buffer of the same size can be handed out again
+ * instead of allocating one. Direct memory is only freed when its buffer is garbage collected, so reusing
+ * it keeps cameras that come and go from piling up native memory.
+ */
+public class DirectBufferPool {
+
+    //guarded by this, free buffers by capacity
+    private final Map<Integer, Deque<ByteBuffer>> free = new HashMap<>();
+    private long allocatedBytes;
+    private long pooledBytes;
+
+    /**
+     * @return a cleared direct buffer of the capacity, reused if one was released
+     */
+    public synchronized ByteBuffer acquire(int capacity) {
+        Deque<ByteBuffer> buffers = free.get(capacity);
+        ByteBuffer buffer = buffers == null ? null : buffers.poll();
+        if (buffer == null) {
+            allocatedBytes += capacity;
+            return ByteBuffer.allocateDirect(capacity);
+        }
+        pooledBytes -= capacity;
+        return buffer.clear();
+    }
+
+    /**
+     * Returns a buffer from {@link #acquire}. It must not be used afterwards.
+     */
+    public synchronized void release(ByteBuffer buffer) {
+        free.computeIfAbsent(buffer.capacity(), capacity -> new ArrayDeque<>()).push(buffer);
+        pooledBytes += buffer.capacity();
+    }
+
+    /**
+     * @return direct memory allocated by the pool, in use or not
+     */
+    public synchronized long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * @return direct memory waiting to be reused
+     */
+    public synchronized long getPooledBytes() {
+        return pooledBytes;
+    }
+}
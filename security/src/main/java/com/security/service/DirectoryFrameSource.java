@@ -0,0 +1,365 @@
+package com.security.service;
+
+import com.udacity.catpoint.image.service.ImageInput;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Feeds the image files of a directory to {@link SecurityService#processImage(CameraFrame)} as frames of one
+ * camera, on a thread of its own.
+ *
+ * A watching source picks up every JPEG or PNG file that appears in the directory, with its modification
+ * time as capture time. Camera gateways should write a frame under another name, for example with a
+ * leading dot, and rename it when done; files starting with a dot are ignored. For gateways that write in
+ * place, a new file is only read once its size hasn't changed for {@value #SETTLE_MILLIS} ms, which costs
+ * that much latency per frame but still can't tell a complete file from a writer that stalled. A replaying
+ * source streams the frames already in the directory in name order at a fixed frame rate, for benchmarks
+ * and demos.
+ *
+ * Files of {@value #MAP_THRESHOLD} bytes or more are memory-mapped rather than read, see
+ * {@link ImageInput#ofFile}. Only one frame at a time is being classified. Frames that arrive meanwhile
+ * replace each other, so when classification falls behind the stale ones are dropped and the newest one is
+ * classified next.
+ */
+public class DirectoryFrameSource implements AutoCloseable {
+
+    public static final int MAP_THRESHOLD = 256 * 1024;
+    static final int SETTLE_MILLIS = 20;
+    //a file still growing after this is given up on
+    private static final long MAX_SETTLE_MILLIS = 5_000;
+
+    private static final Logger log = LoggerFactory.getLogger(DirectoryFrameSource.class);
+
+    private final SecurityService securityService;
+    private final String cameraId;
+    private final Path directory;
+    //0 for a watching source
+    private final double framesPerSecond;
+    private final boolean loop;
+
+    private volatile WatchService watcher;
+    private volatile boolean closed;
+    private Thread thread;
+    //reads and sends frames, so neither the source's thread nor the thread completing a scan waits for that
+    private ExecutorService sender;
+
+    //guarded by this
+    private boolean frameInFlight;
+    private Path pendingFrame;
+    private long framesSeen;
+    private long framesDropped;
+    private long framesFailed;
+
+    private DirectoryFrameSource(SecurityService securityService, String cameraId, Path directory,
+                                 double framesPerSecond, boolean loop) {
+        this.securityService = Objects.requireNonNull(securityService);
+        this.cameraId = Objects.requireNonNull(cameraId);
+        this.directory = Objects.requireNonNull(directory);
+        this.framesPerSecond = framesPerSecond;
+        this.loop = loop;
+    }
+
+    /**
+     * @return a source for the frames that appear in the directory from when it is started
+     */
+    public static DirectoryFrameSource watch(SecurityService securityService, String cameraId, Path directory) {
+        return new DirectoryFrameSource(securityService, cameraId, directory, 0, false);
+    }
+
+    /**
+     * @param loop Start over after the last frame, until closed
+     * @return a source for the frames in the directory, taken to be captured when they are sent
+     */
+    public static DirectoryFrameSource replay(SecurityService securityService, String cameraId, Path directory,
+                                              double framesPerSecond, boolean loop) {
+        if (!(framesPerSecond > 0)) {
+            throw new IllegalArgumentException("Frame rate must be positive");
+        }
+        return new DirectoryFrameSource(securityService, cameraId, directory, framesPerSecond, loop);
+    }
+
+    /**
+     * Starts the source's thread. A watching source sees every frame added after this returns.
+     * @throws IOException if the directory can't be watched
+     */
+    public synchronized void start() throws IOException {
+        if (thread != null) {
+            throw new IllegalStateException("Already started");
+        }
+        Runnable body;
+        if (framesPerSecond > 0) {
+            List<Path> frames = listFrames();
+            body = () -> replay(frames);
+        } else {
+            watcher = directory.getFileSystem().newWatchService();
+            directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE);
+            body = this::watch;
+        }
+        thread = new Thread(body, "frames-" + cameraId);
+        thread.setDaemon(true);
+        sender = Executors.newSingleThreadExecutor(runnable -> {
+            Thread senderThread = new Thread(runnable, "frames-" + cameraId + "-send");
+            senderThread.setDaemon(true);
+            return senderThread;
+        });
+        thread.start();
+    }
+
+    /**
+     * Waits for a replay to send its last frame. A watching or looping source only finishes when closed.
+     * @return false if it didn't finish in time
+     */
+    public boolean awaitTermination(Duration timeout) throws InterruptedException {
+        Thread current;
+        synchronized (this) {
+            current = thread;
+        }
+        if (current != null) {
+            current.join(Math.max(1, timeout.toMillis()));
+            return !current.isAlive();
+        }
+        return true;
+    }
+
+    /**
+     * Stops reading frames. The frame being classified, if any, is left to finish.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        Thread current;
+        synchronized (this) {
+            current = thread;
+        }
+        if (current != null) {
+            current.interrupt();
+            sender.shutdown();
+        }
+        if (watcher != null) {
+            watcher.close();
+        }
+    }
+
+    public String getCameraId() {
+        return cameraId;
+    }
+
+    /**
+     * @return frames found in the directory so far
+     */
+    public synchronized long getFramesSeen() {
+        return framesSeen;
+    }
+
+    /**
+     * @return frames skipped because a newer one came along while they waited
+     */
+    public synchronized long getFramesDropped() {
+        return framesDropped;
+    }
+
+    /**
+     * @return frames that couldn't be read or decoded
+     */
+    public synchronized long getFramesFailed() {
+        return framesFailed;
+    }
+
+    private void watch() {
+        try {
+            while (!closed) {
+                WatchKey key = watcher.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        //events were lost, the newest frame is the one worth having
+                        listFrames().stream().max(Comparator.comparing(this::modifiedAt)).ifPresent(this::offer);
+                    } else {
+                        Path file = directory.resolve((Path) event.context());
+                        if (isFrame(file)) {
+                            offer(file);
+                        }
+                    }
+                }
+                if (!key.reset()) {
+                    return; //the directory is gone
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            //closed
+        } catch (IOException e) {
+            log.error("Unable to list frames in {}, no longer watching it for camera {}", directory, cameraId, e);
+        }
+    }
+
+    private void replay(List<Path> frames) {
+        long interval = (long) (TimeUnit.SECONDS.toNanos(1) / framesPerSecond);
+        long next = System.nanoTime();
+        try {
+            do {
+                for (Path frame : frames) {
+                    long wait = next - System.nanoTime();
+                    if (wait > 0) {
+                        TimeUnit.NANOSECONDS.sleep(wait);
+                    }
+                    if (closed) {
+                        return;
+                    }
+                    //a fixed schedule, a late frame doesn't push the later ones back
+                    next += interval;
+                    offer(frame);
+                }
+            } while (loop && !frames.isEmpty());
+        } catch (InterruptedException e) {
+            //closed
+        }
+    }
+
+    /**
+     * Sends the frame, or keeps it for when the frame being classified is done.
+     */
+    private void offer(Path file) {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            framesSeen++;
+            if (frameInFlight) {
+                if (pendingFrame != null) {
+                    framesDropped++;
+                }
+                pendingFrame = file;
+                return;
+            }
+            frameInFlight = true;
+        }
+        execute(file);
+    }
+
+    /**
+     * Hands the frame to the sender, or drops it if the source was closed since the caller checked.
+     */
+    private void execute(Path file) {
+        try {
+            sender.execute(() -> send(file));
+        } catch (RejectedExecutionException e) {
+            synchronized (this) {
+                frameInFlight = false;
+                pendingFrame = null;
+            }
+        }
+    }
+
+    private void send(Path file) {
+        CameraFrame frame;
+        try {
+            if (framesPerSecond == 0) {
+                awaitComplete(file);
+            }
+            frame = read(file);
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("Unable to read frame {} of camera {}: {}", file, cameraId, e.toString());
+            synchronized (this) {
+                framesFailed++;
+            }
+            frameDone();
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            frameDone();
+            return;
+        }
+        try {
+            securityService.processImage(frame).whenComplete((catDetected, error) -> frameDone());
+        } catch (RuntimeException e) {
+            //a motion gate decodes the frame right away
+            log.warn("Unable to process frame {} of camera {}: {}", file, cameraId, e.toString());
+            synchronized (this) {
+                framesFailed++;
+            }
+            frameDone();
+        }
+    }
+
+    private void frameDone() {
+        Path next;
+        synchronized (this) {
+            next = pendingFrame;
+            pendingFrame = null;
+            if (next == null || closed) {
+                frameInFlight = false;
+                return;
+            }
+        }
+        execute(next);
+    }
+
+    /**
+     * Waits until the file's size has stayed the same for {@value #SETTLE_MILLIS} ms.
+     * @throws IOException if it is still changing after {@value #MAX_SETTLE_MILLIS} ms
+     */
+    private void awaitComplete(Path file) throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(MAX_SETTLE_MILLIS);
+        long size = Files.size(file);
+        while (true) {
+            TimeUnit.MILLISECONDS.sleep(SETTLE_MILLIS);
+            long current = Files.size(file);
+            if (current == size && current > 0) {
+                return;
+            }
+            if (System.nanoTime() - deadline > 0) {
+                throw new IOException("Frame is still being written");
+            }
+            size = current;
+        }
+    }
+
+    private CameraFrame read(Path file) throws IOException {
+        Instant capturedAt = framesPerSecond > 0 ? Instant.now() : Files.getLastModifiedTime(file).toInstant();
+        ImageInput image = Files.size(file) >= MAP_THRESHOLD
+                ? ImageInput.ofFile(file)
+                : ImageInput.ofEncoded(Files.readAllBytes(file));
+        return new CameraFrame(cameraId, capturedAt, image);
+    }
+
+    private List<Path> listFrames() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(DirectoryFrameSource::isFrame).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private Instant modifiedAt(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toInstant();
+        } catch (IOException e) {
+            return Instant.MIN;
+        }
+    }
+
+    private static boolean isFrame(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        return !name.startsWith(".")
+                && (name.endsWith(".jpg") || name.endsWith(".jpeg") || name.endsWith(".png"));
+    }
+}
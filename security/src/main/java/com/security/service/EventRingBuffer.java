@@ -0,0 +1,120 @@
+package com.security.service;
+
+import com.security.data.ArmingStatus;
+import com.security.data.Sensor;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free queue of security events for many producer threads and a single consumer thread.
+ * Slots are allocated up front and reused, so publishing an event doesn't allocate.
+ *
+ * Each slot carries a sequence number (the classic bounded MPMC queue by Dmitry Vyukov): a producer may
+ * claim position {@code p} when its slot's sequence equals {@code p}, and publishes by setting it to
+ * {@code p + 1}; the consumer reads position {@code p} once the sequence is {@code p + 1} and hands the
+ * slot back by setting it to {@code p + capacity}.
+ */
+final class EventRingBuffer {
+
+    enum Type { SENSOR, ARMING, IMAGE_RESULT }
+
+    /**
+     * Mutable event holder; only valid inside the consumer callback.
+     */
+    static final class Slot {
+        Type type;
+        Sensor sensor;
+        boolean flag;
+        ArmingStatus armingStatus;
+        long publishedNanos;
+    }
+
+    /**
+     * Receives events on the consumer thread.
+     */
+    interface Consumer {
+        void accept(Slot slot);
+    }
+
+    private final Slot[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private long head; //only touched by the consumer thread
+
+    EventRingBuffer(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two, was " + capacity);
+        }
+        slots = new Slot[capacity];
+        sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new Slot();
+            sequences.set(i, i);
+        }
+        mask = capacity - 1;
+    }
+
+    /**
+     * Publishes an event if there is room.
+     * @return false if the buffer is full
+     */
+    boolean offer(Type type, Sensor sensor, boolean flag, ArmingStatus armingStatus) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    Slot slot = slots[index];
+                    slot.type = type;
+                    slot.sensor = sensor;
+                    slot.flag = flag;
+                    slot.armingStatus = armingStatus;
+                    slot.publishedNanos = System.nanoTime();
+                    sequences.lazySet(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Hands up to {@code limit} published events to the consumer. Must only be called from the consumer thread.
+     * @return number of events consumed
+     */
+    int drain(Consumer consumer, int limit) {
+        int consumed = 0;
+        while (consumed < limit) {
+            int index = (int) (head & mask);
+            if (sequences.get(index) != head + 1) {
+                break;
+            }
+            Slot slot = slots[index];
+            try {
+                consumer.accept(slot);
+            } finally {
+                slot.sensor = null;
+                slot.armingStatus = null;
+                sequences.lazySet(index, head + slots.length);
+                head++;
+                consumed++;
+            }
+        }
+        return consumed;
+    }
+
+    boolean isEmpty() {
+        return tail.get() == head;
+    }
+
+    int capacity() {
+        return slots.length;
+    }
+}
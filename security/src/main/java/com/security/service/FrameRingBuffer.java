@@ -0,0 +1,208 @@
+package com.security.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The last frames of a camera, kept as they were encoded so they can be reviewed after an alarm.
+ *
+ * Frames are copied into fixed-size slots of one direct buffer taken from a {@link DirectBufferPool}, with
+ * their sizes and capture times in primitive arrays, so recording a frame allocates nothing on the heap
+ * once the buffer exists. When full, a new frame overwrites the oldest one. Frames larger than a slot
+ * aren't kept.
+ *
+ * {@link #freeze} keeps a window around an event: the frames recorded so far, and a set number of frames
+ * after it. After those the buffer stops recording until {@link #release()}, so the window can be
+ * {@link #export exported} at leisure. A later event starts a new window even if the last one wasn't
+ * exported, since the newest event is the one to review. Exporting copies the frames under the lock and
+ * writes them without it, so recording isn't held up by the disk.
+ */
+public class FrameRingBuffer implements AutoCloseable {
+
+    public static final int DEFAULT_FRAMES = 150;
+    public static final int DEFAULT_MAX_FRAME_BYTES = 512 * 1024;
+
+    private final DirectBufferPool pool;
+    private final int maxFrameBytes;
+    private final int[] lengths;
+    private final long[] capturedAtSeconds;
+    private final int[] capturedAtNanos;
+
+    //guarded by this
+    private ByteBuffer storage;
+    private int next;
+    private int size;
+    //frames still to record before freezing, -1 unless a freeze is pending
+    private int framesBeforeFrozen = -1;
+    private boolean frozen;
+    private long recordedFrames;
+    private long oversizedFrames;
+    private long missedFrames;
+
+    /**
+     * @param frames Frames to keep
+     * @param maxFrameBytes Size of the largest frame that is kept
+     */
+    public FrameRingBuffer(DirectBufferPool pool, int frames, int maxFrameBytes) {
+        if (frames < 1 || maxFrameBytes < 1 || (long) frames * maxFrameBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid frame count or frame size");
+        }
+        this.pool = pool;
+        this.maxFrameBytes = maxFrameBytes;
+        this.lengths = new int[frames];
+        this.capturedAtSeconds = new long[frames];
+        this.capturedAtNanos = new int[frames];
+        this.storage = pool.acquire(frames * maxFrameBytes);
+    }
+
+    /**
+     * Copies the encoded frame, from its position to its limit, without changing the buffer.
+     * @return false if the frame wasn't kept, because it is too large or the buffer is frozen or closed
+     */
+    public synchronized boolean record(Instant capturedAt, ByteBuffer encoded) {
+        if (frozen || storage == null) {
+            missedFrames++;
+            return false;
+        }
+        int length = encoded.remaining();
+        if (length > maxFrameBytes) {
+            oversizedFrames++;
+            return false;
+        }
+        storage.put(next * maxFrameBytes, encoded, encoded.position(), length);
+        lengths[next] = length;
+        capturedAtSeconds[next] = capturedAt.getEpochSecond();
+        capturedAtNanos[next] = capturedAt.getNano();
+        next = (next + 1) % lengths.length;
+        size = Math.min(size + 1, lengths.length);
+        recordedFrames++;
+        if (framesBeforeFrozen > 0 && --framesBeforeFrozen == 0) {
+            freezeNow();
+        }
+        return true;
+    }
+
+    /**
+     * Records the given number of frames more, then stops. Those overwrite the oldest frames as usual, so
+     * at least capacity minus framesAfter frames from before the event are kept. Does nothing if a freeze
+     * is already pending, so the window stays around the first of events close together. If the buffer
+     * is frozen, it records again: the frames of the earlier window are kept until overwritten, but
+     * nothing was recorded in between.
+     */
+    public synchronized void freeze(int framesAfter) {
+        if (framesBeforeFrozen >= 0) {
+            return;
+        }
+        frozen = false;
+        framesBeforeFrozen = Math.min(framesAfter, lengths.length);
+        if (framesBeforeFrozen <= 0) {
+            freezeNow();
+        }
+    }
+
+    /**
+     * @return true once recording has stopped for a freeze
+     */
+    public synchronized boolean isFrozen() {
+        return frozen;
+    }
+
+    /**
+     * Starts recording again, dropping the kept frames.
+     */
+    public synchronized void release() {
+        frozen = false;
+        framesBeforeFrozen = -1;
+        size = 0;
+        next = 0;
+    }
+
+    /**
+     * Writes the kept frames to the directory, oldest first, one file each named after its position and
+     * capture time in epoch milliseconds. Frames recorded meanwhile aren't included.
+     * @return the files written
+     */
+    public List<Path> export(Path directory) throws IOException {
+        List<byte[]> frames = new ArrayList<>();
+        List<Instant> capturedAt = new ArrayList<>();
+        synchronized (this) {
+            if (storage != null) {
+                for (int i = 0; i < size; i++) {
+                    int slot = (next - size + i + lengths.length) % lengths.length;
+                    byte[] frame = new byte[lengths[slot]];
+                    storage.get(slot * maxFrameBytes, frame);
+                    frames.add(frame);
+                    capturedAt.add(Instant.ofEpochSecond(capturedAtSeconds[slot], capturedAtNanos[slot]));
+                }
+            }
+        }
+
+        Files.createDirectories(directory);
+        List<Path> files = new ArrayList<>(frames.size());
+        for (int i = 0; i < frames.size(); i++) {
+            byte[] frame = frames.get(i);
+            Path file = directory.resolve(String.format("%04d-%d.%s", i, capturedAt.get(i).toEpochMilli(), extension(frame)));
+            Files.write(file, frame);
+            files.add(file);
+        }
+        return files;
+    }
+
+    public int getCapacity() {
+        return lengths.length;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized long getRecordedFrames() {
+        return recordedFrames;
+    }
+
+    /**
+     * @return frames too large for a slot
+     */
+    public synchronized long getOversizedFrames() {
+        return oversizedFrames;
+    }
+
+    /**
+     * @return frames not recorded because the buffer was frozen
+     */
+    public synchronized long getMissedFrames() {
+        return missedFrames;
+    }
+
+    /**
+     * Gives the buffer's memory back to the pool. Nothing is recorded afterwards.
+     */
+    @Override
+    public synchronized void close() {
+        if (storage != null) {
+            pool.release(storage);
+            storage = null;
+            size = 0;
+        }
+    }
+
+    private void freezeNow() {
+        frozen = true;
+        framesBeforeFrozen = -1;
+    }
+
+    private static String extension(byte[] frame) {
+        if (frame.length >= 3 && (frame[0] & 0xFF) == 0xFF && (frame[1] & 0xFF) == 0xD8) {
+            return "jpg";
+        }
+        if (frame.length >= 4 && (frame[0] & 0xFF) == 0x89 && frame[1] == 'P') {
+            return "png";
+        }
+        return "bin";
+    }
+}
@@ -0,0 +1,35 @@
+package com.security.service;
+
+import com.udacity.catpoint.image.service.ImageInput;
+import com.udacity.catpoint.image.service.ImageService;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A frame waiting for, or going through, classification. Frames given as a BufferedImage keep it, so a
+ * lone frame can still be classified with {@link ImageService#imageContainsCat}.
+ */
+final class QueuedImage {
+    final long sequence;
+    final Camera camera;
+    final Instant capturedAt;
+    final BufferedImage image;
+    final ImageInput input;
+    //where the frame changed according to the motion gate, empty without one
+    final List<Rectangle> regions;
+    final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+    QueuedImage(long sequence, Camera camera, Instant capturedAt, BufferedImage image, ImageInput input,
+                List<Rectangle> regions) {
+        this.sequence = sequence;
+        this.camera = camera;
+        this.capturedAt = capturedAt;
+        this.image = image;
+        this.input = input;
+        this.regions = regions;
+    }
+}
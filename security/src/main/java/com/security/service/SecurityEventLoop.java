@@ -0,0 +1,189 @@
+package com.security.service;
+
+import com.security.data.ArmingStatus;
+import com.security.data.Sensor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongConsumer;
+
+/**
+ * Ingestion front end for a {@link SecurityService} that is fed from many threads.
+ *
+ * Sensor, arming and image-result events can be published from any thread. They go into a bounded
+ * lock-free ring buffer, and a single event-loop thread takes them out in order and applies them to the
+ * service. Since only that thread ever touches the service, alarm transitions happen one at a time in
+ * publication order without any locking, and the service and repository don't need to be thread safe.
+ *
+ * Publishing never blocks on a lock; when the buffer is full the producer spins until the event loop
+ * has made room. While idle, the event loop backs off from spinning to parking for at most
+ * {@value #MAX_PARK_MICROS} microseconds, which bounds the extra latency for the first event after a quiet period.
+ *
+ * While the loop is running, the wrapped service must not be called directly from other threads.
+ *
+ * Closing and publishing don't share a lock either. Publishers count themselves in before they check that
+ * the loop is running, and the loop only exits once it is stopped, no publisher is counted in and the buffer
+ * is empty. So an event is either rejected or applied, even when published while the loop is closed.
+ */
+public class SecurityEventLoop implements AutoCloseable {
+
+    public static final int DEFAULT_CAPACITY = 1 << 14;
+
+    private static final int MAX_PARK_MICROS = 50;
+    private static final int SPINS_BEFORE_YIELD = 100;
+    private static final int YIELDS_BEFORE_PARK = 10;
+    private static final int DRAIN_LIMIT = 256;
+
+    private static final Logger log = LoggerFactory.getLogger(SecurityEventLoop.class);
+
+    private final SecurityService securityService;
+    private final EventRingBuffer buffer;
+    private final Thread thread;
+    private final EventRingBuffer.Consumer handler = this::apply;
+    private volatile LongConsumer latencyListener;
+    private volatile boolean running;
+    //threads inside publish(), see the class comment
+    private final AtomicInteger publishing = new AtomicInteger();
+
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong bufferFull = new AtomicLong();
+    private volatile long processed;
+    private volatile long failed;
+
+    public SecurityEventLoop(SecurityService securityService) {
+        this(securityService, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity maximum number of events waiting to be applied, a power of two
+     */
+    public SecurityEventLoop(SecurityService securityService, int capacity) {
+        this.securityService = securityService;
+        this.buffer = new EventRingBuffer(capacity);
+        this.thread = new Thread(this::run, "security-event-loop");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Called on the event loop thread with the time in nanoseconds between publishing and applying each event.
+     * Must be set before {@link #start()}, and must be cheap.
+     */
+    public void setLatencyListener(LongConsumer latencyListener) {
+        this.latencyListener = latencyListener;
+    }
+
+    public void start() {
+        running = true;
+        thread.start();
+    }
+
+    public void publishSensorEvent(Sensor sensor, boolean active) {
+        publish(EventRingBuffer.Type.SENSOR, sensor, active, null);
+    }
+
+    public void publishArmingStatus(ArmingStatus armingStatus) {
+        publish(EventRingBuffer.Type.ARMING, null, false, armingStatus);
+    }
+
+    public void publishImageResult(boolean catDetected) {
+        publish(EventRingBuffer.Type.IMAGE_RESULT, null, catDetected, null);
+    }
+
+    /**
+     * Stops the event loop after all events published so far have been applied.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(thread);
+        thread.join();
+    }
+
+    /**
+     * @return true if every event published so far has been applied
+     */
+    public boolean isIdle() {
+        return processed + failed == published.get();
+    }
+
+    public long getPublishedEvents() {
+        return published.get();
+    }
+
+    public long getProcessedEvents() {
+        return processed;
+    }
+
+    /**
+     * @return number of events whose handling threw an exception; the loop keeps going after logging them
+     */
+    public long getFailedEvents() {
+        return failed;
+    }
+
+    /**
+     * @return number of times a producer found the buffer full and had to wait
+     */
+    public long getBufferFullCount() {
+        return bufferFull.get();
+    }
+
+    private void publish(EventRingBuffer.Type type, Sensor sensor, boolean flag, ArmingStatus armingStatus) {
+        publishing.incrementAndGet();
+        try {
+            if (!running) {
+                throw new IllegalStateException("Event loop is not running");
+            }
+            published.incrementAndGet();
+            if (buffer.offer(type, sensor, flag, armingStatus)) {
+                return;
+            }
+            bufferFull.incrementAndGet();
+            do {
+                Thread.onSpinWait();
+            } while (!buffer.offer(type, sensor, flag, armingStatus));
+        } finally {
+            publishing.decrementAndGet();
+        }
+    }
+
+    private void run() {
+        int idle = 0;
+        //in this order: a publisher that saw the loop running is still counted in, or its event is in the buffer
+        while (running || publishing.get() > 0 || !buffer.isEmpty()) {
+            if (buffer.drain(handler, DRAIN_LIMIT) > 0) {
+                idle = 0;
+            } else if (idle < SPINS_BEFORE_YIELD) {
+                idle++;
+                Thread.onSpinWait();
+            } else if (idle < SPINS_BEFORE_YIELD + YIELDS_BEFORE_PARK) {
+                idle++;
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(MAX_PARK_MICROS));
+            }
+        }
+    }
+
+    private void apply(EventRingBuffer.Slot event) {
+        try {
+            switch (event.type) {
+                case SENSOR -> securityService.changeSensorActivationStatus(event.sensor, event.flag);
+                case ARMING -> securityService.setArmingStatus(event.armingStatus);
+                case IMAGE_RESULT -> securityService.processImageResult(event.flag);
+            }
+            processed++;
+        } catch (RuntimeException e) {
+            failed++;
+            log.error("Unable to apply {} event", event.type, e);
+        }
+        LongConsumer listener = latencyListener;
+        if (listener != null) {
+            listener.accept(System.nanoTime() - event.publishedNanos);
+        }
+    }
+}
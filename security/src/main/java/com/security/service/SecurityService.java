@@ -5,16 +5,60 @@ import com.security.data.AlarmStatus;
 import com.security.data.ArmingStatus;
 import com.security.data.SecurityRepository;
 import com.security.data.Sensor;
+import com.udacity.catpoint.image.service.ClassificationResult;
+import com.udacity.catpoint.image.service.ImageInput;
 import com.udacity.catpoint.image.service.ImageService;
+import com.udacity.catpoint.image.service.MotionGate;
+import com.udacity.catpoint.image.service.RegionClassifier;
 
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
-import java.util.HashSet;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class SecurityService {
+    /**
+     * Camera id used for images that don't say which camera they came from.
+     */
+    public static final String DEFAULT_CAMERA = "default";
+
+    /**
+     * Most queued frames sent to the image service in one call.
+     */
+    public static final int MAX_IMAGE_BATCH = 8;
+
     private final ImageService imageService;
     private final SecurityRepository securityRepository;
-    private final Set<StatusListener> statusListeners = new HashSet<>();
+    private final StatusDispatcher statusDispatcher = new StatusDispatcher();
+
+    //changes made by the batch currently being applied, null outside of a batch
+    private Batch batch;
+
+    //image classification runs on imageExecutor, results are applied on imageResultExecutor
+    private Executor imageExecutor = StatusDispatcher.DIRECT;
+    private Executor imageResultExecutor = StatusDispatcher.DIRECT;
+    private final AtomicLong imageSequence = new AtomicLong();
+    //images that haven't been classified yet, those that no scan has taken yet are queued at their camera
+    private final Set<QueuedImage> imagesInFlight = ConcurrentHashMap.newKeySet();
+    private final Set<FutureTask<Void>> scansInFlight = ConcurrentHashMap.newKeySet();
+    private final CameraRegistry cameras = new CameraRegistry();
+    private MotionGate motionGate;
+    private RegionClassifier regionClassifier;
+    private ClassificationScheduler scheduler;
 
     public SecurityService(SecurityRepository securityRepository, ImageService imageService) {
         this.securityRepository = securityRepository;
@@ -23,64 +67,423 @@ public class SecurityService {
 
     public void setArmingStatus(ArmingStatus armingStatus) {
         if (armingStatus == ArmingStatus.DISARMED) {
+            cancelImageClassification();
             setAlarmStatus(AlarmStatus.NO_ALARM);
             resetSensorsInactive();
         } else if (armingStatus == ArmingStatus.ARMED_HOME || armingStatus == ArmingStatus.ARMED_AWAY) {
             resetSensorsInactive();
         }
-        securityRepository.setArmingStatus(armingStatus);
+        if (batch != null) {
+            batch.armingStatus = armingStatus;
+        } else {
+            securityRepository.setArmingStatus(armingStatus);
+        }
+    }
+
+    /**
+     * Applies a series of arming changes in order, then persists and notifies listeners once.
+     */
+    public void setArmingStatus(List<ArmingStatus> armingChanges) {
+        applyBatch(() -> armingChanges.forEach(this::setArmingStatus));
     }
 
     private void catDetected(Boolean cat) {
         if (cat && getArmingStatus() == ArmingStatus.ARMED_HOME) {
             setAlarmStatus(AlarmStatus.ALARM);
-        } else if (!cat && anySensorsActive()) {
+        } else if (!cat && allSensorsInactive()) {
             setAlarmStatus(AlarmStatus.NO_ALARM); // If the camera image does not contain a cat, change the status to no alarm as long as the sensors are not active
         }
     }
 
+    /**
+     * Adds a listener that is called on the thread making the change, before the change returns.
+     */
     public void addStatusListener(StatusListener statusListener) {
-        statusListeners.add(statusListener);
+        addStatusListener(statusListener, StatusDispatcher.DIRECT);
+    }
+
+    /**
+     * Adds a listener that is called through the executor. Notifications that pile up while the listener
+     * is behind are coalesced, see {@link StatusDispatcher}.
+     */
+    public void addStatusListener(StatusListener statusListener, Executor executor) {
+        statusDispatcher.addListener(statusListener, executor);
+    }
+
+    public void removeStatusListener(StatusListener statusListener) {
+        statusDispatcher.removeListener(statusListener);
+    }
+
+    /**
+     * @return delivery statistics of a registered listener, or null if it isn't registered
+     */
+    public StatusDispatcher.ListenerMetrics getListenerMetrics(StatusListener statusListener) {
+        return statusDispatcher.getMetrics(statusListener);
     }
 
     public void setAlarmStatus(AlarmStatus status) {
-        if (status == AlarmStatus.PENDING_ALARM && anySensorsActive()) {
+        if (status == AlarmStatus.PENDING_ALARM && allSensorsInactive()) {
             status = AlarmStatus.NO_ALARM;
         }
-        final AlarmStatus finalStatus = status;
-        securityRepository.setAlarmStatus(finalStatus);
-        statusListeners.forEach(sl -> sl.notify(finalStatus));
+        if (batch != null) {
+            batch.alarmStatus = status;
+            return;
+        }
+        AlarmStatus previous = securityRepository.getAlarmStatus();
+        securityRepository.setAlarmStatus(status);
+        alarmStatusChanged(previous, status);
+    }
+
+    private void alarmStatusChanged(AlarmStatus previous, AlarmStatus status) {
+        if (status == AlarmStatus.ALARM && previous != AlarmStatus.ALARM) {
+            cameras.freezeRecordings();
+        }
+        statusDispatcher.alarmStatusChanged(status);
     }
 
     public void changeSensorActivationStatus(Sensor sensor, Boolean active) {
         boolean wasActive = sensor.getActive();
 
         sensor.setActive(active);
-        securityRepository.updateSensor(sensor);
+        if (batch != null) {
+            batch.sensorChanged(sensor, wasActive);
+        } else {
+            securityRepository.updateSensor(sensor);
+        }
 
         if (active) {
             handleSensorActivated(wasActive);
         } else {
             handleSensorDeactivated(wasActive);
         }
-        statusListeners.forEach(StatusListener::sensorStatusChanged);
+        if (batch == null) {
+            statusDispatcher.sensorsChanged(List.of(sensor));
+        }
     }
 
-    public void processImage(BufferedImage currentCameraImage) {
-        boolean catDetected = imageService.imageContainsCat(currentCameraImage, 50.0f);
+    /**
+     * Applies the events in order, going through the same alarm transitions as one call per event would.
+     * Sensors are then persisted with a single {@link SecurityRepository#updateSensors} call and listeners
+     * get at most one alarm status notification and one {@link StatusListener#sensorsChanged} call,
+     * both describing only the net change over the whole batch.
+     */
+    public void changeSensorActivationStatus(Collection<SensorEvent> sensorEvents) {
+        applyBatch(() -> sensorEvents.forEach(e -> changeSensorActivationStatus(e.getSensor(), e.isActive())));
+    }
+
+    /**
+     * Sets where images are classified and where their results are applied. Results change the alarm
+     * state, so the result executor must run them on the thread that owns this service, for example
+     * the Swing event dispatch thread. Both default to running on the calling thread, which makes
+     * {@link #processImage} synchronous.
+     * @param imageExecutor Runs image classification; should be bounded, since classification can be slow
+     * @param imageResultExecutor Applies classification results
+     */
+    public void setImageExecutors(Executor imageExecutor, Executor imageResultExecutor) {
+        this.imageExecutor = imageExecutor;
+        this.imageResultExecutor = imageResultExecutor;
+    }
+
+    /**
+     * Only frames the motion gate lets through are classified, null classifies every frame.
+     */
+    public void setMotionGate(MotionGate motionGate) {
+        this.motionGate = motionGate;
+    }
+
+    /**
+     * With a region classifier and a motion gate set, only the regions of a frame the motion gate found to
+     * have changed are classified, by the region classifier instead of the image service, one frame at a
+     * time. Null classifies whole frames.
+     */
+    public void setRegionClassifier(RegionClassifier regionClassifier) {
+        this.regionClassifier = regionClassifier;
+    }
+
+    /**
+     * Only frames the scheduler admits are classified, and the queue of frames waiting for the image service
+     * is bounded by it. Null classifies every frame, however many wait.
+     */
+    public void setScheduler(ClassificationScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    public CompletableFuture<Boolean> processImage(BufferedImage currentCameraImage) {
+        return processImage(DEFAULT_CAMERA, currentCameraImage);
+    }
+
+    /**
+     * Classifies the image on the image executor and applies the result on the image result executor.
+     * If a scheduler is set and doesn't admit the frame, or a motion gate is set and the frame hardly
+     * differs from the camera's last classified frame, it is skipped and the returned future completes
+     * with null right away. A frame pushed out of its camera's full queue completes with null as well.
+     *
+     * Frames of a camera that queue up while it is being classified are classified together with one
+     * {@link ImageService#classify} call, up to {@value #MAX_IMAGE_BATCH} at a time; a lone frame goes
+     * through {@link ImageService#imageContainsCat}.
+     *
+     * A result is only applied if no newer image of the same camera has had its result applied yet, so a
+     * slow scan of an old frame never overrides a newer one. Arming status changing to DISARMED cancels
+     * every scan in flight.
+     * @return Completes with whether the image contains a cat, after the result has been applied or
+     * discarded as stale. Fails if the image service failed or the executor rejected the scan, and is
+     * cancelled if the scan was cancelled. Cancelling it drops the frame if it hasn't been sent yet.
+     */
+    public CompletableFuture<Boolean> processImage(String cameraId, BufferedImage currentCameraImage) {
+        return process(cameraId, Instant.now(), currentCameraImage, null);
+    }
+
+    public CompletableFuture<Boolean> processImage(ImageInput currentCameraImage) {
+        return processImage(DEFAULT_CAMERA, currentCameraImage);
+    }
+
+    /**
+     * Same as {@link #processImage(String, BufferedImage)}, for images that may still be encoded. The image
+     * service gets them as they are, so a service that accepts encoded images never decodes them.
+     * A motion gate needs pixels, so with one set the image is decoded before it is classified.
+     */
+    public CompletableFuture<Boolean> processImage(String cameraId, ImageInput currentCameraImage) {
+        return process(cameraId, Instant.now(), null, currentCameraImage);
+    }
+
+    /**
+     * Same as {@link #processImage(String, ImageInput)}, for a frame that says which camera took it and when.
+     *
+     * Every camera has its own bounded queue in the {@link #getCameraRegistry() camera registry}, and its
+     * frames are classified by one worker at a time, so a busy camera holds up no other camera and the
+     * cameras' workers run in parallel on the image executor. Results are kept per camera and combined:
+     * a cat in any camera's latest frame counts, see {@link CameraRegistry}.
+     */
+    public CompletableFuture<Boolean> processImage(CameraFrame frame) {
+        return process(frame.getCameraId(), frame.getCapturedAt(), null, frame.getImage());
+    }
+
+    private CompletableFuture<Boolean> process(String cameraId, Instant capturedAt, BufferedImage image, ImageInput input) {
+        Camera camera = cameras.register(cameraId);
+        if (input != null) {
+            //every frame is recorded, whether or not it is classified
+            camera.record(capturedAt, input);
+        }
+        ClassificationScheduler.Admission admission = admit(cameraId);
+        if (admission == ClassificationScheduler.Admission.SKIP) {
+            return CompletableFuture.completedFuture(null);
+        }
+        List<Rectangle> regions = List.of();
+        if (motionGate != null) {
+            regions = motionGate.detectMotion(cameraId, image != null ? image : input.getImage());
+            if (regions.isEmpty()) {
+                return skipAdmitted();
+            }
+        }
+        return scan(new QueuedImage(imageSequence.incrementAndGet(), camera, capturedAt, image, input, regions),
+                admission == ClassificationScheduler.Admission.PRIORITY);
+    }
+
+    public CameraRegistry getCameraRegistry() {
+        return cameras;
+    }
+
+    /**
+     * Removes the camera, dropping its queued frames, its motion gate reference frame and any say it had in
+     * whether there is a cat.
+     * @return false if there was no such camera
+     */
+    public boolean removeCamera(String cameraId) {
+        Camera camera = cameras.remove(cameraId);
+        if (camera == null) {
+            return false;
+        }
+        camera.close().forEach(image -> image.result.cancel(false));
+        if (scheduler != null) {
+            scheduler.removeCamera(cameraId);
+        }
+        if (motionGate != null) {
+            motionGate.reset(cameraId);
+        }
+        return true;
+    }
+
+    private ClassificationScheduler.Admission admit(String cameraId) {
+        return scheduler == null
+                ? ClassificationScheduler.Admission.QUEUE
+                : scheduler.admit(cameraId, getArmingStatus());
+    }
+
+    private CompletableFuture<Boolean> skipAdmitted() {
+        if (scheduler != null) {
+            scheduler.release();
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Queues the image at its camera and submits a scan for it. Whichever scan of the camera runs first
+     * becomes its worker and takes every queued image, so the scans of images it took find nothing left to do.
+     * @param priority Queue the image ahead of those already waiting
+     */
+    private CompletableFuture<Boolean> scan(QueuedImage image, boolean priority) {
+        Camera camera = image.camera;
+        imagesInFlight.add(image);
+        image.result.whenComplete((catDetected, error) -> {
+            imagesInFlight.remove(image);
+            if (image.result.isCancelled()) {
+                camera.remove(image);
+            }
+        });
+        ClassificationScheduler currentScheduler = scheduler;
+        QueuedImage dropped = camera.offer(image, priority,
+                currentScheduler != null ? currentScheduler.getMaxQueuedFrames() : camera.getQueueCapacity());
+        if (dropped != null) {
+            if (currentScheduler != null) {
+                currentScheduler.frameDropped();
+            }
+            dropped.result.complete(null);
+        }
+
+        FutureTask<Void> scan = new FutureTask<>(() -> classifyQueuedImages(camera), null) {
+            @Override
+            protected void done() {
+                scansInFlight.remove(this);
+            }
+        };
+        scansInFlight.add(scan);
+        try {
+            imageExecutor.execute(scan);
+        } catch (RejectedExecutionException e) {
+            scansInFlight.remove(scan);
+            if (camera.remove(image)) {
+                image.result.completeExceptionally(e);
+            }
+        }
+        return image.result;
+    }
+
+    /**
+     * Works through the camera's queue unless another scan is doing that already. A frame queued just as the
+     * worker finishes is picked up by its own scan, or by this one when it sees the frame after stopping.
+     */
+    private void classifyQueuedImages(Camera camera) {
+        do {
+            if (!camera.startWorking()) {
+                return;
+            }
+            try {
+                List<QueuedImage> images;
+                while (!Thread.currentThread().isInterrupted()
+                        && !(images = camera.take(MAX_IMAGE_BATCH)).isEmpty()) {
+                    classifyAndApply(images);
+                }
+            } finally {
+                camera.stopWorking();
+            }
+        } while (!Thread.currentThread().isInterrupted() && camera.hasQueuedFrames());
+    }
+
+    private void classifyAndApply(List<QueuedImage> images) {
+        List<Boolean> results;
+        try {
+            results = classify(images);
+        } catch (RuntimeException e) {
+            images.forEach(image -> image.result.completeExceptionally(e));
+            return;
+        }
+        //from here on disarming no longer cancels them, their results are discarded as stale instead
+        images.forEach(imagesInFlight::remove);
+        images.get(0).camera.framesClassified(images.size());
+        for (int i = 0; i < images.size(); i++) {
+            QueuedImage image = images.get(i);
+            boolean catDetected = results.get(i);
+            if (image.result.isDone()) {
+                continue; //cancelled while it was being classified
+            }
+            try {
+                imageResultExecutor.execute(() -> {
+                    applyImageResult(image, catDetected);
+                    image.result.complete(catDetected);
+                });
+            } catch (RejectedExecutionException e) {
+                image.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    private List<Boolean> classify(List<QueuedImage> images) {
+        RegionClassifier currentRegionClassifier = regionClassifier;
+        if (currentRegionClassifier != null) {
+            List<Boolean> results = new ArrayList<>(images.size());
+            for (QueuedImage image : images) {
+                ImageInput input = image.image != null ? ImageInput.of(image.image) : image.input;
+                results.add(currentRegionClassifier.classify(input, image.regions, 50.0f).containsCat());
+            }
+            return results;
+        }
+        if (images.size() == 1) {
+            QueuedImage image = images.get(0);
+            return List.of(image.image != null
+                    ? imageService.imageContainsCat(image.image, 50.0f)
+                    : imageService.containsCat(image.input, 50.0f));
+        }
+        List<ImageInput> inputs = new ArrayList<>(images.size());
+        for (QueuedImage image : images) {
+            inputs.add(image.image != null ? ImageInput.of(image.image) : image.input);
+        }
+        List<ClassificationResult> classified = imageService.classify(inputs, 50.0f);
+        if (classified.size() != images.size()) {
+            throw new IllegalStateException("Expected " + images.size() + " results, got " + classified.size());
+        }
+        List<Boolean> results = new ArrayList<>(classified.size());
+        for (ClassificationResult result : classified) {
+            results.add(result.containsCat());
+        }
+        return results;
+    }
+
+    /**
+     * Applies the outcome of an image classification that was done elsewhere. Only while armed at home, in
+     * any other status the result is passed on to listeners but neither raises nor clears the alarm.
+     */
+    public void processImageResult(boolean catDetected) {
+        statusDispatcher.catDetected(catDetected);
         if (getArmingStatus() == ArmingStatus.ARMED_HOME) {
             catDetected(catDetected);
         }
     }
 
+    /**
+     * Records the result at the image's camera, then applies the combined result of all cameras.
+     */
+    private void applyImageResult(QueuedImage image, boolean catDetected) {
+        if (!image.camera.applyResult(image.sequence, image.capturedAt, catDetected)) {
+            return; //a newer image of the camera was already applied, or the scan started before disarming
+        }
+        processImageResult(cameras.anyCatDetected());
+    }
+
+    private void cancelImageClassification() {
+        cameras.reset(imageSequence.get());
+        for (QueuedImage image : imagesInFlight) {
+            image.result.cancel(false);
+        }
+        for (FutureTask<Void> scan : scansInFlight) {
+            scan.cancel(true);
+        }
+    }
+
     public AlarmStatus getAlarmStatus() {
-        return securityRepository.getAlarmStatus();
+        return batch != null ? batch.alarmStatus : securityRepository.getAlarmStatus();
     }
 
     public Set<Sensor> getSensors() {
         return securityRepository.getSensors();
     }
 
+    /**
+     * @return all sensors in display order
+     */
+    public List<Sensor> getSortedSensors() {
+        return securityRepository.getSortedSensors();
+    }
+
     public void addSensor(Sensor sensor) {
         securityRepository.addSensor(sensor);
     }
@@ -90,18 +493,89 @@ public class SecurityService {
     }
 
     public ArmingStatus getArmingStatus() {
-        return securityRepository.getArmingStatus();
+        return batch != null ? batch.armingStatus : securityRepository.getArmingStatus();
     }
 
-    private boolean anySensorsActive() {
-        return securityRepository.getSensors().stream().noneMatch(Sensor::getActive);
+    /**
+     * The repository tracks active sensors as they change, so this doesn't depend on the number of sensors.
+     */
+    private boolean allSensorsInactive() {
+        int activeSensors = securityRepository.getActiveSensorCount();
+        if (batch != null) {
+            activeSensors += batch.activeSensorDelta;
+        }
+        return activeSensors == 0;
     }
 
+    /**
+     * Deactivates every active sensor. Only the active ones are visited, and they are persisted in one batch.
+     */
     private void resetSensorsInactive() {
-        for (Sensor sensor : securityRepository.getSensors()) {
+        if (batch != null) {
+            //the repository hasn't seen this batch's changes yet
+            Map<UUID, Sensor> activeSensors = new LinkedHashMap<>();
+            for (Sensor sensor : securityRepository.getActiveSensors()) {
+                activeSensors.put(sensor.getSensorId(), sensor);
+            }
+            activeSensors.putAll(batch.sensors);
+            for (Sensor sensor : activeSensors.values()) {
+                if (sensor.getActive()) {
+                    sensor.setActive(false);
+                    batch.sensorChanged(sensor, true);
+                }
+            }
+            return;
+        }
+
+        List<Sensor> activeSensors = new ArrayList<>(securityRepository.getActiveSensors());
+        for (Sensor sensor : activeSensors) {
             sensor.setActive(false);
         }
-        statusListeners.forEach(StatusListener::sensorStatusChanged);
+        if (!activeSensors.isEmpty()) {
+            securityRepository.updateSensors(activeSensors);
+            statusDispatcher.sensorsChanged(Collections.unmodifiableList(activeSensors));
+        }
+    }
+
+    /**
+     * Runs the changes with persistence and notifications deferred, then writes and reports the net result.
+     * Whatever was applied is committed even if a change fails part way.
+     */
+    private void applyBatch(Runnable changes) {
+        if (batch != null) {
+            changes.run();
+            return;
+        }
+        Batch current = new Batch(securityRepository.getAlarmStatus(), securityRepository.getArmingStatus());
+        batch = current;
+        try {
+            changes.run();
+        } finally {
+            batch = null;
+            commit(current);
+        }
+    }
+
+    private void commit(Batch changes) {
+        List<Sensor> changedSensors = new ArrayList<>();
+        for (Sensor sensor : changes.sensors.values()) {
+            if (!sensor.getActive().equals(changes.initiallyActive.get(sensor.getSensorId()))) {
+                changedSensors.add(sensor);
+            }
+        }
+        if (!changedSensors.isEmpty()) {
+            securityRepository.updateSensors(changedSensors);
+        }
+        if (changes.armingStatus != changes.initialArmingStatus) {
+            securityRepository.setArmingStatus(changes.armingStatus);
+        }
+        if (changes.alarmStatus != changes.initialAlarmStatus) {
+            securityRepository.setAlarmStatus(changes.alarmStatus);
+            alarmStatusChanged(changes.initialAlarmStatus, changes.alarmStatus);
+        }
+        if (!changedSensors.isEmpty()) {
+            statusDispatcher.sensorsChanged(Collections.unmodifiableList(changedSensors));
+        }
     }
 
     private void handleSensorActivated(boolean wasActive) {
@@ -109,6 +583,10 @@ public class SecurityService {
             return;
         }
 
+        if (!wasActive && scheduler != null) {
+            scheduler.sensorActivated();
+        }
+
         if (wasActive && getAlarmStatus() == AlarmStatus.PENDING_ALARM) {
             setAlarmStatus(AlarmStatus.ALARM);
         } else if (getAlarmStatus() == AlarmStatus.PENDING_ALARM) {
@@ -133,4 +611,32 @@ public class SecurityService {
             setAlarmStatus(AlarmStatus.ALARM);
         }
     }
+
+    /**
+     * State of a batch in progress. Until it is committed the repository still holds the state from before
+     * the batch, so the number of active sensors is the repository's count plus {@link #activeSensorDelta}.
+     */
+    private static final class Batch {
+        private final AlarmStatus initialAlarmStatus;
+        private final ArmingStatus initialArmingStatus;
+        private AlarmStatus alarmStatus;
+        private ArmingStatus armingStatus;
+
+        private final Map<UUID, Sensor> sensors = new LinkedHashMap<>();
+        private final Map<UUID, Boolean> initiallyActive = new HashMap<>();
+        private int activeSensorDelta;
+
+        Batch(AlarmStatus alarmStatus, ArmingStatus armingStatus) {
+            this.initialAlarmStatus = alarmStatus;
+            this.initialArmingStatus = armingStatus;
+            this.alarmStatus = alarmStatus;
+            this.armingStatus = armingStatus;
+        }
+
+        void sensorChanged(Sensor sensor, boolean wasActive) {
+            sensors.put(sensor.getSensorId(), sensor);
+            initiallyActive.putIfAbsent(sensor.getSensorId(), wasActive);
+            activeSensorDelta += (sensor.getActive() ? 1 : 0) - (wasActive ? 1 : 0);
+        }
+    }
 }
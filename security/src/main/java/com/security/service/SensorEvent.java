@@ -0,0 +1,24 @@
+package com.security.service;
+
+import com.security.data.Sensor;
+
+/**
+ * A sensor reporting that it became active or inactive.
+ */
+public final class SensorEvent {
+    private final Sensor sensor;
+    private final boolean active;
+
+    public SensorEvent(Sensor sensor, boolean active) {
+        this.sensor = sensor;
+        this.active = active;
+    }
+
+    public Sensor getSensor() {
+        return sensor;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+}
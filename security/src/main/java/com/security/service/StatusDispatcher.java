@@ -0,0 +1,305 @@
+package com.security.service;
+
+import com.security.application.StatusListener;
+import com.security.data.AlarmStatus;
+import com.security.data.Sensor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Delivers status notifications to listeners, each on its own executor, so a slow listener doesn't hold up
+ * the state change that caused the notification.
+ *
+ * Every listener has a small mailbox with one slot per kind of notification. If the listener falls behind,
+ * new notifications are merged into the pending ones instead of queueing up: only the latest alarm status
+ * and cat detection result are delivered, any number of {@code sensorStatusChanged} calls become one, and
+ * changed sensors are collected into a single {@code sensorsChanged} call (at most
+ * {@value #MAX_PENDING_SENSORS} of them, beyond that the listener gets {@code sensorStatusChanged} instead).
+ * Pending notifications are delivered in the order alarm status, cat detection, sensors.
+ *
+ * With the {@link #DIRECT} executor a notification is delivered before the publishing call returns, just
+ * like calling the listener directly. Listeners can be added and removed at any time.
+ */
+public class StatusDispatcher {
+
+    /**
+     * Runs deliveries on the publishing thread.
+     */
+    public static final Executor DIRECT = Runnable::run;
+
+    static final int MAX_PENDING_SENSORS = 1024;
+
+    private static final Logger log = LoggerFactory.getLogger(StatusDispatcher.class);
+
+    private final CopyOnWriteArrayList<Mailbox> mailboxes = new CopyOnWriteArrayList<>();
+
+    public void addListener(StatusListener listener, Executor executor) {
+        mailboxes.add(new Mailbox(listener, executor));
+    }
+
+    public void removeListener(StatusListener listener) {
+        mailboxes.removeIf(m -> m.listener == listener);
+    }
+
+    public void alarmStatusChanged(AlarmStatus status) {
+        for (Mailbox mailbox : mailboxes) {
+            mailbox.alarmStatusChanged(status);
+        }
+    }
+
+    public void catDetected(boolean catDetected) {
+        for (Mailbox mailbox : mailboxes) {
+            mailbox.catDetected(catDetected);
+        }
+    }
+
+    public void sensorStatusChanged() {
+        for (Mailbox mailbox : mailboxes) {
+            mailbox.sensorStatusChanged();
+        }
+    }
+
+    public void sensorsChanged(Collection<Sensor> changedSensors) {
+        for (Mailbox mailbox : mailboxes) {
+            mailbox.sensorsChanged(changedSensors);
+        }
+    }
+
+    /**
+     * @return delivery statistics of the listener, or null if it isn't registered
+     */
+    public ListenerMetrics getMetrics(StatusListener listener) {
+        for (Mailbox mailbox : mailboxes) {
+            if (mailbox.listener == listener) {
+                return mailbox.metrics();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Point-in-time delivery statistics of one listener. Lag is the time from the oldest notification
+     * of a delivery round being published to the listener being called with it.
+     */
+    public static final class ListenerMetrics {
+        private final long published;
+        private final long delivered;
+        private final long coalesced;
+        private final long lastLagNanos;
+        private final long maxLagNanos;
+        private final boolean pending;
+
+        ListenerMetrics(long published, long delivered, long coalesced, long lastLagNanos, long maxLagNanos, boolean pending) {
+            this.published = published;
+            this.delivered = delivered;
+            this.coalesced = coalesced;
+            this.lastLagNanos = lastLagNanos;
+            this.maxLagNanos = maxLagNanos;
+            this.pending = pending;
+        }
+
+        /**
+         * @return notifications published to the listener
+         */
+        public long getPublished() {
+            return published;
+        }
+
+        /**
+         * @return listener calls made
+         */
+        public long getDelivered() {
+            return delivered;
+        }
+
+        /**
+         * @return notifications merged into one that was still pending
+         */
+        public long getCoalesced() {
+            return coalesced;
+        }
+
+        public long getLastLagNanos() {
+            return lastLagNanos;
+        }
+
+        public long getMaxLagNanos() {
+            return maxLagNanos;
+        }
+
+        /**
+         * @return true if there were notifications waiting to be delivered
+         */
+        public boolean isPending() {
+            return pending;
+        }
+    }
+
+    private static final class Mailbox implements Runnable {
+        private final StatusListener listener;
+        private final Executor executor;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        //pending notifications, guarded by this
+        private AlarmStatus alarmStatus;
+        private Boolean catDetected;
+        private boolean sensorStatusChanged;
+        private Map<UUID, Sensor> changedSensors;
+        private long oldestPendingNanos;
+
+        private final AtomicLong published = new AtomicLong();
+        private final AtomicLong delivered = new AtomicLong();
+        private final AtomicLong coalesced = new AtomicLong();
+        private volatile long lastLagNanos;
+        private volatile long maxLagNanos;
+
+        Mailbox(StatusListener listener, Executor executor) {
+            this.listener = listener;
+            this.executor = executor;
+        }
+
+        void alarmStatusChanged(AlarmStatus status) {
+            synchronized (this) {
+                countPublished(alarmStatus != null);
+                alarmStatus = status;
+            }
+            schedule();
+        }
+
+        void catDetected(boolean cat) {
+            synchronized (this) {
+                countPublished(catDetected != null);
+                catDetected = cat;
+            }
+            schedule();
+        }
+
+        void sensorStatusChanged() {
+            synchronized (this) {
+                countPublished(sensorStatusChanged);
+                sensorStatusChanged = true;
+                changedSensors = null;
+            }
+            schedule();
+        }
+
+        void sensorsChanged(Collection<Sensor> sensors) {
+            synchronized (this) {
+                countPublished(sensorStatusChanged || changedSensors != null);
+                if (!sensorStatusChanged) {
+                    if (changedSensors == null) {
+                        changedSensors = new LinkedHashMap<>();
+                    }
+                    for (Sensor sensor : sensors) {
+                        changedSensors.put(sensor.getSensorId(), sensor);
+                    }
+                    if (changedSensors.size() > MAX_PENDING_SENSORS) {
+                        //too many to list, have the listener refresh everything
+                        changedSensors = null;
+                        sensorStatusChanged = true;
+                    }
+                }
+            }
+            schedule();
+        }
+
+        private void countPublished(boolean merged) {
+            published.incrementAndGet();
+            if (merged) {
+                coalesced.incrementAndGet();
+            } else if (!hasPending()) {
+                oldestPendingNanos = System.nanoTime();
+            }
+        }
+
+        private boolean hasPending() {
+            return alarmStatus != null || catDetected != null || sensorStatusChanged || changedSensors != null;
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    scheduled.set(false);
+                }
+            }
+        }
+
+        /**
+         * Delivers pending notifications until there are none left. Notifications published by the listener
+         * itself during delivery are picked up by the next round instead of recursing.
+         */
+        @Override
+        public void run() {
+            while (true) {
+                AlarmStatus status;
+                Boolean cat;
+                boolean refreshSensors;
+                Map<UUID, Sensor> sensors;
+                long oldest;
+                synchronized (this) {
+                    if (!hasPending()) {
+                        scheduled.set(false);
+                        return;
+                    }
+                    status = alarmStatus;
+                    cat = catDetected;
+                    refreshSensors = sensorStatusChanged;
+                    sensors = changedSensors;
+                    oldest = oldestPendingNanos;
+                    alarmStatus = null;
+                    catDetected = null;
+                    sensorStatusChanged = false;
+                    changedSensors = null;
+                }
+
+                long lag = System.nanoTime() - oldest;
+                lastLagNanos = lag;
+                if (lag > maxLagNanos) {
+                    maxLagNanos = lag;
+                }
+                //each on its own, so a listener failing on one notification still gets the others
+                if (status != null) {
+                    deliver("notify", () -> listener.notify(status));
+                }
+                if (cat != null) {
+                    deliver("catDetected", () -> listener.catDetected(cat));
+                }
+                if (refreshSensors) {
+                    deliver("sensorStatusChanged", listener::sensorStatusChanged);
+                } else if (sensors != null) {
+                    deliver("sensorsChanged", () -> listener.sensorsChanged(new ArrayList<>(sensors.values())));
+                }
+            }
+        }
+
+        private void deliver(String notification, Runnable call) {
+            delivered.incrementAndGet();
+            try {
+                call.run();
+            } catch (RuntimeException e) {
+                log.error("Status listener {} failed in {}", listener.getClass().getName(), notification, e);
+            }
+        }
+
+        ListenerMetrics metrics() {
+            boolean pending;
+            synchronized (this) {
+                pending = hasPending();
+            }
+            return new ListenerMetrics(published.get(), delivered.get(), coalesced.get(), lastLagNanos, maxLagNanos, pending);
+        }
+    }
+}
@@ -3,9 +3,11 @@ module com.security {
     requires com.google.common;
     requires transitive com.google.gson;
     requires java.prefs;
+    requires java.sql;
     requires miglayout.swing;
     requires miglayout.core;
     requires image;
+    requires org.slf4j;
 
    opens com.security.data to com.google.gson;
 }
\ No newline at end of file
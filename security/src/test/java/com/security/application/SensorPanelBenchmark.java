@@ -0,0 +1,66 @@
+package com.security.application;
+
+import com.security.data.MappedSensorSecurityRepositoryImpl;
+import com.security.data.Sensor;
+import com.security.data.SensorType;
+import com.security.service.SecurityService;
+import com.udacity.catpoint.image.service.FakeImageService;
+
+import javax.swing.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives a SensorPanel with 10k sensors and 1k toggles per second, and measures how long the event
+ * dispatch thread takes to pick up a probe task scheduled every millisecond. A stall in the panel shows
+ * up as a large probe delay. Runs headless by default, which leaves out the cost of actually painting rows.
+ * Not a unit test, run it manually with the test classpath.
+ */
+public class SensorPanelBenchmark {
+
+    private static final int SENSORS = 10_000;
+    private static final int TOGGLES_PER_SECOND = 1_000;
+    private static final int SECONDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        Path dir = Files.createTempDirectory("catpoint-panel");
+        try (MappedSensorSecurityRepositoryImpl repository = new MappedSensorSecurityRepositoryImpl(dir)) {
+            SecurityService securityService = new SecurityService(repository, new FakeImageService());
+            List<Sensor> sensors = new ArrayList<>();
+            for (int i = 0; i < SENSORS; i++) {
+                Sensor sensor = new Sensor("Sensor " + i, SensorType.MOTION);
+                sensors.add(sensor);
+                securityService.addSensor(sensor);
+            }
+            SwingUtilities.invokeAndWait(() -> new SensorPanel(securityService, SENSORS));
+
+            long[] maxProbeDelay = new long[1];
+            long[] probes = new long[1];
+            long intervalNanos = TimeUnit.SECONDS.toNanos(1) / TOGGLES_PER_SECOND;
+            long start = System.nanoTime();
+            for (int i = 0; i < TOGGLES_PER_SECOND * SECONDS; i++) {
+                long due = start + i * intervalNanos;
+                while (System.nanoTime() < due) {
+                    Thread.onSpinWait();
+                }
+                Sensor sensor = sensors.get(i % SENSORS);
+                long scheduled = System.nanoTime();
+                SwingUtilities.invokeLater(() -> {
+                    long delay = System.nanoTime() - scheduled;
+                    maxProbeDelay[0] = Math.max(maxProbeDelay[0], delay);
+                    probes[0]++;
+                    //same path as clicking in the panel
+                    securityService.changeSensorActivationStatus(sensor, !sensor.getActive());
+                });
+            }
+            SwingUtilities.invokeAndWait(() -> { });
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%,d sensors, %,d toggles in %.2f s (%,.0f/s), max EDT pickup delay %.2f ms%n",
+                    SENSORS, probes[0], seconds, probes[0] / seconds, maxProbeDelay[0] / 1e6);
+        }
+        System.exit(0);
+    }
+}
@@ -0,0 +1,88 @@
+package com.security.application;
+
+import com.security.data.Sensor;
+import com.security.data.SensorType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.swing.event.TableModelEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SensorTableModelTest {
+
+    private final List<Sensor> sensors = new ArrayList<>();
+    private final List<TableModelEvent> events = new ArrayList<>();
+    private SensorTableModel model;
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < 10; i++) {
+            sensors.add(new Sensor("Sensor " + i, SensorType.MOTION));
+        }
+        model = new SensorTableModel(() -> sensors);
+        model.addTableModelListener(events::add);
+    }
+
+    @Test
+    void ChangedSensorsRepaintOnlyTheirRowsOncePerFrame() {
+        model.sensorsChanged(List.of(sensors.get(2)));
+        model.sensorsChanged(List.of(sensors.get(3), sensors.get(7)));
+        model.sensorsChanged(List.of(sensors.get(2)));
+        assertTrue(events.isEmpty());
+
+        sensors.get(7).setActive(true);
+        model.flush();
+
+        assertEquals(2, events.size());
+        assertRowsUpdated(events.get(0), 2, 3);
+        assertRowsUpdated(events.get(1), 7, 7);
+        assertEquals("Active", model.getValueAt(7, 2));
+
+        model.flush();
+        assertEquals(2, events.size());
+    }
+
+    @Test
+    void AddedAndRemovedSensorsKeepDisplayOrder() {
+        Sensor added = new Sensor("Sensor 35", SensorType.DOOR);
+        model.sensorAdded(added);
+
+        assertEquals(11, model.getRowCount());
+        assertSame(added, model.getSensorAt(4));
+        assertEquals(TableModelEvent.INSERT, events.get(0).getType());
+        assertEquals(4, events.get(0).getFirstRow());
+
+        model.sensorRemoved(sensors.get(1));
+        assertEquals(10, model.getRowCount());
+        assertSame(added, model.getSensorAt(3));
+        assertEquals(TableModelEvent.DELETE, events.get(1).getType());
+
+        //rows after the removed one moved up
+        events.clear();
+        model.sensorsChanged(List.of(added));
+        model.flush();
+        assertRowsUpdated(events.get(0), 3, 3);
+    }
+
+    @Test
+    void RefreshReloadsEverythingOnce() {
+        model.sensorsChanged(List.of(sensors.get(2)));
+        sensors.remove(0);
+        model.refresh();
+        model.sensorsChanged(List.of(sensors.get(5)));
+        model.flush();
+
+        assertEquals(1, events.size());
+        assertEquals(Integer.MAX_VALUE, events.get(0).getLastRow());
+        assertEquals(9, model.getRowCount());
+    }
+
+    private static void assertRowsUpdated(TableModelEvent event, int firstRow, int lastRow) {
+        assertEquals(TableModelEvent.UPDATE, event.getType());
+        assertEquals(firstRow, event.getFirstRow());
+        assertEquals(lastRow, event.getLastRow());
+    }
+}
@@ -0,0 +1,55 @@
+package com.security.data;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JdbcSecurityRepositoryImplTest {
+
+    @TempDir
+    Path directory;
+
+    private String url() {
+        return "jdbc:h2:file:" + directory.resolve("catpoint").toAbsolutePath();
+    }
+
+    @Test
+    void NewDatabaseStartsDisarmedWithoutSensors() {
+        try (JdbcSecurityRepositoryImpl repository = new JdbcSecurityRepositoryImpl(url())) {
+            assertTrue(repository.getSensors().isEmpty());
+            assertEquals(AlarmStatus.NO_ALARM, repository.getAlarmStatus());
+            assertEquals(ArmingStatus.DISARMED, repository.getArmingStatus());
+        }
+    }
+
+    @Test
+    void StateSurvivesReopen() {
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        Sensor window = new Sensor("Window", SensorType.WINDOW);
+        Sensor motion = new Sensor("Motion", SensorType.MOTION);
+        try (JdbcSecurityRepositoryImpl repository = new JdbcSecurityRepositoryImpl(url())) {
+            repository.addSensor(door);
+            repository.addSensor(window);
+            repository.addSensor(motion);
+            repository.removeSensor(window);
+            door.setActive(true);
+            motion.setActive(true);
+            repository.updateSensors(List.of(door, motion));
+            repository.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+            repository.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        }
+
+        try (JdbcSecurityRepositoryImpl reopened = new JdbcSecurityRepositoryImpl(url())) {
+            assertEquals(2, reopened.getSensors().size());
+            assertTrue(reopened.getSensors().contains(door));
+            assertTrue(reopened.getSensors().contains(motion));
+            assertTrue(reopened.getSensors().stream().allMatch(Sensor::getActive));
+            assertEquals(AlarmStatus.PENDING_ALARM, reopened.getAlarmStatus());
+            assertEquals(ArmingStatus.ARMED_AWAY, reopened.getArmingStatus());
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.security.data;
+
+import com.google.common.reflect.TypeToken;
+import com.google.gson.Gson;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Load time, update latency and resident memory of the memory-mapped repository for large fleets.
+ * Not a unit test, run it manually with the test classpath, one fleet size per JVM so RSS is meaningful:
+ *   java -cp ... com.security.data.MappedRepositoryBenchmark 100000
+ * For reference it also times a Gson parse of the same fleet, which is what loading the
+ * Preferences repository would cost if Preferences could hold that much JSON.
+ */
+public class MappedRepositoryBenchmark {
+
+    private static final int UPDATES = 1_000_000;
+
+    public static void main(String[] args) throws IOException {
+        int fleetSize = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        Path dir = Files.createTempDirectory("catpoint-mapped");
+
+        List<Sensor> created = new ArrayList<>(fleetSize);
+        try (MappedSensorSecurityRepositoryImpl repository = new MappedSensorSecurityRepositoryImpl(dir)) {
+            for (int i = 0; i < fleetSize; i++) {
+                Sensor sensor = new Sensor("Sensor " + i, SensorType.values()[i % SensorType.values().length]);
+                created.add(sensor);
+                repository.addSensor(sensor);
+            }
+        }
+        String json = new Gson().toJson(new TreeSet<>(created));
+        created = null;
+        System.gc();
+        long rssBefore = residentKb();
+
+        long start = System.nanoTime();
+        MappedSensorSecurityRepositoryImpl repository = new MappedSensorSecurityRepositoryImpl(dir);
+        long loadNanos = System.nanoTime() - start;
+        long rssAfter = residentKb();
+
+        List<Sensor> sensors = new ArrayList<>(repository.getSensors());
+        Random random = new Random(42);
+        for (int i = 0; i < UPDATES / 10; i++) {
+            toggle(repository, sensors.get(random.nextInt(sensors.size())));
+        }
+        start = System.nanoTime();
+        for (int i = 0; i < UPDATES; i++) {
+            toggle(repository, sensors.get(random.nextInt(sensors.size())));
+        }
+        long updateNanos = (System.nanoTime() - start) / UPDATES;
+        repository.close();
+
+        start = System.nanoTime();
+        Set<Sensor> parsed = new Gson().fromJson(json, new TypeToken<Set<Sensor>>() {
+        }.getType());
+        long gsonNanos = System.nanoTime() - start;
+
+        System.out.printf("%,9d sensors: load %,6d ms (gson parse %,6d ms for %,d KB of json) | update %,5d ns | RSS +%,d KB%n",
+                fleetSize, loadNanos / 1_000_000, gsonNanos / 1_000_000, json.length() / 1024, updateNanos,
+                rssAfter - rssBefore);
+        if (parsed.size() != fleetSize) {
+            throw new IllegalStateException("unexpected parse result");
+        }
+
+        try (var paths = Files.walk(dir)) {
+            paths.sorted((a, b) -> b.compareTo(a)).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    private static void toggle(SecurityRepository repository, Sensor sensor) {
+        sensor.setActive(!sensor.getActive());
+        repository.updateSensor(sensor);
+    }
+
+    private static long residentKb() throws IOException {
+        Path status = Path.of("/proc/self/status");
+        if (!Files.exists(status)) {
+            return 0;
+        }
+        return Files.readAllLines(status).stream()
+                .filter(line -> line.startsWith("VmRSS:"))
+                .mapToLong(line -> Long.parseLong(line.replaceAll("\\D", "")))
+                .findFirst()
+                .orElse(0);
+    }
+}
@@ -0,0 +1,148 @@
+package com.security.data;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedSensorSecurityRepositoryImplTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void StateSurvivesReopen() {
+        Sensor door = new Sensor("Front Door", SensorType.DOOR);
+        Sensor window = new Sensor("Kitchen Window", SensorType.WINDOW);
+        try (MappedSensorSecurityRepositoryImpl repository = new MappedSensorSecurityRepositoryImpl(directory)) {
+            repository.addSensor(door);
+            repository.addSensor(window);
+            door.setActive(true);
+            door.setName("Back Door");
+            repository.updateSensor(door);
+            repository.removeSensor(window);
+            repository.setAlarmStatus(AlarmStatus.ALARM);
+            repository.setArmingStatus(ArmingStatus.ARMED_HOME);
+        }
+
+        try (MappedSensorSecurityRepositoryImpl reopened = new MappedSensorSecurityRepositoryImpl(directory)) {
+            assertEquals(1, reopened.getSensors().size());
+            Sensor recovered = reopened.getSensors().iterator().next();
+            assertEquals(door.getSensorId(), recovered.getSensorId());
+            assertEquals("Back Door", recovered.getName());
+            assertEquals(SensorType.DOOR, recovered.getSensorType());
+            assertTrue(recovered.getActive());
+            assertEquals(AlarmStatus.ALARM, reopened.getAlarmStatus());
+            assertEquals(ArmingStatus.ARMED_HOME, reopened.getArmingStatus());
+        }
+    }
+
+    @Test
+    void NameOffsetPastTheNameFileFailsToLoad() throws IOException {
+        try (MappedSensorSecurityRepositoryImpl repository = new MappedSensorSecurityRepositoryImpl(directory)) {
+            repository.addSensor(new Sensor("Door", SensorType.DOOR));
+        }
+        //name offset of the first record, past 2 GB where a cast to int would wrap around
+        try (FileChannel channel = FileChannel.open(directory.resolve(MappedSensorSecurityRepositoryImpl.SENSOR_FILE),
+                StandardOpenOption.WRITE)) {
+            ByteBuffer offset = ByteBuffer.allocate(Long.BYTES).putLong(1L << 32).flip();
+            channel.write(offset, MappedSensorSecurityRepositoryImpl.HEADER_BYTES + 16);
+        }
+
+        assertThrows(UncheckedIOException.class, () -> new MappedSensorSecurityRepositoryImpl(directory));
+    }
+
+    @Test
+    void OutOfRangeValuesFailToLoad() throws IOException {
+        int[][] damage = {
+                {MappedSensorSecurityRepositoryImpl.ALARM_OFFSET, 7},
+                {MappedSensorSecurityRepositoryImpl.ARMING_OFFSET, -2},
+                {MappedSensorSecurityRepositoryImpl.SLOTS_USED_OFFSET, Integer.MAX_VALUE},
+        };
+        for (int[] value : damage) {
+            writeSensorFile(value[0], ByteBuffer.allocate(Integer.BYTES).putInt(value[1]).flip());
+
+            UncheckedIOException e = assertThrows(UncheckedIOException.class, () -> new MappedSensorSecurityRepositoryImpl(directory));
+            assertEquals("Corrupt sensor file", e.getCause().getMessage());
+        }
+        writeSensorFile(MappedSensorSecurityRepositoryImpl.HEADER_BYTES + MappedSensorSecurityRepositoryImpl.TYPE_OFFSET,
+                ByteBuffer.wrap(new byte[]{42}));
+
+        UncheckedIOException e = assertThrows(UncheckedIOException.class, () -> new MappedSensorSecurityRepositoryImpl(directory));
+        assertEquals("Corrupt sensor file", e.getCause().getMessage());
+    }
+
+    @Test
+    void FileGrowsPastInitialCapacityAndReusesFreedSlots() {
+        List<Sensor> sensors = new ArrayList<>();
+        try (MappedSensorSecurityRepositoryImpl repository = new MappedSensorSecurityRepositoryImpl(directory)) {
+            for (int i = 0; i < 5_000; i++) {
+                Sensor sensor = new Sensor("Sensor " + i, SensorType.MOTION);
+                sensors.add(sensor);
+                repository.addSensor(sensor);
+            }
+            for (int i = 0; i < 1_000; i++) {
+                repository.removeSensor(sensors.get(i));
+            }
+            for (int i = 0; i < 1_000; i++) {
+                repository.addSensor(new Sensor("Replacement " + i, SensorType.WINDOW));
+            }
+        }
+
+        try (MappedSensorSecurityRepositoryImpl reopened = new MappedSensorSecurityRepositoryImpl(directory)) {
+            assertEquals(5_000, reopened.getSensors().size());
+            assertFalse(reopened.getSensors().contains(sensors.get(0)));
+            assertTrue(reopened.getSensors().contains(sensors.get(4_999)));
+        }
+    }
+
+    @Test
+    void ActiveSensorsAreTrackedAcrossChangesAndReopen() {
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        Sensor window = new Sensor("Window", SensorType.WINDOW);
+        try (MappedSensorSecurityRepositoryImpl repository = new MappedSensorSecurityRepositoryImpl(directory)) {
+            repository.addSensor(door);
+            repository.addSensor(window);
+            assertEquals(0, repository.getActiveSensorCount());
+
+            door.setActive(true);
+            repository.updateSensor(door);
+            window.setActive(true);
+            repository.updateSensor(window);
+            assertEquals(2, repository.getActiveSensorCount());
+
+            repository.removeSensor(window);
+            assertEquals(1, repository.getActiveSensorCount());
+            assertTrue(repository.getActiveSensors().contains(door));
+        }
+
+        try (MappedSensorSecurityRepositoryImpl reopened = new MappedSensorSecurityRepositoryImpl(directory)) {
+            assertEquals(1, reopened.getActiveSensorCount());
+        }
+    }
+
+    /**
+     * Writes a fresh repository with one sensor, then overwrites the sensor file at the position.
+     */
+    private void writeSensorFile(int position, ByteBuffer bytes) throws IOException {
+        Files.deleteIfExists(directory.resolve(MappedSensorSecurityRepositoryImpl.SENSOR_FILE));
+        Files.deleteIfExists(directory.resolve(MappedSensorSecurityRepositoryImpl.NAME_FILE));
+        try (MappedSensorSecurityRepositoryImpl repository = new MappedSensorSecurityRepositoryImpl(directory)) {
+            repository.addSensor(new Sensor("Door", SensorType.DOOR));
+        }
+        try (FileChannel channel = FileChannel.open(directory.resolve(MappedSensorSecurityRepositoryImpl.SENSOR_FILE),
+                StandardOpenOption.WRITE)) {
+            channel.write(bytes, position);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.security.data;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.prefs.BackingStoreException;
+import java.util.prefs.Preferences;
+
+/**
+ * Compares sensor update throughput of the Preferences backed repository with the write-ahead log.
+ * Not a unit test, run it manually from the IDE or with the test classpath:
+ *   java -cp ... com.security.data.RepositoryThroughputBenchmark
+ *
+ * The Preferences repository shares its storage with the real application, so any existing
+ * preferences are exported before the run and restored afterwards.
+ */
+public class RepositoryThroughputBenchmark {
+
+    private static final int WARMUP_UPDATES = 2_000;
+    private static final int MEASURED_UPDATES = 10_000;
+
+    //Preferences values are capped at 8 KB, so the JSON for more than ~60 sensors doesn't fit
+    private static final int[] FLEET_SIZES = {4, 16, 48};
+
+    public static void main(String[] args) throws Exception {
+        Preferences prefs = Preferences.userNodeForPackage(PretendDatabaseSecurityRepositoryImpl.class);
+        List<String[]> saved = new ArrayList<>();
+        for (String key : prefs.keys()) {
+            saved.add(new String[]{key, prefs.get(key, null)});
+        }
+
+        try {
+            for (int fleetSize : FLEET_SIZES) {
+                prefs.clear();
+                double prefsRate = measure(fleetSize, PretendDatabaseSecurityRepositoryImpl::new);
+
+                Path dir = Files.createTempDirectory("catpoint-wal");
+                double walRate = measure(fleetSize, () -> new WriteAheadLogSecurityRepositoryImpl(dir));
+                deleteRecursively(dir);
+
+                System.out.printf("%,6d sensors: preferences %,12.0f updates/s | write-ahead log %,12.0f updates/s (%.0fx)%n",
+                        fleetSize, prefsRate, walRate, walRate / prefsRate);
+            }
+        } finally {
+            prefs.clear();
+            for (String[] entry : saved) {
+                prefs.put(entry[0], entry[1]);
+            }
+            prefs.flush();
+        }
+    }
+
+    private static double measure(int fleetSize, Supplier<SecurityRepository> factory) throws BackingStoreException {
+        SecurityRepository repository = factory.get();
+        List<Sensor> sensors = new ArrayList<>();
+        for (int i = 0; i < fleetSize; i++) {
+            Sensor sensor = new Sensor("Sensor " + i, SensorType.values()[i % SensorType.values().length]);
+            sensors.add(sensor);
+            repository.addSensor(sensor);
+        }
+
+        toggle(repository, sensors, WARMUP_UPDATES);
+        long start = System.nanoTime();
+        toggle(repository, sensors, MEASURED_UPDATES);
+        long elapsed = System.nanoTime() - start;
+
+        if (repository instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return MEASURED_UPDATES / (elapsed / 1e9);
+    }
+
+    private static void toggle(SecurityRepository repository, List<Sensor> sensors, int updates) {
+        for (int i = 0; i < updates; i++) {
+            Sensor sensor = sensors.get(i % sensors.size());
+            sensor.setActive(!sensor.getActive());
+            repository.updateSensor(sensor);
+        }
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (var paths = Files.walk(dir)) {
+            paths.sorted((a, b) -> b.compareTo(a)).forEach(p -> p.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.security.data;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SensorIndexTest {
+
+    private SensorIndex index;
+    private Sensor window;
+    private Sensor door;
+
+    @BeforeEach
+    void setUp() {
+        index = new SensorIndex();
+        window = new Sensor("Window", SensorType.WINDOW);
+        door = new Sensor("Door", SensorType.DOOR);
+        index.put(window);
+        index.put(door);
+    }
+
+    @Test
+    void SensorsAreFoundById() {
+        assertSame(door, index.get(door.getSensorId()));
+        assertTrue(index.sensors().contains(window));
+
+        index.remove(window);
+
+        assertNull(index.get(window.getSensorId()));
+        assertFalse(index.sensors().contains(window));
+    }
+
+    @Test
+    void SortedViewIsCachedAcrossActivationChanges() {
+        List<Sensor> sorted = index.sorted();
+        assertEquals(List.of(door, window), sorted);
+
+        door.setActive(true);
+        index.put(door);
+
+        assertSame(sorted, index.sorted());
+        assertEquals(1, index.activeCount());
+    }
+
+    @Test
+    void SortedViewIsRebuiltWhenOrderMayChange() {
+        List<Sensor> sorted = index.sorted();
+
+        door.setName("Zebra Door");
+        index.put(door);
+        assertEquals(List.of(window, door), index.sorted());
+
+        Sensor attic = new Sensor("Attic", SensorType.MOTION);
+        index.put(attic);
+        assertEquals(List.of(attic, window, door), index.sorted());
+
+        index.remove(attic);
+        assertNotSame(sorted, index.sorted());
+        assertEquals(List.of(window, door), index.sorted());
+    }
+
+    @Test
+    void SnapshotIsCachedUntilSensorsAreAddedOrRemoved() {
+        Set<Sensor> snapshot = index.snapshot();
+        assertEquals(Set.of(window, door), snapshot);
+
+        door.setActive(true);
+        index.put(door);
+        assertSame(snapshot, index.snapshot());
+
+        Sensor attic = new Sensor("Attic", SensorType.MOTION);
+        index.put(attic);
+        assertEquals(Set.of(window, door), snapshot);
+        assertEquals(Set.of(window, door, attic), index.snapshot());
+
+        Set<Sensor> withAttic = index.snapshot();
+        index.remove(attic);
+        assertEquals(Set.of(window, door), index.snapshot());
+        assertTrue(withAttic.contains(attic));
+    }
+}
@@ -0,0 +1,101 @@
+package com.security.data;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteAheadLogSecurityRepositoryImplTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void StateSurvivesReopen() {
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        Sensor window = new Sensor("Window", SensorType.WINDOW);
+        try (WriteAheadLogSecurityRepositoryImpl repository = new WriteAheadLogSecurityRepositoryImpl(directory)) {
+            repository.addSensor(door);
+            repository.addSensor(window);
+            door.setActive(true);
+            repository.updateSensor(door);
+            repository.removeSensor(window);
+            repository.setArmingStatus(ArmingStatus.ARMED_AWAY);
+            repository.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+        }
+
+        try (WriteAheadLogSecurityRepositoryImpl reopened = new WriteAheadLogSecurityRepositoryImpl(directory)) {
+            assertEquals(1, reopened.getSensors().size());
+            Sensor recovered = reopened.getSensors().iterator().next();
+            assertEquals(door.getSensorId(), recovered.getSensorId());
+            assertEquals("Door", recovered.getName());
+            assertEquals(SensorType.DOOR, recovered.getSensorType());
+            assertTrue(recovered.getActive());
+            assertEquals(ArmingStatus.ARMED_AWAY, reopened.getArmingStatus());
+            assertEquals(AlarmStatus.PENDING_ALARM, reopened.getAlarmStatus());
+        }
+    }
+
+    @Test
+    void CompactionKeepsStateAndEmptiesJournal() throws IOException {
+        Sensor motion = new Sensor("Motion", SensorType.MOTION);
+        try (WriteAheadLogSecurityRepositoryImpl repository = new WriteAheadLogSecurityRepositoryImpl(directory, false, 5)) {
+            repository.addSensor(motion);
+            for (int i = 0; i < 4; i++) {
+                motion.setActive(i % 2 == 0);
+                repository.updateSensor(motion);
+            }
+            assertEquals(0, Files.size(directory.resolve(WriteAheadLogSecurityRepositoryImpl.JOURNAL_FILE)));
+            repository.setAlarmStatus(AlarmStatus.ALARM);
+        }
+
+        try (WriteAheadLogSecurityRepositoryImpl reopened = new WriteAheadLogSecurityRepositoryImpl(directory)) {
+            assertEquals(1, reopened.getSensors().size());
+            assertFalse(reopened.getSensors().iterator().next().getActive());
+            assertEquals(AlarmStatus.ALARM, reopened.getAlarmStatus());
+        }
+    }
+
+    @Test
+    void TornTailIsDiscardedOnRecovery() throws IOException {
+        try (WriteAheadLogSecurityRepositoryImpl repository = new WriteAheadLogSecurityRepositoryImpl(directory)) {
+            repository.addSensor(new Sensor("Door", SensorType.DOOR));
+            repository.setArmingStatus(ArmingStatus.ARMED_HOME);
+        }
+        Path journal = directory.resolve(WriteAheadLogSecurityRepositoryImpl.JOURNAL_FILE);
+        long validSize = Files.size(journal);
+        try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.APPEND)) {
+            //half of a record header, as if we crashed mid-write
+            channel.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 20, 1, 2}));
+        }
+
+        try (WriteAheadLogSecurityRepositoryImpl reopened = new WriteAheadLogSecurityRepositoryImpl(directory)) {
+            assertEquals(1, reopened.getSensors().size());
+            assertEquals(ArmingStatus.ARMED_HOME, reopened.getArmingStatus());
+            assertEquals(validSize, Files.size(journal));
+        }
+    }
+
+    @Test
+    void DamagedSnapshotFailsToOpen() throws IOException {
+        try (WriteAheadLogSecurityRepositoryImpl repository = new WriteAheadLogSecurityRepositoryImpl(directory, false, 2)) {
+            repository.addSensor(new Sensor("Door", SensorType.DOOR));
+            repository.addSensor(new Sensor("Window", SensorType.WINDOW));
+        }
+        Path snapshot = directory.resolve(WriteAheadLogSecurityRepositoryImpl.SNAPSHOT_FILE);
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        UncheckedIOException e = assertThrows(UncheckedIOException.class, () -> new WriteAheadLogSecurityRepositoryImpl(directory));
+        assertTrue(e.getCause().getMessage().startsWith("Corrupt snapshot"));
+    }
+}
@@ -0,0 +1,60 @@
+package com.security.data;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures sensor event throughput of a durable write-ahead log when every event is synced on its own,
+ * compared with the same log behind a write-behind decorator that syncs once per batch.
+ * Not a unit test, run it manually with the test classpath.
+ */
+public class WriteBehindBenchmark {
+
+    private static final int SENSORS = 1_000;
+    private static final int EVENTS = 20_000;
+
+    public static void main(String[] args) throws IOException {
+        Path syncDir = Files.createTempDirectory("catpoint-sync");
+        try (WriteAheadLogSecurityRepositoryImpl repository = new WriteAheadLogSecurityRepositoryImpl(syncDir, true,
+                WriteAheadLogSecurityRepositoryImpl.DEFAULT_COMPACTION_THRESHOLD)) {
+            //syncing every event is slow, so measure a tenth of the events
+            double rate = run(repository, EVENTS / 10);
+            System.out.printf("synchronous, one sync per event:  %,10.0f events/s, %,d syncs%n", rate, EVENTS / 10);
+        }
+
+        Path batchDir = Files.createTempDirectory("catpoint-batch");
+        WriteBehindSecurityRepository repository = new WriteBehindSecurityRepository(
+                new WriteAheadLogSecurityRepositoryImpl(batchDir), Duration.ofMillis(20), 1_000);
+        double rate = run(repository, EVENTS);
+        repository.close();
+        System.out.printf("write-behind, one sync per batch: %,10.0f events/s, %,d syncs for %,d changes recorded (%,d written)%n",
+                rate, repository.getBatchesWritten(), repository.getChangesRecorded(), repository.getChangesWritten());
+    }
+
+    private static double run(SecurityRepository repository, int events) {
+        List<Sensor> sensors = new ArrayList<>();
+        for (int i = 0; i < SENSORS; i++) {
+            Sensor sensor = new Sensor("Motion " + i, SensorType.MOTION);
+            sensors.add(sensor);
+            repository.addSensor(sensor);
+        }
+        if (repository instanceof WriteBehindSecurityRepository writeBehind) {
+            writeBehind.flush();
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < events; i++) {
+            Sensor sensor = sensors.get(i % SENSORS);
+            sensor.setActive(!sensor.getActive());
+            repository.updateSensor(sensor);
+        }
+        if (repository instanceof WriteBehindSecurityRepository writeBehind) {
+            writeBehind.flush();
+        }
+        return events / ((System.nanoTime() - start) / 1e9);
+    }
+}
@@ -0,0 +1,173 @@
+package com.security.data;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteBehindSecurityRepositoryTest {
+
+    private RecordingRepository delegate;
+    private WriteBehindSecurityRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        delegate = new RecordingRepository();
+        //long latency so only flush(), close() or maxBatch trigger a write during the tests
+        repository = new WriteBehindSecurityRepository(delegate, Duration.ofMinutes(5), 100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        repository.close();
+    }
+
+    @Test
+    void ChangesAreVisibleBeforeTheyAreWritten() {
+        Sensor sensor = new Sensor("Door", SensorType.DOOR);
+
+        repository.addSensor(sensor);
+        repository.setArmingStatus(ArmingStatus.ARMED_HOME);
+
+        assertTrue(repository.getSensors().contains(sensor));
+        assertEquals(ArmingStatus.ARMED_HOME, repository.getArmingStatus());
+        assertTrue(delegate.calls.isEmpty());
+    }
+
+    @Test
+    void SensorsCanBeIteratedWhileTheyAreAdded() throws InterruptedException {
+        repository.close();
+        repository = new WriteBehindSecurityRepository(delegate, Duration.ofMinutes(5), 100_000);
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 20_000; i++) {
+                repository.addSensor(new Sensor("Window " + i, SensorType.WINDOW));
+            }
+        });
+        writer.start();
+        while (writer.isAlive()) {
+            int count = 0;
+            for (Sensor sensor : repository.getSensors()) {
+                count++;
+            }
+            assertTrue(count <= 20_000);
+        }
+        writer.join();
+
+        assertEquals(20_000, repository.getSensors().size());
+    }
+
+    @Test
+    void RepeatedChangesAreCoalescedIntoOneWrite() {
+        Sensor sensor = new Sensor("Door", SensorType.DOOR);
+        repository.addSensor(sensor);
+        repository.flush();
+        delegate.calls.clear();
+
+        for (int i = 0; i < 10; i++) {
+            sensor.setActive(i % 2 == 0);
+            repository.updateSensor(sensor);
+            repository.setAlarmStatus(i % 2 == 0 ? AlarmStatus.PENDING_ALARM : AlarmStatus.NO_ALARM);
+        }
+        repository.flush();
+
+        assertEquals(List.of("update Door false", "alarm NO_ALARM"), delegate.calls);
+        assertEquals(2, repository.getBatchesWritten());
+    }
+
+    @Test
+    void SensorAddedAndRemovedBeforeFlushIsNeverWritten() {
+        Sensor sensor = new Sensor("Door", SensorType.DOOR);
+
+        repository.addSensor(sensor);
+        repository.removeSensor(sensor);
+        repository.flush();
+
+        assertTrue(delegate.calls.isEmpty());
+    }
+
+    @Test
+    void FullBatchIsWrittenWithoutWaitingForLatency() throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            repository.addSensor(new Sensor("Sensor " + i, SensorType.MOTION));
+        }
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (repository.getBatchesWritten() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(1, repository.getBatchesWritten());
+        assertEquals(100, delegate.getSensors().size());
+    }
+
+    @Test
+    void CloseWritesPendingChanges() {
+        repository.setAlarmStatus(AlarmStatus.ALARM);
+
+        repository.close();
+
+        assertEquals(AlarmStatus.ALARM, delegate.getAlarmStatus());
+    }
+
+    /**
+     * Simple in-memory repository that records every call it receives.
+     */
+    private static class RecordingRepository implements SecurityRepository {
+        private final List<String> calls = new ArrayList<>();
+        private final Set<Sensor> sensors = new TreeSet<>();
+        private AlarmStatus alarmStatus = AlarmStatus.NO_ALARM;
+        private ArmingStatus armingStatus = ArmingStatus.DISARMED;
+
+        @Override
+        public synchronized void addSensor(Sensor sensor) {
+            calls.add("add " + sensor.getName());
+            sensors.add(sensor);
+        }
+
+        @Override
+        public synchronized void removeSensor(Sensor sensor) {
+            calls.add("remove " + sensor.getName());
+            sensors.remove(sensor);
+        }
+
+        @Override
+        public synchronized void updateSensor(Sensor sensor) {
+            calls.add("update " + sensor.getName() + " " + sensor.getActive());
+            sensors.remove(sensor);
+            sensors.add(sensor);
+        }
+
+        @Override
+        public synchronized void setAlarmStatus(AlarmStatus alarmStatus) {
+            calls.add("alarm " + alarmStatus);
+            this.alarmStatus = alarmStatus;
+        }
+
+        @Override
+        public synchronized void setArmingStatus(ArmingStatus armingStatus) {
+            calls.add("arming " + armingStatus);
+            this.armingStatus = armingStatus;
+        }
+
+        @Override
+        public synchronized Set<Sensor> getSensors() {
+            return sensors;
+        }
+
+        @Override
+        public synchronized AlarmStatus getAlarmStatus() {
+            return alarmStatus;
+        }
+
+        @Override
+        public synchronized ArmingStatus getArmingStatus() {
+            return armingStatus;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.security.service;
+
+import com.security.data.ArmingStatus;
+import com.security.data.MappedSensorSecurityRepositoryImpl;
+import com.udacity.catpoint.image.service.ImageInput;
+import com.udacity.catpoint.image.service.ImageService;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Frames classified per second with 1, 8 and 64 cameras sharing an image executor with a thread per core.
+ * The image service burns about a millisecond of CPU per frame. A camera's frames are classified one batch
+ * at a time, so a single camera keeps one core busy and more cameras spread over the others.
+ * Not a unit test, run it manually with the test classpath.
+ */
+public class CameraPipelineBenchmark {
+
+    private static final int[] CAMERAS = {1, 8, 64};
+    private static final int FRAMES = 4096;
+
+    //keeps the JIT from dropping the busy work
+    private static volatile long sink;
+
+    public static void main(String[] args) throws Exception {
+        System.out.printf("%d cores%n", Runtime.getRuntime().availableProcessors());
+        for (int cameras : CAMERAS) {
+            run(cameras);
+        }
+    }
+
+    private static void run(int cameras) throws IOException {
+        Path dir = Files.createTempDirectory("catpoint-cameras");
+        ExecutorService imageExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        //stands in for the Swing event dispatch thread
+        ExecutorService resultExecutor = Executors.newSingleThreadExecutor();
+        try (MappedSensorSecurityRepositoryImpl repository = new MappedSensorSecurityRepositoryImpl(dir)) {
+            SecurityService securityService = new SecurityService(repository, new BusyImageService());
+            securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+            securityService.setImageExecutors(imageExecutor, resultExecutor);
+            int framesPerCamera = FRAMES / cameras;
+            for (int c = 0; c < cameras; c++) {
+                securityService.getCameraRegistry().register("camera-" + c, framesPerCamera);
+            }
+            ImageInput image = ImageInput.of(new BufferedImage(320, 240, BufferedImage.TYPE_INT_RGB));
+
+            long start = System.nanoTime();
+            List<CompletableFuture<Boolean>> results = new ArrayList<>(FRAMES);
+            for (int i = 0; i < framesPerCamera; i++) {
+                for (int c = 0; c < cameras; c++) {
+                    results.add(securityService.processImage(new CameraFrame("camera-" + c, Instant.now(), image)));
+                }
+            }
+            CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).join();
+            long elapsed = System.nanoTime() - start;
+
+            long classified = securityService.getCameraRegistry().getCameras().stream()
+                    .mapToLong(Camera::getClassifiedFrames).sum();
+            System.out.printf("%2d cameras: %,8.0f frames/s, %,d frames classified%n",
+                    cameras, results.size() / (elapsed / 1e9), classified);
+        } finally {
+            imageExecutor.shutdown();
+            resultExecutor.shutdown();
+        }
+    }
+
+    private static final class BusyImageService implements ImageService {
+        @Override
+        public boolean imageContainsCat(BufferedImage image, float confidenceThreshold) {
+            long hash = 0;
+            for (int round = 0; round < 12; round++) {
+                for (int y = 0; y < image.getHeight(); y += 2) {
+                    for (int x = 0; x < image.getWidth(); x += 2) {
+                        hash = hash * 31 + image.getRGB(x, y) + round;
+                    }
+                }
+            }
+            sink = hash;
+            return false;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.security.service;
+
+import com.security.data.ArmingStatus;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static com.security.service.ClassificationScheduler.Admission.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClassificationSchedulerTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    private long now;
+    //2 frames per second at home, 60 calls per minute with a burst of 10, boosted 3x for 5 seconds
+    private final ClassificationScheduler scheduler = new ClassificationScheduler(
+            Map.of(ArmingStatus.ARMED_HOME, 2f, ArmingStatus.ARMED_AWAY, 0.5f), 60, 3,
+            Duration.ofSeconds(5), 3f, () -> now);
+
+    @Test
+    void NothingIsClassifiedWhileDisarmed() {
+        assertEquals(SKIP, scheduler.admit("front", ArmingStatus.DISARMED));
+
+        assertEquals(0f, scheduler.getCurrentRate());
+        assertEquals(1, scheduler.getSkippedFrames());
+        assertEquals(10, scheduler.getAvailableCalls());
+    }
+
+    @Test
+    void EachCameraIsPacedToTheModeRate() {
+        assertEquals(QUEUE, scheduler.admit("front", ArmingStatus.ARMED_HOME));
+        assertEquals(SKIP, scheduler.admit("front", ArmingStatus.ARMED_HOME));
+        //other cameras have their own pace
+        assertEquals(QUEUE, scheduler.admit("back", ArmingStatus.ARMED_HOME));
+
+        now += SECOND / 2;
+        assertEquals(QUEUE, scheduler.admit("front", ArmingStatus.ARMED_HOME));
+        now += SECOND / 2;
+        //away the camera is paced to a frame every 2 seconds
+        assertEquals(QUEUE, scheduler.admit("front", ArmingStatus.ARMED_AWAY));
+        assertEquals(0.5f, scheduler.getCurrentRate());
+        now += SECOND;
+        assertEquals(SKIP, scheduler.admit("front", ArmingStatus.ARMED_AWAY));
+
+        assertEquals(4, scheduler.getAdmittedFrames());
+        assertEquals(2, scheduler.getSkippedFrames());
+    }
+
+    @Test
+    void CallBudgetThrottlesAndRefills() {
+        for (int i = 0; i < 10; i++) {
+            assertEquals(QUEUE, scheduler.admit("camera" + i, ArmingStatus.ARMED_HOME));
+        }
+        assertEquals(SKIP, scheduler.admit("camera10", ArmingStatus.ARMED_HOME));
+        assertEquals(1, scheduler.getThrottledFrames());
+        assertEquals(0, scheduler.getAvailableCalls());
+
+        now += 2 * SECOND;
+        assertEquals(2, scheduler.getAvailableCalls());
+        assertEquals(QUEUE, scheduler.admit("camera10", ArmingStatus.ARMED_HOME));
+    }
+
+    @Test
+    void ReleasedAndDroppedFramesGiveTheirCallBack() {
+        scheduler.admit("front", ArmingStatus.ARMED_HOME);
+        scheduler.admit("back", ArmingStatus.ARMED_HOME);
+        scheduler.release();
+        scheduler.frameDropped();
+
+        assertEquals(10, scheduler.getAvailableCalls());
+        assertEquals(0, scheduler.getAdmittedFrames());
+        assertEquals(1, scheduler.getDroppedFrames());
+    }
+
+    @Test
+    void ActiveSensorBoostsRateAndPriority() {
+        scheduler.admit("front", ArmingStatus.ARMED_HOME);
+        scheduler.sensorActivated();
+
+        assertEquals(6f, scheduler.getCurrentRate());
+        now += SECOND / 2;
+        assertEquals(PRIORITY, scheduler.admit("front", ArmingStatus.ARMED_HOME));
+        now += SECOND / 5;
+        assertEquals(PRIORITY, scheduler.admit("front", ArmingStatus.ARMED_HOME));
+
+        now += 5 * SECOND;
+        assertEquals(2f, scheduler.getCurrentRate());
+        assertEquals(QUEUE, scheduler.admit("front", ArmingStatus.ARMED_HOME));
+    }
+}
@@ -0,0 +1,191 @@
+package com.security.service;
+
+import com.security.data.AlarmStatus;
+import com.security.data.ArmingStatus;
+import com.security.data.MappedSensorSecurityRepositoryImpl;
+import com.udacity.catpoint.image.service.MotionGate;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DirectoryFrameSourceTest {
+
+    @TempDir
+    Path directory;
+
+    private Path frames;
+    private MappedSensorSecurityRepositoryImpl repository;
+    private SecurityService securityService;
+    //width of each classified frame
+    private final List<Integer> scanned = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    void setUp() throws IOException {
+        frames = Files.createDirectory(directory.resolve("frames"));
+        repository = new MappedSensorSecurityRepositoryImpl(Files.createDirectory(directory.resolve("data")));
+        securityService = new SecurityService(repository, (image, threshold) -> {
+            scanned.add(image.getWidth());
+            return image.getWidth() == 3;
+        });
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+    }
+
+    @AfterEach
+    void tearDown() {
+        repository.close();
+    }
+
+    @Test
+    void FramesAddedToTheDirectoryAreClassified() throws Exception {
+        try (DirectoryFrameSource source = DirectoryFrameSource.watch(securityService, "porch", frames)) {
+            source.start();
+            writeFrame("0001.jpg", 3);
+            //still being written, not a frame yet
+            write(frames.resolve(".0002.jpg"), 2);
+
+            awaitScans(1);
+            assertEquals(List.of(3), scanned);
+            assertEquals(1, source.getFramesSeen());
+            //the result is applied just after the scan
+            long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+            while (securityService.getAlarmStatus() != AlarmStatus.ALARM && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            Camera camera = securityService.getCameraRegistry().getCamera("porch");
+            assertEquals(Boolean.TRUE, camera.getCatDetected());
+            assertEquals(Files.getLastModifiedTime(frames.resolve("0001.jpg")).toInstant(), camera.getLastCapturedAt());
+        }
+    }
+
+    @Test
+    void FrameWrittenInPlaceIsReadOnceComplete() throws Exception {
+        ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(3, 1, BufferedImage.TYPE_INT_RGB), "jpg", jpeg);
+        byte[] bytes = jpeg.toByteArray();
+        try (DirectoryFrameSource source = DirectoryFrameSource.watch(securityService, "porch", frames)) {
+            source.start();
+            try (OutputStream out = Files.newOutputStream(frames.resolve("0001.jpg"))) {
+                out.write(bytes, 0, bytes.length / 2);
+                out.flush();
+                Thread.sleep(DirectoryFrameSource.SETTLE_MILLIS / 4);
+                out.write(bytes, bytes.length / 2, bytes.length - bytes.length / 2);
+            }
+
+            awaitScans(1);
+            assertEquals(List.of(3), scanned);
+            assertEquals(0, source.getFramesFailed());
+        }
+    }
+
+    @Test
+    void UnreadableFrameDoesNotStopTheSource() throws Exception {
+        try (DirectoryFrameSource source = DirectoryFrameSource.watch(securityService, "porch", frames)) {
+            source.start();
+            Files.write(frames.resolve("broken.jpg"), new byte[] {1, 2, 3});
+            writeFrame("0001.jpg", 1);
+
+            awaitScans(1);
+            assertEquals(List.of(1), scanned);
+        }
+    }
+
+    @Test
+    void UndecodableFrameDoesNotStopTheSourceBehindAMotionGate() throws Exception {
+        securityService.setMotionGate(new MotionGate());
+        try (DirectoryFrameSource source = DirectoryFrameSource.watch(securityService, "porch", frames)) {
+            source.start();
+            Files.write(frames.resolve("broken.jpg"), new byte[] {1, 2, 3});
+            long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+            while (source.getFramesFailed() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, source.getFramesFailed());
+            writeFrame("0001.jpg", 1);
+
+            awaitScans(1);
+            assertEquals(List.of(1), scanned);
+        }
+    }
+
+    @Test
+    void ReplayKeepsOnlyTheNewestFrameWhileBusy() throws Exception {
+        for (int i = 1; i <= 4; i++) {
+            write(frames.resolve("000" + i + ".png"), i);
+        }
+        QueuedExecutor executor = new QueuedExecutor();
+        securityService.setImageExecutors(executor, StatusDispatcher.DIRECT);
+
+        try (DirectoryFrameSource source = DirectoryFrameSource.replay(securityService, "porch", frames, 1000, false)) {
+            source.start();
+            assertTrue(source.awaitTermination(Duration.ofSeconds(10)));
+            awaitTasks(executor, 1);
+            executor.run(0);
+            awaitTasks(executor, 2);
+            executor.run(1);
+
+            //frames 2 and 3 went stale while frame 1 was being classified
+            assertEquals(List.of(1, 4), scanned);
+            assertEquals(4, source.getFramesSeen());
+            assertEquals(2, source.getFramesDropped());
+        }
+    }
+
+    private void writeFrame(String name, int width) throws IOException {
+        Path temporary = frames.resolve("." + name);
+        write(temporary, width);
+        Files.move(temporary, frames.resolve(name), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void write(Path file, int width) throws IOException {
+        String format = file.toString().endsWith(".png") ? "png" : "jpg";
+        ImageIO.write(new BufferedImage(width, 1, BufferedImage.TYPE_INT_RGB), format, file.toFile());
+    }
+
+    private void awaitScans(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (scanned.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static void awaitTasks(QueuedExecutor executor, int count) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (executor.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static class QueuedExecutor implements Executor {
+        final List<Runnable> tasks = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        int size() {
+            return tasks.size();
+        }
+
+        void run(int index) {
+            tasks.get(index).run();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.security.service;
+
+import com.security.data.ArmingStatus;
+import com.security.data.MappedSensorSecurityRepositoryImpl;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Replays a directory of 640x480 JPEG frames at 15, 60 and 240 frames per second into an image service that
+ * takes 20 ms per frame, and reports how many frames were classified and how many were dropped as stale.
+ * Not a unit test, run it manually with the test classpath.
+ */
+public class DirectoryReplayBenchmark {
+
+    private static final double[] FRAME_RATES = {15, 60, 240};
+    private static final int FRAMES = 240;
+
+    public static void main(String[] args) throws Exception {
+        Path frames = Files.createTempDirectory("catpoint-replay");
+        Random random = new Random(42);
+        BufferedImage image = new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB);
+        for (int i = 0; i < FRAMES; i++) {
+            for (int n = 0; n < 2000; n++) {
+                image.setRGB(random.nextInt(640), random.nextInt(480), random.nextInt());
+            }
+            ImageIO.write(image, "jpg", frames.resolve(String.format("%05d.jpg", i)).toFile());
+        }
+        for (double framesPerSecond : FRAME_RATES) {
+            run(frames, framesPerSecond);
+        }
+    }
+
+    private static void run(Path frames, double framesPerSecond) throws IOException, InterruptedException {
+        Path dir = Files.createTempDirectory("catpoint-replay-data");
+        ExecutorService imageExecutor = Executors.newFixedThreadPool(2);
+        try (MappedSensorSecurityRepositoryImpl repository = new MappedSensorSecurityRepositoryImpl(dir)) {
+            SecurityService securityService = new SecurityService(repository, (image, threshold) -> {
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return false;
+            });
+            securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+            securityService.setImageExecutors(imageExecutor, StatusDispatcher.DIRECT);
+
+            long start = System.nanoTime();
+            try (DirectoryFrameSource source = DirectoryFrameSource.replay(securityService, "replay", frames, framesPerSecond, false)) {
+                source.start();
+                source.awaitTermination(Duration.ofMinutes(5));
+                long elapsed = System.nanoTime() - start;
+                //let the last frame finish
+                Thread.sleep(200);
+                System.out.printf("%5.0f fps: %,4d frames in %,6.0f ms, %,4d classified, %,4d dropped as stale%n",
+                        framesPerSecond, source.getFramesSeen(), elapsed / 1e6,
+                        securityService.getCameraRegistry().getCamera("replay").getClassifiedFrames(),
+                        source.getFramesDropped());
+            }
+        } finally {
+            imageExecutor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.security.service;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Records five minutes of 30 frames per second from 8 cameras, 640x480 JPEG frames, keeping each camera's
+ * last 150 frames: once as a copy of every frame on the heap, once in a {@link FrameRingBuffer}. Reports the
+ * bytes allocated per second of footage and the garbage collections it took. Allocations are measured with
+ * the JDK's thread allocation counter, looked up reflectively so the module needn't read java.management.
+ * Not a unit test, run it manually with the test classpath.
+ */
+public class FrameRingBufferBenchmark {
+
+    private static final int CAMERAS = 8;
+    private static final int FRAMES_PER_SECOND = 30;
+    private static final int SECONDS = 300;
+    private static final int KEPT_FRAMES = FrameRingBuffer.DEFAULT_FRAMES;
+
+    interface Recorder {
+        void record(int camera, Instant capturedAt, ByteBuffer frame);
+    }
+
+    public static void main(String[] args) throws Exception {
+        ByteBuffer[] frames = new ByteBuffer[FRAMES_PER_SECOND];
+        Random random = new Random(42);
+        BufferedImage image = new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB);
+        int largest = 0;
+        for (int i = 0; i < frames.length; i++) {
+            for (int n = 0; n < 2000; n++) {
+                image.setRGB(random.nextInt(640), random.nextInt(480), random.nextInt());
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ImageIO.write(image, "jpg", out);
+            frames[i] = ByteBuffer.wrap(out.toByteArray()).asReadOnlyBuffer();
+            largest = Math.max(largest, out.size());
+        }
+        int slotBytes = Integer.highestOneBit(largest) * 2;
+        System.out.printf("%d cameras at %d fps, frames up to %d bytes, %d KB slots%n",
+                CAMERAS, FRAMES_PER_SECOND, largest, slotBytes / 1024);
+
+        for (int round = 0; round < 2; round++) {
+            //the first round warms up
+            boolean report = round == 1;
+
+            List<ArrayDeque<byte[]>> copies = new ArrayList<>();
+            for (int i = 0; i < CAMERAS; i++) {
+                copies.add(new ArrayDeque<>(KEPT_FRAMES));
+            }
+            run("heap copies", frames, report, (camera, capturedAt, frame) -> {
+                ArrayDeque<byte[]> kept = copies.get(camera);
+                if (kept.size() == KEPT_FRAMES) {
+                    kept.removeFirst();
+                }
+                byte[] copy = new byte[frame.remaining()];
+                frame.duplicate().get(copy);
+                kept.addLast(copy);
+            });
+            copies.clear();
+
+            DirectBufferPool pool = new DirectBufferPool();
+            FrameRingBuffer[] rings = new FrameRingBuffer[CAMERAS];
+            for (int i = 0; i < CAMERAS; i++) {
+                rings[i] = new FrameRingBuffer(pool, KEPT_FRAMES, slotBytes);
+            }
+            run("ring buffer", frames, report, (camera, capturedAt, frame) -> rings[camera].record(capturedAt, frame));
+            for (FrameRingBuffer ring : rings) {
+                ring.close();
+            }
+        }
+    }
+
+    private static void run(String name, ByteBuffer[] frames, boolean report, Recorder recorder) throws Exception {
+        System.gc();
+        long allocatedBefore = allocatedBytes();
+        long[] gcBefore = gcCountAndMillis();
+        long start = System.nanoTime();
+        Instant capturedAt = Instant.EPOCH;
+        for (int second = 0; second < SECONDS; second++) {
+            for (int f = 0; f < FRAMES_PER_SECOND; f++) {
+                for (int camera = 0; camera < CAMERAS; camera++) {
+                    //each camera's time stamp is the same object, so only the recording itself allocates
+                    recorder.record(camera, capturedAt, frames[(f + camera) % frames.length]);
+                }
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+        long[] gcAfter = gcCountAndMillis();
+        if (report) {
+            System.out.printf("%-12s %,14d bytes/s of footage, %4d collections, %5d ms in GC, %6.1f ms total%n",
+                    name, allocated / SECONDS, gcAfter[0] - gcBefore[0], gcAfter[1] - gcBefore[1], elapsed / 1e6);
+        }
+    }
+
+    private static long allocatedBytes() throws Exception {
+        Object threads = Class.forName("java.lang.management.ManagementFactory").getMethod("getThreadMXBean").invoke(null);
+        Method allocated = Class.forName("com.sun.management.ThreadMXBean").getMethod("getCurrentThreadAllocatedBytes");
+        return (long) allocated.invoke(threads);
+    }
+
+    private static long[] gcCountAndMillis() throws Exception {
+        List<?> collectors = (List<?>) Class.forName("java.lang.management.ManagementFactory")
+                .getMethod("getGarbageCollectorMXBeans").invoke(null);
+        Class<?> type = Class.forName("java.lang.management.GarbageCollectorMXBean");
+        long count = 0;
+        long millis = 0;
+        for (Object collector : collectors) {
+            count += (long) type.getMethod("getCollectionCount").invoke(collector);
+            millis += (long) type.getMethod("getCollectionTime").invoke(collector);
+        }
+        return new long[] {count, millis};
+    }
+}
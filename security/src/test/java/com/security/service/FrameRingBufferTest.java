@@ -0,0 +1,127 @@
+package com.security.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FrameRingBufferTest {
+
+    private static final byte[] JPEG = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, 1};
+    private static final byte[] PNG = {(byte) 0x89, 'P', 'N', 'G', 2};
+
+    @TempDir
+    Path directory;
+
+    private final DirectBufferPool pool = new DirectBufferPool();
+
+    @Test
+    void OldestFramesAreOverwritten() throws IOException {
+        FrameRingBuffer buffer = new FrameRingBuffer(pool, 3, 16);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(buffer.record(Instant.ofEpochMilli(i), frame(JPEG, i)));
+        }
+
+        assertEquals(3, buffer.size());
+        assertEquals(5, buffer.getRecordedFrames());
+        List<Path> files = buffer.export(directory);
+        assertEquals(List.of("0000-2.jpg", "0001-3.jpg", "0002-4.jpg"),
+                files.stream().map(file -> file.getFileName().toString()).toList());
+        assertArrayEquals(bytes(frame(JPEG, 2)), Files.readAllBytes(files.get(0)));
+    }
+
+    @Test
+    void RecordingLeavesTheFrameUntouched() {
+        FrameRingBuffer buffer = new FrameRingBuffer(pool, 2, 16);
+        ByteBuffer frame = frame(PNG, 7);
+        frame.position(1);
+
+        buffer.record(Instant.EPOCH, frame);
+
+        assertEquals(1, frame.position());
+        assertEquals(frame.capacity(), frame.limit());
+    }
+
+    @Test
+    void OversizedFrameIsNotKept() {
+        FrameRingBuffer buffer = new FrameRingBuffer(pool, 2, 4);
+
+        assertFalse(buffer.record(Instant.EPOCH, frame(PNG, 0)));
+        assertEquals(0, buffer.size());
+        assertEquals(1, buffer.getOversizedFrames());
+    }
+
+    @Test
+    void FreezeKeepsFramesAroundTheEvent() throws IOException {
+        FrameRingBuffer buffer = new FrameRingBuffer(pool, 4, 16);
+        buffer.record(Instant.ofEpochMilli(0), frame(JPEG, 0));
+        buffer.record(Instant.ofEpochMilli(1), frame(JPEG, 1));
+
+        buffer.freeze(2);
+        //a later event doesn't move the window
+        buffer.freeze(0);
+        assertFalse(buffer.isFrozen());
+        buffer.record(Instant.ofEpochMilli(2), frame(PNG, 2));
+        buffer.record(Instant.ofEpochMilli(3), frame(PNG, 3));
+        assertTrue(buffer.isFrozen());
+        assertFalse(buffer.record(Instant.ofEpochMilli(4), frame(PNG, 4)));
+
+        assertEquals(1, buffer.getMissedFrames());
+        assertEquals(List.of("0000-0.jpg", "0001-1.jpg", "0002-2.png", "0003-3.png"),
+                buffer.export(directory).stream().map(file -> file.getFileName().toString()).toList());
+
+        buffer.release();
+        assertFalse(buffer.isFrozen());
+        assertEquals(0, buffer.size());
+        assertTrue(buffer.record(Instant.ofEpochMilli(5), frame(PNG, 5)));
+    }
+
+    @Test
+    void FrozenBufferRecordsAgainOnTheNextEvent() throws IOException {
+        FrameRingBuffer buffer = new FrameRingBuffer(pool, 3, 16);
+        buffer.record(Instant.ofEpochMilli(0), frame(JPEG, 0));
+        buffer.freeze(0);
+        assertFalse(buffer.record(Instant.ofEpochMilli(1), frame(JPEG, 1)));
+
+        //not exported, the second alarm still gets its frames
+        buffer.freeze(1);
+        assertFalse(buffer.isFrozen());
+        assertTrue(buffer.record(Instant.ofEpochMilli(2), frame(PNG, 2)));
+        assertTrue(buffer.isFrozen());
+
+        assertEquals(List.of("0000-0.jpg", "0001-2.png"),
+                buffer.export(directory).stream().map(file -> file.getFileName().toString()).toList());
+    }
+
+    @Test
+    void ClosedBufferGoesBackToThePool() {
+        FrameRingBuffer buffer = new FrameRingBuffer(pool, 4, 16);
+        assertEquals(64, pool.getAllocatedBytes());
+        buffer.close();
+        assertEquals(64, pool.getPooledBytes());
+        assertFalse(buffer.record(Instant.EPOCH, frame(JPEG, 0)));
+
+        new FrameRingBuffer(pool, 4, 16);
+        assertEquals(64, pool.getAllocatedBytes());
+        assertEquals(0, pool.getPooledBytes());
+    }
+
+    private static ByteBuffer frame(byte[] header, int id) {
+        ByteBuffer frame = ByteBuffer.allocate(header.length + 1);
+        frame.put(header).put((byte) id).flip();
+        return frame;
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,88 @@
+package com.security.service;
+
+import com.security.data.ArmingStatus;
+import com.security.data.MappedSensorSecurityRepositoryImpl;
+import com.security.data.Sensor;
+import com.security.data.SensorType;
+import com.udacity.catpoint.image.service.FakeImageService;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Producer throughput and publish-to-apply latency of the event loop with 1, 4 and 16 producer threads.
+ * Not a unit test, run it manually with the test classpath.
+ */
+public class SecurityEventLoopBenchmark {
+
+    private static final int[] PRODUCERS = {1, 4, 16};
+    private static final int EVENTS = 2_000_000;
+    private static final int SENSORS_PER_PRODUCER = 64;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        for (int producers : PRODUCERS) {
+            run(producers);
+        }
+    }
+
+    private static void run(int producers) throws IOException, InterruptedException {
+        Path dir = Files.createTempDirectory("catpoint-event-loop");
+        try (MappedSensorSecurityRepositoryImpl repository = new MappedSensorSecurityRepositoryImpl(dir)) {
+            SecurityService securityService = new SecurityService(repository, new FakeImageService());
+            securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+            List<List<Sensor>> sensorsByProducer = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                List<Sensor> sensors = new ArrayList<>();
+                for (int i = 0; i < SENSORS_PER_PRODUCER; i++) {
+                    Sensor sensor = new Sensor("Sensor " + p + "-" + i, SensorType.MOTION);
+                    sensors.add(sensor);
+                    securityService.addSensor(sensor);
+                }
+                sensorsByProducer.add(sensors);
+            }
+
+            long[] latencies = new long[EVENTS];
+            int[] recorded = new int[1];
+            SecurityEventLoop eventLoop = new SecurityEventLoop(securityService);
+            eventLoop.setLatencyListener(nanos -> latencies[recorded[0]++] = nanos);
+            eventLoop.start();
+
+            int eventsPerProducer = EVENTS / producers;
+            List<Thread> threads = new ArrayList<>();
+            for (List<Sensor> sensors : sensorsByProducer) {
+                threads.add(new Thread(() -> {
+                    for (int i = 0; i < eventsPerProducer; i++) {
+                        eventLoop.publishSensorEvent(sensors.get(i % SENSORS_PER_PRODUCER), (i / SENSORS_PER_PRODUCER) % 2 == 0);
+                    }
+                }));
+            }
+            long start = System.nanoTime();
+            threads.forEach(Thread::start);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            long published = System.nanoTime();
+            eventLoop.close();
+            long applied = System.nanoTime();
+
+            long[] sorted = Arrays.copyOf(latencies, recorded[0]);
+            Arrays.sort(sorted);
+            System.out.printf("%2d producers: publish %,12.0f events/s, apply %,12.0f events/s, buffer full %,d times, "
+                            + "latency p50 %,8.1f us, p99 %,8.1f us, p99.9 %,8.1f us, max %,8.1f us%n",
+                    producers,
+                    recorded[0] / ((published - start) / 1e9),
+                    recorded[0] / ((applied - start) / 1e9),
+                    eventLoop.getBufferFullCount(),
+                    percentile(sorted, 0.50), percentile(sorted, 0.99), percentile(sorted, 0.999),
+                    sorted[sorted.length - 1] / 1e3);
+        }
+    }
+
+    private static double percentile(long[] sorted, double fraction) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.round(fraction * sorted.length))] / 1e3;
+    }
+}
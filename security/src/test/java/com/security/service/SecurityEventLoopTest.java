@@ -0,0 +1,136 @@
+package com.security.service;
+
+import com.security.data.AlarmStatus;
+import com.security.data.ArmingStatus;
+import com.security.data.MappedSensorSecurityRepositoryImpl;
+import com.security.data.Sensor;
+import com.security.data.SensorType;
+import com.udacity.catpoint.image.service.FakeImageService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SecurityEventLoopTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void EventsFromOneProducerAreAppliedInOrder() throws InterruptedException {
+        try (MappedSensorSecurityRepositoryImpl repository = new MappedSensorSecurityRepositoryImpl(directory)) {
+            SecurityService securityService = new SecurityService(repository, new FakeImageService());
+            Sensor door = new Sensor("Front Door", SensorType.DOOR);
+            Sensor window = new Sensor("Kitchen Window", SensorType.WINDOW);
+            securityService.addSensor(door);
+            securityService.addSensor(window);
+
+            SecurityEventLoop eventLoop = new SecurityEventLoop(securityService, 4);
+            eventLoop.start();
+            eventLoop.publishArmingStatus(ArmingStatus.ARMED_HOME);
+            eventLoop.publishSensorEvent(door, true);
+            eventLoop.publishSensorEvent(window, true);
+            eventLoop.publishSensorEvent(door, false);
+            eventLoop.close();
+
+            assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
+            assertFalse(door.getActive());
+            assertTrue(window.getActive());
+            assertEquals(4, eventLoop.getProcessedEvents());
+        }
+    }
+
+    @Test
+    void ImageResultIsApplied() throws InterruptedException {
+        try (MappedSensorSecurityRepositoryImpl repository = new MappedSensorSecurityRepositoryImpl(directory)) {
+            SecurityService securityService = new SecurityService(repository, new FakeImageService());
+            SecurityEventLoop eventLoop = new SecurityEventLoop(securityService);
+            eventLoop.start();
+            eventLoop.publishArmingStatus(ArmingStatus.ARMED_HOME);
+            eventLoop.publishImageResult(true);
+            eventLoop.close();
+
+            assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
+        }
+    }
+
+    @Test
+    void EventsFromManyProducersAreAllApplied() throws InterruptedException {
+        int producers = 8;
+        int eventsPerProducer = 10_001;
+        try (MappedSensorSecurityRepositoryImpl repository = new MappedSensorSecurityRepositoryImpl(directory)) {
+            SecurityService securityService = new SecurityService(repository, new FakeImageService());
+            List<Sensor> sensors = new ArrayList<>();
+            for (int i = 0; i < producers; i++) {
+                Sensor sensor = new Sensor("Motion " + i, SensorType.MOTION);
+                sensors.add(sensor);
+                securityService.addSensor(sensor);
+            }
+
+            //small buffer, so producers regularly find it full
+            SecurityEventLoop eventLoop = new SecurityEventLoop(securityService, 64);
+            eventLoop.start();
+            List<Thread> threads = new ArrayList<>();
+            for (Sensor sensor : sensors) {
+                Thread producer = new Thread(() -> {
+                    for (int i = 0; i < eventsPerProducer; i++) {
+                        eventLoop.publishSensorEvent(sensor, i % 2 == 0);
+                    }
+                });
+                threads.add(producer);
+                producer.start();
+            }
+            for (Thread producer : threads) {
+                producer.join();
+            }
+            eventLoop.close();
+
+            assertEquals((long) producers * eventsPerProducer, eventLoop.getProcessedEvents());
+            assertEquals(0, eventLoop.getFailedEvents());
+            assertTrue(eventLoop.isIdle());
+            //each producer's last event activates its sensor
+            assertEquals(producers, repository.getActiveSensorCount());
+        }
+    }
+
+    @Test
+    void EventsAcceptedWhileClosingAreApplied() throws InterruptedException {
+        try (MappedSensorSecurityRepositoryImpl repository = new MappedSensorSecurityRepositoryImpl(directory)) {
+            SecurityService securityService = new SecurityService(repository, new FakeImageService());
+            Sensor sensor = new Sensor("Motion", SensorType.MOTION);
+            securityService.addSensor(sensor);
+            for (int round = 0; round < 50; round++) {
+                SecurityEventLoop eventLoop = new SecurityEventLoop(securityService, 64);
+                eventLoop.start();
+                AtomicLong accepted = new AtomicLong();
+                List<Thread> threads = new ArrayList<>();
+                for (int i = 0; i < 4; i++) {
+                    Thread producer = new Thread(() -> {
+                        try {
+                            for (int event = 0; ; event++) {
+                                eventLoop.publishSensorEvent(sensor, event % 2 == 0);
+                                accepted.incrementAndGet();
+                            }
+                        } catch (IllegalStateException e) {
+                            //closed
+                        }
+                    });
+                    threads.add(producer);
+                    producer.start();
+                }
+                Thread.sleep(1);
+                eventLoop.close();
+                for (Thread producer : threads) {
+                    producer.join();
+                }
+
+                assertEquals(accepted.get(), eventLoop.getProcessedEvents() + eventLoop.getFailedEvents());
+            }
+        }
+    }
+}
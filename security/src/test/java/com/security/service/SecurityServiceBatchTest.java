@@ -0,0 +1,170 @@
+package com.security.service;
+
+import com.security.application.StatusListener;
+import com.security.data.AlarmStatus;
+import com.security.data.ArmingStatus;
+import com.security.data.MappedSensorSecurityRepositoryImpl;
+import com.security.data.Sensor;
+import com.security.data.SensorType;
+import com.udacity.catpoint.image.service.FakeImageService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SecurityServiceBatchTest {
+
+    @TempDir
+    Path directory;
+
+    private CountingRepository repository;
+    private RecordingListener listener;
+    private SecurityService securityService;
+    private Sensor door;
+    private Sensor window;
+    private Sensor motion;
+
+    @BeforeEach
+    void setUp() {
+        repository = new CountingRepository(directory);
+        securityService = new SecurityService(repository, new FakeImageService());
+        door = new Sensor("Front Door", SensorType.DOOR);
+        window = new Sensor("Kitchen Window", SensorType.WINDOW);
+        motion = new Sensor("Hallway", SensorType.MOTION);
+        securityService.addSensor(door);
+        securityService.addSensor(window);
+        securityService.addSensor(motion);
+        listener = new RecordingListener();
+        securityService.addStatusListener(listener);
+    }
+
+    @AfterEach
+    void tearDown() {
+        repository.close();
+    }
+
+    @Test
+    void BatchPersistsOnceAndNotifiesOnce() {
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        listener.clear();
+        repository.clear();
+
+        securityService.changeSensorActivationStatus(List.of(
+                new SensorEvent(door, true),
+                new SensorEvent(window, true),
+                new SensorEvent(window, false),
+                new SensorEvent(motion, true),
+                new SensorEvent(motion, false)));
+
+        //door then window active escalates pending to alarm, which later deactivations don't undo
+        assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
+        assertEquals(AlarmStatus.ALARM, repository.getAlarmStatus());
+        assertEquals(List.of(AlarmStatus.ALARM), listener.alarmStatuses);
+        assertEquals(1, listener.sensorBatches.size());
+        assertEquals(List.of(door), listener.sensorBatches.get(0));
+        assertEquals(0, listener.sensorStatusChanges);
+        assertEquals(0, repository.singleUpdates);
+        assertEquals(1, repository.batchUpdates);
+        assertEquals(1, repository.getActiveSensorCount());
+    }
+
+    @Test
+    void BatchMatchesOneCallPerEvent() {
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+        securityService.changeSensorActivationStatus(List.of(
+                new SensorEvent(door, true),
+                new SensorEvent(door, false)));
+
+        //one sensor on and off again goes to pending and back
+        assertEquals(AlarmStatus.NO_ALARM, securityService.getAlarmStatus());
+        assertTrue(listener.alarmStatuses.isEmpty());
+        assertTrue(listener.sensorBatches.isEmpty());
+        assertEquals(0, repository.getActiveSensorCount());
+    }
+
+    @Test
+    void ArmingBatchResetsSensorsActivatedEarlier() {
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+        securityService.changeSensorActivationStatus(door, true);
+        securityService.changeSensorActivationStatus(window, true);
+        assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
+        listener.clear();
+        repository.clear();
+
+        securityService.setArmingStatus(List.of(ArmingStatus.DISARMED, ArmingStatus.ARMED_AWAY));
+
+        assertEquals(ArmingStatus.ARMED_AWAY, repository.getArmingStatus());
+        assertEquals(AlarmStatus.NO_ALARM, repository.getAlarmStatus());
+        assertEquals(0, repository.getActiveSensorCount());
+        assertFalse(door.getActive());
+        assertFalse(window.getActive());
+        assertEquals(List.of(AlarmStatus.NO_ALARM), listener.alarmStatuses);
+        assertEquals(1, listener.sensorBatches.size());
+        assertEquals(2, listener.sensorBatches.get(0).size());
+        assertEquals(1, repository.batchUpdates);
+    }
+
+    private static class CountingRepository extends MappedSensorSecurityRepositoryImpl {
+        int singleUpdates;
+        int batchUpdates;
+
+        CountingRepository(Path directory) {
+            super(directory);
+        }
+
+        @Override
+        public void updateSensor(Sensor sensor) {
+            singleUpdates++;
+            super.updateSensor(sensor);
+        }
+
+        @Override
+        public void updateSensors(Collection<Sensor> sensors) {
+            batchUpdates++;
+            sensors.forEach(super::updateSensor);
+        }
+
+        void clear() {
+            singleUpdates = 0;
+            batchUpdates = 0;
+        }
+    }
+
+    private static class RecordingListener implements StatusListener {
+        final List<AlarmStatus> alarmStatuses = new ArrayList<>();
+        final List<List<Sensor>> sensorBatches = new ArrayList<>();
+        int sensorStatusChanges;
+
+        @Override
+        public void notify(AlarmStatus status) {
+            alarmStatuses.add(status);
+        }
+
+        @Override
+        public void catDetected(boolean catDetected) {
+        }
+
+        @Override
+        public void sensorStatusChanged() {
+            sensorStatusChanges++;
+        }
+
+        @Override
+        public void sensorsChanged(Collection<Sensor> changedSensors) {
+            sensorBatches.add(new ArrayList<>(changedSensors));
+        }
+
+        void clear() {
+            alarmStatuses.clear();
+            sensorBatches.clear();
+            sensorStatusChanges = 0;
+        }
+    }
+}
@@ -0,0 +1,407 @@
+package com.security.service;
+
+import com.security.data.AlarmStatus;
+import com.security.data.ArmingStatus;
+import com.security.data.MappedSensorSecurityRepositoryImpl;
+import com.udacity.catpoint.image.service.ClassificationResult;
+import com.udacity.catpoint.image.service.ImageInput;
+import com.udacity.catpoint.image.service.ImageService;
+import com.udacity.catpoint.image.service.MotionGate;
+import com.udacity.catpoint.image.service.RegionClassifier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SecurityServiceImageTest {
+
+    @TempDir
+    Path directory;
+
+    private MappedSensorSecurityRepositoryImpl repository;
+    private SecurityService securityService;
+    private final Map<BufferedImage, Boolean> cats = new IdentityHashMap<>();
+    private int scans;
+
+    @BeforeEach
+    void setUp() {
+        repository = new MappedSensorSecurityRepositoryImpl(directory);
+        securityService = new SecurityService(repository, (image, threshold) -> {
+            scans++;
+            return cats.get(image);
+        });
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+    }
+
+    @AfterEach
+    void tearDown() {
+        repository.close();
+    }
+
+    @Test
+    void ImageIsProcessedSynchronouslyByDefault() {
+        CompletableFuture<Boolean> result = securityService.processImage(image(true));
+
+        assertTrue(result.isDone());
+        assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
+    }
+
+    @Test
+    void OlderResultDoesNotOverrideNewerOne() throws Exception {
+        QueuedExecutor executor = new QueuedExecutor();
+        securityService.setImageExecutors(executor, StatusDispatcher.DIRECT);
+
+        CompletableFuture<Boolean> older = securityService.processImage(image(true));
+        CompletableFuture<Boolean> newer = securityService.processImage(image(false));
+        executor.run(1);
+        executor.run(0);
+
+        assertFalse(newer.get());
+        assertTrue(older.get());
+        //the cat in the older frame is gone in the newer one
+        assertEquals(AlarmStatus.NO_ALARM, securityService.getAlarmStatus());
+    }
+
+    @Test
+    void DisarmingCancelsScansInFlight() {
+        QueuedExecutor executor = new QueuedExecutor();
+        securityService.setImageExecutors(executor, StatusDispatcher.DIRECT);
+
+        CompletableFuture<Boolean> result = securityService.processImage(image(true));
+        securityService.setArmingStatus(ArmingStatus.DISARMED);
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+        executor.run(0);
+
+        assertTrue(result.isCancelled());
+        assertEquals(0, scans);
+        assertEquals(AlarmStatus.NO_ALARM, securityService.getAlarmStatus());
+    }
+
+    @Test
+    void ResultOfScanStartedBeforeDisarmingIsDiscarded() throws Exception {
+        QueuedExecutor resultExecutor = new QueuedExecutor();
+        securityService.setImageExecutors(StatusDispatcher.DIRECT, resultExecutor);
+
+        CompletableFuture<Boolean> result = securityService.processImage(image(true));
+        securityService.setArmingStatus(ArmingStatus.DISARMED);
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+        resultExecutor.run(0);
+
+        assertTrue(result.get());
+        assertEquals(AlarmStatus.NO_ALARM, securityService.getAlarmStatus());
+    }
+
+    @Test
+    void RejectedScanFailsTheFuture() {
+        securityService.setImageExecutors(command -> {
+            throw new RejectedExecutionException("full");
+        }, StatusDispatcher.DIRECT);
+
+        CompletableFuture<Boolean> result = securityService.processImage(image(true));
+
+        ExecutionException e = assertThrows(ExecutionException.class, result::get);
+        assertTrue(e.getCause() instanceof RejectedExecutionException);
+        assertEquals(AlarmStatus.NO_ALARM, securityService.getAlarmStatus());
+    }
+
+    @Test
+    void EncodedImageIsPassedThroughWithoutDecoding() throws Exception {
+        List<ImageInput> received = new ArrayList<>();
+        securityService = new SecurityService(repository, new ImageService() {
+            @Override
+            public boolean imageContainsCat(BufferedImage image, float confidenceThreshold) {
+                throw new AssertionError("image should not be decoded");
+            }
+
+            @Override
+            public boolean containsCat(ImageInput image, float confidenceThreshold) {
+                received.add(image);
+                return true;
+            }
+        });
+        ImageInput input = ImageInput.ofEncoded(jpeg());
+
+        assertTrue(securityService.processImage(input).get());
+
+        assertSame(input, received.get(0));
+        assertFalse(input.isDecoded());
+        assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
+    }
+
+    @Test
+    void EncodedImageIsDecodedForServicesThatNeedPixels() throws Exception {
+        ImageInput input = ImageInput.ofEncoded(jpeg());
+        securityService = new SecurityService(repository, (image, threshold) -> image.getWidth() == 4);
+
+        assertTrue(securityService.processImage(input).get());
+        assertTrue(input.isDecoded());
+    }
+
+    @Test
+    void QueuedFramesAreClassifiedInOneCall() throws Exception {
+        List<Integer> batchSizes = new ArrayList<>();
+        securityService = new SecurityService(repository, new ImageService() {
+            @Override
+            public boolean imageContainsCat(BufferedImage image, float confidenceThreshold) {
+                batchSizes.add(1);
+                return cats.get(image);
+            }
+
+            @Override
+            public List<ClassificationResult> classify(List<ImageInput> images, float confidenceThreshold) {
+                batchSizes.add(images.size());
+                List<ClassificationResult> results = new ArrayList<>();
+                for (ImageInput image : images) {
+                    results.add(ClassificationResult.of(cats.get(image.getImage()), 0));
+                }
+                return results;
+            }
+        });
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+        QueuedExecutor executor = new QueuedExecutor();
+        securityService.setImageExecutors(executor, StatusDispatcher.DIRECT);
+
+        CompletableFuture<Boolean> first = securityService.processImage(image(false));
+        CompletableFuture<Boolean> second = securityService.processImage(image(false));
+        CompletableFuture<Boolean> third = securityService.processImage(image(true));
+        executor.run(0);
+        executor.run(1);
+        executor.run(2);
+
+        assertEquals(List.of(3), batchSizes);
+        assertFalse(first.get());
+        assertFalse(second.get());
+        assertTrue(third.get());
+        assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
+
+        //a frame on its own still goes through imageContainsCat
+        securityService.processImage(image(true));
+        executor.run(3);
+        assertEquals(List.of(3, 1), batchSizes);
+    }
+
+    @Test
+    void CancelledFrameIsNotClassified() {
+        QueuedExecutor executor = new QueuedExecutor();
+        securityService.setImageExecutors(executor, StatusDispatcher.DIRECT);
+
+        CompletableFuture<Boolean> result = securityService.processImage(image(true));
+        result.cancel(false);
+        executor.run(0);
+
+        assertEquals(0, scans);
+        assertEquals(AlarmStatus.NO_ALARM, securityService.getAlarmStatus());
+    }
+
+    @Test
+    void SchedulerSkipsFramesWhileDisarmed() throws Exception {
+        securityService.setScheduler(new ClassificationScheduler());
+        securityService.setArmingStatus(ArmingStatus.DISARMED);
+
+        assertNull(securityService.processImage(image(true)).get());
+        assertEquals(0, scans);
+
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+        assertTrue(securityService.processImage(image(true)).get());
+        assertEquals(1, scans);
+    }
+
+    @Test
+    void FullQueueDropsOldestFrame() throws Exception {
+        Camera camera = securityService.getCameraRegistry().register("front", 2);
+        QueuedExecutor executor = new QueuedExecutor();
+        securityService.setImageExecutors(executor, StatusDispatcher.DIRECT);
+
+        CompletableFuture<Boolean> oldest = securityService.processImage("front", image(true));
+        CompletableFuture<Boolean> older = securityService.processImage("front", image(false));
+        CompletableFuture<Boolean> newest = securityService.processImage("front", image(true));
+
+        assertTrue(oldest.isDone());
+        assertNull(oldest.get());
+        assertEquals(1, camera.getDroppedFrames());
+        executor.run(0);
+        assertFalse(older.get());
+        assertTrue(newest.get());
+        assertEquals(2, camera.getClassifiedFrames());
+        assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
+    }
+
+    @Test
+    void CamerasHaveTheirOwnQueues() {
+        securityService.getCameraRegistry().register("front", 1);
+        QueuedExecutor executor = new QueuedExecutor();
+        securityService.setImageExecutors(executor, StatusDispatcher.DIRECT);
+
+        CompletableFuture<Boolean> front = securityService.processImage("front", image(true));
+        CompletableFuture<Boolean> back = securityService.processImage("back", image(false));
+
+        assertFalse(front.isDone());
+        assertFalse(back.isDone());
+        assertEquals(1, securityService.getCameraRegistry().getCamera("front").getQueuedFrames());
+        assertEquals(1, securityService.getCameraRegistry().getCamera("back").getQueuedFrames());
+    }
+
+    @Test
+    void CatSeenByOneCameraIsNotClearedByAnother() throws Exception {
+        QueuedExecutor executor = new QueuedExecutor();
+        securityService.setImageExecutors(executor, StatusDispatcher.DIRECT);
+
+        CompletableFuture<Boolean> front = securityService.processImage(frame("front", true));
+        CompletableFuture<Boolean> back = securityService.processImage(frame("back", false));
+        //the back camera's newer frame doesn't make the front camera's result stale
+        executor.run(1);
+        executor.run(0);
+
+        assertTrue(front.get());
+        assertFalse(back.get());
+        assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
+        Camera frontCamera = securityService.getCameraRegistry().getCamera("front");
+        assertEquals(Boolean.TRUE, frontCamera.getCatDetected());
+        assertNotNull(frontCamera.getLastCapturedAt());
+
+        //the cat is gone once the front camera no longer sees it
+        securityService.processImage(frame("front", false));
+        executor.run(2);
+        assertEquals(AlarmStatus.NO_ALARM, securityService.getAlarmStatus());
+    }
+
+    @Test
+    void RemovedCameraDropsItsFrames() {
+        QueuedExecutor executor = new QueuedExecutor();
+        securityService.setImageExecutors(executor, StatusDispatcher.DIRECT);
+
+        CompletableFuture<Boolean> result = securityService.processImage("front", image(true));
+        assertTrue(securityService.removeCamera("front"));
+        executor.run(0);
+
+        assertTrue(result.isCancelled());
+        assertEquals(0, scans);
+        assertNull(securityService.getCameraRegistry().getCamera("front"));
+        assertFalse(securityService.removeCamera("front"));
+    }
+
+    @Test
+    void RemovedCameraIsForgottenByTheMotionGate() throws Exception {
+        MotionGate motionGate = new MotionGate();
+        securityService.setMotionGate(motionGate);
+
+        securityService.processImage("front", image(true)).get();
+        assertEquals(1, motionGate.getFramesSeen("front"));
+        assertTrue(securityService.removeCamera("front"));
+
+        assertEquals(0, motionGate.getFramesSeen("front"));
+    }
+
+    @Test
+    void AlarmFreezesRecordings() throws Exception {
+        securityService = new SecurityService(repository, (image, threshold) -> image.getWidth() == 4);
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+        securityService.getCameraRegistry().register("back");
+        securityService.getCameraRegistry().enableRecording(4, 1024, 1);
+
+        assertTrue(securityService.processImage("front", ImageInput.ofEncoded(jpeg())).get());
+        assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
+        //one more frame after the alarm, then the recording stops
+        securityService.processImage("front", ImageInput.ofEncoded(jpeg()));
+        securityService.processImage("front", ImageInput.ofEncoded(jpeg()));
+
+        FrameRingBuffer front = securityService.getCameraRegistry().getCamera("front").getRecording();
+        assertTrue(front.isFrozen());
+        assertEquals(2, front.size());
+        assertEquals(1, front.getMissedFrames());
+        //the other camera records its frame after the alarm too
+        FrameRingBuffer back = securityService.getCameraRegistry().getCamera("back").getRecording();
+        assertFalse(back.isFrozen());
+        securityService.processImage("back", ImageInput.ofEncoded(jpeg()));
+        assertTrue(back.isFrozen());
+
+        securityService.removeCamera("front");
+        assertEquals(4 * 1024, securityService.getCameraRegistry().getBufferPool().getPooledBytes());
+    }
+
+    @Test
+    void OnlyChangedRegionsAreClassified() throws Exception {
+        List<Integer> widths = new ArrayList<>();
+        ImageService imageService = new ImageService() {
+            @Override
+            public boolean imageContainsCat(BufferedImage image, float confidenceThreshold) {
+                throw new AssertionError("classify should be used");
+            }
+
+            @Override
+            public List<ClassificationResult> classify(List<ImageInput> images, float confidenceThreshold) {
+                List<ClassificationResult> results = new ArrayList<>();
+                for (ImageInput image : images) {
+                    widths.add(image.getImage().getWidth());
+                    results.add(ClassificationResult.of(true, 0));
+                }
+                return results;
+            }
+        };
+        securityService = new SecurityService(repository, imageService);
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+        securityService.setMotionGate(new MotionGate());
+        securityService.setRegionClassifier(new RegionClassifier(imageService));
+        BufferedImage empty = new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB);
+        BufferedImage moved = new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = moved.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(300, 200, 40, 40);
+        g.dispose();
+
+        assertTrue(securityService.processImage(empty).get());
+        assertTrue(securityService.processImage(moved).get());
+
+        //the first frame is classified whole, then just the crop around the change
+        assertEquals(List.of(640, RegionClassifier.DEFAULT_MIN_REGION_SIZE), widths);
+        assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
+    }
+
+    private static byte[] jpeg() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB), "jpg", out);
+        return out.toByteArray();
+    }
+
+    private CameraFrame frame(String cameraId, boolean cat) {
+        return new CameraFrame(cameraId, Instant.now(), ImageInput.of(image(cat)));
+    }
+
+    private BufferedImage image(boolean cat) {
+        BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+        cats.put(image, cat);
+        return image;
+    }
+
+    private static class QueuedExecutor implements Executor {
+        final List<Runnable> tasks = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        void run(int index) {
+            tasks.get(index).run();
+        }
+    }
+}
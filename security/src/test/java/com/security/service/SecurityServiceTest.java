@@ -233,7 +233,7 @@ class SecurityServiceTest {
         sensors.add(sensor1);
         sensors.add(sensor2);
 
-        when(securityRepository.getSensors()).thenReturn(sensors);
+        when(securityRepository.getActiveSensors()).thenReturn(sensors);
         when(securityRepository.getArmingStatus()).thenReturn(ArmingStatus.ARMED_HOME);
 
         // Set both sensors to active
@@ -246,6 +246,7 @@ class SecurityServiceTest {
         // Then
         assertFalse(sensor1.getActive(), "Sensor1 should be reset to inactive");
         assertFalse(sensor2.getActive(), "Sensor2 should be reset to inactive");
+        verify(securityRepository).updateSensors(anyCollection());
     }
 
     /*
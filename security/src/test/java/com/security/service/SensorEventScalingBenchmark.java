@@ -0,0 +1,124 @@
+package com.security.service;
+
+import com.security.data.AlarmStatus;
+import com.security.data.ArmingStatus;
+import com.security.data.MappedSensorSecurityRepositoryImpl;
+import com.security.data.SecurityRepository;
+import com.security.data.Sensor;
+import com.security.data.SensorType;
+import com.udacity.catpoint.image.service.FakeImageService;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Per-event latency of SecurityService.changeSensorActivationStatus as the fleet grows, with the
+ * repository's incremental active-sensor tracking and with the old scan over every sensor.
+ * Not a unit test, run it manually with the test classpath.
+ */
+public class SensorEventScalingBenchmark {
+
+    private static final int[] FLEET_SIZES = {10, 1_000, 100_000, 1_000_000};
+    private static final int EVENTS = 200_000;
+
+    public static void main(String[] args) throws IOException {
+        for (int fleetSize : FLEET_SIZES) {
+            Path dir = Files.createTempDirectory("catpoint-scaling");
+            MappedSensorSecurityRepositoryImpl repository = new MappedSensorSecurityRepositoryImpl(dir);
+            List<Sensor> sensors = new ArrayList<>(fleetSize);
+            for (int i = 0; i < fleetSize; i++) {
+                Sensor sensor = new Sensor("Sensor " + i, SensorType.MOTION);
+                sensors.add(sensor);
+                repository.addSensor(sensor);
+            }
+
+            long tracked = measure(repository, sensors, EVENTS);
+            //a full scan per event is too slow for big fleets, so only time enough events to get a stable average
+            long scanned = measure(new ScanningRepository(repository), sensors, Math.max(20, EVENTS / Math.max(1, fleetSize / 10)));
+            System.out.printf("%,9d sensors: tracked %,8d ns/event | full scan %,12d ns/event%n", fleetSize, tracked, scanned);
+
+            repository.close();
+            try (var paths = Files.walk(dir)) {
+                paths.sorted((a, b) -> b.compareTo(a)).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+
+    private static long measure(SecurityRepository repository, List<Sensor> sensors, int events) {
+        SecurityService securityService = new SecurityService(repository, new FakeImageService());
+        repository.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        Random random = new Random(7);
+
+        for (int i = 0; i < Math.min(events, 10_000); i++) {
+            toggle(securityService, sensors.get(random.nextInt(sensors.size())));
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < events; i++) {
+            toggle(securityService, sensors.get(random.nextInt(sensors.size())));
+        }
+        return (System.nanoTime() - start) / events;
+    }
+
+    private static void toggle(SecurityService securityService, Sensor sensor) {
+        securityService.changeSensorActivationStatus(sensor, !sensor.getActive());
+        if (securityService.getAlarmStatus() == AlarmStatus.ALARM) {
+            securityService.setAlarmStatus(AlarmStatus.NO_ALARM);
+        }
+    }
+
+    /**
+     * Delegates everything except the active-sensor queries, which fall back to the interface's full scan.
+     */
+    private static class ScanningRepository implements SecurityRepository {
+        private final SecurityRepository delegate;
+
+        ScanningRepository(SecurityRepository delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void addSensor(Sensor sensor) {
+            delegate.addSensor(sensor);
+        }
+
+        @Override
+        public void removeSensor(Sensor sensor) {
+            delegate.removeSensor(sensor);
+        }
+
+        @Override
+        public void updateSensor(Sensor sensor) {
+            delegate.updateSensor(sensor);
+        }
+
+        @Override
+        public void setAlarmStatus(AlarmStatus alarmStatus) {
+            delegate.setAlarmStatus(alarmStatus);
+        }
+
+        @Override
+        public void setArmingStatus(ArmingStatus armingStatus) {
+            delegate.setArmingStatus(armingStatus);
+        }
+
+        @Override
+        public Set<Sensor> getSensors() {
+            return delegate.getSensors();
+        }
+
+        @Override
+        public AlarmStatus getAlarmStatus() {
+            return delegate.getAlarmStatus();
+        }
+
+        @Override
+        public ArmingStatus getArmingStatus() {
+            return delegate.getArmingStatus();
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.security.service;
+
+import com.security.application.StatusListener;
+import com.security.data.AlarmStatus;
+import com.security.data.Sensor;
+import com.security.data.SensorType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatusDispatcherTest {
+
+    private final StatusDispatcher dispatcher = new StatusDispatcher();
+
+    @Test
+    void DirectListenerIsCalledBeforePublishReturns() {
+        RecordingListener listener = new RecordingListener();
+        dispatcher.addListener(listener, StatusDispatcher.DIRECT);
+
+        dispatcher.alarmStatusChanged(AlarmStatus.PENDING_ALARM);
+        assertEquals(List.of("notify PENDING_ALARM"), listener.calls);
+        dispatcher.sensorStatusChanged();
+        dispatcher.alarmStatusChanged(AlarmStatus.ALARM);
+
+        assertEquals(List.of("notify PENDING_ALARM", "sensorStatusChanged", "notify ALARM"), listener.calls);
+        assertEquals(0, dispatcher.getMetrics(listener).getCoalesced());
+    }
+
+    @Test
+    void SlowListenerGetsCoalescedNotifications() {
+        QueuedExecutor executor = new QueuedExecutor();
+        RecordingListener slow = new RecordingListener();
+        RecordingListener direct = new RecordingListener();
+        dispatcher.addListener(slow, executor);
+        dispatcher.addListener(direct, StatusDispatcher.DIRECT);
+
+        dispatcher.alarmStatusChanged(AlarmStatus.PENDING_ALARM);
+        dispatcher.sensorStatusChanged();
+        dispatcher.alarmStatusChanged(AlarmStatus.ALARM);
+        dispatcher.sensorStatusChanged();
+        dispatcher.sensorStatusChanged();
+
+        //the slow listener doesn't hold up the others
+        assertEquals(5, direct.calls.size());
+        assertTrue(slow.calls.isEmpty());
+        assertTrue(dispatcher.getMetrics(slow).isPending());
+        assertEquals(1, executor.tasks.size());
+
+        executor.runAll();
+
+        assertEquals(List.of("notify ALARM", "sensorStatusChanged"), slow.calls);
+        StatusDispatcher.ListenerMetrics metrics = dispatcher.getMetrics(slow);
+        assertEquals(5, metrics.getPublished());
+        assertEquals(3, metrics.getCoalesced());
+        assertEquals(2, metrics.getDelivered());
+        assertFalse(metrics.isPending());
+        assertTrue(metrics.getMaxLagNanos() > 0);
+    }
+
+    @Test
+    void ChangedSensorsAreMerged() {
+        QueuedExecutor executor = new QueuedExecutor();
+        RecordingListener listener = new RecordingListener();
+        dispatcher.addListener(listener, executor);
+        Sensor door = new Sensor("Front Door", SensorType.DOOR);
+        Sensor window = new Sensor("Kitchen Window", SensorType.WINDOW);
+
+        dispatcher.sensorsChanged(List.of(door));
+        dispatcher.sensorsChanged(List.of(window, door));
+        executor.runAll();
+
+        assertEquals(List.of("sensorsChanged 2"), listener.calls);
+        assertEquals(List.of(door, window), listener.changedSensors);
+    }
+
+    @Test
+    void TooManyChangedSensorsBecomeARefresh() {
+        QueuedExecutor executor = new QueuedExecutor();
+        RecordingListener listener = new RecordingListener();
+        dispatcher.addListener(listener, executor);
+
+        for (int i = 0; i <= StatusDispatcher.MAX_PENDING_SENSORS; i++) {
+            dispatcher.sensorsChanged(List.of(new Sensor("Motion " + i, SensorType.MOTION)));
+        }
+        executor.runAll();
+
+        assertEquals(List.of("sensorStatusChanged"), listener.calls);
+    }
+
+    @Test
+    void ListenerCanRemoveItselfDuringDelivery() {
+        RecordingListener other = new RecordingListener();
+        StatusListener removing = new RecordingListener() {
+            @Override
+            public void notify(AlarmStatus status) {
+                dispatcher.removeListener(this);
+            }
+        };
+        dispatcher.addListener(removing, StatusDispatcher.DIRECT);
+        dispatcher.addListener(other, StatusDispatcher.DIRECT);
+
+        dispatcher.alarmStatusChanged(AlarmStatus.ALARM);
+        dispatcher.alarmStatusChanged(AlarmStatus.NO_ALARM);
+
+        assertNull(dispatcher.getMetrics(removing));
+        assertEquals(List.of("notify ALARM", "notify NO_ALARM"), other.calls);
+    }
+
+    @Test
+    void FailingNotificationDoesNotDropTheOthers() {
+        QueuedExecutor executor = new QueuedExecutor();
+        RecordingListener failing = new RecordingListener() {
+            @Override
+            public void notify(AlarmStatus status) {
+                throw new IllegalStateException("listener bug");
+            }
+        };
+        dispatcher.addListener(failing, executor);
+
+        dispatcher.alarmStatusChanged(AlarmStatus.ALARM);
+        dispatcher.catDetected(true);
+        dispatcher.sensorStatusChanged();
+        executor.runAll();
+
+        assertEquals(List.of("catDetected true", "sensorStatusChanged"), failing.calls);
+        assertEquals(3, dispatcher.getMetrics(failing).getDelivered());
+    }
+
+    private static class QueuedExecutor implements Executor {
+        final List<Runnable> tasks = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        void runAll() {
+            while (!tasks.isEmpty()) {
+                tasks.remove(0).run();
+            }
+        }
+    }
+
+    private static class RecordingListener implements StatusListener {
+        final List<String> calls = new ArrayList<>();
+        final List<Sensor> changedSensors = new ArrayList<>();
+
+        @Override
+        public void notify(AlarmStatus status) {
+            calls.add("notify " + status);
+        }
+
+        @Override
+        public void catDetected(boolean catDetected) {
+            calls.add("catDetected " + catDetected);
+        }
+
+        @Override
+        public void sensorStatusChanged() {
+            calls.add("sensorStatusChanged");
+        }
+
+        @Override
+        public void sensorsChanged(Collection<Sensor> sensors) {
+            calls.add("sensorsChanged " + sensors.size());
+            changedSensors.addAll(sensors);
+        }
+    }
+}